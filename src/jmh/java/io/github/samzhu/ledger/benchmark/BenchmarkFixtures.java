@@ -0,0 +1,80 @@
+package io.github.samzhu.ledger.benchmark;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import io.github.samzhu.ledger.config.LedgerProperties;
+import io.github.samzhu.ledger.config.LedgerProperties.BatchConfig;
+import io.github.samzhu.ledger.config.LedgerProperties.ModelPricing;
+import io.github.samzhu.ledger.dto.UsageEventData;
+
+/**
+ * 基準測試共用的配置與樣本事件。
+ *
+ * <p>樣本以固定規則分布在用戶、模型與小時上，每次執行產生相同資料，結果可與基準線比對。
+ */
+final class BenchmarkFixtures {
+
+    static final String[] MODELS = {
+        "claude-sonnet-4-20250514",
+        "claude-opus-4-20250514",
+        "claude-haiku-3-5-20241022"
+    };
+
+    private BenchmarkFixtures() {
+    }
+
+    static LedgerProperties properties(int batchSize) {
+        Map<String, ModelPricing> pricing = Map.of(
+            MODELS[0], new ModelPricing(
+                new BigDecimal("3.00"), new BigDecimal("15.00"), new BigDecimal("0.30"), new BigDecimal("3.75")),
+            MODELS[1], new ModelPricing(
+                new BigDecimal("15.00"), new BigDecimal("75.00"), new BigDecimal("1.50"), new BigDecimal("18.75")),
+            MODELS[2], new ModelPricing(
+                new BigDecimal("0.80"), new BigDecimal("4.00"), new BigDecimal("0.08"), new BigDecimal("1.00"))
+        );
+
+        return LedgerProperties.defaults(pricing)
+            .withBatch(new BatchConfig(batchSize, "0 0,30 * * * *", "0 0 * * * *"));
+    }
+
+    /**
+     * 產生樣本事件：50 個用戶、3 個模型、分布於當日 UTC 起算的 24 小時，約 5% 為失敗事件。
+     *
+     * @param count 事件數
+     * @return 樣本事件
+     */
+    static List<UsageEventData> events(int count) {
+        Instant dayStart = Instant.now().truncatedTo(ChronoUnit.DAYS);
+        List<UsageEventData> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            events.add(event(i, dayStart.plus(i % 24, ChronoUnit.HOURS).plusSeconds(i % 3600)));
+        }
+        return events;
+    }
+
+    static UsageEventData event(int i, Instant eventTime) {
+        boolean failed = i % 20 == 19;
+        return new UsageEventData(
+            "user-" + (i % 50),
+            eventTime,
+            MODELS[i % MODELS.length],
+            1000 + i % 500,
+            failed ? 0 : 200 + i % 300,
+            i % 7 == 0 ? 2048 : 0,
+            i % 3 == 0 ? 4096 : 0,
+            "msg-" + i,
+            300L + (i * 37L) % 4000,
+            i % 2 == 0,
+            failed ? null : "end_turn",
+            failed ? "error" : "success",
+            failed ? "overloaded_error" : null,
+            "primary",
+            "trace-" + i,
+            "req-" + i);
+    }
+}
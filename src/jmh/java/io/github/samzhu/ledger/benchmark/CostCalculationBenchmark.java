@@ -0,0 +1,46 @@
+package io.github.samzhu.ledger.benchmark;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import io.github.samzhu.ledger.dto.UsageEventData;
+import io.github.samzhu.ledger.service.CostCalculationService;
+
+/**
+ * {@link CostCalculationService} 單筆與批次成本計算的平均耗時。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CostCalculationBenchmark {
+
+    private CostCalculationService service;
+    private UsageEventData event;
+    private List<UsageEventData> batch;
+
+    @Setup
+    public void setUp() {
+        service = new CostCalculationService(BenchmarkFixtures.properties(1000));
+        batch = BenchmarkFixtures.events(100);
+        event = batch.get(0);
+    }
+
+    @Benchmark
+    public BigDecimal calculateCost() {
+        return service.calculateCost(event);
+    }
+
+    @Benchmark
+    public BigDecimal calculateBatchCost() {
+        return service.calculateBatchCost(batch);
+    }
+}
@@ -0,0 +1,104 @@
+package io.github.samzhu.ledger.benchmark;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import io.github.samzhu.ledger.config.LedgerProperties;
+import io.github.samzhu.ledger.document.RawEventBatch;
+import io.github.samzhu.ledger.dto.UsageEventData;
+import io.github.samzhu.ledger.repository.ErrorEventRepository;
+import io.github.samzhu.ledger.service.CostCalculationService;
+import io.github.samzhu.ledger.service.EventBufferService;
+import io.github.samzhu.ledger.service.RecentErrorBuffer;
+import io.github.samzhu.ledger.storage.RawBatchStore;
+
+/**
+ * {@link EventBufferService#addEvent} 多執行緒競爭下的吞吐量。
+ *
+ * <p>4 個執行緒共用同一緩衝區，每 1000 筆觸發一次 flush；原始批次寫入記憶體內的空實作，
+ * 量測範圍涵蓋緩衝區寫入、失敗事件索引與 flush 時的增量彙總。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(4)
+public class EventBufferBenchmark {
+
+    private static final int SAMPLE_SIZE = 4096;
+
+    private EventBufferService service;
+    private List<UsageEventData> samples;
+    private final AtomicLong cursor = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        LedgerProperties properties = BenchmarkFixtures.properties(1000);
+        service = new EventBufferService(
+            new DiscardingRawBatchStore(),
+            mock(ErrorEventRepository.class, withSettings().stubOnly()),
+            new RecentErrorBuffer(properties),
+            new CostCalculationService(properties),
+            event -> { },
+            properties);
+        samples = BenchmarkFixtures.events(SAMPLE_SIZE);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        service.flushBuffer();
+    }
+
+    @Benchmark
+    public void addEvent() {
+        service.addEvent(samples.get((int) (cursor.getAndIncrement() % SAMPLE_SIZE)));
+    }
+
+    /**
+     * 只配發 ID、不保留內容的批次儲存，排除 I/O 對量測的影響。
+     */
+    private static final class DiscardingRawBatchStore implements RawBatchStore {
+
+        private final AtomicLong sequence = new AtomicLong();
+
+        @Override
+        public RawEventBatch save(RawEventBatch batch) {
+            return new RawEventBatch(Long.toString(sequence.incrementAndGet()), batch.events(), batch.eventCount(),
+                batch.createdAt(), false, batch.deltas(), null, null);
+        }
+
+        @Override
+        public List<RawEventBatch> findUnprocessed() {
+            return List.of();
+        }
+
+        @Override
+        public List<RawEventBatch> findUnprocessedSummaries() {
+            return List.of();
+        }
+
+        @Override
+        public List<RawEventBatch> findAllById(Collection<String> ids) {
+            return List.of();
+        }
+
+        @Override
+        public void markProcessed(String batchId) {
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package io.github.samzhu.ledger.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.tdunning.math.stats.TDigest;
+
+import io.github.samzhu.ledger.service.LatencyDigestService;
+
+/**
+ * {@link LatencyDigestService} 序列化、反序列化與跨日合併的平均耗時。
+ *
+ * <p>每個 digest 含 10,000 筆對數常態分布的延遲樣本；{@code digests} 對應日（31）與年（365）區間的查詢。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LatencyDigestBenchmark {
+
+    private static final int SAMPLES_PER_DIGEST = 10_000;
+
+    @Param({"31", "365"})
+    public int digests;
+
+    private LatencyDigestService service;
+    private TDigest digest;
+    private byte[] serialized;
+    private List<byte[]> serializedDigests;
+
+    @Setup
+    public void setUp() {
+        service = new LatencyDigestService(BenchmarkFixtures.properties(1000));
+        Random random = new Random(42);
+        serializedDigests = new ArrayList<>(digests);
+        for (int i = 0; i < digests; i++) {
+            TDigest day = service.createDigest();
+            for (int j = 0; j < SAMPLES_PER_DIGEST; j++) {
+                day.add(Math.exp(6.5 + random.nextGaussian() * 0.8));
+            }
+            serializedDigests.add(service.serialize(day));
+        }
+        serialized = serializedDigests.get(0);
+        digest = service.deserialize(serialized);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return service.serialize(digest);
+    }
+
+    @Benchmark
+    public TDigest deserialize() {
+        return service.deserialize(serialized);
+    }
+
+    @Benchmark
+    public TDigest mergeSerialized() {
+        return service.mergeSerialized(serializedDigests);
+    }
+}
@@ -0,0 +1,113 @@
+package io.github.samzhu.ledger.benchmark;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import io.github.samzhu.ledger.config.LedgerProperties;
+import io.github.samzhu.ledger.document.UserQuota;
+import io.github.samzhu.ledger.dto.UsageEventData;
+import io.github.samzhu.ledger.repository.UserQuotaRepository;
+import io.github.samzhu.ledger.service.CostCalculationService;
+import io.github.samzhu.ledger.service.LatencyDigestService;
+import io.github.samzhu.ledger.service.ModelDictionaryService;
+import io.github.samzhu.ledger.service.PeriodRolloverService;
+import io.github.samzhu.ledger.service.SystemStatsShardService;
+import io.github.samzhu.ledger.service.UsageAggregationService;
+import io.github.samzhu.ledger.service.WatermarkService;
+import io.github.samzhu.ledger.util.PeriodUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * {@link UsageAggregationService#processBatch} 的分組與更新建構耗時。
+ *
+ * <p>MongoDB 以 stub-only mock 取代：bulk 操作不送出、查詢回傳空結果、配額為當期既有用戶，
+ * 量測範圍為事件分組、digest 與草圖合併及 {@code Update} 建構，不含網路與資料庫時間。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UsageAggregationBenchmark {
+
+    @Param({"100", "1000"})
+    public int batchSize;
+
+    private UsageAggregationService service;
+    private List<UsageEventData> events;
+
+    @Setup
+    public void setUp() {
+        LedgerProperties properties = BenchmarkFixtures.properties(1000);
+
+        MongoTemplate mongoTemplate = stub(MongoTemplate.class);
+        BulkOperations bulkOps = mock(BulkOperations.class, withSettings().stubOnly().defaultAnswer(RETURNS_SELF));
+        when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), any(Class.class))).thenReturn(bulkOps);
+
+        WatermarkService watermarkService = stub(WatermarkService.class);
+        when(watermarkService.advance(anyList())).thenReturn(Instant.EPOCH);
+
+        ModelDictionaryService modelDictionary = stub(ModelDictionaryService.class);
+        when(modelDictionary.idsOf(anyCollection())).thenAnswer(invocation -> {
+            Map<String, Integer> ids = new LinkedHashMap<>();
+            for (String model : invocation.<Collection<String>>getArgument(0)) {
+                ids.put(model, Math.floorMod(model.hashCode(), 1_000));
+            }
+            return ids;
+        });
+
+        UserQuotaRepository userQuotaRepository = stub(UserQuotaRepository.class);
+        when(userQuotaRepository.findByUserId(anyString())).thenAnswer(invocation -> Optional.of(UserQuota.builder()
+            .userId(invocation.getArgument(0))
+            .periodYear(PeriodUtils.getCurrentYear())
+            .periodMonth(PeriodUtils.getCurrentMonth())
+            .quotaEnabled(true)
+            .costLimitUsd(100.0)
+            .build()));
+
+        service = new UsageAggregationService(
+            mongoTemplate,
+            new CostCalculationService(properties),
+            new LatencyDigestService(properties),
+            properties,
+            userQuotaRepository,
+            stub(PeriodRolloverService.class),
+            watermarkService,
+            stub(SystemStatsShardService.class),
+            modelDictionary,
+            new SimpleMeterRegistry());
+        events = BenchmarkFixtures.events(batchSize);
+    }
+
+    @Benchmark
+    public void processBatch() {
+        service.processBatch(events);
+    }
+
+    private static <T> T stub(Class<T> type) {
+        return mock(type, withSettings().stubOnly());
+    }
+}
@@ -0,0 +1,57 @@
+package io.github.samzhu.ledger.benchmark;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import io.github.samzhu.ledger.dto.UsageEventData;
+
+/**
+ * {@link UsageEventData} 的 Jackson 解碼耗時。
+ *
+ * <p>ObjectMapper 與 Spring Boot 預設建構方式相同，輸入為 Gate 發送格式（snake_case）的 UTF-8 bytes，
+ * 分別量測單筆事件與 100 筆事件陣列。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class UsageEventDecodingBenchmark {
+
+    private ObjectReader eventReader;
+    private ObjectReader listReader;
+    private byte[] eventJson;
+    private byte[] listJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+        eventReader = mapper.readerFor(UsageEventData.class);
+        listReader = mapper.readerFor(new TypeReference<List<UsageEventData>>() { });
+        List<UsageEventData> events = BenchmarkFixtures.events(100);
+        eventJson = mapper.writeValueAsBytes(events.get(0));
+        listJson = mapper.writeValueAsBytes(events);
+    }
+
+    @Benchmark
+    public UsageEventData decodeEvent() throws IOException {
+        return eventReader.readValue(eventJson);
+    }
+
+    @Benchmark
+    public List<UsageEventData> decodeBatch() throws IOException {
+        return listReader.readValue(listJson);
+    }
+}
@@ -0,0 +1,63 @@
+package io.github.samzhu.ledger.config;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import io.github.samzhu.ledger.service.DataVersionService;
+import io.github.samzhu.ledger.service.DataVersionService.DataVersion;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * 查詢端點的 HTTP 條件式 GET（{@code ETag} / {@code Last-Modified}）。
+ *
+ * <p>在進入 controller 之前比對 {@code If-None-Match} / {@code If-Modified-Since} 與
+ * {@link DataVersionService} 的資料版本，相符時直接回應 {@code 304 Not Modified}，不執行查詢與序列化。
+ * 不相符時寫入驗證器標頭並繼續處理；{@code Cache-Control: no-cache} 讓瀏覽器每次都帶驗證器重新確認。
+ * 疊加未結算用量的查詢（{@code fresh=true}）會隨 flush 變動，不以資料版本驗證。
+ * 版本前進時查詢快取同步失效（{@link io.github.samzhu.ledger.service.QueryCacheInvalidator}），新 ETag 不會搭配舊內容。
+ *
+ * <p>指標：{@code ledger.http.conditional{result=not_modified|modified}}。
+ */
+public class ConditionalGetInterceptor implements HandlerInterceptor {
+
+    private final DataVersionService dataVersionService;
+    private final Counter notModified;
+    private final Counter modified;
+
+    public ConditionalGetInterceptor(DataVersionService dataVersionService, MeterRegistry meterRegistry) {
+        this.dataVersionService = dataVersionService;
+        this.notModified = meterRegistry.counter("ledger.http.conditional", "result", "not_modified");
+        this.modified = meterRegistry.counter("ledger.http.conditional", "result", "modified");
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!"GET".equals(request.getMethod()) && !"HEAD".equals(request.getMethod())) {
+            return true;
+        }
+        if (Boolean.parseBoolean(request.getParameter("fresh"))) {
+            return true;
+        }
+        DataVersion version = dataVersionService.current();
+        if (version == null) {
+            return true;
+        }
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        ServletWebRequest webRequest = new ServletWebRequest(request, response);
+        if (webRequest.checkNotModified(version.etag(LocalDate.now(ZoneOffset.UTC)),
+                version.updatedAt().toEpochMilli())) {
+            notModified.increment();
+            return false;
+        }
+        modified.increment();
+        return true;
+    }
+}
@@ -14,6 +14,19 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
  *   <li>{@link ModelPricing} - 各 LLM 模型的 token 定價，用於成本計算</li>
  *   <li>{@link LatencyConfig} - 延遲百分位計算設定 (T-Digest)</li>
  *   <li>{@link QuotaConfig} - 用戶配額預設設定</li>
+ *   <li>{@link RolloverConfig} - 月度週期換月（歸檔與重置）排程設定</li>
+ *   <li>{@link HourlyConfig} - 小時粒度時序資料保留設定</li>
+ *   <li>{@link FinalizationConfig} - 已結束日期的日結（凍結與壓縮）設定</li>
+ *   <li>{@link WatermarkConfig} - 結算的事件時間水位線（遲到事件判定）設定</li>
+ *   <li>{@link CacheConfig} - 查詢快取（Caffeine）大小與 TTL 設定</li>
+ *   <li>{@link ErrorsConfig} - 錯誤事件串流（記憶體環形緩衝與 error_events 保留）設定</li>
+ *   <li>{@link QuotaSnapshotConfig} - 配額檢查記憶體快照的定時重載設定</li>
+ *   <li>{@link ExportConfig} - 離線分析用的增量分區檔案匯出設定</li>
+ *   <li>{@link HttpCacheConfig} - 查詢端點 HTTP 條件式請求（ETag / Last-Modified）設定</li>
+ *   <li>{@link OverlayConfig} - 查詢疊加未結算用量（fresh read）設定</li>
+ *   <li>{@link RawRetentionConfig} - 已結算原始事件批次的保留與冷儲存搬移設定</li>
+ *   <li>{@link CounterShardingConfig} - 熱點日統計文件的分片計數器設定</li>
+ *   <li>{@link StorageConfig} - 原始事件批次的儲存後端（MongoDB 或內嵌檔案）設定</li>
  * </ul>
  *
  * <p>配置範例 (application.yaml)：
@@ -28,6 +41,28 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
  *     default-token-limit: 0
  *     default-cost-limit-usd: 0
  *     default-period: MONTHLY
+ *   rollover:
+ *     cron: "0 5 0 * * *"
+ *     chunk-size: 500
+ *   hourly:
+ *     retention-days: 35
+ *   finalization:
+ *     cron: "0 15 * * * *"
+ *     lateness-hours: 6
+ *     digest-compression: 50
+ *   watermark:
+ *     allowed-lateness-minutes: 60
+ *   cache:
+ *     enabled: true
+ *     caches:
+ *       user-quota:
+ *         maximum-size: 5000
+ *         ttl-seconds: 60
+ *   errors:
+ *     retention-days: 30
+ *     recent-buffer-size: 1000
+ *   quota-snapshot:
+ *     resync-cron: "0 0/5 * * * *"
  *   pricing:
  *     claude-sonnet-4-20250514:
  *       input-per-million: 3.00
@@ -43,8 +78,64 @@ public record LedgerProperties(
     BatchConfig batch,
     Map<String, ModelPricing> pricing,
     LatencyConfig latency,
-    QuotaConfig quota
+    QuotaConfig quota,
+    RolloverConfig rollover,
+    HourlyConfig hourly,
+    FinalizationConfig finalization,
+    WatermarkConfig watermark,
+    CacheConfig cache,
+    ErrorsConfig errors,
+    QuotaSnapshotConfig quotaSnapshot,
+    ExportConfig export,
+    HttpCacheConfig httpCache,
+    OverlayConfig overlay,
+    RawRetentionConfig rawRetention,
+    CounterShardingConfig counterSharding,
+    StorageConfig storage
 ) {
+    /**
+     * 以指定定價建立其餘設定皆為預設值的組態。
+     *
+     * <p>供測試與基準程式使用；新增子設定時只需在此補上 {@code defaults()}，
+     * 呼叫端不必逐一修改建構參數。
+     *
+     * @param pricing 模型定價
+     * @return 預設組態
+     */
+    public static LedgerProperties defaults(Map<String, ModelPricing> pricing) {
+        return new LedgerProperties(
+            BatchConfig.defaults(),
+            pricing,
+            LatencyConfig.defaults(),
+            QuotaConfig.defaults(),
+            RolloverConfig.defaults(),
+            HourlyConfig.defaults(),
+            FinalizationConfig.defaults(),
+            WatermarkConfig.defaults(),
+            CacheConfig.defaults(),
+            ErrorsConfig.defaults(),
+            QuotaSnapshotConfig.defaults(),
+            ExportConfig.defaults(),
+            HttpCacheConfig.defaults(),
+            OverlayConfig.defaults(),
+            RawRetentionConfig.defaults(),
+            CounterShardingConfig.defaults(),
+            StorageConfig.defaults()
+        );
+    }
+
+    /**
+     * 回傳替換批次設定後的副本。
+     *
+     * @param batch 批次設定
+     * @return 新組態
+     */
+    public LedgerProperties withBatch(BatchConfig batch) {
+        return new LedgerProperties(batch, pricing, latency, quota, rollover, hourly, finalization,
+            watermark, cache, errors, quotaSnapshot, export, httpCache, overlay, rawRetention,
+            counterSharding, storage);
+    }
+
     /**
      * 事件批次處理設定。
      *
@@ -170,4 +261,511 @@ public record LedgerProperties(
             return new QuotaConfig(0, BigDecimal.ZERO, "MONTHLY");
         }
     }
+
+    /**
+     * 月度週期換月設定。
+     *
+     * <p>控制 {@link io.github.samzhu.ledger.service.PeriodRolloverService} 的行為：
+     * <ul>
+     *   <li>依 {@code cron} 定時檢查週期已過期的 {@code user_quota}，批量歸檔並重置（UTC）</li>
+     *   <li>每次處理 {@code chunkSize} 個用戶寫入一次 {@code quota_history}</li>
+     * </ul>
+     *
+     * <p>換月流程可重入：中斷後下次執行會跳過已歸檔的用戶，繼續處理尚未重置的用戶。
+     *
+     * @param cron 換月檢查 Cron 表達式（UTC），預設每日 00:05
+     * @param chunkSize 每批歸檔的用戶數，預設 500
+     */
+    public record RolloverConfig(
+        String cron,
+        int chunkSize
+    ) {
+        public RolloverConfig {
+            if (cron == null || cron.isBlank()) {
+                cron = "0 5 0 * * *";
+            }
+            if (chunkSize <= 0) {
+                chunkSize = 500;
+            }
+        }
+
+        /**
+         * 建立預設換月設定。
+         */
+        public static RolloverConfig defaults() {
+            return new RolloverConfig("0 5 0 * * *", 500);
+        }
+    }
+
+    /**
+     * 小時粒度時序資料設定。
+     *
+     * <p>{@code hourly_usage} 文件寫入時設定 {@code expireAt = 小時起點 + retentionDays}，
+     * 由 MongoDB TTL index 自動刪除過期文件。
+     *
+     * @param retentionDays 保留天數，預設 35
+     */
+    public record HourlyConfig(
+        int retentionDays
+    ) {
+        public HourlyConfig {
+            if (retentionDays <= 0) {
+                retentionDays = 35;
+            }
+        }
+
+        /**
+         * 建立預設小時資料設定。
+         */
+        public static HourlyConfig defaults() {
+            return new HourlyConfig(35);
+        }
+    }
+
+    /**
+     * 日結設定。
+     *
+     * <p>控制 {@link io.github.samzhu.ledger.service.DayFinalizationService} 的行為：
+     * <ul>
+     *   <li>UTC 日結束後再等待 {@code latenessHours}，讓遲到的批次完成結算</li>
+     *   <li>日結時以 {@code digestCompression} 重新壓縮 T-Digest（低於即時寫入的壓縮因子）</li>
+     * </ul>
+     *
+     * @param cron 日結檢查 Cron 表達式（UTC），預設每小時 15 分
+     * @param latenessHours 延遲視窗（小時），預設 6
+     * @param digestCompression 日結後的 T-Digest 壓縮因子，預設 50
+     */
+    public record FinalizationConfig(
+        String cron,
+        int latenessHours,
+        int digestCompression
+    ) {
+        public FinalizationConfig {
+            if (cron == null || cron.isBlank()) {
+                cron = "0 15 * * * *";
+            }
+            if (latenessHours < 0) {
+                latenessHours = 6;
+            }
+            if (digestCompression <= 0) {
+                digestCompression = 50;
+            }
+        }
+
+        /**
+         * 建立預設日結設定。
+         */
+        public static FinalizationConfig defaults() {
+            return new FinalizationConfig("0 15 * * * *", 6, 50);
+        }
+    }
+
+    /**
+     * 事件時間水位線設定。
+     *
+     * <p>控制 {@link io.github.samzhu.ledger.service.WatermarkService} 的行為：
+     * 水位線為已觀察到的最大事件時間減去 {@code allowedLatenessMinutes}，
+     * 事件時間早於水位線的事件視為遲到事件，改走只累加差量的修正路徑。
+     *
+     * <p>應小於 {@link FinalizationConfig#latenessHours()}，
+     * 讓遲到事件在日結前已能以修正路徑處理。
+     *
+     * @param allowedLatenessMinutes 允許的遲到時間（分鐘），預設 60
+     */
+    public record WatermarkConfig(
+        int allowedLatenessMinutes
+    ) {
+        public WatermarkConfig {
+            if (allowedLatenessMinutes <= 0) {
+                allowedLatenessMinutes = 60;
+            }
+        }
+
+        /**
+         * 建立預設水位線設定。
+         */
+        public static WatermarkConfig defaults() {
+            return new WatermarkConfig(60);
+        }
+    }
+
+    /**
+     * 查詢快取設定。
+     *
+     * <p>控制 {@link QueryCacheConfig} 建立的 Caffeine 快取：
+     * 每種查詢形態一個快取，各自有大小上限與 TTL（寫入後到期）。
+     * 結算完成時依異動的用戶、模型與日期精準失效，TTL 僅作為其他寫入路徑的上限。
+     *
+     * @param enabled 是否啟用快取，預設 true；停用時所有查詢直接讀取資料庫
+     * @param caches 各快取的設定覆寫（key 為快取名稱），未設定者使用 {@link QueryCacheConfig} 的預設值
+     */
+    public record CacheConfig(
+        Boolean enabled,
+        Map<String, CacheSpec> caches
+    ) {
+        public CacheConfig {
+            if (enabled == null) {
+                enabled = true;
+            }
+            if (caches == null) {
+                caches = Map.of();
+            }
+        }
+
+        /**
+         * 建立預設快取設定。
+         */
+        public static CacheConfig defaults() {
+            return new CacheConfig(true, Map.of());
+        }
+    }
+
+    /**
+     * 單一快取的大小與 TTL。
+     *
+     * @param maximumSize 最大項目數
+     * @param ttlSeconds 寫入後到期秒數
+     */
+    public record CacheSpec(
+        long maximumSize,
+        int ttlSeconds
+    ) {
+        public CacheSpec {
+            if (maximumSize <= 0) {
+                maximumSize = 1000;
+            }
+            if (ttlSeconds <= 0) {
+                ttlSeconds = 300;
+            }
+        }
+    }
+
+    /**
+     * 錯誤事件串流設定。
+     *
+     * <p>失敗事件在接收時寫入每個實例的記憶體環形緩衝，flush 時寫入 {@code error_events} 集合；
+     * 文件設定 {@code expireAt = eventTime + retentionDays}，由 TTL index 自動刪除。
+     *
+     * @param retentionDays error_events 保留天數，預設 30
+     * @param recentBufferSize 記憶體環形緩衝容量，預設 1000
+     */
+    public record ErrorsConfig(
+        int retentionDays,
+        int recentBufferSize
+    ) {
+        public ErrorsConfig {
+            if (retentionDays <= 0) {
+                retentionDays = 30;
+            }
+            if (recentBufferSize <= 0) {
+                recentBufferSize = 1000;
+            }
+        }
+
+        /**
+         * 建立預設錯誤事件設定。
+         */
+        public static ErrorsConfig defaults() {
+            return new ErrorsConfig(30, 1000);
+        }
+    }
+
+    /**
+     * 配額檢查快照設定。
+     *
+     * <p>{@link io.github.samzhu.ledger.service.QuotaSnapshotService} 於本實例的異動事件後即時更新，
+     * 並依 {@code resyncCron} 定時全量重載，以同步其他實例造成的異動。
+     *
+     * @param resyncCron 全量重載 Cron 表達式，預設每 5 分鐘
+     */
+    public record QuotaSnapshotConfig(
+        String resyncCron
+    ) {
+        public QuotaSnapshotConfig {
+            if (resyncCron == null || resyncCron.isBlank()) {
+                resyncCron = "0 0/5 * * * *";
+            }
+        }
+
+        /**
+         * 建立預設配額快照設定。
+         */
+        public static QuotaSnapshotConfig defaults() {
+            return new QuotaSnapshotConfig("0 0/5 * * * *");
+        }
+    }
+
+    /**
+     * 離線匯出設定。
+     *
+     * <p>{@link io.github.samzhu.ledger.service.OfflineExportService} 依 {@code cron} 將已結束的日期
+     * 以日期分區寫入 {@code directory}，並以各資料集目錄下的水位線檔案記錄已匯出的最後日期，
+     * 下次只匯出之後的日期。
+     *
+     * @param enabled 是否啟用定時匯出，預設 false
+     * @param directory 匯出根目錄（本機或掛載的磁碟），預設 {@code ./export}
+     * @param cron 匯出檢查 Cron 表達式（UTC），預設每小時 45 分（日結之後）
+     * @param maxDaysPerRun 每次執行每個資料集最多匯出的日數，預設 31
+     */
+    public record ExportConfig(
+        boolean enabled,
+        String directory,
+        String cron,
+        int maxDaysPerRun
+    ) {
+        public ExportConfig {
+            if (directory == null || directory.isBlank()) {
+                directory = "./export";
+            }
+            if (cron == null || cron.isBlank()) {
+                cron = "0 45 * * * *";
+            }
+            if (maxDaysPerRun <= 0) {
+                maxDaysPerRun = 31;
+            }
+        }
+
+        /**
+         * 建立預設離線匯出設定。
+         */
+        public static ExportConfig defaults() {
+            return new ExportConfig(false, "./export", "0 45 * * * *", 31);
+        }
+    }
+
+    /**
+     * HTTP 條件式請求設定。
+     *
+     * <p>查詢端點以 {@link io.github.samzhu.ledger.service.DataVersionService} 的資料版本作為
+     * {@code ETag} / {@code Last-Modified}，資料未變動時回應 {@code 304 Not Modified}。
+     *
+     * @param enabled 是否啟用，預設 true
+     * @param refreshSeconds 同步其他實例資料版本的間隔（秒），預設 5
+     */
+    public record HttpCacheConfig(
+        Boolean enabled,
+        int refreshSeconds
+    ) {
+        public HttpCacheConfig {
+            if (enabled == null) {
+                enabled = true;
+            }
+            if (refreshSeconds <= 0) {
+                refreshSeconds = 5;
+            }
+        }
+
+        /**
+         * 建立預設 HTTP 條件式請求設定。
+         */
+        public static HttpCacheConfig defaults() {
+            return new HttpCacheConfig(true, 5);
+        }
+    }
+
+    /**
+     * 未結算用量疊加（fresh read）設定。
+     *
+     * <p>本地緩衝區事件與未結算批次的用量增量（flush 時寫入批次的 {@code deltas}）
+     * 彙整為記憶體索引，查詢時疊加到已結算的彙總上，不必提高結算頻率。
+     *
+     * @param quotaCheck 配額檢查（{@code /api/v1/quota/check}）是否預設疊加，預設 true
+     * @param refreshSeconds 重新讀取未結算批次增量的間隔（秒），預設 15
+     */
+    public record OverlayConfig(
+        Boolean quotaCheck,
+        int refreshSeconds
+    ) {
+        public OverlayConfig {
+            if (quotaCheck == null) {
+                quotaCheck = true;
+            }
+            if (refreshSeconds <= 0) {
+                refreshSeconds = 15;
+            }
+        }
+
+        /**
+         * 建立預設未結算用量疊加設定。
+         */
+        public static OverlayConfig defaults() {
+            return new OverlayConfig(true, 15);
+        }
+    }
+
+    /**
+     * 原始事件批次保留與冷儲存設定。
+     *
+     * <p>已結算且建立超過 {@code hotDays} 天的批次壓縮搬移到 {@code raw_event_archive}，
+     * 原批次於 {@code graceHours} 後由 TTL index 刪除。
+     *
+     * @param enabled 是否啟用定時搬移，預設 true
+     * @param hotDays 原始批次保留在熱集合的天數，預設 30
+     * @param cron 定時搬移 Cron 表達式（UTC），預設每日 03:30
+     * @param graceHours 搬移後原批次保留的寬限時數，預設 24
+     * @param segmentMaxMb 每個冷儲存區段的未壓縮大小上限（MB），預設 8
+     * @param maxDaysPerRun 每次最多搬移的日數，預設 7
+     */
+    public record RawRetentionConfig(
+        Boolean enabled,
+        int hotDays,
+        String cron,
+        int graceHours,
+        int segmentMaxMb,
+        int maxDaysPerRun
+    ) {
+        public RawRetentionConfig {
+            if (enabled == null) {
+                enabled = true;
+            }
+            if (hotDays <= 0) {
+                hotDays = 30;
+            }
+            if (cron == null || cron.isBlank()) {
+                cron = "0 30 3 * * *";
+            }
+            if (graceHours <= 0) {
+                graceHours = 24;
+            }
+            if (segmentMaxMb <= 0 || segmentMaxMb > 12) {
+                segmentMaxMb = 8;
+            }
+            if (maxDaysPerRun <= 0) {
+                maxDaysPerRun = 7;
+            }
+        }
+
+        /**
+         * 建立預設原始事件保留設定。
+         */
+        public static RawRetentionConfig defaults() {
+            return new RawRetentionConfig(true, 30, "0 30 3 * * *", 24, 8, 7);
+        }
+    }
+
+    /**
+     * 分片計數器設定。
+     *
+     * <p>啟用後，{@link io.github.samzhu.ledger.service.SystemStatsShardService} 將熱點日統計文件的
+     * {@code $inc} 分散到 {@code shards} 份分片文件（依批次雜湊選擇），
+     * 每次結算結束時再合併為原文件，降低多實例對同一文件的持續寫入。
+     * 只影響啟用後才建立的日期；已有資料的日期維持原寫入方式直到日結。
+     *
+     * @param enabled 是否啟用，預設 false
+     * @param shards 各集合的分片數（key 為集合名稱），預設 {@code system_stats: 8}；未列出的集合不分片
+     */
+    public record CounterShardingConfig(
+        Boolean enabled,
+        Map<String, Integer> shards
+    ) {
+        public CounterShardingConfig {
+            if (enabled == null) {
+                enabled = false;
+            }
+            if (shards == null || shards.isEmpty()) {
+                shards = Map.of("system_stats", 8);
+            }
+        }
+
+        /**
+         * 集合的分片數。
+         *
+         * @param collection 集合名稱
+         * @return 分片數；未設定或小於 1 時為 1（不分片）
+         */
+        public int shardCount(String collection) {
+            Integer count = shards.get(collection);
+            return count != null && count > 1 ? count : 1;
+        }
+
+        /**
+         * 建立預設分片計數器設定。
+         */
+        public static CounterShardingConfig defaults() {
+            return new CounterShardingConfig(false, Map.of("system_stats", 8));
+        }
+    }
+
+    /**
+     * 原始事件批次的儲存後端設定。
+     *
+     * <p>{@code mongo}（預設）寫入 {@code raw_event_batches}；{@code embedded} 寫入本機目錄下的
+     * append-only 區段檔（{@link io.github.samzhu.ledger.storage.EmbeddedRawBatchStore}），
+     * 供單節點部署、CI 與壓測使用，flush 與結算讀取不經網路。彙總與查詢仍使用 MongoDB。
+     *
+     * <p>內嵌後端不保留已結算的批次，不能與原始事件冷儲存（{@code ledger.raw-retention.enabled}）
+     * 或離線匯出（{@code ledger.export.enabled}）同時啟用，參見
+     * {@link io.github.samzhu.ledger.config.StorageConfiguration}。
+     *
+     * @param backend 儲存後端：{@code mongo} 或 {@code embedded}，預設 {@code mongo}
+     * @param embedded 內嵌後端設定
+     */
+    public record StorageConfig(
+        String backend,
+        EmbeddedConfig embedded
+    ) {
+        public StorageConfig {
+            if (backend == null || backend.isBlank()) {
+                backend = "mongo";
+            }
+            if (embedded == null) {
+                embedded = EmbeddedConfig.defaults();
+            }
+        }
+
+        /**
+         * 是否使用內嵌後端。
+         */
+        public boolean isEmbedded() {
+            return "embedded".equalsIgnoreCase(backend);
+        }
+
+        /**
+         * 已結算的批次是否保留於 {@code raw_event_batches}，供冷儲存搬移、重播與原始事件匯出讀取。
+         *
+         * <p>內嵌後端在區段內批次全部結算後即刪除區段檔，不保留已結算批次。
+         */
+        public boolean retainsSettledBatches() {
+            return !isEmbedded();
+        }
+
+        /**
+         * 建立預設儲存後端設定。
+         */
+        public static StorageConfig defaults() {
+            return new StorageConfig("mongo", EmbeddedConfig.defaults());
+        }
+
+        /**
+         * 內嵌檔案後端設定。
+         *
+         * @param directory 區段檔目錄，預設 {@code data/raw-batches}
+         * @param segmentMaxMb 單一區段檔上限（MB，最大 1024），超過即換新區段，預設 64
+         * @param fsync 每次寫入後是否強制落盤，預設 true；壓測可關閉以排除磁碟同步延遲
+         */
+        public record EmbeddedConfig(
+            String directory,
+            int segmentMaxMb,
+            Boolean fsync
+        ) {
+            public EmbeddedConfig {
+                if (directory == null || directory.isBlank()) {
+                    directory = "data/raw-batches";
+                }
+                if (segmentMaxMb <= 0 || segmentMaxMb > 1024) {
+                    segmentMaxMb = 64;
+                }
+                if (fsync == null) {
+                    fsync = true;
+                }
+            }
+
+            /**
+             * 建立預設內嵌後端設定。
+             */
+            public static EmbeddedConfig defaults() {
+                return new EmbeddedConfig("data/raw-batches", 64, true);
+            }
+        }
+    }
 }
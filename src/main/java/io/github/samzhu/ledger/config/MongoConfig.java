@@ -16,10 +16,18 @@ import org.springframework.data.mongodb.repository.config.EnableMongoRepositorie
  * <p>資料庫集合 (Collections)：
  * <ul>
  *   <li>{@code raw_event_batches} - 批次原始事件儲存</li>
+ *   <li>{@code raw_event_archive} - 超過保留天數的原始事件批次壓縮冷儲存</li>
  *   <li>{@code daily_user_usage} - 用戶日用量聚合</li>
+ *   <li>{@code daily_user_model_usage} - 用戶日用量的模型細分子文件</li>
  *   <li>{@code daily_model_usage} - 模型日用量聚合</li>
+ *   <li>{@code monthly_user_usage} / {@code monthly_model_usage} - 用戶/模型月彙總</li>
+ *   <li>{@code hourly_usage} - 小時粒度用量（TTL 自動過期）</li>
  *   <li>{@code user_summary} - 用戶累計統計</li>
  *   <li>{@code system_stats} - 系統日統計</li>
+ *   <li>{@code system_stats_shards} - 系統日統計分片計數器（啟用 {@code ledger.counter-sharding} 時）</li>
+ *   <li>{@code overview_snapshots} - 儀表板總覽預先計算快照（今日、7 天、30 天）</li>
+ *   <li>{@code model_dictionary} - 模型名稱與穩定數字 ID 對照</li>
+ *   <li>{@code ledger_meta} - 服務中繼資料（彙總資料版本、模型 ID 序號）</li>
  * </ul>
  *
  * @see <a href="https://docs.spring.io/spring-data/mongodb/reference/mongodb/configuration.html">Spring Data MongoDB Configuration</a>
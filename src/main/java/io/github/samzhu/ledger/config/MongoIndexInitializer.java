@@ -0,0 +1,176 @@
+package io.github.samzhu.ledger.config;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.stereotype.Component;
+
+import io.github.samzhu.ledger.config.MongoIndexRegistry.RequiredIndex;
+
+/**
+ * MongoDB 索引初始化與查詢計畫檢查。
+ *
+ * <p>{@code spring.data.mongodb.auto-index-creation} 預設關閉，
+ * 文件上的 {@code @Indexed}、{@code @CompoundIndex} 僅作為說明，
+ * 實際索引依 {@link MongoIndexRegistry} 於應用程式啟動後在此建立，
+ * 也可透過 {@code POST /api/v1/admin/indexes/ensure} 手動補建。
+ * 建立索引為冪等操作，已存在的索引不會重建；單一索引失敗（例如既有資料違反唯一性）不影響其他索引。
+ *
+ * <p>{@link #status()} 以 {@code explain} 執行各索引登記的查詢形態，
+ * 回報勝出計畫使用的索引，並標示退化為 collection scan 的查詢。
+ *
+ * @see MongoIndexRegistry
+ * @see <a href="https://docs.spring.io/spring-data/mongodb/reference/mongodb/mapping/mapping-index-management.html">Index Creation</a>
+ */
+@Component
+public class MongoIndexInitializer {
+
+    private static final Logger log = LoggerFactory.getLogger(MongoIndexInitializer.class);
+
+    private static final String COLLECTION_SCAN = "COLLSCAN";
+
+    private final MongoTemplate mongoTemplate;
+
+    public MongoIndexInitializer(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * 應用程式就緒後建立索引。
+     *
+     * <p>索引建立失敗不影響服務啟動，僅記錄錯誤。
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        List<String> failed = ensureAll().stream()
+            .filter(result -> result.error() != null)
+            .map(result -> result.collection() + "." + result.name())
+            .toList();
+        if (failed.isEmpty()) {
+            log.info("MongoDB indexes ensured: {} indexes", MongoIndexRegistry.INDEXES.size());
+        } else {
+            log.error("MongoDB indexes ensured with {} failures: {}", failed.size(), failed);
+        }
+    }
+
+    /**
+     * 建立登記的所有索引。
+     *
+     * @return 各索引的建立結果
+     */
+    public List<EnsureResult> ensureAll() {
+        List<EnsureResult> results = new ArrayList<>();
+        for (RequiredIndex required : MongoIndexRegistry.INDEXES) {
+            String collection = mongoTemplate.getCollectionName(required.documentType());
+            try {
+                boolean existed = existingNames(collection).contains(required.name());
+                mongoTemplate.indexOps(collection).ensureIndex(required.index());
+                results.add(new EnsureResult(collection, required.name(), !existed, null));
+            } catch (Exception e) {
+                log.error("Failed to ensure index {}.{}: {}", collection, required.name(), e.getMessage());
+                results.add(new EnsureResult(collection, required.name(), false, e.getMessage()));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 檢查登記的索引是否存在，並以 {@code explain} 取得各查詢形態的勝出計畫。
+     *
+     * @return 各索引的狀態
+     */
+    public List<IndexStatus> status() {
+        List<IndexStatus> statuses = new ArrayList<>();
+        for (RequiredIndex required : MongoIndexRegistry.INDEXES) {
+            String collection = mongoTemplate.getCollectionName(required.documentType());
+            boolean present = existingNames(collection).contains(required.name());
+            if (required.probe() == null) {
+                statuses.add(new IndexStatus(collection, required.name(), required.purpose(), present, List.of(), false));
+                continue;
+            }
+            Set<String> stages = new LinkedHashSet<>();
+            Set<String> usedIndexes = new LinkedHashSet<>();
+            collectPlan(explain(collection, required.probe()), stages, usedIndexes);
+            statuses.add(new IndexStatus(collection, required.name(), required.purpose(), present,
+                List.copyOf(usedIndexes), stages.contains(COLLECTION_SCAN)));
+        }
+        return statuses;
+    }
+
+    private Set<String> existingNames(String collection) {
+        Set<String> names = new LinkedHashSet<>();
+        if (mongoTemplate.collectionExists(collection)) {
+            for (IndexInfo info : mongoTemplate.indexOps(collection).getIndexInfo()) {
+                names.add(info.getName());
+            }
+        }
+        return names;
+    }
+
+    private Document explain(String collection, MongoIndexRegistry.Probe probe) {
+        Document explain = mongoTemplate.getCollection(collection)
+            .find(probe.filter())
+            .sort(probe.sort())
+            .explain();
+        Document queryPlanner = explain.get("queryPlanner", Document.class);
+        return queryPlanner != null ? queryPlanner.get("winningPlan", Document.class) : null;
+    }
+
+    /**
+     * 走訪計畫樹，收集所有 stage 與 IXSCAN 使用的索引名稱。
+     *
+     * <p>不同 MongoDB 版本的計畫結構不同（{@code inputStage}、{@code inputStages}、
+     * SBE 的 {@code queryPlan}），因此遞迴走訪所有巢狀文件。
+     */
+    private static void collectPlan(Object node, Set<String> stages, Set<String> usedIndexes) {
+        if (node instanceof Document doc) {
+            if (doc.get("stage") instanceof String stage) {
+                stages.add(stage);
+                if (doc.get("indexName") instanceof String indexName) {
+                    usedIndexes.add(indexName);
+                }
+            }
+            doc.values().forEach(value -> collectPlan(value, stages, usedIndexes));
+        } else if (node instanceof List<?> list) {
+            list.forEach(value -> collectPlan(value, stages, usedIndexes));
+        }
+    }
+
+    /**
+     * 索引建立結果。
+     *
+     * @param collection 集合名稱
+     * @param name 索引名稱
+     * @param created 本次新建立
+     * @param error 失敗原因；成功時為 null
+     */
+    public record EnsureResult(String collection, String name, boolean created, String error) {}
+
+    /**
+     * 索引狀態。
+     *
+     * @param collection 集合名稱
+     * @param name 索引名稱
+     * @param purpose 用途說明
+     * @param present 索引是否存在
+     * @param usedIndexes 查詢形態勝出計畫使用的索引（無查詢形態時為空）
+     * @param collectionScan 查詢形態是否退化為 collection scan
+     */
+    public record IndexStatus(
+        String collection,
+        String name,
+        String purpose,
+        boolean present,
+        List<String> usedIndexes,
+        boolean collectionScan
+    ) {}
+}
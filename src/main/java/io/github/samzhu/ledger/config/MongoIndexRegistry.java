@@ -0,0 +1,181 @@
+package io.github.samzhu.ledger.config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.index.Index;
+
+import io.github.samzhu.ledger.document.BonusRecord;
+import io.github.samzhu.ledger.document.DailyUserModelUsage;
+import io.github.samzhu.ledger.document.ErrorEvent;
+import io.github.samzhu.ledger.document.HourlyUsage;
+import io.github.samzhu.ledger.document.ModelDictionary;
+import io.github.samzhu.ledger.document.QuotaHistory;
+import io.github.samzhu.ledger.document.RawEventBatch;
+import io.github.samzhu.ledger.document.UserQuota;
+
+/**
+ * 程式需要的 MongoDB 索引清單。
+ *
+ * <p>每個索引宣告其服務的查詢形態（{@link Probe}），{@link MongoIndexInitializer} 依此清單建立索引，
+ * 並以 {@code explain} 檢查查詢形態是否走索引，避免新增查詢時退化為 collection scan。
+ * 日彙總集合以 {@code {date}_{key}} 主鍵範圍查詢，只需內建的 {@code _id} 索引，不列於此；
+ * 以父文件 ID 查詢的細分子文件則需另建索引。
+ *
+ * <p>新增查詢條件或排序時，應在此加入對應索引與查詢形態。
+ */
+public final class MongoIndexRegistry {
+
+    private static final Sort.Direction ASC = Sort.Direction.ASC;
+    private static final Sort.Direction DESC = Sort.Direction.DESC;
+
+    /**
+     * 所有需要的索引。
+     */
+    public static final List<RequiredIndex> INDEXES = List.copyOf(build());
+
+    private MongoIndexRegistry() {
+    }
+
+    private static List<RequiredIndex> build() {
+        List<RequiredIndex> indexes = new ArrayList<>();
+
+        // hourly_usage
+        indexes.add(new RequiredIndex(HourlyUsage.class,
+            ttl(),
+            "TTL index，到期即刪除",
+            null));
+        indexes.add(new RequiredIndex(HourlyUsage.class,
+            new Index().on("dimension", ASC).on("hour", DESC).named("dimension_hour"),
+            "水位線啟動時讀取最新的系統小時用量",
+            Probe.of(new Document("dimension", HourlyUsage.DIMENSION_SYSTEM), new Document("hour", -1))));
+
+        // user_quota
+        indexes.add(new RequiredIndex(UserQuota.class,
+            new Index().on("userId", ASC).unique().named("userId_unique"),
+            "依用戶 ID 查詢與原子更新配額，並保證每位用戶只有一份配額文件",
+            Probe.of(new Document("userId", "probe"), null)));
+        indexes.add(new RequiredIndex(UserQuota.class,
+            new Index().on("lastActiveAt", DESC).on("_id", DESC).named("lastActiveAt_id"),
+            "用戶清單依最近活動排序與 keyset 分頁",
+            Probe.of(null, new Document("lastActiveAt", -1).append("_id", -1))));
+        indexes.add(new RequiredIndex(UserQuota.class,
+            new Index().on("quotaEnabled", ASC).on("costUsagePercent", DESC).on("_id", DESC)
+                .named("quotaEnabled_costUsagePercent_id"),
+            "配額儀表板篩選、使用率排序與 keyset 分頁",
+            Probe.of(new Document("quotaEnabled", true), new Document("costUsagePercent", -1).append("_id", -1))));
+        indexes.add(new RequiredIndex(UserQuota.class,
+            new Index().on("totalTokens", DESC).named("totalTokens_desc"),
+            "累計 token 用量排行（總覽前幾名用戶）",
+            Probe.of(null, new Document("totalTokens", -1))));
+        indexes.add(new RequiredIndex(UserQuota.class,
+            new Index().on("quotaExceeded", ASC).named("quotaExceeded"),
+            "查詢已超額的用戶",
+            Probe.of(new Document("quotaExceeded", true), null)));
+        indexes.add(new RequiredIndex(UserQuota.class,
+            new Index().on("periodYear", ASC).on("periodMonth", ASC).on("userId", ASC).named("period_userId"),
+            "週期切換時依用戶順序串流讀取舊週期的配額",
+            Probe.of(new Document("periodYear", 2025).append("periodMonth", 1)
+                .append("periodRequestCount", new Document("$gt", 0)), new Document("userId", 1))));
+
+        // bonus_records
+        indexes.add(new RequiredIndex(BonusRecord.class,
+            new Index().on("userId", ASC).on("createdAt", DESC).on("_id", DESC).named("userId_createdAt_id"),
+            "額外額度記錄 keyset 分頁",
+            Probe.of(new Document("userId", "probe"), new Document("createdAt", -1).append("_id", -1))));
+        indexes.add(new RequiredIndex(BonusRecord.class,
+            new Index().on("userId", ASC).on("periodYear", DESC).on("periodMonth", DESC).named("user_period_idx"),
+            "查詢用戶某月的額外額度",
+            Probe.of(new Document("userId", "probe").append("periodYear", 2025).append("periodMonth", 1), null)));
+
+        // quota_history
+        indexes.add(new RequiredIndex(QuotaHistory.class,
+            new Index().on("userId", ASC).on("periodYear", DESC).on("periodMonth", DESC).unique()
+                .named("user_period_idx"),
+            "每位用戶每月一筆歷史記錄，週期切換重跑時以 duplicate key 略過已歸檔用戶",
+            Probe.of(new Document("userId", "probe").append("periodYear", 2025).append("periodMonth", 1), null)));
+        indexes.add(new RequiredIndex(QuotaHistory.class,
+            new Index().on("userId", ASC).on("periodYear", DESC).on("periodMonth", DESC).on("_id", DESC)
+                .named("userId_period_id"),
+            "配額歷史 keyset 分頁",
+            Probe.of(new Document("userId", "probe"),
+                new Document("periodYear", -1).append("periodMonth", -1).append("_id", -1))));
+
+        // daily_user_model_usage
+        indexes.add(new RequiredIndex(DailyUserModelUsage.class,
+            new Index().on("usageId", ASC).named("usageId"),
+            "依用戶日用量 ID 載入模型分布子文件",
+            Probe.of(new Document("usageId", new Document("$in", List.of("probe"))), null)));
+
+        // model_dictionary
+        indexes.add(new RequiredIndex(ModelDictionary.class,
+            new Index().on("modelId", ASC).unique().named("modelId_unique"),
+            "模型數字 ID 反查模型名稱，並保證 ID 不重複配發",
+            Probe.of(new Document("modelId", 1), null)));
+
+        // raw_event_batches
+        indexes.add(new RequiredIndex(RawEventBatch.class,
+            new Index().on("processed", ASC).on("createdAt", ASC).named("processed_createdAt"),
+            "結算與未結算用量疊加查詢未處理批次",
+            Probe.of(new Document("processed", false), new Document("createdAt", 1))));
+        indexes.add(new RequiredIndex(RawEventBatch.class,
+            ttl(),
+            "TTL index，已搬移到冷儲存的批次於寬限期後刪除",
+            null));
+
+        // error_events
+        indexes.add(new RequiredIndex(ErrorEvent.class,
+            ttl(),
+            "TTL index，到期即刪除",
+            null));
+        indexes.add(new RequiredIndex(ErrorEvent.class,
+            new Index().on("eventTime", DESC).named("eventTime_desc"),
+            "錯誤列表依時間排序",
+            Probe.of(null, new Document("eventTime", -1))));
+        for (String field : List.of("model", "errorType", "userId")) {
+            indexes.add(new RequiredIndex(ErrorEvent.class,
+                new Index().on(field, ASC).on("eventTime", DESC).named(field + "_eventTime"),
+                "錯誤列表依 " + field + " 篩選並依時間排序",
+                Probe.of(new Document(field, "probe"), new Document("eventTime", -1))));
+        }
+        return indexes;
+    }
+
+    private static Index ttl() {
+        return new Index().on("expireAt", ASC).expire(Duration.ZERO).named("expireAt_ttl");
+    }
+
+    /**
+     * 需要的索引。
+     *
+     * @param documentType 文件類別，決定集合名稱
+     * @param index 索引定義（含名稱）
+     * @param purpose 用途說明
+     * @param probe 代表性查詢形態；TTL 等不服務查詢的索引為 null
+     */
+    public record RequiredIndex(Class<?> documentType, Index index, String purpose, Probe probe) {
+
+        /**
+         * 索引名稱。
+         */
+        public String name() {
+            return index.getIndexOptions().getString("name");
+        }
+    }
+
+    /**
+     * 用於 {@code explain} 的代表性查詢形態。
+     *
+     * @param filter 查詢條件（空文件表示無條件）
+     * @param sort 排序（空文件表示不排序）
+     */
+    public record Probe(Document filter, Document sort) {
+
+        static Probe of(Document filter, Document sort) {
+            return new Probe(filter != null ? filter : new Document(), sort != null ? sort : new Document());
+        }
+    }
+}
@@ -7,12 +7,22 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.ImportRuntimeHints;
 
 import io.github.samzhu.ledger.document.DailyModelUsage;
+import io.github.samzhu.ledger.document.DailyUserModelUsage;
 import io.github.samzhu.ledger.document.DailyUserUsage;
+import io.github.samzhu.ledger.document.HourlyUsage;
+import io.github.samzhu.ledger.document.ModelDictionary;
+import io.github.samzhu.ledger.document.MonthlyModelUsage;
+import io.github.samzhu.ledger.document.MonthlyUserUsage;
+import io.github.samzhu.ledger.document.OverviewSnapshot;
+import io.github.samzhu.ledger.document.RawEventArchive;
 import io.github.samzhu.ledger.document.RawEventBatch;
 import io.github.samzhu.ledger.document.SystemStats;
+import io.github.samzhu.ledger.document.SystemStatsShard;
 import io.github.samzhu.ledger.document.UserQuota;
 import io.github.samzhu.ledger.dto.UsageEventData;
+import io.github.samzhu.ledger.controller.ExportApiController;
 import io.github.samzhu.ledger.controller.UsageApiController;
+import io.github.samzhu.ledger.service.RawEventArchiveService;
 import io.github.samzhu.ledger.service.UsageQueryService;
 
 /**
@@ -48,7 +58,9 @@ public class NativeHintsConfig {
             // 註冊 DTO 類別供 Jackson 反射使用
             hints.reflection()
                 .registerType(UsageEventData.class, MemberCategory.values())
-                .registerType(RawEventBatch.class, MemberCategory.values());
+                .registerType(RawEventBatch.class, MemberCategory.values())
+                .registerType(RawEventBatch.UsageDelta.class, MemberCategory.values())
+                .registerType(RawEventArchive.class, MemberCategory.values());
 
             // 註冊 Document 類別供 Thymeleaf 模板反射使用
             hints.reflection()
@@ -59,22 +71,43 @@ public class NativeHintsConfig {
                 .registerType(DailyUserUsage.HourlyBreakdown.class, MemberCategory.values())
                 .registerType(DailyUserUsage.ModelBreakdown.class, MemberCategory.values())
                 .registerType(DailyUserUsage.CostBreakdown.class, MemberCategory.values())
+                .registerType(DailyUserModelUsage.class, MemberCategory.values())
+                .registerType(ModelDictionary.class, MemberCategory.values())
                 // DailyModelUsage 及其嵌套記錄
                 .registerType(DailyModelUsage.class, MemberCategory.values())
                 .registerType(DailyModelUsage.LatencyStats.class, MemberCategory.values())
                 .registerType(DailyModelUsage.CacheEfficiency.class, MemberCategory.values())
+                // 月彙總文件
+                .registerType(MonthlyUserUsage.class, MemberCategory.values())
+                .registerType(MonthlyModelUsage.class, MemberCategory.values())
+                // 小時用量文件
+                .registerType(HourlyUsage.class, MemberCategory.values())
                 // SystemStats 及其嵌套記錄
                 .registerType(SystemStats.class, MemberCategory.values())
                 .registerType(SystemStats.TopItem.class, MemberCategory.values())
+                .registerType(SystemStatsShard.class, MemberCategory.values())
+                // 總覽快照
+                .registerType(OverviewSnapshot.class, MemberCategory.values())
+                .registerType(OverviewSnapshot.Summary.class, MemberCategory.values())
                 // UserQuota 及其嵌套記錄
                 .registerType(UserQuota.class, MemberCategory.values())
                 .registerType(UserQuota.Builder.class, MemberCategory.values())
                 // UsageQueryService 內部記錄
                 .registerType(UsageQueryService.ModelSummary.class, MemberCategory.values())
+                .registerType(UsageQueryService.QuotaOverview.class, MemberCategory.values())
+                .registerType(UsageQueryService.UserOverview.class, MemberCategory.values())
                 // UsageApiController 內部記錄
                 .registerType(UsageApiController.FlushResult.class, MemberCategory.values())
                 .registerType(UsageApiController.SettlementResult.class, MemberCategory.values())
-                .registerType(UsageApiController.ProcessResult.class, MemberCategory.values());
+                .registerType(UsageApiController.ProcessResult.class, MemberCategory.values())
+                .registerType(UsageApiController.FinalizationResult.class, MemberCategory.values())
+                .registerType(UsageApiController.ArchiveResult.class, MemberCategory.values())
+                .registerType(RawEventArchiveService.ArchivedDay.class, MemberCategory.values())
+                // ExportApiController 內部記錄
+                .registerType(ExportApiController.OfflineExportResult.class, MemberCategory.values())
+                // 索引管理回應
+                .registerType(MongoIndexInitializer.EnsureResult.class, MemberCategory.values())
+                .registerType(MongoIndexInitializer.IndexStatus.class, MemberCategory.values());
 
             // 註冊 SpEL 表達式中使用的 JDK 類別（用於 Thymeleaf 模板的 T() 運算符）
             hints.reflection()
@@ -84,6 +117,7 @@ public class NativeHintsConfig {
             // 註冊 Quota API DTO 類別供 Jackson 反射使用
             hints.reflection()
                 .registerType(io.github.samzhu.ledger.dto.api.QuotaStatusResponse.class, MemberCategory.values())
+                .registerType(io.github.samzhu.ledger.dto.api.QuotaCheckResponse.class, MemberCategory.values())
                 .registerType(io.github.samzhu.ledger.dto.api.QuotaConfigRequest.class, MemberCategory.values())
                 .registerType(io.github.samzhu.ledger.dto.api.BonusGrantRequest.class, MemberCategory.values())
                 .registerType(io.github.samzhu.ledger.dto.api.QuotaHistoryResponse.class, MemberCategory.values())
@@ -93,9 +127,20 @@ public class NativeHintsConfig {
                 .registerType(io.github.samzhu.ledger.dto.api.QuotaHistoryResponse.ModelDetail.class, MemberCategory.values())
                 .registerType(io.github.samzhu.ledger.dto.api.BonusHistoryResponse.class, MemberCategory.values())
                 .registerType(io.github.samzhu.ledger.dto.api.BonusHistoryResponse.BonusItem.class, MemberCategory.values())
+                .registerType(io.github.samzhu.ledger.dto.api.MonthlyUsage.class, MemberCategory.values())
+                .registerType(io.github.samzhu.ledger.dto.api.MonthlyUsageResponse.class, MemberCategory.values())
+                .registerType(io.github.samzhu.ledger.dto.api.HourlyUsagePoint.class, MemberCategory.values())
+                .registerType(io.github.samzhu.ledger.dto.api.HourlyUsageResponse.class, MemberCategory.values())
+                .registerType(io.github.samzhu.ledger.dto.api.LatencyPercentileResponse.class, MemberCategory.values())
+                .registerType(io.github.samzhu.ledger.dto.api.CursorPage.class, MemberCategory.values())
+                .registerType(io.github.samzhu.ledger.dto.api.QuotaDashboardResponse.class, MemberCategory.values())
+                .registerType(io.github.samzhu.ledger.dto.api.QuotaDashboardResponse.Summary.class, MemberCategory.values())
+                .registerType(io.github.samzhu.ledger.dto.api.QuotaDashboardResponse.QuotaUserItem.class, MemberCategory.values())
                 // BonusRecord 和 QuotaHistory document
                 .registerType(io.github.samzhu.ledger.document.BonusRecord.class, MemberCategory.values())
-                .registerType(io.github.samzhu.ledger.document.QuotaHistory.class, MemberCategory.values());
+                .registerType(io.github.samzhu.ledger.document.QuotaHistory.class, MemberCategory.values())
+                .registerType(io.github.samzhu.ledger.document.ErrorEvent.class, MemberCategory.values())
+                .registerType(io.github.samzhu.ledger.service.PeriodRolloverService.RolloverResult.class, MemberCategory.values());
         }
     }
 }
@@ -0,0 +1,145 @@
+package io.github.samzhu.ledger.config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.interceptor.KeyGenerator;
+import org.springframework.cache.support.NoOpCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * 查詢快取配置（Caffeine）。
+ *
+ * <p>快取放在 {@link io.github.samzhu.ledger.service.UsageQueryService} 前面，
+ * 每種查詢形態一個快取，各自有大小上限與 TTL：
+ * <ul>
+ *   <li>{@value #USER_DAILY_USAGE}、{@value #MODEL_DAILY_USAGE}、{@value #SYSTEM_DAILY_STATS} - 日用量區間查詢</li>
+ *   <li>{@value #USER_MONTHLY_USAGE}、{@value #MODEL_MONTHLY_USAGE} - 月用量區間查詢</li>
+ *   <li>{@value #HOURLY_USAGE} - 小時用量查詢</li>
+ *   <li>{@value #USER_QUOTA} - 單一用戶配額</li>
+ *   <li>{@value #USER_QUOTA_LISTS} - 用戶排行與清單</li>
+ *   <li>{@value #MODEL_SUMMARIES} - 模型區間彙總</li>
+ *   <li>{@value #LATENCY_DIGESTS} - 日期區間合併後的延遲 T-Digest</li>
+ * </ul>
+ *
+ * <p>快取鍵為 {@link QueryKey}（方法名稱 + 參數），
+ * 讓 {@link io.github.samzhu.ledger.service.QueryCacheInvalidator} 可依參數精準失效。
+ *
+ * <p>所有快取啟用 {@code recordStats()}，Spring Boot Actuator 會自動匯出
+ * {@code cache.gets{result=hit|miss}}、{@code cache.evictions}、{@code cache.size} 等指標。
+ *
+ * @see LedgerProperties.CacheConfig
+ * @see <a href="https://docs.spring.io/spring-boot/reference/io/caching.html#io.caching.provider.caffeine">Caffeine Cache Provider</a>
+ */
+@Configuration
+@EnableCaching
+public class QueryCacheConfig {
+
+    /** 用戶日用量：(userId, startDate, endDate) */
+    public static final String USER_DAILY_USAGE = "user-daily-usage";
+
+    /** 模型日用量：(model, startDate, endDate) */
+    public static final String MODEL_DAILY_USAGE = "model-daily-usage";
+
+    /** 系統日統計：(startDate, endDate) */
+    public static final String SYSTEM_DAILY_STATS = "system-daily-stats";
+
+    /** 用戶月用量：(userId, startMonth, endMonth) */
+    public static final String USER_MONTHLY_USAGE = "user-monthly-usage";
+
+    /** 模型月用量：(model, startMonth, endMonth) */
+    public static final String MODEL_MONTHLY_USAGE = "model-monthly-usage";
+
+    /** 小時用量：(dimension, key, startDate, endDate) */
+    public static final String HOURLY_USAGE = "hourly-usage";
+
+    /** 單一用戶配額：(userId) */
+    public static final String USER_QUOTA = "user-quota";
+
+    /** 用戶排行與清單：任一用戶異動即整體失效 */
+    public static final String USER_QUOTA_LISTS = "user-quota-lists";
+
+    /** 模型區間彙總：(days) */
+    public static final String MODEL_SUMMARIES = "model-summaries";
+
+    /** 區間合併延遲 digest：(dimension, key, startDate, endDate) */
+    public static final String LATENCY_DIGESTS = "latency-digests";
+
+    /** 快取鍵產生器 Bean 名稱 */
+    public static final String KEY_GENERATOR = "queryCacheKeyGenerator";
+
+    /** 各快取預設大小與 TTL */
+    private static final Map<String, LedgerProperties.CacheSpec> DEFAULT_SPECS = Map.of(
+        USER_DAILY_USAGE, new LedgerProperties.CacheSpec(2000, 300),
+        MODEL_DAILY_USAGE, new LedgerProperties.CacheSpec(500, 300),
+        SYSTEM_DAILY_STATS, new LedgerProperties.CacheSpec(200, 300),
+        USER_MONTHLY_USAGE, new LedgerProperties.CacheSpec(2000, 600),
+        MODEL_MONTHLY_USAGE, new LedgerProperties.CacheSpec(500, 600),
+        HOURLY_USAGE, new LedgerProperties.CacheSpec(1000, 120),
+        USER_QUOTA, new LedgerProperties.CacheSpec(5000, 60),
+        USER_QUOTA_LISTS, new LedgerProperties.CacheSpec(50, 60),
+        MODEL_SUMMARIES, new LedgerProperties.CacheSpec(50, 300),
+        LATENCY_DIGESTS, new LedgerProperties.CacheSpec(500, 600)
+    );
+
+    /**
+     * 建立 Caffeine CacheManager，每個查詢形態各自設定大小與 TTL。
+     *
+     * <p>停用快取時回傳 {@link NoOpCacheManager}，查詢直接讀取資料庫。
+     */
+    @Bean
+    public CacheManager cacheManager(LedgerProperties properties) {
+        LedgerProperties.CacheConfig config = properties.cache() != null
+            ? properties.cache()
+            : LedgerProperties.CacheConfig.defaults();
+        if (!config.enabled()) {
+            return new NoOpCacheManager();
+        }
+
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        DEFAULT_SPECS.forEach((name, defaults) -> {
+            LedgerProperties.CacheSpec spec = config.caches().getOrDefault(name, defaults);
+            cacheManager.registerCustomCache(name, Caffeine.newBuilder()
+                .maximumSize(spec.maximumSize())
+                .expireAfterWrite(Duration.ofSeconds(spec.ttlSeconds()))
+                .recordStats()
+                .build());
+        });
+        return cacheManager;
+    }
+
+    /**
+     * 以方法名稱與參數列表作為快取鍵。
+     */
+    @Bean(KEY_GENERATOR)
+    public KeyGenerator queryCacheKeyGenerator() {
+        return (target, method, params) -> new QueryKey(method.getName(),
+            Collections.unmodifiableList(new ArrayList<>(Arrays.asList(params))));
+    }
+
+    /**
+     * 查詢快取鍵。
+     *
+     * @param method 查詢方法名稱
+     * @param params 查詢參數（依方法簽章順序）
+     */
+    public record QueryKey(String method, List<Object> params) {
+
+        /**
+         * 取得第 {@code index} 個參數。
+         */
+        public Object param(int index) {
+            return index < params.size() ? params.get(index) : null;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package io.github.samzhu.ledger.config;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.github.samzhu.ledger.repository.RawEventBatchRepository;
+import io.github.samzhu.ledger.storage.EmbeddedRawBatchStore;
+import io.github.samzhu.ledger.storage.MongoRawBatchStore;
+import io.github.samzhu.ledger.storage.RawBatchStore;
+
+/**
+ * 原始事件批次儲存後端配置。
+ *
+ * <p>依 {@code ledger.storage.backend} 建立 {@link RawBatchStore}：
+ * <ul>
+ *   <li>{@code mongo}（預設）- {@link MongoRawBatchStore}</li>
+ *   <li>{@code embedded} - {@link EmbeddedRawBatchStore}，區段檔目錄由 {@code ledger.storage.embedded.directory} 指定</li>
+ * </ul>
+ *
+ * <p>內嵌後端回收已結算的區段，冷儲存搬移與原始事件匯出讀不到這些批次。
+ * 與 {@code ledger.raw-retention.enabled} 或 {@code ledger.export.enabled} 同時啟用時啟動失敗，
+ * 避免原始事件在沒有任何提示的情況下遺失。
+ *
+ * @see LedgerProperties.StorageConfig
+ */
+@Configuration
+public class StorageConfiguration {
+
+    private static final Logger log = LoggerFactory.getLogger(StorageConfiguration.class);
+
+    @Bean
+    public RawBatchStore rawBatchStore(
+            LedgerProperties properties,
+            RawEventBatchRepository rawEventBatchRepository,
+            MongoTemplate mongoTemplate,
+            ObjectMapper objectMapper) throws IOException {
+        LedgerProperties.StorageConfig config = properties.storage() != null
+            ? properties.storage()
+            : LedgerProperties.StorageConfig.defaults();
+        if (!config.isEmbedded()) {
+            return new MongoRawBatchStore(rawEventBatchRepository, mongoTemplate);
+        }
+        requireNoRawRetention(properties);
+        LedgerProperties.StorageConfig.EmbeddedConfig embedded = config.embedded();
+        log.info("Raw batch storage: embedded (directory={}, segmentMaxMb={}, fsync={})",
+            embedded.directory(), embedded.segmentMaxMb(), embedded.fsync());
+        return new EmbeddedRawBatchStore(Path.of(embedded.directory()),
+            embedded.segmentMaxMb() * 1024L * 1024L, embedded.fsync(), objectMapper);
+    }
+
+    /**
+     * 內嵌後端不保留已結算批次，拒絕依賴 {@code raw_event_batches} 的冷儲存搬移與離線匯出。
+     *
+     * @throws IllegalStateException 任一功能啟用時
+     */
+    static void requireNoRawRetention(LedgerProperties properties) {
+        LedgerProperties.RawRetentionConfig retention = properties.rawRetention() != null
+            ? properties.rawRetention()
+            : LedgerProperties.RawRetentionConfig.defaults();
+        LedgerProperties.ExportConfig export = properties.export() != null
+            ? properties.export()
+            : LedgerProperties.ExportConfig.defaults();
+        if (retention.enabled() || export.enabled()) {
+            throw new IllegalStateException("ledger.storage.backend=embedded deletes settled raw batches, "
+                + "so they cannot be archived or exported; set ledger.raw-retention.enabled=false and "
+                + "ledger.export.enabled=false, or use the mongo backend");
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package io.github.samzhu.ledger.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import io.github.samzhu.ledger.service.DataVersionService;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Spring MVC 配置。
+ *
+ * <p>為彙總查詢端點（{@code /api/v1/usage/**}、{@code /api/v1/dashboard/**}）註冊
+ * {@link ConditionalGetInterceptor}；SSE 串流端點除外。{@code ledger.http-cache.enabled=false} 時不註冊。
+ *
+ * @see LedgerProperties.HttpCacheConfig
+ */
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    private final DataVersionService dataVersionService;
+    private final MeterRegistry meterRegistry;
+    private final boolean httpCacheEnabled;
+
+    public WebConfig(DataVersionService dataVersionService, MeterRegistry meterRegistry, LedgerProperties properties) {
+        this.dataVersionService = dataVersionService;
+        this.meterRegistry = meterRegistry;
+        this.httpCacheEnabled = properties.httpCache() != null
+            ? properties.httpCache().enabled()
+            : LedgerProperties.HttpCacheConfig.defaults().enabled();
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        if (!httpCacheEnabled) {
+            return;
+        }
+        registry.addInterceptor(new ConditionalGetInterceptor(dataVersionService, meterRegistry))
+            .addPathPatterns("/api/v1/usage/**", "/api/v1/dashboard/**")
+            .excludePathPatterns("/api/v1/dashboard/stream");
+    }
+}
@@ -0,0 +1,71 @@
+package io.github.samzhu.ledger.controller;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import io.github.samzhu.ledger.config.MongoIndexInitializer;
+import io.github.samzhu.ledger.config.MongoIndexInitializer.EnsureResult;
+import io.github.samzhu.ledger.config.MongoIndexInitializer.IndexStatus;
+
+/**
+ * 維運管理 REST API 控制器。
+ *
+ * <p>提供以下端點：
+ * <ul>
+ *   <li>{@code GET /api/v1/admin/indexes} - 登記索引的存在狀態與查詢計畫</li>
+ *   <li>{@code POST /api/v1/admin/indexes/ensure} - 建立缺少的索引</li>
+ * </ul>
+ */
+@RestController
+@RequestMapping("/api/v1/admin")
+public class AdminApiController {
+
+    private static final Logger log = LoggerFactory.getLogger(AdminApiController.class);
+
+    private final MongoIndexInitializer indexInitializer;
+
+    public AdminApiController(MongoIndexInitializer indexInitializer) {
+        this.indexInitializer = indexInitializer;
+    }
+
+    /**
+     * 取得登記索引的狀態。
+     *
+     * <p>端點：{@code GET /api/v1/admin/indexes}
+     *
+     * <p>以 {@code explain} 執行每個索引登記的查詢形態，{@code collectionScan=true} 表示該查詢未走索引。
+     *
+     * @return 各索引的狀態
+     */
+    @GetMapping("/indexes")
+    public ResponseEntity<List<IndexStatus>> getIndexes() {
+        log.debug("API request: getIndexes");
+        return ResponseEntity.ok(indexInitializer.status());
+    }
+
+    /**
+     * 建立缺少的索引。
+     *
+     * <p>端點：{@code POST /api/v1/admin/indexes/ensure}
+     *
+     * <p>冪等操作，已存在的索引不會重建，可重複呼叫。
+     *
+     * @return 各索引的建立結果
+     */
+    @PostMapping("/indexes/ensure")
+    public ResponseEntity<List<EnsureResult>> ensureIndexes() {
+        log.info("API request: ensureIndexes (manual)");
+        List<EnsureResult> results = indexInitializer.ensureAll();
+        log.info("Manual index ensure completed: {} created, {} failed",
+            results.stream().filter(EnsureResult::created).count(),
+            results.stream().filter(result -> result.error() != null).count());
+        return ResponseEntity.ok(results);
+    }
+}
@@ -3,22 +3,30 @@ package io.github.samzhu.ledger.controller;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import io.github.samzhu.ledger.document.OverviewSnapshot;
 import io.github.samzhu.ledger.document.UserQuota;
 import io.github.samzhu.ledger.dto.api.DailyModelUsageApiDto;
 import io.github.samzhu.ledger.dto.api.DailyUserUsageApiDto;
 import io.github.samzhu.ledger.dto.api.SystemStatsApiDto;
+import io.github.samzhu.ledger.service.DashboardStreamService;
+import io.github.samzhu.ledger.service.OverviewSnapshotService;
 import io.github.samzhu.ledger.service.UsageQueryService;
 import io.github.samzhu.ledger.service.UsageQueryService.ModelSummary;
+import io.github.samzhu.ledger.service.UsageQueryService.UserOverview;
 
 /**
  * Dashboard data API controller for Vue 3 frontend.
@@ -26,10 +34,11 @@ import io.github.samzhu.ledger.service.UsageQueryService.ModelSummary;
  * <p>Provides REST API endpoints for dashboard pages:
  * <ul>
  *   <li>{@code GET /api/v1/dashboard/overview} - System overview data</li>
- *   <li>{@code GET /api/v1/dashboard/users} - All users list</li>
+ *   <li>{@code GET /api/v1/dashboard/users} - Users list with summary</li>
  *   <li>{@code GET /api/v1/dashboard/users/{userId}} - User detail with daily usage</li>
  *   <li>{@code GET /api/v1/dashboard/models} - All models summary</li>
  *   <li>{@code GET /api/v1/dashboard/models/{modelName}} - Model detail with daily usage</li>
+ *   <li>{@code GET /api/v1/dashboard/stream} - Live settlement deltas (Server-Sent Events)</li>
  * </ul>
  */
 @RestController
@@ -38,16 +47,38 @@ public class DashboardApiController {
 
     private static final Logger log = LoggerFactory.getLogger(DashboardApiController.class);
 
+    private static final int MAX_USERS = 2000;
+
     private final UsageQueryService queryService;
+    private final DashboardStreamService streamService;
+    private final OverviewSnapshotService snapshotService;
 
-    public DashboardApiController(UsageQueryService queryService) {
+    public DashboardApiController(
+            UsageQueryService queryService,
+            DashboardStreamService streamService,
+            OverviewSnapshotService snapshotService) {
         this.queryService = queryService;
+        this.streamService = streamService;
+        this.snapshotService = snapshotService;
+    }
+
+    /**
+     * Live settlement deltas over Server-Sent Events.
+     *
+     * <p>Events: {@code system-stats}, {@code model-usage} and, for users listed in {@code users},
+     * {@code user-usage}. Each payload is a list of the same DTOs returned by the REST endpoints.
+     */
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@RequestParam(required = false) Set<String> users) {
+        log.debug("API request: dashboard stream, users={}", users);
+        return streamService.subscribe(users != null ? users : Set.of());
     }
 
     /**
      * System overview data.
      *
      * <p>Returns hourly data with ISO 8601 UTC timestamps for unambiguous timezone handling.
+     * For 1, 7 and 30 days the response is read from a single precomputed snapshot document.
      */
     @GetMapping("/overview")
     public ResponseEntity<OverviewResponse> getOverview(
@@ -58,12 +89,17 @@ public class DashboardApiController {
 
         log.debug("API request: overview, days={}", days);
 
+        // Common windows are served from the snapshot maintained at settlement time
+        Optional<OverviewSnapshot> snapshot = snapshotService.find(days);
+
         // Convert to DTOs with ISO 8601 hourly format
-        List<SystemStatsApiDto> stats = queryService.getSystemDailyStats(startDate, endDate)
+        List<SystemStatsApiDto> stats = snapshot.map(OverviewSnapshot::stats)
+            .orElseGet(() -> queryService.getSystemDailyStats(startDate, endDate))
             .stream()
             .map(SystemStatsApiDto::from)
             .toList();
-        List<UserQuota> topUsers = queryService.getTopUsers(10);
+        List<UserQuota> topUsers = snapshot.map(OverviewSnapshot::topUsers)
+            .orElseGet(() -> queryService.getTopUsers(10));
 
         return ResponseEntity.ok(new OverviewResponse(
             startDate.toString(),
@@ -75,15 +111,24 @@ public class DashboardApiController {
     }
 
     /**
-     * All users list.
+     * Users list with summary.
+     *
+     * <p>Summary counts cover all users; the list holds the {@code limit} most recently active users.
      */
     @GetMapping("/users")
-    public ResponseEntity<UsersResponse> getUsers() {
-        log.debug("API request: users list");
-
-        List<UserQuota> users = queryService.getAllUsers();
-
-        return ResponseEntity.ok(new UsersResponse(users));
+    public ResponseEntity<UsersResponse> getUsers(@RequestParam(defaultValue = "500") int limit) {
+        log.debug("API request: users list, limit={}", limit);
+
+        UserOverview overview = queryService.getUserOverview(Math.clamp(limit, 1, MAX_USERS));
+
+        UsersSummary summary = new UsersSummary(
+            overview.totalUsers(),
+            overview.quotaEnabledCount(),
+            overview.quotaExceededCount(),
+            overview.totalTokens(),
+            overview.totalCostUsd()
+        );
+        return ResponseEntity.ok(new UsersResponse(overview.users(), summary));
     }
 
     /**
@@ -181,7 +226,16 @@ public class DashboardApiController {
     ) {}
 
     public record UsersResponse(
-        List<UserQuota> users
+        List<UserQuota> users,
+        UsersSummary summary
+    ) {}
+
+    public record UsersSummary(
+        long totalUsers,
+        long quotaEnabledCount,
+        long quotaExceededCount,
+        long totalTokens,
+        double totalCost
     ) {}
 
     public record UserDetailResponse(
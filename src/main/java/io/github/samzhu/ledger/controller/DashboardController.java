@@ -3,6 +3,7 @@ package io.github.samzhu.ledger.controller;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.List;
+import java.util.Optional;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,9 +16,12 @@ import org.springframework.web.bind.annotation.RequestParam;
 
 import io.github.samzhu.ledger.document.DailyModelUsage;
 import io.github.samzhu.ledger.document.DailyUserUsage;
+import io.github.samzhu.ledger.document.OverviewSnapshot;
 import io.github.samzhu.ledger.document.SystemStats;
 import io.github.samzhu.ledger.document.UserQuota;
+import io.github.samzhu.ledger.service.OverviewSnapshotService;
 import io.github.samzhu.ledger.service.UsageQueryService;
+import io.github.samzhu.ledger.service.UsageQueryService.UserOverview;
 import io.github.samzhu.ledger.service.UsageQueryService.ModelSummary;
 
 /**
@@ -39,10 +43,15 @@ public class DashboardController {
 
     private static final Logger log = LoggerFactory.getLogger(DashboardController.class);
 
+    /** 用戶列表頁顯示的用戶數上限 */
+    private static final int MAX_USERS = 500;
+
     private final UsageQueryService queryService;
+    private final OverviewSnapshotService snapshotService;
 
-    public DashboardController(UsageQueryService queryService) {
+    public DashboardController(UsageQueryService queryService, OverviewSnapshotService snapshotService) {
         this.queryService = queryService;
+        this.snapshotService = snapshotService;
     }
 
     /**
@@ -65,27 +74,14 @@ public class DashboardController {
 
         log.info("Dashboard request: overview, dateRange={} to {}, days={}", startDate, endDate, days);
 
-        List<SystemStats> stats = queryService.getSystemDailyStats(startDate, endDate);
-        List<UserQuota> topUsers = queryService.getTopUsers(10);
-
-        // Pre-compute summary statistics (SpEL doesn't support lambdas)
-        int totalRequests = stats.stream().mapToInt(SystemStats::totalRequestCount).sum();
-        long totalTokens = stats.stream().mapToLong(SystemStats::totalTokens).sum();
-        long totalInputTokens = stats.stream().mapToLong(SystemStats::totalInputTokens).sum();
-        long totalOutputTokens = stats.stream().mapToLong(SystemStats::totalOutputTokens).sum();
-        java.math.BigDecimal totalCost = stats.stream()
-            .map(SystemStats::totalEstimatedCostUsd)
-            .reduce(java.math.BigDecimal.ZERO, java.math.BigDecimal::add);
-        java.math.BigDecimal avgDailyCost = stats.isEmpty() ? java.math.BigDecimal.ZERO
-            : totalCost.divide(java.math.BigDecimal.valueOf(stats.size()), 2, java.math.RoundingMode.HALF_UP);
-        double avgLatency = stats.stream().mapToDouble(SystemStats::avgLatencyMs).average().orElse(0);
-        double p50Latency = stats.stream().mapToDouble(SystemStats::p50LatencyMs).average().orElse(0);
-        double p90Latency = stats.stream().mapToDouble(SystemStats::p90LatencyMs).average().orElse(0);
-        double p99Latency = stats.stream().mapToDouble(SystemStats::p99LatencyMs).average().orElse(0);
-        java.math.BigDecimal cacheSavings = stats.stream()
-            .map(SystemStats::systemCacheSavedUsd)
-            .reduce(java.math.BigDecimal.ZERO, java.math.BigDecimal::add);
-        double avgCacheHitRate = stats.stream().mapToDouble(SystemStats::systemCacheHitRate).average().orElse(0);
+        // 常用區間直接讀取結算時維護的快照，其他區間即時查詢
+        Optional<OverviewSnapshot> snapshot = snapshotService.find(days);
+        List<SystemStats> stats = snapshot.map(OverviewSnapshot::stats)
+            .orElseGet(() -> queryService.getSystemDailyStats(startDate, endDate));
+        List<UserQuota> topUsers = snapshot.map(OverviewSnapshot::topUsers)
+            .orElseGet(() -> queryService.getTopUsers(10));
+        OverviewSnapshot.Summary summary = snapshot.map(OverviewSnapshot::summary)
+            .orElseGet(() -> OverviewSnapshot.Summary.of(stats));
 
         // Get the last day's stats for display (SpEL has trouble with list index access)
         SystemStats lastDayStats = stats.isEmpty() ? null : stats.get(stats.size() - 1);
@@ -103,18 +99,18 @@ public class DashboardController {
         model.addAttribute("days", days);
 
         // Add pre-computed values for template
-        model.addAttribute("summaryTotalRequests", totalRequests);
-        model.addAttribute("summaryTotalTokens", totalTokens);
-        model.addAttribute("summaryTotalInputTokens", totalInputTokens);
-        model.addAttribute("summaryTotalOutputTokens", totalOutputTokens);
-        model.addAttribute("summaryTotalCost", totalCost);
-        model.addAttribute("summaryAvgDailyCost", avgDailyCost);
-        model.addAttribute("summaryAvgLatency", avgLatency);
-        model.addAttribute("summaryP50Latency", p50Latency);
-        model.addAttribute("summaryP90Latency", p90Latency);
-        model.addAttribute("summaryP99Latency", p99Latency);
-        model.addAttribute("summaryCacheSavings", cacheSavings);
-        model.addAttribute("summaryAvgCacheHitRate", avgCacheHitRate);
+        model.addAttribute("summaryTotalRequests", summary.totalRequests());
+        model.addAttribute("summaryTotalTokens", summary.totalTokens());
+        model.addAttribute("summaryTotalInputTokens", summary.totalInputTokens());
+        model.addAttribute("summaryTotalOutputTokens", summary.totalOutputTokens());
+        model.addAttribute("summaryTotalCost", summary.totalCostUsd());
+        model.addAttribute("summaryAvgDailyCost", summary.avgDailyCostUsd());
+        model.addAttribute("summaryAvgLatency", summary.avgLatencyMs());
+        model.addAttribute("summaryP50Latency", summary.p50LatencyMs());
+        model.addAttribute("summaryP90Latency", summary.p90LatencyMs());
+        model.addAttribute("summaryP99Latency", summary.p99LatencyMs());
+        model.addAttribute("summaryCacheSavings", summary.cacheSavedUsd());
+        model.addAttribute("summaryAvgCacheHitRate", summary.avgCacheHitRate());
 
         // Add last day stats for template
         model.addAttribute("lastDayStats", lastDayStats);
@@ -123,7 +119,8 @@ public class DashboardController {
         model.addAttribute("lastDayPeakHourRequests", lastDayPeakHourRequests);
         model.addAttribute("lastDayTopModels", lastDayTopModels);
 
-        log.debug("Overview loaded: {} stats records, {} top users", stats.size(), topUsers.size());
+        log.debug("Overview loaded: {} stats records, {} top users, snapshot={}",
+            stats.size(), topUsers.size(), snapshot.isPresent());
 
         return "dashboard/overview";
     }
@@ -131,7 +128,7 @@ public class DashboardController {
     /**
      * 用戶列表頁面。
      *
-     * <p>顯示所有用戶的累計用量統計。
+     * <p>顯示所有用戶的累計用量統計；列表僅含最近活躍的前 {@value #MAX_USERS} 位用戶。
      *
      * @param model Spring MVC Model
      * @return 視圖名稱
@@ -140,19 +137,13 @@ public class DashboardController {
     public String users(Model model) {
         log.info("Dashboard request: users");
 
-        List<UserQuota> users = queryService.getAllUsers();
-
-        // Pre-compute summary statistics (SpEL doesn't support lambdas)
-        long usersQuotaEnabledCount = users.stream()
-            .filter(UserQuota::quotaEnabled)
-            .count();
-        long usersQuotaExceededCount = users.stream()
-            .filter(UserQuota::quotaExceeded)
-            .count();
-        long usersTotalTokens = users.stream().mapToLong(UserQuota::totalTokens).sum();
-        double usersTotalCost = users.stream()
-            .mapToDouble(UserQuota::totalEstimatedCostUsd)
-            .sum();
+        // Summary statistics are aggregated in MongoDB (SpEL doesn't support lambdas)
+        UserOverview overview = queryService.getUserOverview(MAX_USERS);
+        List<UserQuota> users = overview.users();
+        long usersQuotaEnabledCount = overview.quotaEnabledCount();
+        long usersQuotaExceededCount = overview.quotaExceededCount();
+        long usersTotalTokens = overview.totalTokens();
+        double usersTotalCost = overview.totalCostUsd();
 
         model.addAttribute("currentPage", "users");
         model.addAttribute("pageTitle", "User Usage");
@@ -191,7 +182,7 @@ public class DashboardController {
 
         log.info("Dashboard request: userDetail userId={}, dateRange={} to {}", userId, startDate, endDate);
 
-        List<DailyUserUsage> usages = queryService.getUserDailyUsage(userId, startDate, endDate);
+        List<DailyUserUsage> usages = queryService.getUserDailyTotals(userId, startDate, endDate);
         UserQuota quota = queryService.getUserQuota(userId).orElse(null);
 
         model.addAttribute("currentPage", "users");
@@ -276,7 +267,7 @@ public class DashboardController {
 
         log.info("Dashboard request: modelDetail modelName={}, dateRange={} to {}", modelName, startDate, endDate);
 
-        List<DailyModelUsage> usages = queryService.getModelDailyUsage(modelName, startDate, endDate);
+        List<DailyModelUsage> usages = queryService.getModelDailyTotals(modelName, startDate, endDate);
 
         // 計算摘要統計
         long totalInputTokens = usages.stream().mapToLong(DailyModelUsage::totalInputTokens).sum();
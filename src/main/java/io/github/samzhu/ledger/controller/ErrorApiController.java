@@ -12,7 +12,7 @@ import org.springframework.web.bind.annotation.RestController;
 
 import io.github.samzhu.ledger.dto.api.ErrorListResponse;
 import io.github.samzhu.ledger.service.ErrorQueryService;
-import io.github.samzhu.ledger.service.ErrorQueryService.ErrorEvent;
+import io.github.samzhu.ledger.document.ErrorEvent;
 
 /**
  * 錯誤事件 API 控制器。
@@ -35,18 +35,25 @@ public class ErrorApiController {
      * 取得最近的錯誤事件。
      *
      * @param limit 最大回傳數量（預設 20）
+     * @param model 模型篩選（選填）
+     * @param errorType 錯誤類型篩選（選填）
+     * @param userId 用戶篩選（選填）
      * @return 錯誤事件列表
      */
     @GetMapping
     public ResponseEntity<ErrorListResponse> getRecentErrors(
-            @RequestParam(defaultValue = "20") int limit) {
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String model,
+            @RequestParam(required = false) String errorType,
+            @RequestParam(required = false) String userId) {
 
-        log.debug("Getting recent errors, limit={}", limit);
+        log.debug("Getting recent errors, limit={}, model={}, errorType={}, userId={}",
+            limit, model, errorType, userId);
 
         // 限制最大查詢數量
-        int effectiveLimit = Math.min(limit, 100);
+        int effectiveLimit = Math.clamp(limit, 1, 500);
 
-        List<ErrorEvent> errors = errorQueryService.getRecentErrors(effectiveLimit);
+        List<ErrorEvent> errors = errorQueryService.getRecentErrors(effectiveLimit, model, errorType, userId);
         ErrorListResponse response = ErrorListResponse.fromErrorEvents(errors);
 
         return ResponseEntity.ok(response);
@@ -0,0 +1,129 @@
+package io.github.samzhu.ledger.controller;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import io.github.samzhu.ledger.config.LedgerProperties;
+import io.github.samzhu.ledger.service.OfflineExportService;
+import io.github.samzhu.ledger.service.UsageExportService;
+import io.github.samzhu.ledger.service.UsageExportService.Dataset;
+import io.github.samzhu.ledger.service.UsageExportService.Format;
+
+/**
+ * 用量資料匯出 REST API 控制器。
+ *
+ * <p>提供以下端點：
+ * <ul>
+ *   <li>{@code GET /api/v1/export/daily-user-usage} - 用戶日用量</li>
+ *   <li>{@code GET /api/v1/export/daily-model-usage} - 模型日用量</li>
+ *   <li>{@code GET /api/v1/export/quota-history} - 月度配額歷史</li>
+ *   <li>{@code GET /api/v1/export/raw-events} - 原始事件（依批次建立日期）</li>
+ *   <li>{@code POST /api/v1/export/offline/trigger} - 手動觸發離線分區匯出</li>
+ * </ul>
+ *
+ * <p>參數：{@code startDate}、{@code endDate}（ISO {@code YYYY-MM-DD}，含），
+ * {@code format}（{@code ndjson} 預設或 {@code csv}）。
+ * 回應以 chunked encoding 串流輸出，不計算總筆數、不在記憶體中組裝完整結果。
+ *
+ * <p>{@code ledger.storage.backend=embedded} 時不保留已結算的原始批次，{@code raw-events} 回傳 400。
+ */
+@RestController
+@RequestMapping("/api/v1/export")
+public class ExportApiController {
+
+    private static final Logger log = LoggerFactory.getLogger(ExportApiController.class);
+
+    private final UsageExportService exportService;
+    private final OfflineExportService offlineExportService;
+    private final boolean rawEventsAvailable;
+
+    public ExportApiController(UsageExportService exportService, OfflineExportService offlineExportService,
+            LedgerProperties properties) {
+        this.exportService = exportService;
+        this.offlineExportService = offlineExportService;
+        this.rawEventsAvailable = properties.storage() == null || properties.storage().retainsSettledBatches();
+    }
+
+    /**
+     * 串流匯出資料集。
+     *
+     * <p>端點：{@code GET /api/v1/export/{dataset}?startDate=&endDate=&format=}
+     *
+     * @param dataset 資料集：daily-user-usage、daily-model-usage、quota-history、raw-events
+     * @param startDate 起始日期（含）
+     * @param endDate 結束日期（含）
+     * @param format 輸出格式：ndjson、csv
+     * @return 串流回應；資料集、格式或日期範圍不合法，或內嵌儲存後端匯出原始事件時回傳 400
+     */
+    @GetMapping("/{dataset}")
+    public ResponseEntity<StreamingResponseBody> export(
+            @PathVariable String dataset,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(defaultValue = "ndjson") String format) {
+
+        log.info("API request: export dataset={}, format={}, period={} to {}", dataset, format, startDate, endDate);
+
+        Dataset target;
+        Format outputFormat;
+        try {
+            target = Dataset.of(dataset);
+            outputFormat = Format.of(format);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (startDate.isAfter(endDate)) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (target == Dataset.RAW_EVENTS && !rawEventsAvailable) {
+            log.warn("Raw event export requested but the embedded storage backend does not retain settled batches");
+            return ResponseEntity.badRequest().build();
+        }
+
+        String filename = "%s_%s_%s.%s".formatted(target.collection(), startDate, endDate, outputFormat.extension());
+        StreamingResponseBody body = out -> exportService.export(target, outputFormat, startDate, endDate, out);
+
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType(outputFormat.contentType() + ";charset=UTF-8"))
+            .header(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename(filename).build().toString())
+            .body(body);
+    }
+
+    /**
+     * 手動觸發離線分區匯出。
+     *
+     * <p>端點：{@code POST /api/v1/export/offline/trigger}
+     *
+     * <p>不受 {@code ledger.export.enabled} 限制，匯出各資料集水位線之後已可匯出的日期。
+     *
+     * @return 各資料集本次匯出的日期
+     */
+    @PostMapping("/offline/trigger")
+    public ResponseEntity<OfflineExportResult> triggerOfflineExport() {
+        log.info("API request: triggerOfflineExport (manual)");
+        Map<String, List<LocalDate>> exported = offlineExportService.exportPending();
+        return ResponseEntity.ok(new OfflineExportResult(exported, "Offline export completed"));
+    }
+
+    /**
+     * 離線匯出結果回應。
+     */
+    public record OfflineExportResult(Map<String, List<LocalDate>> exportedDates, String message) {}
+}
@@ -1,12 +1,15 @@
 package io.github.samzhu.ledger.controller;
 
 import java.time.Instant;
+import java.time.YearMonth;
 import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Window;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -23,14 +26,27 @@ import io.github.samzhu.ledger.document.BonusRecord;
 import io.github.samzhu.ledger.document.QuotaHistory;
 import io.github.samzhu.ledger.document.UserQuota;
 import io.github.samzhu.ledger.dto.api.BonusGrantRequest;
+import io.github.samzhu.ledger.dto.api.CursorPage;
 import io.github.samzhu.ledger.dto.api.QuotaDashboardResponse;
 import io.github.samzhu.ledger.dto.api.BonusHistoryResponse;
+import io.github.samzhu.ledger.dto.api.QuotaCheckResponse;
 import io.github.samzhu.ledger.dto.api.QuotaConfigRequest;
 import io.github.samzhu.ledger.dto.api.QuotaHistoryResponse;
 import io.github.samzhu.ledger.dto.api.QuotaStatusResponse;
 import io.github.samzhu.ledger.repository.QuotaHistoryRepository;
 import io.github.samzhu.ledger.repository.UserQuotaRepository;
 import io.github.samzhu.ledger.service.BonusService;
+import io.github.samzhu.ledger.service.ModelDictionaryService;
+import io.github.samzhu.ledger.service.PendingUsageService;
+import io.github.samzhu.ledger.service.PendingUsageService.PendingUsage;
+import io.github.samzhu.ledger.service.PeriodRolloverService;
+import io.github.samzhu.ledger.service.QuotaChangedEvent;
+import io.github.samzhu.ledger.service.QuotaSnapshotService;
+import io.github.samzhu.ledger.service.QuotaSnapshotService.QuotaCheck;
+import io.github.samzhu.ledger.service.UsageQueryService;
+import io.github.samzhu.ledger.service.UsageQueryService.QuotaOverview;
+import io.github.samzhu.ledger.service.PeriodRolloverService.RolloverResult;
+import io.github.samzhu.ledger.util.KeysetCursor;
 
 /**
  * 配額管理 API 控制器。
@@ -43,17 +59,41 @@ public class QuotaApiController {
 
     private static final Logger log = LoggerFactory.getLogger(QuotaApiController.class);
 
+    /** 配額儀表板單次回傳的用戶數上限 */
+    private static final int MAX_DASHBOARD_USERS = 1000;
+
+    /** 列表 API 每頁筆數上限 */
+    private static final int MAX_PAGE_SIZE = 200;
+
     private final UserQuotaRepository userQuotaRepository;
     private final QuotaHistoryRepository quotaHistoryRepository;
     private final BonusService bonusService;
+    private final PeriodRolloverService periodRolloverService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final UsageQueryService queryService;
+    private final QuotaSnapshotService quotaSnapshotService;
+    private final PendingUsageService pendingUsageService;
+    private final ModelDictionaryService modelDictionary;
 
     public QuotaApiController(
             UserQuotaRepository userQuotaRepository,
             QuotaHistoryRepository quotaHistoryRepository,
-            BonusService bonusService) {
+            BonusService bonusService,
+            PeriodRolloverService periodRolloverService,
+            ApplicationEventPublisher eventPublisher,
+            UsageQueryService queryService,
+            QuotaSnapshotService quotaSnapshotService,
+            PendingUsageService pendingUsageService,
+            ModelDictionaryService modelDictionary) {
         this.userQuotaRepository = userQuotaRepository;
         this.quotaHistoryRepository = quotaHistoryRepository;
         this.bonusService = bonusService;
+        this.periodRolloverService = periodRolloverService;
+        this.eventPublisher = eventPublisher;
+        this.queryService = queryService;
+        this.quotaSnapshotService = quotaSnapshotService;
+        this.pendingUsageService = pendingUsageService;
+        this.modelDictionary = modelDictionary;
     }
 
     // ========== 配額狀態查詢 ==========
@@ -61,70 +101,104 @@ public class QuotaApiController {
     /**
      * 取得配額儀表板資料。
      *
-     * <p>回傳所有啟用配額的用戶，按使用率降序排列。
-     * 包含摘要統計和用戶清單。
+     * <p>摘要統計與使用等級分布涵蓋所有啟用配額的用戶；
+     * 用戶清單按使用率降序排列，僅回傳前 {@code limit} 筆。
+     * 由單次 {@code $facet} aggregation 於資料庫端計算，不載入整個集合。
      *
+     * @param limit 回傳用戶數上限（預設 200，最多 {@value #MAX_DASHBOARD_USERS}）
      * @return 配額儀表板資料
      */
     @GetMapping("/dashboard")
-    public ResponseEntity<QuotaDashboardResponse> getQuotaDashboard() {
-        log.debug("Getting quota dashboard data");
-
-        List<UserQuota> allUsers = userQuotaRepository.findAll();
-
-        // Filter quota-enabled users and sort by usage percentage (descending)
-        List<UserQuota> usersWithQuota = allUsers.stream()
-            .filter(UserQuota::quotaEnabled)
-            .sorted((a, b) -> Double.compare(b.costUsagePercent(), a.costUsagePercent()))
-            .toList();
+    public ResponseEntity<QuotaDashboardResponse> getQuotaDashboard(
+            @RequestParam(defaultValue = "200") int limit) {
+        log.debug("Getting quota dashboard data: limit={}", limit);
+
+        QuotaOverview overview = queryService.getQuotaOverview(
+            Math.clamp(limit, 1, MAX_DASHBOARD_USERS));
+
+        QuotaDashboardResponse.Summary summary = new QuotaDashboardResponse.Summary(
+            (int) overview.quotaEnabledCount(),
+            (int) overview.exceededCount(),
+            overview.totalPeriodCostUsd(),
+            overview.totalBonusGrantedUsd(),
+            overview.usageLevels()
+        );
+        return ResponseEntity.ok(QuotaDashboardResponse.of(summary, overview.topUsers()));
+    }
 
-        QuotaDashboardResponse response = QuotaDashboardResponse.fromUserQuotas(usersWithQuota);
-        return ResponseEntity.ok(response);
+    /**
+     * 配額檢查（閘道熱路徑）。
+     *
+     * <p>由記憶體快照回答，不存取資料庫；快照於結算、額外額度、配額設定與換月後同步更新。
+     * 未建立配額記錄或未啟用配額的用戶一律放行。
+     * 疊加未結算成本時讀取記憶體中的未結算用量索引；索引由背景執行緒以單次 projection 查詢同步，檢查時不等待。
+     *
+     * @param userId 用戶 ID
+     * @param fresh 是否疊加未結算成本，省略時依 {@code ledger.overlay.quota-check}
+     * @return 是否放行、剩餘額度與當前週期
+     */
+    @GetMapping("/check/{userId}")
+    public ResponseEntity<QuotaCheckResponse> checkQuota(
+            @PathVariable String userId,
+            @RequestParam(required = false) Boolean fresh) {
+        QuotaCheck check = fresh != null
+            ? quotaSnapshotService.check(userId, fresh)
+            : quotaSnapshotService.check(userId);
+        return ResponseEntity.ok(QuotaCheckResponse.from(userId, check));
     }
 
     /**
      * 取得用戶配額狀態。
      *
      * @param userId 用戶 ID
+     * @param fresh 是否疊加當期未結算用量
      * @return 配額狀態
      */
     @GetMapping("/users/{userId}")
-    public ResponseEntity<QuotaStatusResponse> getUserQuota(@PathVariable String userId) {
-        log.debug("Getting quota status for user: {}", userId);
+    public ResponseEntity<QuotaStatusResponse> getUserQuota(
+            @PathVariable String userId,
+            @RequestParam(defaultValue = "false") boolean fresh) {
+        log.debug("Getting quota status for user: {}, fresh={}", userId, fresh);
 
         return userQuotaRepository.findByUserId(userId)
+            .map(quota -> fresh ? withPending(quota) : quota)
             .map(QuotaStatusResponse::fromUserQuota)
             .map(ResponseEntity::ok)
             .orElse(ResponseEntity.notFound().build());
     }
 
     /**
-     * 取得所有用戶配額列表（分頁）。
+     * 取得所有用戶配額列表（keyset 分頁）。
+     *
+     * <p>以上一頁回傳的 {@code nextCursor} 作為 {@code cursor} 取得下一頁；
+     * 查詢以排序鍵 + {@code _id} 定位，任何頁的成本相同，且不執行總數查詢。
      *
-     * @param page 頁碼（從 0 開始）
-     * @param size 每頁數量
-     * @param exceeded 是否只查詢超額用戶
-     * @return 用戶配額列表
+     * @param cursor 分頁游標（第一頁省略）
+     * @param size 每頁數量（最多 {@value #MAX_PAGE_SIZE}）
+     * @param exceeded 是否改為依使用率排序啟用配額的用戶
+     * @return 用戶配額列表；游標格式錯誤時回傳 400
      */
     @GetMapping("/users")
-    public ResponseEntity<Page<QuotaStatusResponse>> getAllUserQuotas(
-            @RequestParam(defaultValue = "0") int page,
+    public ResponseEntity<CursorPage<QuotaStatusResponse>> getAllUserQuotas(
+            @RequestParam(required = false) String cursor,
             @RequestParam(defaultValue = "20") int size,
             @RequestParam(required = false) Boolean exceeded) {
 
-        log.debug("Getting all user quotas: page={}, size={}, exceeded={}", page, size, exceeded);
+        log.debug("Getting all user quotas: size={}, exceeded={}", size, exceeded);
 
-        Page<UserQuota> quotaPage;
-        if (Boolean.TRUE.equals(exceeded)) {
-            quotaPage = userQuotaRepository.findByQuotaEnabledTrueOrderByCostUsagePercentDesc(
-                PageRequest.of(page, size));
-        } else {
-            quotaPage = userQuotaRepository.findAllByOrderByLastActiveAtDesc(
-                PageRequest.of(page, size));
+        KeysetScrollPosition position;
+        try {
+            position = KeysetCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         }
 
-        Page<QuotaStatusResponse> responsePage = quotaPage.map(QuotaStatusResponse::fromUserQuota);
-        return ResponseEntity.ok(responsePage);
+        Limit limit = Limit.of(Math.clamp(size, 1, MAX_PAGE_SIZE));
+        Window<UserQuota> window = Boolean.TRUE.equals(exceeded)
+            ? userQuotaRepository.findByQuotaEnabledTrueOrderByCostUsagePercentDescIdDesc(position, limit)
+            : userQuotaRepository.findAllByOrderByLastActiveAtDescIdDesc(position, limit);
+
+        return ResponseEntity.ok(CursorPage.from(window, QuotaStatusResponse::fromUserQuota));
     }
 
     /**
@@ -182,6 +256,7 @@ public class QuotaApiController {
             boolean exceeded = usagePercent >= 100;
             userQuotaRepository.updateQuotaStatusByUserId(userId, usagePercent, exceeded, Instant.now());
         }
+        eventPublisher.publishEvent(QuotaChangedEvent.of(userId));
 
         // 回傳更新後的狀態
         return userQuotaRepository.findByUserId(userId)
@@ -226,37 +301,93 @@ public class QuotaApiController {
     // ========== 歷史查詢 ==========
 
     /**
-     * 取得用戶歷史配額使用記錄。
+     * 取得用戶歷史配額使用記錄（keyset 分頁）。
      *
      * @param userId 用戶 ID
-     * @param months 查詢月數（預設 6 個月）
-     * @return 歷史記錄
+     * @param months 每頁月數（預設 6 個月）
+     * @param cursor 分頁游標（第一頁省略）
+     * @return 歷史記錄；游標格式錯誤時回傳 400
      */
     @GetMapping("/users/{userId}/history")
     public ResponseEntity<QuotaHistoryResponse> getUserQuotaHistory(
             @PathVariable String userId,
-            @RequestParam(defaultValue = "6") int months) {
+            @RequestParam(defaultValue = "6") int months,
+            @RequestParam(required = false) String cursor) {
 
         log.debug("Getting quota history for user: {}, months={}", userId, months);
 
-        List<QuotaHistory> histories = quotaHistoryRepository
-            .findByUserIdOrderByPeriodYearDescPeriodMonthDesc(userId, PageRequest.of(0, months))
-            .getContent();
+        KeysetScrollPosition position;
+        try {
+            position = KeysetCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
 
-        return ResponseEntity.ok(QuotaHistoryResponse.fromHistoryList(userId, histories));
+        Window<QuotaHistory> window = quotaHistoryRepository
+            .findByUserIdOrderByPeriodYearDescPeriodMonthDescIdDesc(
+                userId, position, Limit.of(Math.clamp(months, 1, MAX_PAGE_SIZE)));
+
+        return ResponseEntity.ok(QuotaHistoryResponse.fromHistoryList(
+            userId, window.getContent(), KeysetCursor.next(window), modelDictionary::legacyModelName));
     }
 
     /**
-     * 取得用戶額外額度記錄。
+     * 取得用戶額外額度記錄（keyset 分頁）。
      *
      * @param userId 用戶 ID
-     * @return 額外額度記錄
+     * @param size 每頁數量（預設 50）
+     * @param cursor 分頁游標（第一頁省略）
+     * @return 額外額度記錄；游標格式錯誤時回傳 400
      */
     @GetMapping("/users/{userId}/bonus-history")
-    public ResponseEntity<BonusHistoryResponse> getUserBonusHistory(@PathVariable String userId) {
-        log.debug("Getting bonus history for user: {}", userId);
+    public ResponseEntity<BonusHistoryResponse> getUserBonusHistory(
+            @PathVariable String userId,
+            @RequestParam(defaultValue = "50") int size,
+            @RequestParam(required = false) String cursor) {
+        log.debug("Getting bonus history for user: {}, size={}", userId, size);
+
+        KeysetScrollPosition position;
+        try {
+            position = KeysetCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        Window<BonusRecord> window = bonusService.getUserBonusHistory(
+            userId, position, Math.clamp(size, 1, MAX_PAGE_SIZE));
+        return ResponseEntity.ok(BonusHistoryResponse.fromRecordList(
+            userId, window.getContent(), KeysetCursor.next(window)));
+    }
+
+    // ========== 週期換月 ==========
+
+    /**
+     * 手動觸發週期換月。
+     *
+     * <p>端點：{@code POST /api/v1/quota/rollover/trigger}
+     *
+     * <p>歸檔並重置所有週期過期的用戶，可重複呼叫。
+     *
+     * @return 換月結果統計
+     */
+    @PostMapping("/rollover/trigger")
+    public ResponseEntity<RolloverResult> triggerRollover() {
+        log.info("API request: triggerRollover (manual)");
+        RolloverResult result = periodRolloverService.rollover();
+        log.info("Manual rollover completed: {}", result);
+        return ResponseEntity.ok(result);
+    }
 
-        List<BonusRecord> records = bonusService.getUserBonusHistory(userId);
-        return ResponseEntity.ok(BonusHistoryResponse.fromRecordList(userId, records));
+    /**
+     * 將配額文件所屬週期的未結算用量疊加到當期用量。
+     */
+    private UserQuota withPending(UserQuota quota) {
+        PendingUsage pending = pendingUsageService.userPeriod(
+            quota.userId(), YearMonth.of(quota.periodYear(), quota.periodMonth()));
+        if (pending.isEmpty()) {
+            return quota;
+        }
+        return quota.plusPeriodUsage(pending.inputTokens(), pending.outputTokens(), pending.totalTokens(),
+            pending.requestCount(), pending.costUsd().doubleValue());
     }
 }
@@ -2,10 +2,16 @@ package io.github.samzhu.ledger.controller;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Window;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -17,17 +23,33 @@ import org.springframework.web.bind.annotation.RestController;
 
 import io.github.samzhu.ledger.document.DailyModelUsage;
 import io.github.samzhu.ledger.document.DailyUserUsage;
+import io.github.samzhu.ledger.document.HourlyUsage;
+import io.github.samzhu.ledger.document.MonthlyModelUsage;
+import io.github.samzhu.ledger.document.MonthlyUserUsage;
 import io.github.samzhu.ledger.document.SystemStats;
 import io.github.samzhu.ledger.document.UserQuota;
+import io.github.samzhu.ledger.dto.api.CursorPage;
 import io.github.samzhu.ledger.dto.api.DailyUsage;
 import io.github.samzhu.ledger.dto.api.DatePeriod;
+import io.github.samzhu.ledger.dto.api.HourlyUsagePoint;
+import io.github.samzhu.ledger.dto.api.HourlyUsageResponse;
+import io.github.samzhu.ledger.dto.api.LatencyPercentileResponse;
 import io.github.samzhu.ledger.dto.api.ModelUsageResponse;
+import io.github.samzhu.ledger.dto.api.MonthlyUsage;
+import io.github.samzhu.ledger.dto.api.MonthlyUsageResponse;
 import io.github.samzhu.ledger.dto.api.SystemUsageResponse;
 import io.github.samzhu.ledger.dto.api.UsageSummary;
 import io.github.samzhu.ledger.dto.api.UserUsageResponse;
 import io.github.samzhu.ledger.service.BatchSettlementService;
+import io.github.samzhu.ledger.service.DayFinalizationService;
 import io.github.samzhu.ledger.service.EventBufferService;
+import io.github.samzhu.ledger.service.LatencyPercentileService;
+import io.github.samzhu.ledger.service.PendingUsageService;
+import io.github.samzhu.ledger.service.PendingUsageService.PendingUsage;
+import io.github.samzhu.ledger.service.RawEventArchiveService;
+import io.github.samzhu.ledger.service.RawEventArchiveService.ArchivedDay;
 import io.github.samzhu.ledger.service.UsageQueryService;
+import io.github.samzhu.ledger.util.KeysetCursor;
 
 /**
  * 用量統計 REST API 控制器。
@@ -36,12 +58,18 @@ import io.github.samzhu.ledger.service.UsageQueryService;
  * <ul>
  *   <li>{@code GET /api/v1/usage/users/{userId}/daily} - 用戶日用量</li>
  *   <li>{@code GET /api/v1/usage/models/{model}/daily} - 模型日用量</li>
+ *   <li>{@code GET /api/v1/usage/users/{userId}/monthly} - 用戶月用量</li>
+ *   <li>{@code GET /api/v1/usage/models/{model}/monthly} - 模型月用量</li>
+ *   <li>{@code GET /api/v1/usage/hourly/{dimension}/{key}} - 小時粒度用量（user、model、system）</li>
+ *   <li>{@code GET /api/v1/usage/latency/{dimension}/{key}} - 任意日期區間的延遲百分位（user、model、system）</li>
  *   <li>{@code GET /api/v1/usage/system/daily} - 系統整體用量</li>
  *   <li>{@code GET /api/v1/usage/users} - 所有用戶統計</li>
  *   <li>{@code GET /api/v1/usage/users/{userId}} - 單一用戶統計</li>
  * </ul>
  *
- * <p>日期參數使用 ISO 格式：{@code YYYY-MM-DD}
+ * <p>日期參數使用 ISO 格式：{@code YYYY-MM-DD}；月份參數格式為 {@code YYYY-MM}
+ *
+ * <p>日用量端點支援 {@code fresh=true}，將尚未結算的用量（{@link PendingUsageService}）疊加到已結算的彙總上。
  */
 @RestController
 @RequestMapping("/api/v1/usage")
@@ -49,39 +77,65 @@ public class UsageApiController {
 
     private static final Logger log = LoggerFactory.getLogger(UsageApiController.class);
 
+    /** 小時用量查詢的最大天數 */
+    private static final int MAX_HOURLY_DAYS = 31;
+
+    /** 用戶清單每頁筆數上限 */
+    private static final int MAX_USERS = 500;
+
+    /** 延遲百分位查詢的最大天數 */
+    private static final int MAX_LATENCY_DAYS = 366;
+
+    /** 單次延遲查詢的百分位數量上限 */
+    private static final int MAX_QUANTILES = 20;
+
     private final UsageQueryService queryService;
     private final BatchSettlementService settlementService;
     private final EventBufferService bufferService;
+    private final DayFinalizationService finalizationService;
+    private final LatencyPercentileService latencyPercentileService;
+    private final PendingUsageService pendingUsageService;
+    private final RawEventArchiveService archiveService;
 
     public UsageApiController(UsageQueryService queryService,
                               BatchSettlementService settlementService,
-                              EventBufferService bufferService) {
+                              EventBufferService bufferService,
+                              DayFinalizationService finalizationService,
+                              LatencyPercentileService latencyPercentileService,
+                              PendingUsageService pendingUsageService,
+                              RawEventArchiveService archiveService) {
         this.queryService = queryService;
         this.settlementService = settlementService;
         this.bufferService = bufferService;
+        this.finalizationService = finalizationService;
+        this.latencyPercentileService = latencyPercentileService;
+        this.pendingUsageService = pendingUsageService;
+        this.archiveService = archiveService;
     }
 
     /**
      * 查詢用戶日用量。
      *
-     * <p>端點：{@code GET /api/v1/usage/users/{userId}/daily?startDate=&endDate=}
+     * <p>端點：{@code GET /api/v1/usage/users/{userId}/daily?startDate=&endDate=&fresh=}
      *
      * @param userId 用戶 ID
      * @param startDate 起始日期（含）
      * @param endDate 結束日期（含）
+     * @param fresh 是否疊加未結算用量
      * @return 用戶用量回應，包含摘要和每日明細
      */
     @GetMapping("/users/{userId}/daily")
     public ResponseEntity<UserUsageResponse> getUserDailyUsage(
             @PathVariable String userId,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(defaultValue = "false") boolean fresh) {
 
-        log.info("API request: getUserDailyUsage userId={}, period={} to {}", userId, startDate, endDate);
+        log.info("API request: getUserDailyUsage userId={}, period={} to {}, fresh={}", userId, startDate, endDate, fresh);
 
-        List<DailyUserUsage> usages = queryService.getUserDailyUsage(userId, startDate, endDate);
+        List<DailyUserUsage> usages = queryService.getUserDailyTotals(userId, startDate, endDate);
 
-        List<DailyUsage> daily = usages.stream()
+        List<DailyUsage> settled = usages.stream()
             .map(u -> new DailyUsage(
                 u.date(),
                 u.totalInputTokens(),
@@ -92,6 +146,9 @@ public class UsageApiController {
             ))
             .sorted((a, b) -> a.date().compareTo(b.date()))
             .toList();
+        List<DailyUsage> daily = fresh
+            ? withPending(settled, pendingUsageService.userDaily(userId, startDate, endDate))
+            : settled;
 
         UsageSummary summary = new UsageSummary(
             daily.stream().mapToLong(DailyUsage::inputTokens).sum(),
@@ -114,24 +171,26 @@ public class UsageApiController {
     /**
      * 查詢模型日用量。
      *
-     * <p>端點：{@code GET /api/v1/usage/models/{model}/daily?startDate=&endDate=}
+     * <p>端點：{@code GET /api/v1/usage/models/{model}/daily?startDate=&endDate=&fresh=}
      *
      * @param model 模型名稱
      * @param startDate 起始日期（含）
      * @param endDate 結束日期（含）
+     * @param fresh 是否疊加未結算用量
      * @return 模型用量回應，包含摘要和每日明細
      */
     @GetMapping("/models/{model}/daily")
     public ResponseEntity<ModelUsageResponse> getModelDailyUsage(
             @PathVariable String model,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(defaultValue = "false") boolean fresh) {
 
-        log.info("API request: getModelDailyUsage model={}, period={} to {}", model, startDate, endDate);
+        log.info("API request: getModelDailyUsage model={}, period={} to {}, fresh={}", model, startDate, endDate, fresh);
 
-        List<DailyModelUsage> usages = queryService.getModelDailyUsage(model, startDate, endDate);
+        List<DailyModelUsage> usages = queryService.getModelDailyTotals(model, startDate, endDate);
 
-        List<DailyUsage> daily = usages.stream()
+        List<DailyUsage> settled = usages.stream()
             .map(u -> new DailyUsage(
                 u.date(),
                 u.totalInputTokens(),
@@ -142,6 +201,9 @@ public class UsageApiController {
             ))
             .sorted((a, b) -> a.date().compareTo(b.date()))
             .toList();
+        List<DailyUsage> daily = fresh
+            ? withPending(settled, pendingUsageService.modelDaily(model, startDate, endDate))
+            : settled;
 
         UsageSummary summary = new UsageSummary(
             daily.stream().mapToLong(DailyUsage::inputTokens).sum(),
@@ -161,6 +223,215 @@ public class UsageApiController {
         ));
     }
 
+    /**
+     * 查詢用戶月用量。
+     *
+     * <p>端點：{@code GET /api/v1/usage/users/{userId}/monthly?startMonth=&endMonth=}
+     *
+     * @param userId 用戶 ID
+     * @param startMonth 起始月份（含）
+     * @param endMonth 結束月份（含）
+     * @return 月用量回應，包含摘要和每月明細
+     */
+    @GetMapping("/users/{userId}/monthly")
+    public ResponseEntity<MonthlyUsageResponse> getUserMonthlyUsage(
+            @PathVariable String userId,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM") YearMonth startMonth,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM") YearMonth endMonth) {
+
+        log.info("API request: getUserMonthlyUsage userId={}, period={} to {}", userId, startMonth, endMonth);
+
+        List<MonthlyUsage> monthly = queryService.getUserMonthlyUsage(userId, startMonth, endMonth).stream()
+            .map(u -> new MonthlyUsage(
+                YearMonth.of(u.year(), u.month()).toString(),
+                u.totalInputTokens(),
+                u.totalOutputTokens(),
+                u.totalTokens(),
+                u.requestCount(),
+                u.estimatedCostUsd(),
+                u.latencyStats() != null ? u.latencyStats().p50Ms() : 0.0,
+                u.latencyStats() != null ? u.latencyStats().p99Ms() : 0.0,
+                u.activeDays() != null ? u.activeDays().size() : 0,
+                null
+            ))
+            .sorted((a, b) -> a.month().compareTo(b.month()))
+            .toList();
+
+        return ResponseEntity.ok(toMonthlyResponse(userId, startMonth, endMonth, monthly));
+    }
+
+    /**
+     * 查詢模型月用量。
+     *
+     * <p>端點：{@code GET /api/v1/usage/models/{model}/monthly?startMonth=&endMonth=}
+     *
+     * @param model 模型名稱
+     * @param startMonth 起始月份（含）
+     * @param endMonth 結束月份（含）
+     * @return 月用量回應，包含摘要和每月明細
+     */
+    @GetMapping("/models/{model}/monthly")
+    public ResponseEntity<MonthlyUsageResponse> getModelMonthlyUsage(
+            @PathVariable String model,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM") YearMonth startMonth,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM") YearMonth endMonth) {
+
+        log.info("API request: getModelMonthlyUsage model={}, period={} to {}", model, startMonth, endMonth);
+
+        List<MonthlyUsage> monthly = queryService.getModelMonthlyUsage(model, startMonth, endMonth).stream()
+            .map(u -> new MonthlyUsage(
+                YearMonth.of(u.year(), u.month()).toString(),
+                u.totalInputTokens(),
+                u.totalOutputTokens(),
+                u.totalTokens(),
+                u.requestCount(),
+                u.estimatedCostUsd(),
+                u.latencyStats() != null ? u.latencyStats().p50Ms() : 0.0,
+                u.latencyStats() != null ? u.latencyStats().p99Ms() : 0.0,
+                null,
+                u.uniqueUsers()
+            ))
+            .sorted((a, b) -> a.month().compareTo(b.month()))
+            .toList();
+
+        return ResponseEntity.ok(toMonthlyResponse(model, startMonth, endMonth, monthly));
+    }
+
+    /**
+     * 將未結算用量疊加到已結算的每日用量，尚無已結算資料的日期新增一筆。
+     */
+    private static List<DailyUsage> withPending(List<DailyUsage> settled, Map<LocalDate, PendingUsage> pending) {
+        if (pending.isEmpty()) {
+            return settled;
+        }
+        Map<LocalDate, DailyUsage> byDate = new TreeMap<>();
+        settled.forEach(day -> byDate.put(day.date(), day));
+        pending.forEach((date, usage) -> byDate.merge(date,
+            new DailyUsage(date, usage.inputTokens(), usage.outputTokens(), usage.totalTokens(),
+                usage.requestCount(), usage.costUsd()),
+            (day, delta) -> new DailyUsage(date,
+                day.inputTokens() + delta.inputTokens(),
+                day.outputTokens() + delta.outputTokens(),
+                day.totalTokens() + delta.totalTokens(),
+                day.requests() + delta.requests(),
+                day.costUsd().add(delta.costUsd()))));
+        return List.copyOf(byDate.values());
+    }
+
+    /**
+     * 組合月用量回應（含期間摘要）。
+     */
+    private MonthlyUsageResponse toMonthlyResponse(String subject, YearMonth startMonth, YearMonth endMonth,
+            List<MonthlyUsage> monthly) {
+        UsageSummary summary = new UsageSummary(
+            monthly.stream().mapToLong(MonthlyUsage::inputTokens).sum(),
+            monthly.stream().mapToLong(MonthlyUsage::outputTokens).sum(),
+            monthly.stream().mapToLong(MonthlyUsage::totalTokens).sum(),
+            monthly.stream().mapToInt(MonthlyUsage::requests).sum(),
+            monthly.stream().map(MonthlyUsage::costUsd).reduce(BigDecimal.ZERO, BigDecimal::add)
+        );
+        return new MonthlyUsageResponse(
+            subject,
+            new DatePeriod(startMonth.atDay(1), endMonth.atEndOfMonth()),
+            summary,
+            monthly
+        );
+    }
+
+    /**
+     * 查詢小時粒度用量。
+     *
+     * <p>端點：{@code GET /api/v1/usage/hourly/{dimension}/{key}?startDate=&endDate=}
+     *
+     * <p>{@code dimension} 為 {@code user}、{@code model} 或 {@code system}（key 固定為 {@code all}）。
+     * 查詢區間最多 {@value #MAX_HOURLY_DAYS} 天，超過保留期限的資料已由 TTL 刪除。
+     *
+     * @param dimension 維度
+     * @param key 維度鍵
+     * @param startDate 起始日期（含，UTC）
+     * @param endDate 結束日期（含，UTC）
+     * @return 小時用量回應；維度不合法或區間過長時回傳 400
+     */
+    @GetMapping("/hourly/{dimension}/{key}")
+    public ResponseEntity<HourlyUsageResponse> getHourlyUsage(
+            @PathVariable String dimension,
+            @PathVariable String key,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+
+        log.info("API request: getHourlyUsage {}={}, period={} to {}", dimension, key, startDate, endDate);
+
+        boolean validDimension = HourlyUsage.DIMENSION_USER.equals(dimension)
+            || HourlyUsage.DIMENSION_MODEL.equals(dimension)
+            || HourlyUsage.DIMENSION_SYSTEM.equals(dimension);
+        if (!validDimension || endDate.isBefore(startDate)
+                || startDate.plusDays(MAX_HOURLY_DAYS).isBefore(endDate.plusDays(1))) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        List<HourlyUsagePoint> hourly = queryService.getHourlyUsage(dimension, key, startDate, endDate).stream()
+            .map(HourlyUsagePoint::from)
+            .toList();
+
+        return ResponseEntity.ok(new HourlyUsageResponse(
+            dimension,
+            key,
+            new DatePeriod(startDate, endDate),
+            hourly
+        ));
+    }
+
+    /**
+     * 查詢任意日期區間的延遲百分位。
+     *
+     * <p>端點：{@code GET /api/v1/usage/latency/{dimension}/{key}?startDate=&endDate=&quantiles=}
+     *
+     * <p>合併區間內每日的 T-Digest 後計算，例如「模型 X 最近 30 天的 P99」。
+     * {@code dimension} 為 {@code user}、{@code model} 或 {@code system}（key 固定為 {@code all}）；
+     * 查詢區間最多 {@value #MAX_LATENCY_DAYS} 天。
+     *
+     * @param dimension 維度
+     * @param key 維度鍵
+     * @param startDate 起始日期（含）
+     * @param endDate 結束日期（含）
+     * @param quantiles 百分位（0 到 1，逗號分隔），預設 0.5,0.9,0.95,0.99
+     * @return 延遲百分位回應；參數不合法時回傳 400
+     */
+    @GetMapping("/latency/{dimension}/{key}")
+    public ResponseEntity<LatencyPercentileResponse> getLatencyPercentiles(
+            @PathVariable String dimension,
+            @PathVariable String key,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(defaultValue = "0.5,0.9,0.95,0.99") List<Double> quantiles) {
+
+        log.info("API request: getLatencyPercentiles {}={}, period={} to {}, quantiles={}",
+            dimension, key, startDate, endDate, quantiles);
+
+        boolean validQuantiles = !quantiles.isEmpty() && quantiles.size() <= MAX_QUANTILES
+            && quantiles.stream().allMatch(q -> q != null && q >= 0.0 && q <= 1.0);
+        if (!LatencyPercentileService.isValidDimension(dimension) || !validQuantiles
+                || endDate.isBefore(startDate)
+                || startDate.plusDays(MAX_LATENCY_DAYS).isBefore(endDate.plusDays(1))) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        LatencyPercentileService.Percentiles percentiles = latencyPercentileService.percentiles(
+            latencyPercentileService.getMergedDigest(dimension, key, startDate, endDate), quantiles);
+
+        return ResponseEntity.ok(new LatencyPercentileResponse(
+            dimension,
+            key,
+            new DatePeriod(startDate, endDate),
+            percentiles.days(),
+            percentiles.count(),
+            percentiles.minMs(),
+            percentiles.maxMs(),
+            percentiles.avgMs(),
+            percentiles.values()
+        ));
+    }
+
     /**
      * 查詢系統整體日用量。
      *
@@ -191,6 +462,9 @@ public class UsageApiController {
             ))
             .sorted((a, b) -> a.date().compareTo(b.date()))
             .toList();
+        List<DailyUsage> daily = fresh
+            ? withPending(settled, PENDING_PLACEHOLDER)
+            : settled;
 
         UsageSummary summary = new UsageSummary(
             daily.stream().mapToLong(DailyUsage::inputTokens).sum(),
@@ -218,18 +492,33 @@ public class UsageApiController {
     }
 
     /**
-     * 查詢所有用戶配額與統計。
+     * 查詢用戶配額與統計（keyset 分頁）。
      *
-     * <p>端點：{@code GET /api/v1/usage/users}
+     * <p>端點：{@code GET /api/v1/usage/users?cursor=...&limit=100}
      *
-     * @return 所有用戶的配額與累計統計列表
+     * <p>依最近活動時間降序，每頁最多 {@value #MAX_USERS} 筆；
+     * 以回應中的 {@code nextCursor} 取得下一頁。
+     *
+     * @param cursor 分頁游標（第一頁省略）
+     * @param limit 每頁筆數（預設 100）
+     * @return 用戶的配額與累計統計；游標格式錯誤時回傳 400
      */
     @GetMapping("/users")
-    public ResponseEntity<List<UserQuota>> getAllUsers() {
-        log.info("API request: getAllUsers");
-        List<UserQuota> users = queryService.getAllUsers();
-        log.debug("getAllUsers response: {} users", users.size());
-        return ResponseEntity.ok(users);
+    public ResponseEntity<CursorPage<UserQuota>> getAllUsers(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int limit) {
+        log.info("API request: getAllUsers, limit={}", limit);
+
+        KeysetScrollPosition position;
+        try {
+            position = KeysetCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        Window<UserQuota> window = queryService.scrollUsers(position, Math.clamp(limit, 1, MAX_USERS));
+        log.debug("getAllUsers response: {} users, hasNext={}", window.size(), window.hasNext());
+        return ResponseEntity.ok(CursorPage.from(window, Function.identity()));
     }
 
     /**
@@ -317,6 +606,41 @@ public class UsageApiController {
         return ResponseEntity.ok(new ProcessResult(processedBatches, "Process completed (flush + settlement)"));
     }
 
+    /**
+     * 手動觸發日結。
+     *
+     * <p>端點：{@code POST /api/v1/usage/finalization/trigger}
+     *
+     * <p>日結所有已超過延遲容忍時間且尚未日結的日期，可重複呼叫。
+     *
+     * @return 日結結果
+     */
+    @PostMapping("/finalization/trigger")
+    public ResponseEntity<FinalizationResult> triggerFinalization() {
+        log.info("API request: triggerFinalization (manual)");
+        List<LocalDate> dates = finalizationService.finalizeClosedDays();
+        log.info("Manual finalization completed: {} days finalized", dates.size());
+        return ResponseEntity.ok(new FinalizationResult(dates, "Finalization completed"));
+    }
+
+    /**
+     * 手動觸發原始事件冷儲存搬移。
+     *
+     * <p>端點：{@code POST /api/v1/usage/archive/trigger}
+     *
+     * <p>不受 {@code ledger.raw-retention.enabled} 限制，搬移超過保留天數的已結算批次，
+     * 每次最多 {@code max-days-per-run} 天，可重複呼叫。
+     *
+     * @return 各日期搬移結果
+     */
+    @PostMapping("/archive/trigger")
+    public ResponseEntity<ArchiveResult> triggerArchive() {
+        log.info("API request: triggerArchive (manual)");
+        List<ArchivedDay> archived = archiveService.archiveExpired();
+        log.info("Manual raw event archive completed: {} days archived", archived.size());
+        return ResponseEntity.ok(new ArchiveResult(archived, "Archive completed"));
+    }
+
     /**
      * Flush 結果回應。
      */
@@ -331,4 +655,14 @@ public class UsageApiController {
      * 完整處理結果回應。
      */
     public record ProcessResult(int processedBatches, String message) {}
+
+    /**
+     * 日結結果回應。
+     */
+    public record FinalizationResult(List<LocalDate> finalizedDates, String message) {}
+
+    /**
+     * 冷儲存搬移結果回應。
+     */
+    public record ArchiveResult(List<ArchivedDay> archivedDays, String message) {}
 }
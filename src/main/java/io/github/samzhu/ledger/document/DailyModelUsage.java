@@ -26,6 +26,9 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
  *
  * <p>文件 ID 格式：{@code {date}_{model}}，例如 {@code 2025-12-09_claude-sonnet-4-20250514}
  *
+ * <p>日結時 {@code userIdSet} 轉為 HyperLogLog 草圖 {@code userSketch} 並移除，
+ * 之後 {@code uniqueUsers} 僅由草圖更新。
+ *
  * @see <a href="https://docs.spring.io/spring-data/mongodb/reference/mongodb/template-update.html">Spring Data MongoDB Update Operations</a>
  */
 @Document(collection = "daily_model_usage")
@@ -46,7 +49,8 @@ public record DailyModelUsage(
     int successCount,
     int errorCount,
     int uniqueUsers,
-    @JsonIgnore Set<String> userIdSet,  // Internal: Track user IDs for accurate uniqueUsers count across batches
+    @JsonIgnore Set<String> userIdSet,  // Internal: Track user IDs for accurate uniqueUsers count across batches (removed on finalization)
+    @JsonIgnore byte[] userSketch,  // Internal: HyperLogLog registers, replaces userIdSet after finalization
 
     // === 錯誤類型分布 ===
     Map<String, Integer> errorBreakdown,
@@ -66,6 +70,10 @@ public record DailyModelUsage(
     // === 成本 ===
     BigDecimal estimatedCostUsd,
 
+    // === 日結狀態 ===
+    boolean finalized,  // 日結後不再重算衍生欄位，遲到事件僅走修正路徑
+    Instant finalizedAt,
+
     Instant lastUpdatedAt
 ) {
     /**
@@ -0,0 +1,95 @@
+package io.github.samzhu.ledger.document;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import io.github.samzhu.ledger.document.DailyUserUsage.ModelBreakdown;
+
+/**
+ * 用戶日用量的模型細分子文件。
+ *
+ * <p>每個（日期、用戶、模型）一份文件，取代 {@link DailyUserUsage} 內以模型名稱為 key 的開放式 map：
+ * 用戶使用的模型再多，{@code daily_user_usage} 文件大小與每次更新的成本都固定，
+ * 模型名稱也不必改寫成合法的欄位名稱。只有顯示模型分布的查詢才讀取此集合。
+ *
+ * <p>文件 ID：{@code {usageId}_{modelId}}，例如 {@code 2025-12-09_user-uuid-123_7}，
+ * 其中 {@code modelId} 為 {@code model_dictionary} 配發的穩定數字 ID。
+ * 以 {@code usageId}（父文件 ID）查詢，並保留 {@code {date}_} 前綴以支援日期範圍聚合。
+ *
+ * @param id 文件 ID
+ * @param usageId 父文件 {@link DailyUserUsage} 的 ID
+ * @param date 日期
+ * @param userId 用戶 ID
+ * @param modelId 模型數字 ID
+ * @param model 模型名稱（原始名稱，未經改寫）
+ * @param inputTokens 輸入 token 數
+ * @param outputTokens 輸出 token 數
+ * @param cacheReadTokens Cache 讀取 token 數
+ * @param requestCount 請求次數
+ * @param successCount 成功次數
+ * @param errorCount 失敗次數
+ * @param costUsd 成本 (USD)
+ * @param lastUpdatedAt 最後更新時間
+ * @see io.github.samzhu.ledger.service.ModelDictionaryService
+ */
+@Document(collection = "daily_user_model_usage")
+public record DailyUserModelUsage(
+    @Id String id,
+    String usageId,
+    LocalDate date,
+    String userId,
+    int modelId,
+    String model,
+
+    long inputTokens,
+    long outputTokens,
+    long cacheReadTokens,
+    int requestCount,
+    int successCount,
+    int errorCount,
+    BigDecimal costUsd,
+
+    Instant lastUpdatedAt
+) {
+    /**
+     * 產生文件 ID。
+     *
+     * <p>{@code modelId} 只含數字，即使用戶 ID 含底線也不會與其他用戶的文件 ID 衝突。
+     *
+     * @param usageId 父文件 ID，格式為 {@code YYYY-MM-DD_userId}
+     * @param modelId 模型數字 ID
+     * @return 文件 ID，例如 {@code 2025-12-09_user-uuid-123_7}
+     */
+    public static String createId(String usageId, int modelId) {
+        return usageId + "_" + modelId;
+    }
+
+    /**
+     * 轉換為父文件使用的模型細分格式。
+     */
+    public ModelBreakdown toBreakdown() {
+        return new ModelBreakdown(inputTokens, outputTokens, cacheReadTokens,
+            requestCount, successCount, errorCount, costUsd != null ? costUsd : BigDecimal.ZERO);
+    }
+
+    /**
+     * 依父文件 ID 分組。
+     *
+     * @param usages 子文件
+     * @return usageId → 模型名稱 → 模型細分
+     */
+    public static Map<String, Map<String, ModelBreakdown>> groupByUsage(List<DailyUserModelUsage> usages) {
+        Map<String, Map<String, ModelBreakdown>> result = new HashMap<>();
+        for (DailyUserModelUsage usage : usages) {
+            result.computeIfAbsent(usage.usageId(), k -> new HashMap<>()).put(usage.model(), usage.toBreakdown());
+        }
+        return result;
+    }
+}
@@ -3,7 +3,9 @@ package io.github.samzhu.ledger.document;
 import java.math.BigDecimal;
 import java.time.Instant;
 import java.time.LocalDate;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.function.UnaryOperator;
 
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
@@ -26,6 +28,13 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
  *
  * <p>文件 ID 格式：{@code {date}_{userId}}，例如 {@code 2025-12-09_user-uuid-123}
  *
+ * <p>細分欄位皆有上限：錯誤分布以正規化後的錯誤類型為 key、每小時分布最多 24 個 key；
+ * 模型數量沒有上限，模型分布因此存放於 {@link DailyUserModelUsage} 子文件，
+ * 本文件的 {@code modelBreakdown} 只保留舊資料，查詢時由 {@link #withModelBreakdown} 合併子文件。
+ *
+ * <p>日結後（{@code finalized=true}）peakHour 等衍生欄位凍結、digest 降低壓縮率，
+ * 遲到事件僅以 {@code $inc} 修正計數，參見 {@link io.github.samzhu.ledger.service.DayFinalizationService}。
+ *
  * @see <a href="https://docs.spring.io/spring-data/mongodb/reference/mongodb/template-update.html">Spring Data MongoDB Update Operations</a>
  */
 @Document(collection = "daily_user_usage")
@@ -61,13 +70,17 @@ public record DailyUserUsage(
     int peakHour,
     int peakHourRequests,
 
-    // === 模型分布 ===
+    // === 模型分布（舊資料；新資料寫入 DailyUserModelUsage 子文件）===
     Map<String, ModelBreakdown> modelBreakdown,
 
     // === 成本 ===
     BigDecimal estimatedCostUsd,
     CostBreakdown costBreakdown,
 
+    // === 日結狀態 ===
+    boolean finalized,  // 日結後不再重算衍生欄位，遲到事件僅走修正路徑
+    Instant finalizedAt,
+
     Instant lastUpdatedAt
 ) {
     /**
@@ -174,6 +187,21 @@ public record DailyUserUsage(
         public static ModelBreakdown empty() {
             return new ModelBreakdown(0, 0, 0, 0, 0, 0, BigDecimal.ZERO);
         }
+
+        /**
+         * 相加兩份模型細分。
+         */
+        public ModelBreakdown plus(ModelBreakdown other) {
+            return new ModelBreakdown(
+                inputTokens + other.inputTokens,
+                outputTokens + other.outputTokens,
+                cacheReadTokens + other.cacheReadTokens,
+                requestCount + other.requestCount,
+                successCount + other.successCount,
+                errorCount + other.errorCount,
+                (costUsd != null ? costUsd : BigDecimal.ZERO)
+                    .add(other.costUsd != null ? other.costUsd : BigDecimal.ZERO));
+        }
     }
 
     /**
@@ -207,6 +235,54 @@ public record DailyUserUsage(
         }
     }
 
+    /**
+     * 合併子文件的模型分布。
+     *
+     * <p>舊文件的 {@code modelBreakdown} 以改寫後的模型名稱（{@code .}、{@code $} 換成 {@code _}）為 key，
+     * 先經 {@code legacyModelName} 還原為原始名稱，再與子文件合併，同一模型只出現一次。
+     *
+     * @param models 子文件的模型分布，可為 null
+     * @param legacyModelName 舊 key → 原始模型名稱
+     * @return 含完整模型分布的文件
+     */
+    public DailyUserUsage withModelBreakdown(Map<String, ModelBreakdown> models, UnaryOperator<String> legacyModelName) {
+        if ((models == null || models.isEmpty()) && (modelBreakdown == null || modelBreakdown.isEmpty())) {
+            return this;
+        }
+        Map<String, ModelBreakdown> merged = mergeModelBreakdown(modelBreakdown, models, legacyModelName);
+        return new DailyUserUsage(id, date, userId,
+            totalInputTokens, totalOutputTokens, totalCacheCreationTokens, totalCacheReadTokens, totalTokens,
+            requestCount, successCount, errorCount, errorBreakdown,
+            latencyStats, latencyDigest, cacheEfficiency,
+            hourlyBreakdown, peakHour, peakHourRequests,
+            merged, estimatedCostUsd, costBreakdown,
+            finalized, finalizedAt, lastUpdatedAt);
+    }
+
+    /**
+     * 合併舊 key 格式與原始模型名稱的模型分布。
+     *
+     * <p>{@code legacy} 的 key 先經 {@code legacyModelName} 還原為原始名稱，
+     * 再與 {@code models} 以原始名稱合併。月彙總的 {@code modelBreakdown} 同樣以改寫後的名稱為 key，也適用。
+     *
+     * @param legacy 以改寫後模型名稱為 key 的分布，可為 null
+     * @param models 以原始模型名稱為 key 的分布，可為 null
+     * @param legacyModelName 舊 key → 原始模型名稱
+     * @return 原始模型名稱 → 合併後的分布
+     */
+    public static Map<String, ModelBreakdown> mergeModelBreakdown(Map<String, ModelBreakdown> legacy,
+            Map<String, ModelBreakdown> models, UnaryOperator<String> legacyModelName) {
+        Map<String, ModelBreakdown> merged = new HashMap<>();
+        if (legacy != null) {
+            legacy.forEach((key, breakdown) ->
+                merged.merge(legacyModelName.apply(key), breakdown, ModelBreakdown::plus));
+        }
+        if (models != null) {
+            models.forEach((model, breakdown) -> merged.merge(model, breakdown, ModelBreakdown::plus));
+        }
+        return merged;
+    }
+
     /**
      * 產生複合主鍵。
      *
@@ -0,0 +1,90 @@
+package io.github.samzhu.ledger.document;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import io.github.samzhu.ledger.dto.UsageEventData;
+
+/**
+ * 錯誤事件文件。
+ *
+ * <p>每個失敗事件一筆精簡文件，於 {@link io.github.samzhu.ledger.service.EventBufferService} flush 時
+ * 與 {@link RawEventBatch} 一併寫入，錯誤查詢不需再展開原始批次：
+ * <ul>
+ *   <li>查詢索引 - {@code eventTime}，以及 {@code model}、{@code errorType}、{@code userId} 各自搭配 {@code eventTime}</li>
+ *   <li>保留期限 - {@code expireAt} 上的 TTL index，由 {@link io.github.samzhu.ledger.config.MongoIndexInitializer} 建立</li>
+ * </ul>
+ *
+ * <p>文件 ID 由 MongoDB/Firestore 自動產生（ObjectId）。
+ *
+ * @param batchId 來源批次 ID；僅存在於記憶體緩衝（尚未 flush）時為 null
+ */
+@Document(collection = "error_events")
+public record ErrorEvent(
+    @Id String id,
+    String batchId,
+    String userId,
+    Instant eventTime,
+    String model,
+    String status,
+    String errorType,
+    String traceId,
+    String anthropicRequestId,
+    String messageId,
+    String keyAlias,
+    long latencyMs,
+    int inputTokens,
+    int outputTokens,
+    boolean stream,
+    @Indexed(expireAfter = "0s") Instant expireAt
+) {
+    /**
+     * 從失敗的用量事件建立錯誤事件。
+     *
+     * @param event 用量事件
+     * @param batchId 來源批次 ID，可為 null
+     * @param retention 保留期限（自事件時間起算）
+     * @return 新建立的 ErrorEvent 實例
+     */
+    public static ErrorEvent from(UsageEventData event, String batchId, Duration retention) {
+        Instant eventTime = event.eventTime() != null ? event.eventTime() : Instant.now();
+        return new ErrorEvent(
+            null,
+            batchId,
+            event.userId(),
+            eventTime,
+            event.model(),
+            event.status(),
+            event.errorType(),
+            event.traceId(),
+            event.anthropicRequestId(),
+            event.messageId(),
+            event.keyAlias(),
+            event.latencyMs(),
+            event.inputTokens(),
+            event.outputTokens(),
+            event.stream(),
+            eventTime.plus(retention)
+        );
+    }
+
+    /**
+     * 是否符合篩選條件（null 表示不篩選）。
+     */
+    public boolean matches(String model, String errorType, String userId) {
+        return (model == null || model.equals(this.model))
+            && (errorType == null || errorType.equals(this.errorType))
+            && (userId == null || userId.equals(this.userId));
+    }
+
+    /**
+     * 識別同一事件的鍵，用於合併記憶體緩衝與資料庫結果時去重。
+     */
+    public String eventKey() {
+        return userId + "|" + eventTime + "|" + traceId + "|" + messageId;
+    }
+}
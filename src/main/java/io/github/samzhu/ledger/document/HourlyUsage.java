@@ -0,0 +1,129 @@
+package io.github.samzhu.ledger.document;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import io.github.samzhu.ledger.document.DailyUserUsage.LatencyStats;
+
+/**
+ * 小時粒度用量文件（bucket pattern）。
+ *
+ * <p>每個（小時、維度、鍵）一筆文件，於結算時與日用量同步以 {@code $inc} 更新：
+ * <ul>
+ *   <li>請求統計 - 成功、失敗、錯誤類型分布，可計算每小時錯誤率</li>
+ *   <li>Token 統計 - 含 Cache 讀寫 token，可計算每小時 Cache 命中率</li>
+ *   <li>延遲分析 - 小時層級 T-Digest 與百分位數</li>
+ * </ul>
+ *
+ * <p>維度 ({@code dimension})：
+ * <ul>
+ *   <li>{@code user} - key 為 userId</li>
+ *   <li>{@code model} - key 為模型名稱</li>
+ *   <li>{@code system} - key 固定為 {@value #SYSTEM_KEY}</li>
+ * </ul>
+ *
+ * <p>文件 ID 格式：{@code {yyyy-MM-dd'T'HH}_{dimension}_{key}}，
+ * 例如 {@code 2025-12-09T14_model_claude-sonnet-4-20250514}
+ *
+ * <p>保留期限：{@code expireAt} 上的 TTL index（{@code expireAfter = 0}）
+ * 由 {@link io.github.samzhu.ledger.config.MongoIndexInitializer} 建立。
+ *
+ * @see <a href="https://www.mongodb.com/docs/manual/tutorial/expire-data/">Expire Data from Collections by Setting TTL</a>
+ */
+@Document(collection = "hourly_usage")
+public record HourlyUsage(
+    @Id String id,
+    Instant hour,
+    String dimension,
+    String key,
+
+    // === Token 統計 ===
+    long totalInputTokens,
+    long totalOutputTokens,
+    long totalCacheCreationTokens,
+    long totalCacheReadTokens,
+    long totalTokens,
+
+    // === 請求統計 ===
+    int requestCount,
+    int successCount,
+    int errorCount,
+
+    // === 錯誤類型分布 ===
+    Map<String, Integer> errorBreakdown,
+
+    // === 延遲統計 ===
+    LatencyStats latencyStats,
+    @JsonIgnore byte[] latencyDigest,  // Internal: T-Digest binary data for percentile calculations
+
+    // === 成本 ===
+    BigDecimal estimatedCostUsd,
+
+    @Indexed(expireAfter = "0s") Instant expireAt,
+    Instant lastUpdatedAt
+) {
+    /** 用戶維度 */
+    public static final String DIMENSION_USER = "user";
+
+    /** 模型維度 */
+    public static final String DIMENSION_MODEL = "model";
+
+    /** 系統維度 */
+    public static final String DIMENSION_SYSTEM = "system";
+
+    /** 系統維度的固定 key */
+    public static final String SYSTEM_KEY = "all";
+
+    private static final DateTimeFormatter HOUR_FORMAT =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH").withZone(ZoneOffset.UTC);
+
+    /**
+     * 計算錯誤率。
+     *
+     * @return 錯誤率 (0.0 - 1.0)
+     */
+    public double errorRate() {
+        return requestCount > 0 ? (double) errorCount / requestCount : 0.0;
+    }
+
+    /**
+     * 計算 Cache 命中率。
+     *
+     * @return Cache 讀取 token 佔總輸入 token 的比例 (0.0 - 1.0)
+     */
+    public double cacheHitRate() {
+        return totalInputTokens > 0 ? (double) totalCacheReadTokens / totalInputTokens : 0.0;
+    }
+
+    /**
+     * 將時間截斷至 UTC 整點。
+     *
+     * @param timestamp 時間戳
+     * @return 該小時的起點
+     */
+    public static Instant truncateToHour(Instant timestamp) {
+        return timestamp.truncatedTo(ChronoUnit.HOURS);
+    }
+
+    /**
+     * 產生複合主鍵。
+     *
+     * @param hour 小時（會截斷至整點）
+     * @param dimension 維度
+     * @param key 維度鍵
+     * @return 複合 ID，格式為 {@code yyyy-MM-dd'T'HH_dimension_key}
+     */
+    public static String createId(Instant hour, String dimension, String key) {
+        return HOUR_FORMAT.format(truncateToHour(hour)) + "_" + dimension + "_" + key;
+    }
+}
@@ -0,0 +1,27 @@
+package io.github.samzhu.ledger.document;
+
+import java.time.Instant;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * 模型字典文件。
+ *
+ * <p>為每個模型名稱配發一個穩定的數字 ID，供細分子文件（例如 {@link DailyUserModelUsage}）
+ * 組成文件 ID，取代以模型名稱作為欄位 key。ID 由 {@code ledger_meta} 的序號遞增配發，
+ * 配發後不再變更；並行配發時以主鍵唯一性決定勝出者，落敗者的序號直接捨棄（ID 可不連續）。
+ *
+ * <p>文件 ID：模型名稱，例如 {@code claude-sonnet-4-20250514}
+ *
+ * @param model 模型名稱
+ * @param modelId 數字 ID（1 起算）
+ * @param createdAt 配發時間
+ * @see io.github.samzhu.ledger.service.ModelDictionaryService
+ */
+@Document(collection = "model_dictionary")
+public record ModelDictionary(
+    @Id String model,
+    int modelId,
+    Instant createdAt
+) {}
@@ -0,0 +1,70 @@
+package io.github.samzhu.ledger.document;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.util.Map;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import io.github.samzhu.ledger.document.DailyModelUsage.LatencyStats;
+
+/**
+ * 模型月用量彙總文件。
+ *
+ * <p>於結算時與 {@link DailyModelUsage} 同步增量更新。
+ * 獨立用戶數以 HyperLogLog 草圖估算（固定 4 KB），
+ * 不會像 {@code userIdSet} 一樣隨用戶數成長。
+ *
+ * <p>文件 ID 格式：{@code {yyyy-MM}_{model}}，例如 {@code 2025-12_claude-sonnet-4-20250514}
+ *
+ * @see DailyModelUsage
+ * @see io.github.samzhu.ledger.util.HyperLogLog
+ */
+@Document(collection = "monthly_model_usage")
+public record MonthlyModelUsage(
+    @Id String id,
+    int year,
+    int month,
+    String model,
+
+    // === Token 統計 ===
+    long totalInputTokens,
+    long totalOutputTokens,
+    long totalCacheCreationTokens,
+    long totalCacheReadTokens,
+    long totalTokens,
+
+    // === 請求統計 ===
+    int requestCount,
+    int successCount,
+    int errorCount,
+    int uniqueUsers,
+    @JsonIgnore byte[] userSketch,  // Internal: HyperLogLog registers for uniqueUsers estimation
+
+    // === 錯誤類型分布 ===
+    Map<String, Integer> errorBreakdown,
+
+    // === 延遲統計 ===
+    LatencyStats latencyStats,
+    @JsonIgnore byte[] latencyDigest,  // Internal: T-Digest binary data for percentile calculations
+
+    // === 成本 ===
+    BigDecimal estimatedCostUsd,
+
+    Instant lastUpdatedAt
+) {
+    /**
+     * 產生複合主鍵。
+     *
+     * @param month 年月
+     * @param model 模型名稱
+     * @return 複合 ID，格式為 {@code yyyy-MM_model}
+     */
+    public static String createId(YearMonth month, String model) {
+        return month.toString() + "_" + model;
+    }
+}
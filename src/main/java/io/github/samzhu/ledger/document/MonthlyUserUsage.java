@@ -0,0 +1,78 @@
+package io.github.samzhu.ledger.document;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import io.github.samzhu.ledger.document.DailyUserUsage.LatencyStats;
+import io.github.samzhu.ledger.document.DailyUserUsage.ModelBreakdown;
+
+/**
+ * 用戶月用量彙總文件。
+ *
+ * <p>於結算時與 {@link DailyUserUsage} 同步增量更新，
+ * 月份或年度層級的查詢只需讀取 1-12 筆文件，不必加總 30-365 筆日文件：
+ * <ul>
+ *   <li>Token 與請求統計 - 以 {@code $inc} 累加</li>
+ *   <li>延遲分析 - 月層級 T-Digest，與日 digest 相同方式合併</li>
+ *   <li>模型分布 - 供 {@link QuotaHistory} 歸檔直接使用</li>
+ *   <li>活躍天數 - 該月有用量的日期（1-31）</li>
+ * </ul>
+ *
+ * <p>文件 ID 格式：{@code {yyyy-MM}_{userId}}，例如 {@code 2025-12_user-uuid-123}
+ *
+ * @see DailyUserUsage
+ */
+@Document(collection = "monthly_user_usage")
+public record MonthlyUserUsage(
+    @Id String id,
+    int year,
+    int month,
+    String userId,
+
+    // === Token 統計 ===
+    long totalInputTokens,
+    long totalOutputTokens,
+    long totalCacheCreationTokens,
+    long totalCacheReadTokens,
+    long totalTokens,
+
+    // === 請求統計 ===
+    int requestCount,
+    int successCount,
+    int errorCount,
+    Set<Integer> activeDays,
+
+    // === 錯誤類型分布 ===
+    Map<String, Integer> errorBreakdown,
+
+    // === 延遲統計 ===
+    LatencyStats latencyStats,
+    @JsonIgnore byte[] latencyDigest,  // Internal: T-Digest binary data for percentile calculations
+
+    // === 模型分布 ===
+    Map<String, ModelBreakdown> modelBreakdown,
+
+    // === 成本 ===
+    BigDecimal estimatedCostUsd,
+
+    Instant lastUpdatedAt
+) {
+    /**
+     * 產生複合主鍵。
+     *
+     * @param month 年月
+     * @param userId 用戶 ID
+     * @return 複合 ID，格式為 {@code yyyy-MM_userId}
+     */
+    public static String createId(YearMonth month, String userId) {
+        return month.toString() + "_" + userId;
+    }
+}
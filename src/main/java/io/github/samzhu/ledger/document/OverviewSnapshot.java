@@ -0,0 +1,137 @@
+package io.github.samzhu.ledger.document;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * 系統總覽預先計算快照文件。
+ *
+ * <p>儀表板總覽固定提供幾個常用區間（今日、最近 7 天、最近 30 天），
+ * 每個區間一份文件，於結算時就地更新，讀取總覽只需一次主鍵查詢。
+ *
+ * <p>文件 ID：{@code {days}d}，例如 {@code 7d}
+ *
+ * <p>{@code stats} 內的系統日統計不含 {@code latencyDigest}、{@code userIdSet}、
+ * {@code userSketch} 等內部欄位；{@code version} 用於多實例同時更新時的樂觀鎖。
+ *
+ * @see io.github.samzhu.ledger.service.OverviewSnapshotService
+ */
+@Document(collection = "overview_snapshots")
+public record OverviewSnapshot(
+    @Id String id,
+    int days,
+    LocalDate startDate,
+    LocalDate endDate,
+
+    /** 區間內每日系統統計，依日期升冪 */
+    List<SystemStats> stats,
+    /** 累計 token 用量前幾名用戶 */
+    List<UserQuota> topUsers,
+    Summary summary,
+
+    Instant updatedAt,
+    @Version Long version
+) {
+    /**
+     * 預先計算快照的區間天數。
+     */
+    public static final List<Integer> WINDOWS = List.of(1, 7, 30);
+
+    /**
+     * 區間彙總，與儀表板總覽卡片對應。
+     *
+     * @param totalRequests 總請求數
+     * @param totalTokens 總 token 數
+     * @param totalInputTokens 總輸入 token 數
+     * @param totalOutputTokens 總輸出 token 數
+     * @param totalCostUsd 總成本 (USD)
+     * @param avgDailyCostUsd 日均成本 (USD)
+     * @param avgLatencyMs 每日平均延遲的平均
+     * @param p50LatencyMs 每日 P50 的平均
+     * @param p90LatencyMs 每日 P90 的平均
+     * @param p99LatencyMs 每日 P99 的平均
+     * @param cacheSavedUsd Cache 節省成本 (USD)
+     * @param avgCacheHitRate 每日 Cache 命中率的平均
+     */
+    public record Summary(
+        long totalRequests,
+        long totalTokens,
+        long totalInputTokens,
+        long totalOutputTokens,
+        BigDecimal totalCostUsd,
+        BigDecimal avgDailyCostUsd,
+        double avgLatencyMs,
+        double p50LatencyMs,
+        double p90LatencyMs,
+        double p99LatencyMs,
+        BigDecimal cacheSavedUsd,
+        double avgCacheHitRate
+    ) {
+        /**
+         * 由每日系統統計計算區間彙總。
+         *
+         * @param stats 每日系統統計
+         * @return 區間彙總
+         */
+        public static Summary of(List<SystemStats> stats) {
+            BigDecimal totalCost = stats.stream()
+                .map(SystemStats::totalEstimatedCostUsd)
+                .filter(cost -> cost != null)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+            BigDecimal avgDailyCost = stats.isEmpty() ? BigDecimal.ZERO
+                : totalCost.divide(BigDecimal.valueOf(stats.size()), 2, RoundingMode.HALF_UP);
+            BigDecimal cacheSaved = stats.stream()
+                .map(SystemStats::systemCacheSavedUsd)
+                .filter(saved -> saved != null)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+
+            return new Summary(
+                stats.stream().mapToLong(SystemStats::totalRequestCount).sum(),
+                stats.stream().mapToLong(SystemStats::totalTokens).sum(),
+                stats.stream().mapToLong(SystemStats::totalInputTokens).sum(),
+                stats.stream().mapToLong(SystemStats::totalOutputTokens).sum(),
+                totalCost,
+                avgDailyCost,
+                stats.stream().mapToDouble(SystemStats::avgLatencyMs).average().orElse(0),
+                stats.stream().mapToDouble(SystemStats::p50LatencyMs).average().orElse(0),
+                stats.stream().mapToDouble(SystemStats::p90LatencyMs).average().orElse(0),
+                stats.stream().mapToDouble(SystemStats::p99LatencyMs).average().orElse(0),
+                cacheSaved,
+                stats.stream().mapToDouble(SystemStats::systemCacheHitRate).average().orElse(0)
+            );
+        }
+    }
+
+    /**
+     * 是否涵蓋以 {@code today} 為結束日的區間（換日後快照即過期）。
+     */
+    public boolean isCurrent(LocalDate today) {
+        return today.equals(endDate);
+    }
+
+    /**
+     * 最後一日的系統統計。
+     *
+     * @return 最後一日統計；區間內無資料時回傳 null
+     */
+    public SystemStats lastDayStats() {
+        return stats == null || stats.isEmpty() ? null : stats.get(stats.size() - 1);
+    }
+
+    /**
+     * 使用區間天數作為文件 ID。
+     *
+     * @param days 區間天數
+     * @return 文件 ID，例如 {@code 7d}
+     */
+    public static String createId(int days) {
+        return days + "d";
+    }
+}
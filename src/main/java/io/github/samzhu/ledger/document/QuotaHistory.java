@@ -16,7 +16,7 @@ import org.springframework.data.mongodb.core.mapping.Document;
  * <ul>
  *   <li>ID 自動生成：由 MongoDB 自動產生 ObjectId</li>
  *   <li>唯一約束：userId + periodYear + periodMonth 組合唯一</li>
- *   <li>歸檔時機：Settlement 處理時檢測到週期變更</li>
+ *   <li>歸檔時機：{@code PeriodRolloverService} 排程批量換月；Settlement 檢測到週期變更時作為備援</li>
  * </ul>
  *
  * @see UserQuota
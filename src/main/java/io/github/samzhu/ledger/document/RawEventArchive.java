@@ -0,0 +1,56 @@
+package io.github.samzhu.ledger.document;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * 原始事件批次冷儲存區段文件。
+ *
+ * <p>已結算且超過保留天數的 {@link RawEventBatch} 依建立日期（UTC）分段壓縮保存：
+ * <ul>
+ *   <li>{@code payload} - 批次原始 BSON 文件依 {@code _id} 順序串接後以 gzip 壓縮，
+ *       每份 BSON 自帶長度前綴，解壓後逐份讀回即為原文件（型別不失真）</li>
+ *   <li>每段未壓縮大小不超過 {@code ledger.raw-retention.segment-max-mb}，確保壓縮後低於 16MB 文件上限</li>
+ *   <li>不建立額外索引，以 {@code _id} 日期前綴範圍查詢</li>
+ * </ul>
+ *
+ * <p>文件 ID：{@code {date}_{firstBatchId}}，重跑時覆寫同一區段；
+ * 區段切分改變時同一批次可能出現在兩個區段，讀取端以 {@code batchIds} 去重。
+ *
+ * @see io.github.samzhu.ledger.service.RawEventArchiveService
+ */
+@Document(collection = "raw_event_archive")
+public record RawEventArchive(
+    @Id String id,
+    LocalDate date,
+
+    /** 區段內的批次 ID，依 {@code _id} 升冪 */
+    List<String> batchIds,
+    int batchCount,
+    int eventCount,
+
+    /** 編碼方式，目前為 {@value #CODEC_BSON_GZIP} */
+    String codec,
+    /** 未壓縮大小（bytes） */
+    long rawBytes,
+    byte[] payload,
+
+    Instant archivedAt
+) {
+    public static final String CODEC_BSON_GZIP = "bson-gzip";
+
+    /**
+     * 使用日期與區段第一個批次 ID 作為文件 ID。
+     *
+     * @param date 批次建立日期（UTC）
+     * @param firstBatchId 區段第一個批次 ID
+     * @return 文件 ID
+     */
+    public static String createId(LocalDate date, String firstBatchId) {
+        return date + "_" + firstBatchId;
+    }
+}
@@ -1,7 +1,13 @@
 package io.github.samzhu.ledger.document;
 
+import java.math.BigDecimal;
 import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
@@ -23,6 +29,12 @@ import io.github.samzhu.ledger.dto.UsageEventData;
  * <p>{@code processed} 欄位標記此批次是否已完成分析結算。
  * 新建的批次預設為 {@code false}，完成聚合統計後更新為 {@code true}。
  *
+ * <p>{@code deltas} 為 flush 時依（用戶、模型、UTC 日期）彙整的用量增量，
+ * 查詢疊加未結算用量時只需讀取此欄位，不必載入完整事件。
+ *
+ * <p>已結算且超過保留天數的批次由 {@code RawEventArchiveService} 壓縮搬移到冷儲存
+ * （{@link RawEventArchive}），並設定 {@code archivedAt} 與 {@code expireAt}，由 TTL index 於寬限期後刪除。
+ *
  * <p>成本效益分析（假設 Firestore 定價）：
  * <pre>
  * 每事件一文件：10,000 events × $0.18/100K writes = $0.018/day
@@ -38,22 +50,97 @@ public record RawEventBatch(
     List<UsageEventData> events,
     int eventCount,
     Instant createdAt,
-    boolean processed
+    boolean processed,
+    List<UsageDelta> deltas,
+    Instant archivedAt,
+    Instant expireAt
 ) {
+    /**
+     * 單一（用戶、模型、UTC 日期）的用量增量。
+     *
+     * @param userId 用戶 ID
+     * @param model 模型名稱
+     * @param date 事件 UTC 日期
+     * @param requestCount 請求次數
+     * @param inputTokens 輸入 token 數（含 cache 讀寫）
+     * @param outputTokens 輸出 token 數
+     * @param totalTokens 總 token 數
+     * @param costUsd 預估成本 (USD)
+     */
+    public record UsageDelta(
+        String userId,
+        String model,
+        LocalDate date,
+        int requestCount,
+        long inputTokens,
+        long outputTokens,
+        long totalTokens,
+        BigDecimal costUsd
+    ) {
+        /**
+         * 依（用戶、模型、UTC 日期）彙整事件。
+         *
+         * @param events 用量事件
+         * @param cost 單一事件的成本計算
+         * @return 用量增量列表
+         */
+        public static List<UsageDelta> summarize(List<UsageEventData> events, Function<UsageEventData, BigDecimal> cost) {
+            Map<String, UsageDelta> deltas = new LinkedHashMap<>();
+            for (UsageEventData event : events) {
+                UsageDelta delta = of(event, cost.apply(event));
+                deltas.merge(delta.key(), delta, UsageDelta::plus);
+            }
+            return List.copyOf(deltas.values());
+        }
+
+        /**
+         * 單一事件的用量增量。
+         *
+         * @param event 用量事件
+         * @param costUsd 事件的預估成本
+         * @return 用量增量
+         */
+        public static UsageDelta of(UsageEventData event, BigDecimal costUsd) {
+            LocalDate date = event.eventTime().atZone(ZoneOffset.UTC).toLocalDate();
+            return new UsageDelta(event.userId(), event.model(), date, 1,
+                event.totalInputTokens(), event.outputTokens(), event.totalTokens(), costUsd);
+        }
+
+        /**
+         * 彙整鍵（用戶、模型、UTC 日期）。
+         */
+        public String key() {
+            return userId + "|" + model + "|" + date;
+        }
+
+        /**
+         * 與同鍵的增量相加。
+         */
+        public UsageDelta plus(UsageDelta other) {
+            return new UsageDelta(userId, model, date,
+                requestCount + other.requestCount,
+                inputTokens + other.inputTokens,
+                outputTokens + other.outputTokens,
+                totalTokens + other.totalTokens,
+                costUsd.add(other.costUsd));
+        }
+    }
+
     /**
      * 從事件列表建立新的批次文件。
      *
      * <p>ID 設為 null，由 MongoDB/Firestore 自動產生 ObjectId。
      *
      * @param events 要批次儲存的用量事件列表
+     * @param deltas 事件彙整的用量增量
      * @return 新建立的 RawEventBatch 實例
      * @throws IllegalArgumentException 如果事件列表為空
      */
-    public static RawEventBatch create(List<UsageEventData> events) {
+    public static RawEventBatch create(List<UsageEventData> events, List<UsageDelta> deltas) {
         if (events.isEmpty()) {
             throw new IllegalArgumentException("Events list cannot be empty");
         }
 
-        return new RawEventBatch(null, events, events.size(), Instant.now(), false);
+        return new RawEventBatch(null, events, events.size(), Instant.now(), false, deltas, null, null);
     }
 }
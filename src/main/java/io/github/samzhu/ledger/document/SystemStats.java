@@ -27,6 +27,12 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
  *
  * <p>文件 ID：日期字串，格式為 {@code YYYY-MM-DD}
  *
+ * <p>此文件同時作為該日的日結標記：{@code finalized=true} 表示當日所有日用量文件已完成日結，
+ * topModels/topUsers 為最終結果。
+ *
+ * <p>啟用分片計數器的日期，文件帶有 {@code sharded=true}，計數寫入 {@link SystemStatsShard}，
+ * 此文件由每次結算結束時的合併結果整份覆寫。
+ *
  * @see <a href="https://docs.spring.io/spring-data/mongodb/reference/mongodb/template-update.html">Spring Data MongoDB Update Operations</a>
  */
 @Document(collection = "system_stats")
@@ -38,9 +44,11 @@ public record SystemStats(
     long totalInputTokens,
     long totalOutputTokens,
     long totalTokens,
+    long totalCacheReadTokens,
     int totalRequestCount,
     int uniqueUsers,
-    @JsonIgnore Set<String> userIdSet,  // Internal: Track user IDs for accurate uniqueUsers count across batches
+    @JsonIgnore Set<String> userIdSet,  // Internal: Track user IDs for accurate uniqueUsers count across batches (removed on finalization)
+    @JsonIgnore byte[] userSketch,  // Internal: HyperLogLog registers, replaces userIdSet after finalization
     BigDecimal totalEstimatedCostUsd,
 
     // === 成功率 ===
@@ -53,6 +61,7 @@ public record SystemStats(
     double p50LatencyMs,
     double p90LatencyMs,
     double p99LatencyMs,
+    @JsonIgnore byte[] latencyDigest,  // Internal: T-Digest binary data, merged across batches for day-level percentiles
 
     // === Cache 效率 ===
     double systemCacheHitRate,
@@ -67,6 +76,10 @@ public record SystemStats(
     List<TopItem> topModels,
     List<TopItem> topUsers,
 
+    // === 日結狀態 ===
+    boolean finalized,  // 日結後不再重算衍生欄位，遲到事件僅走修正路徑
+    Instant finalizedAt,
+
     Instant lastUpdatedAt
 ) {
     /**
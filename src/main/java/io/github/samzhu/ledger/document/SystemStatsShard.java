@@ -0,0 +1,60 @@
+package io.github.samzhu.ledger.document;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * 系統日統計分片計數器文件。
+ *
+ * <p>啟用分片計數器時，結算不直接寫入 {@code system_stats/{date}}，而是依批次雜湊選擇一份分片 {@code $inc}，
+ * 每次結算結束時由 {@link io.github.samzhu.ledger.service.SystemStatsShardService} 合併所有分片，
+ * 以 {@code $set} 寫回 {@link SystemStats}（唯讀端照常讀取 {@code system_stats}）。
+ *
+ * <p>只保存可合併的累計值：計數與成本直接相加、{@code userIdSet} 取聯集、{@code latencyDigest} 合併，
+ * 平均延遲由 {@code totalLatencyMs} 除以請求數計算；比率、百分位與排行榜於合併時重算。
+ * 日結後分片換成只含 {@code sealed=true} 的封存文件，擋下日結當下仍在進行的批次，數日後清除。
+ *
+ * <p>文件 ID：{@code {date}_{shard}}，例如 {@code 2025-01-15_3}
+ *
+ * @see SystemStats
+ */
+@Document(collection = "system_stats_shards")
+public record SystemStatsShard(
+    @Id String id,
+    LocalDate date,
+    int shard,
+
+    long totalInputTokens,
+    long totalOutputTokens,
+    long totalTokens,
+    long totalCacheReadTokens,
+    int totalRequestCount,
+    BigDecimal totalEstimatedCostUsd,
+    int successCount,
+    int errorCount,
+    /** 延遲總和（毫秒），合併時計算平均延遲 */
+    long totalLatencyMs,
+    BigDecimal systemCacheSavedUsd,
+    Map<Integer, Integer> hourlyRequestCount,
+    Set<String> userIdSet,
+    byte[] latencyDigest,
+
+    Instant lastUpdatedAt
+) {
+    /**
+     * 使用日期與分片編號作為文件 ID。
+     *
+     * @param date 日期
+     * @param shard 分片編號（0 起算）
+     * @return 文件 ID，例如 {@code 2025-01-15_3}
+     */
+    public static String createId(LocalDate date, int shard) {
+        return date + "_" + shard;
+    }
+}
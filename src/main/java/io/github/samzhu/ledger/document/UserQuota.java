@@ -135,6 +135,30 @@ public record UserQuota(
         return "OK";
     }
 
+    /**
+     * 加上尚未結算的當期用量，重新計算使用率與超額狀態（僅供查詢回應，不寫回資料庫）。
+     *
+     * @param inputTokens 未結算輸入 Token 數
+     * @param outputTokens 未結算輸出 Token 數
+     * @param tokens 未結算總 Token 數
+     * @param requestCount 未結算請求次數
+     * @param costUsd 未結算成本 (USD)
+     * @return 疊加後的配額文件
+     */
+    public UserQuota plusPeriodUsage(long inputTokens, long outputTokens, long tokens, int requestCount, double costUsd) {
+        double periodCost = periodCostUsd + costUsd;
+        double usagePercent = calculateCostUsagePercent(periodCost, getEffectiveCostLimit());
+        return new UserQuota(id, userId, periodYear, periodMonth, periodStartAt, periodEndAt,
+            totalInputTokens + inputTokens, totalOutputTokens + outputTokens, totalTokens + tokens,
+            totalRequestCount + requestCount, totalEstimatedCostUsd + costUsd,
+            quotaEnabled, costLimitUsd,
+            periodInputTokens + inputTokens, periodOutputTokens + outputTokens, periodTokens + tokens,
+            periodCost, periodRequestCount + requestCount,
+            bonusCostUsd, bonusReason, bonusGrantedAt,
+            usagePercent, quotaEnabled && usagePercent >= 100,
+            firstSeenAt, lastActiveAt, lastUpdatedAt);
+    }
+
     /**
      * 計算成本使用率。
      *
@@ -11,10 +11,12 @@ import io.github.samzhu.ledger.util.PeriodUtils;
  * 額外額度歷史 API 回應。
  *
  * <p>用於 GET /api/v1/quota/users/{userId}/bonus-history 端點。
+ * {@code nextCursor} 為下一頁的 keyset 游標，最後一頁時為 null。
  */
 public record BonusHistoryResponse(
     String userId,
-    List<BonusItem> records
+    List<BonusItem> records,
+    String nextCursor
 ) {
 
     /**
@@ -35,6 +37,13 @@ public record BonusHistoryResponse(
      * 從 BonusRecord 列表建立回應物件。
      */
     public static BonusHistoryResponse fromRecordList(String userId, List<BonusRecord> records) {
+        return fromRecordList(userId, records, null);
+    }
+
+    /**
+     * 從 BonusRecord 列表與下一頁游標建立回應物件。
+     */
+    public static BonusHistoryResponse fromRecordList(String userId, List<BonusRecord> records, String nextCursor) {
         List<BonusItem> items = records.stream()
             .map(r -> new BonusItem(
                 r.id(),
@@ -48,6 +57,6 @@ public record BonusHistoryResponse(
             ))
             .toList();
 
-        return new BonusHistoryResponse(userId, items);
+        return new BonusHistoryResponse(userId, items, nextCursor);
     }
 }
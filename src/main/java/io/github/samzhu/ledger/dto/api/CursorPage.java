@@ -0,0 +1,41 @@
+package io.github.samzhu.ledger.dto.api;
+
+import java.util.List;
+import java.util.function.Function;
+
+import org.springframework.data.domain.Window;
+
+import io.github.samzhu.ledger.util.KeysetCursor;
+
+/**
+ * Keyset 分頁 API 回應。
+ *
+ * <p>以不透明游標 {@code nextCursor} 取代頁碼；將其作為下一次請求的 {@code cursor} 參數即可取得下一頁。
+ * 不提供總筆數，避免每頁額外的 {@code count} 查詢。
+ *
+ * @param items 本頁資料
+ * @param nextCursor 下一頁游標，最後一頁時為 null
+ * @param hasNext 是否還有下一頁
+ * @param <T> 資料型別
+ */
+public record CursorPage<T>(
+    List<T> items,
+    String nextCursor,
+    boolean hasNext
+) {
+
+    /**
+     * 從查詢結果視窗建立回應。
+     *
+     * @param window 查詢結果視窗
+     * @param mapper 資料轉換函式
+     * @return 分頁回應
+     */
+    public static <S, T> CursorPage<T> from(Window<S> window, Function<? super S, ? extends T> mapper) {
+        List<T> items = window.getContent().stream()
+            .<T>map(mapper)
+            .toList();
+        String nextCursor = KeysetCursor.next(window);
+        return new CursorPage<>(items, nextCursor, nextCursor != null);
+    }
+}
@@ -3,7 +3,7 @@ package io.github.samzhu.ledger.dto.api;
 import java.time.Instant;
 import java.util.List;
 
-import io.github.samzhu.ledger.service.ErrorQueryService.ErrorEvent;
+import io.github.samzhu.ledger.document.ErrorEvent;
 
 /**
  * 錯誤事件列表 API 回應。
@@ -0,0 +1,50 @@
+package io.github.samzhu.ledger.dto.api;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+import io.github.samzhu.ledger.document.HourlyUsage;
+
+/**
+ * API 回應中的單小時用量資料。
+ *
+ * <p>用於小時層級的趨勢圖表，時間為 ISO 8601 UTC 整點。
+ *
+ * @param hour 小時起點 (UTC)
+ * @param requests 請求數
+ * @param errorRate 錯誤率 (0.0 - 1.0)
+ * @param totalTokens 總 token 數
+ * @param cacheHitRate Cache 命中率 (0.0 - 1.0)
+ * @param costUsd 成本（美元）
+ * @param p50LatencyMs P50 延遲（毫秒）
+ * @param p90LatencyMs P90 延遲（毫秒）
+ * @param p99LatencyMs P99 延遲（毫秒）
+ */
+public record HourlyUsagePoint(
+    Instant hour,
+    int requests,
+    double errorRate,
+    long totalTokens,
+    double cacheHitRate,
+    BigDecimal costUsd,
+    double p50LatencyMs,
+    double p90LatencyMs,
+    double p99LatencyMs
+) {
+    /**
+     * 從小時用量文件轉換。
+     */
+    public static HourlyUsagePoint from(HourlyUsage usage) {
+        return new HourlyUsagePoint(
+            usage.hour(),
+            usage.requestCount(),
+            usage.errorRate(),
+            usage.totalTokens(),
+            usage.cacheHitRate(),
+            usage.estimatedCostUsd() != null ? usage.estimatedCostUsd() : BigDecimal.ZERO,
+            usage.latencyStats() != null ? usage.latencyStats().p50Ms() : 0.0,
+            usage.latencyStats() != null ? usage.latencyStats().p90Ms() : 0.0,
+            usage.latencyStats() != null ? usage.latencyStats().p99Ms() : 0.0
+        );
+    }
+}
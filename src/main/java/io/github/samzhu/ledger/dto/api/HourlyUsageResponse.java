@@ -0,0 +1,20 @@
+package io.github.samzhu.ledger.dto.api;
+
+import java.util.List;
+
+/**
+ * 小時用量查詢 API 回應。
+ *
+ * <p>僅包含有用量的小時，無資料的小時不會出現在列表中。
+ *
+ * @param dimension 維度（user、model、system）
+ * @param key 維度鍵（userId、模型名稱或 {@code all}）
+ * @param period 查詢期間
+ * @param hourly 每小時明細列表，依時間升序
+ */
+public record HourlyUsageResponse(
+    String dimension,
+    String key,
+    DatePeriod period,
+    List<HourlyUsagePoint> hourly
+) {}
@@ -0,0 +1,28 @@
+package io.github.samzhu.ledger.dto.api;
+
+import java.util.Map;
+
+/**
+ * 區間延遲百分位查詢 API 回應。
+ *
+ * @param dimension 維度（user、model、system）
+ * @param key 維度鍵（userId、模型名稱或 {@code all}）
+ * @param period 查詢期間
+ * @param days 有延遲資料的天數
+ * @param count 樣本數
+ * @param minMs 最小延遲（毫秒）
+ * @param maxMs 最大延遲（毫秒）
+ * @param avgMs 平均延遲（毫秒）
+ * @param percentiles 各百分位延遲（毫秒），key 如 {@code p50}、{@code p99.9}
+ */
+public record LatencyPercentileResponse(
+    String dimension,
+    String key,
+    DatePeriod period,
+    int days,
+    long count,
+    long minMs,
+    long maxMs,
+    double avgMs,
+    Map<String, Double> percentiles
+) {}
@@ -0,0 +1,32 @@
+package io.github.samzhu.ledger.dto.api;
+
+import java.math.BigDecimal;
+
+/**
+ * API 回應中的單月用量資料。
+ *
+ * <p>由月彙總文件直接轉換，用於月度趨勢圖表或年度報表。
+ *
+ * @param month 年月，格式為 {@code yyyy-MM}
+ * @param inputTokens 輸入 token 數
+ * @param outputTokens 輸出 token 數
+ * @param totalTokens 總 token 數
+ * @param requests 請求數
+ * @param costUsd 當月成本（美元）
+ * @param p50LatencyMs 當月 P50 延遲（毫秒）
+ * @param p99LatencyMs 當月 P99 延遲（毫秒）
+ * @param activeDays 活躍天數（僅用戶查詢，模型查詢為 null）
+ * @param uniqueUsers 獨立用戶數估算（僅模型查詢，用戶查詢為 null）
+ */
+public record MonthlyUsage(
+    String month,
+    long inputTokens,
+    long outputTokens,
+    long totalTokens,
+    int requests,
+    BigDecimal costUsd,
+    double p50LatencyMs,
+    double p99LatencyMs,
+    Integer activeDays,
+    Integer uniqueUsers
+) {}
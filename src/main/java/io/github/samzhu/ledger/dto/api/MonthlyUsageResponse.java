@@ -0,0 +1,20 @@
+package io.github.samzhu.ledger.dto.api;
+
+import java.util.List;
+
+/**
+ * 月用量查詢 API 回應。
+ *
+ * <p>用戶或模型在多個月份的用量，讀取月彙總文件（每月 1 筆）。
+ *
+ * @param subject 查詢對象（userId 或模型名稱）
+ * @param period 查詢期間（起始月 1 號至結束月最後一天）
+ * @param summary 期間用量摘要
+ * @param monthly 每月明細列表
+ */
+public record MonthlyUsageResponse(
+    String subject,
+    DatePeriod period,
+    UsageSummary summary,
+    List<MonthlyUsage> monthly
+) {}
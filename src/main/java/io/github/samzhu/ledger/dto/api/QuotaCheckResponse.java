@@ -0,0 +1,39 @@
+package io.github.samzhu.ledger.dto.api;
+
+import io.github.samzhu.ledger.service.QuotaSnapshotService.QuotaCheck;
+
+/**
+ * 配額檢查 API 回應。
+ *
+ * <p>用於 GET /api/v1/quota/check/{userId} 端點，供閘道於轉送請求前判斷是否放行。
+ *
+ * @param userId 用戶 ID
+ * @param allowed 是否放行
+ * @param status 狀態：UNLIMITED、OK、EXCEEDED
+ * @param remainingUsd 剩餘額度 (USD)，未啟用配額時為 null
+ * @param periodToken 當前週期（yyyy-MM），與先前結果不同時表示已換月
+ * @param snapshotVersion 快照版本，每次快照更新遞增
+ */
+public record QuotaCheckResponse(
+    String userId,
+    boolean allowed,
+    String status,
+    Double remainingUsd,
+    String periodToken,
+    long snapshotVersion
+) {
+
+    /**
+     * 從配額檢查結果建立回應物件。
+     */
+    public static QuotaCheckResponse from(String userId, QuotaCheck check) {
+        return new QuotaCheckResponse(
+            userId,
+            check.allowed(),
+            check.status(),
+            check.remainingUsd(),
+            check.periodToken(),
+            check.snapshotVersion()
+        );
+    }
+}
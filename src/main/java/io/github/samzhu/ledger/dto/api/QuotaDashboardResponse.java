@@ -1,7 +1,9 @@
 package io.github.samzhu.ledger.dto.api;
 
 import java.time.Instant;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import io.github.samzhu.ledger.document.UserQuota;
 
@@ -20,12 +22,16 @@ public record QuotaDashboardResponse(
 
     /**
      * Dashboard summary statistics.
+     *
+     * <p>{@code usageLevels} counts users per usage level (OK, WARNING, CRITICAL, EXCEEDED)
+     * across all quota-enabled users, not just the returned page.
      */
     public record Summary(
         int quotaEnabledCount,
         int exceededCount,
         double totalPeriodCostUsd,
-        double totalBonusGrantedUsd
+        double totalBonusGrantedUsd,
+        Map<String, Long> usageLevels
     ) {}
 
     /**
@@ -120,17 +126,32 @@ public record QuotaDashboardResponse(
             .mapToDouble(UserQuota::bonusCostUsd)
             .sum();
 
+        Map<String, Long> usageLevels = new LinkedHashMap<>();
+        usersWithQuota.forEach(q -> usageLevels.merge(q.getUsageLevel(), 1L, Long::sum));
+
         Summary summary = new Summary(
             quotaEnabledCount,
             exceededCount,
             totalPeriodCost,
-            totalBonus
+            totalBonus,
+            usageLevels
         );
 
-        List<QuotaUserItem> users = usersWithQuota.stream()
+        return of(summary, usersWithQuota);
+    }
+
+    /**
+     * Create dashboard response from pre-aggregated summary and a page of users.
+     *
+     * @param summary Summary statistics computed over all quota-enabled users
+     * @param users Page of quota-enabled users (already sorted)
+     * @return Dashboard response
+     */
+    public static QuotaDashboardResponse of(Summary summary, List<UserQuota> users) {
+        List<QuotaUserItem> items = users.stream()
             .map(QuotaUserItem::fromUserQuota)
             .toList();
 
-        return new QuotaDashboardResponse(summary, users, Instant.now());
+        return new QuotaDashboardResponse(summary, items, Instant.now());
     }
 }
@@ -4,6 +4,7 @@ import java.math.BigDecimal;
 import java.time.Instant;
 import java.util.List;
 import java.util.Map;
+import java.util.function.UnaryOperator;
 
 import io.github.samzhu.ledger.document.QuotaHistory;
 import io.github.samzhu.ledger.util.PeriodUtils;
@@ -12,10 +13,12 @@ import io.github.samzhu.ledger.util.PeriodUtils;
  * 配額歷史 API 回應。
  *
  * <p>用於 GET /api/v1/quota/users/{userId}/history 端點。
+ * {@code nextCursor} 為下一頁的 keyset 游標，最後一頁時為 null。
  */
 public record QuotaHistoryResponse(
     String userId,
-    List<HistoryItem> history
+    List<HistoryItem> history,
+    String nextCursor
 ) {
 
     /**
@@ -64,6 +67,24 @@ public record QuotaHistoryResponse(
      * 從 QuotaHistory 列表建立回應物件。
      */
     public static QuotaHistoryResponse fromHistoryList(String userId, List<QuotaHistory> histories) {
+        return fromHistoryList(userId, histories, null);
+    }
+
+    /**
+     * 從 QuotaHistory 列表與下一頁游標建立回應物件。
+     */
+    public static QuotaHistoryResponse fromHistoryList(String userId, List<QuotaHistory> histories, String nextCursor) {
+        return fromHistoryList(userId, histories, nextCursor, UnaryOperator.identity());
+    }
+
+    /**
+     * 從 QuotaHistory 列表與下一頁游標建立回應物件，並還原模型名稱。
+     *
+     * <p>歷史記錄的模型 key 為欄位名稱格式（{@code .}、{@code $} 換成 {@code _}），
+     * 經 {@code modelName} 還原為原始模型名稱。
+     */
+    public static QuotaHistoryResponse fromHistoryList(String userId, List<QuotaHistory> histories, String nextCursor,
+            UnaryOperator<String> modelName) {
         List<HistoryItem> items = histories.stream()
             .map(h -> new HistoryItem(
                 h.id(),
@@ -82,26 +103,27 @@ public record QuotaHistoryResponse(
                 ),
                 h.finalUsagePercent(),
                 h.wasExceeded(),
-                buildModelBreakdown(h),
+                buildModelBreakdown(h, modelName),
                 h.archivedAt()
             ))
             .toList();
 
-        return new QuotaHistoryResponse(userId, items);
+        return new QuotaHistoryResponse(userId, items, nextCursor);
     }
 
-    private static Map<String, ModelDetail> buildModelBreakdown(QuotaHistory h) {
+    private static Map<String, ModelDetail> buildModelBreakdown(QuotaHistory h, UnaryOperator<String> modelName) {
         if (h.modelTokens() == null || h.modelCosts() == null) {
             return Map.of();
         }
 
         return h.modelTokens().entrySet().stream()
             .collect(java.util.stream.Collectors.toMap(
-                Map.Entry::getKey,
+                e -> modelName.apply(e.getKey()),
                 e -> new ModelDetail(
                     e.getValue(),
                     BigDecimal.valueOf(h.modelCosts().getOrDefault(e.getKey(), 0.0))
-                )
+                ),
+                (a, b) -> new ModelDetail(a.tokens() + b.tokens(), a.costUsd().add(b.costUsd()))
             ));
     }
 }
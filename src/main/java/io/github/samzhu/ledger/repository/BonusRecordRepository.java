@@ -2,8 +2,11 @@ package io.github.samzhu.ledger.repository;
 
 import java.util.List;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
 import org.springframework.data.mongodb.repository.MongoRepository;
 
 import io.github.samzhu.ledger.document.BonusRecord;
@@ -35,6 +38,16 @@ public interface BonusRecordRepository extends MongoRepository<BonusRecord, Stri
      */
     Page<BonusRecord> findByUserIdOrderByCreatedAtDesc(String userId, Pageable pageable);
 
+    /**
+     * Keyset 捲動查詢用戶額外額度記錄，按建立時間降序（{@code _id} 為同值排序鍵）。
+     *
+     * @param userId 用戶唯一識別碼
+     * @param position 捲動位置（上一頁最後一筆的鍵值）
+     * @param limit 每頁筆數
+     * @return 查詢結果視窗
+     */
+    Window<BonusRecord> findByUserIdOrderByCreatedAtDescIdDesc(String userId, ScrollPosition position, Limit limit);
+
     /**
      * 查詢用戶特定月份的額外額度記錄（查看該月給予的所有額度）。
      *
@@ -3,6 +3,7 @@ package io.github.samzhu.ledger.repository;
 import java.util.List;
 
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 
 import io.github.samzhu.ledger.document.DailyModelUsage;
 
@@ -21,16 +22,33 @@ import io.github.samzhu.ledger.document.DailyModelUsage;
 public interface DailyModelUsageRepository extends MongoRepository<DailyModelUsage, String> {
 
     /**
-     * 批次查詢多筆文件。
+     * 批次查詢多筆文件（顯示用）。
      *
      * <p>使用 MongoDB {@code $in} 運算子優化批次查詢效能，
      * 適用於一次查詢多個模型在特定日期區間的用量。
+     * 不載入 {@code latencyDigest}、{@code userIdSet}、{@code userSketch}（僅供結算使用），
+     * 回傳文件中這些欄位為 null。
      *
      * @param ids 複合 ID 列表，格式為 {@code YYYY-MM-DD_model}
      * @return 符合條件的文件列表
      */
+    @Query(value = "{ '_id': { '$in': ?0 } }", fields = "{ 'latencyDigest': 0, 'userIdSet': 0, 'userSketch': 0 }")
     List<DailyModelUsage> findByIdIn(List<String> ids);
 
+    /**
+     * 批次查詢多筆文件，僅載入總計欄位。
+     *
+     * <p>供只顯示每日總計的頁面使用，不載入錯誤與小時分布；未載入的欄位為 null 或 0。
+     *
+     * @param ids 複合 ID 列表，格式為 {@code YYYY-MM-DD_model}
+     * @return 符合條件的文件列表
+     */
+    @Query(value = "{ '_id': { '$in': ?0 } }", fields = "{ 'date': 1, 'model': 1, 'totalInputTokens': 1, 'totalOutputTokens': 1, "
+        + "'totalCacheCreationTokens': 1, 'totalCacheReadTokens': 1, 'totalTokens': 1, "
+        + "'requestCount': 1, 'successCount': 1, 'errorCount': 1, 'uniqueUsers': 1, 'latencyStats': 1, "
+        + "'estimatedCostUsd': 1, 'finalized': 1, 'lastUpdatedAt': 1 }")
+    List<DailyModelUsage> findTotalsByIdIn(List<String> ids);
+
     /**
      * 查詢特定模型的所有日用量，依日期降序排列。
      *
@@ -0,0 +1,26 @@
+package io.github.samzhu.ledger.repository;
+
+import java.util.List;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import io.github.samzhu.ledger.document.DailyUserModelUsage;
+
+/**
+ * 用戶日用量模型細分資料存取介面。
+ *
+ * <p>提供對 {@code daily_user_model_usage} 集合的查詢，
+ * 寫入操作透過 {@link io.github.samzhu.ledger.service.UsageAggregationService} 使用 bulk upsert 完成。
+ *
+ * @see io.github.samzhu.ledger.document.DailyUserModelUsage
+ */
+public interface DailyUserModelUsageRepository extends MongoRepository<DailyUserModelUsage, String> {
+
+    /**
+     * 查詢多筆用戶日用量的模型細分。
+     *
+     * @param usageIds 父文件 ID 列表，格式為 {@code YYYY-MM-DD_userId}
+     * @return 符合條件的子文件
+     */
+    List<DailyUserModelUsage> findByUsageIdIn(List<String> usageIds);
+}
@@ -3,6 +3,7 @@ package io.github.samzhu.ledger.repository;
 import java.util.List;
 
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 
 import io.github.samzhu.ledger.document.DailyUserUsage;
 
@@ -21,16 +22,33 @@ import io.github.samzhu.ledger.document.DailyUserUsage;
 public interface DailyUserUsageRepository extends MongoRepository<DailyUserUsage, String> {
 
     /**
-     * 批次查詢多筆文件。
+     * 批次查詢多筆文件（顯示用）。
      *
      * <p>使用 MongoDB {@code $in} 運算子優化批次查詢效能，
      * 適用於一次查詢多個用戶在特定日期區間的用量。
+     * 不載入 {@code latencyDigest}（僅供結算與百分位合併使用），回傳文件中該欄位為 null。
      *
      * @param ids 複合 ID 列表，格式為 {@code YYYY-MM-DD_userId}
      * @return 符合條件的文件列表
      */
+    @Query(value = "{ '_id': { '$in': ?0 } }", fields = "{ 'latencyDigest': 0 }")
     List<DailyUserUsage> findByIdIn(List<String> ids);
 
+    /**
+     * 批次查詢多筆文件，僅載入總計欄位。
+     *
+     * <p>供只顯示每日總計與延遲統計的頁面使用，不載入錯誤、小時、模型與成本細分；
+     * 未載入的欄位為 null 或 0。
+     *
+     * @param ids 複合 ID 列表，格式為 {@code YYYY-MM-DD_userId}
+     * @return 符合條件的文件列表
+     */
+    @Query(value = "{ '_id': { '$in': ?0 } }", fields = "{ 'date': 1, 'userId': 1, 'totalInputTokens': 1, 'totalOutputTokens': 1, "
+        + "'totalCacheCreationTokens': 1, 'totalCacheReadTokens': 1, 'totalTokens': 1, "
+        + "'requestCount': 1, 'successCount': 1, 'errorCount': 1, 'latencyStats': 1, "
+        + "'estimatedCostUsd': 1, 'finalized': 1, 'lastUpdatedAt': 1 }")
+    List<DailyUserUsage> findTotalsByIdIn(List<String> ids);
+
     /**
      * 查詢特定用戶的所有日用量，依日期降序排列。
      *
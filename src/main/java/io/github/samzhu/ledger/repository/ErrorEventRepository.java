@@ -0,0 +1,17 @@
+package io.github.samzhu.ledger.repository;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import io.github.samzhu.ledger.document.ErrorEvent;
+
+/**
+ * 錯誤事件資料存取介面。
+ *
+ * <p>提供對 {@code error_events} 集合的寫入操作，由
+ * {@link io.github.samzhu.ledger.service.EventBufferService} 在 flush 時寫入。
+ * 篩選查詢由 {@link io.github.samzhu.ledger.service.ErrorQueryService} 以 MongoTemplate 組合條件執行。
+ *
+ * @see io.github.samzhu.ledger.document.ErrorEvent
+ */
+public interface ErrorEventRepository extends MongoRepository<ErrorEvent, String> {
+}
@@ -0,0 +1,31 @@
+package io.github.samzhu.ledger.repository;
+
+import java.util.List;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+
+import io.github.samzhu.ledger.document.HourlyUsage;
+
+/**
+ * 小時粒度用量資料存取介面。
+ *
+ * <p>提供對 {@code hourly_usage} 集合的查詢。
+ * 寫入操作透過 {@link io.github.samzhu.ledger.service.UsageAggregationService}
+ * 使用 MongoTemplate bulk upsert 完成，過期文件由 TTL index 刪除。
+ *
+ * @see io.github.samzhu.ledger.document.HourlyUsage
+ */
+public interface HourlyUsageRepository extends MongoRepository<HourlyUsage, String> {
+
+    /**
+     * 批次查詢多筆文件。
+     *
+     * <p>不載入 {@code latencyDigest}，回傳文件中該欄位為 null。
+     *
+     * @param ids 複合 ID 列表，格式為 {@code yyyy-MM-dd'T'HH_dimension_key}
+     * @return 符合條件的文件列表
+     */
+    @Query(value = "{ '_id': { '$in': ?0 } }", fields = "{ 'latencyDigest': 0 }")
+    List<HourlyUsage> findByIdIn(List<String> ids);
+}
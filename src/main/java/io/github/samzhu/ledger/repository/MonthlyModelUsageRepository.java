@@ -0,0 +1,43 @@
+package io.github.samzhu.ledger.repository;
+
+import java.util.List;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+
+import io.github.samzhu.ledger.document.MonthlyModelUsage;
+
+/**
+ * 模型月用量資料存取介面。
+ *
+ * <p>提供對 {@code monthly_model_usage} 集合的查詢。
+ * 寫入操作透過 {@link io.github.samzhu.ledger.service.UsageAggregationService}
+ * 使用 MongoTemplate bulk upsert 完成。
+ *
+ * @see io.github.samzhu.ledger.document.MonthlyModelUsage
+ */
+public interface MonthlyModelUsageRepository extends MongoRepository<MonthlyModelUsage, String> {
+
+    /**
+     * 批次查詢多筆文件。
+     *
+     * <p>不載入 {@code latencyDigest}、{@code userSketch}，回傳文件中這些欄位為 null。
+     *
+     * @param ids 複合 ID 列表，格式為 {@code yyyy-MM_model}
+     * @return 符合條件的文件列表
+     */
+    @Query(value = "{ '_id': { '$in': ?0 } }", fields = "{ 'latencyDigest': 0, 'userSketch': 0 }")
+    List<MonthlyModelUsage> findByIdIn(List<String> ids);
+
+    /**
+     * 查詢 ID 區間內的文件（{@code [fromId, toId)}）。
+     *
+     * <p>ID 以年月開頭，可用主鍵索引取得某月份的所有模型。
+     *
+     * @param fromId 起始 ID（含），例如 {@code 2025-12_}
+     * @param toId 結束 ID（不含），例如 {@code 2026-01_}
+     * @return 符合條件的文件列表
+     */
+    @Query("{ '_id': { '$gte': ?0, '$lt': ?1 } }")
+    List<MonthlyModelUsage> findByIdRange(String fromId, String toId);
+}
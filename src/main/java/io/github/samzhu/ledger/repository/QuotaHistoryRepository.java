@@ -3,8 +3,11 @@ package io.github.samzhu.ledger.repository;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 
@@ -39,6 +42,17 @@ public interface QuotaHistoryRepository extends MongoRepository<QuotaHistory, St
      */
     Page<QuotaHistory> findByUserIdOrderByPeriodYearDescPeriodMonthDesc(String userId, Pageable pageable);
 
+    /**
+     * Keyset 捲動查詢用戶歷史配額記錄，按年月降序（{@code _id} 為同值排序鍵）。
+     *
+     * @param userId 用戶唯一識別碼
+     * @param position 捲動位置（上一頁最後一筆的鍵值）
+     * @param limit 每頁筆數
+     * @return 查詢結果視窗
+     */
+    Window<QuotaHistory> findByUserIdOrderByPeriodYearDescPeriodMonthDescIdDesc(
+            String userId, ScrollPosition position, Limit limit);
+
     /**
      * 查詢用戶特定月份的歷史記錄。
      *
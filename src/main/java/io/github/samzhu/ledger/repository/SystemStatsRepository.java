@@ -3,6 +3,7 @@ package io.github.samzhu.ledger.repository;
 import java.util.List;
 
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 
 import io.github.samzhu.ledger.document.SystemStats;
 
@@ -26,8 +27,12 @@ public interface SystemStatsRepository extends MongoRepository<SystemStats, Stri
      * <p>使用 MongoDB {@code $in} 運算子優化批次查詢效能，
      * 適用於一次查詢多個日期的系統整體用量。
      *
+     * <p>不載入 {@code latencyDigest}、{@code userIdSet}、{@code userSketch}（僅供結算使用），
+     * 回傳文件中這些欄位為 null。
+     *
      * @param ids 日期字串列表，格式為 {@code YYYY-MM-DD}
      * @return 符合條件的系統統計列表
      */
+    @Query(value = "{ '_id': { '$in': ?0 } }", fields = "{ 'latencyDigest': 0, 'userIdSet': 0, 'userSketch': 0 }")
     List<SystemStats> findByIdIn(List<String> ids);
 }
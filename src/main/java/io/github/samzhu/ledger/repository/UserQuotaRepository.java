@@ -4,8 +4,11 @@ import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.mongodb.repository.Update;
@@ -96,6 +99,26 @@ public interface UserQuotaRepository extends MongoRepository<UserQuota, String>
      */
     Page<UserQuota> findByQuotaEnabledTrueOrderByCostUsagePercentDesc(Pageable pageable);
 
+    // ========== Keyset 捲動查詢 ==========
+
+    /**
+     * Keyset 捲動查詢所有用戶，按最後活動時間降序（{@code _id} 為同值排序鍵）。
+     *
+     * @param position 捲動位置（上一頁最後一筆的鍵值）
+     * @param limit 每頁筆數
+     * @return 查詢結果視窗
+     */
+    Window<UserQuota> findAllByOrderByLastActiveAtDescIdDesc(ScrollPosition position, Limit limit);
+
+    /**
+     * Keyset 捲動查詢啟用配額的用戶，按使用率降序（{@code _id} 為同值排序鍵）。
+     *
+     * @param position 捲動位置（上一頁最後一筆的鍵值）
+     * @param limit 每頁筆數
+     * @return 查詢結果視窗
+     */
+    Window<UserQuota> findByQuotaEnabledTrueOrderByCostUsagePercentDescIdDesc(ScrollPosition position, Limit limit);
+
     // ========== 複合條件查詢 (@Query) ==========
 
     /**
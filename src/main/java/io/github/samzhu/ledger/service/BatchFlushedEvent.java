@@ -0,0 +1,20 @@
+package io.github.samzhu.ledger.service;
+
+import java.util.List;
+
+import io.github.samzhu.ledger.document.RawEventBatch.UsageDelta;
+
+/**
+ * 批次寫入事件，由 {@link EventBufferService} 於緩衝區成功 flush 後發佈。
+ *
+ * <p>事件離開緩衝區後、結算前的這段期間，由此事件讓本實例的未結算用量索引立即納入新批次，
+ * 不必等待下次重新讀取。
+ *
+ * @param batchId 新批次 ID
+ * @param deltas 批次的用量增量
+ */
+public record BatchFlushedEvent(String batchId, List<UsageDelta> deltas) {
+    public BatchFlushedEvent {
+        deltas = List.copyOf(deltas);
+    }
+}
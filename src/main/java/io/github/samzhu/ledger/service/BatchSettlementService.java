@@ -1,29 +1,32 @@
 package io.github.samzhu.ledger.service;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.data.mongodb.core.MongoTemplate;
-import org.springframework.data.mongodb.core.query.Criteria;
-import org.springframework.data.mongodb.core.query.Query;
-import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import io.github.samzhu.ledger.document.RawEventBatch;
 import io.github.samzhu.ledger.dto.UsageEventData;
 import io.github.samzhu.ledger.exception.UnknownModelPricingException;
-import io.github.samzhu.ledger.repository.RawEventBatchRepository;
+import io.github.samzhu.ledger.storage.RawBatchStore;
 
 /**
  * 批次結算服務，負責定時處理未結算的原始事件批次。
  *
  * <p>此服務在每小時整點執行，處理流程：
  * <ol>
- *   <li>查詢所有 {@code processed=false} 的 {@link RawEventBatch}</li>
+ *   <li>透過 {@link RawBatchStore} 查詢所有 {@code processed=false} 的 {@link RawEventBatch}</li>
  *   <li>呼叫 {@link UsageAggregationService} 執行聚合統計</li>
  *   <li>標記批次 {@code processed=true}</li>
+ *   <li>合併本次異動日期的 system_stats 分片計數器（{@link SystemStatsShardService}，未啟用時略過）</li>
+ *   <li>發佈 {@link SettlementCompletedEvent}（異動的用戶、模型、日期與已結算批次），供查詢快取精準失效</li>
  * </ol>
  *
  * <p>設計優點：
@@ -41,17 +44,20 @@ public class BatchSettlementService {
 
     private static final Logger log = LoggerFactory.getLogger(BatchSettlementService.class);
 
-    private final RawEventBatchRepository rawEventBatchRepository;
+    private final RawBatchStore rawBatchStore;
     private final UsageAggregationService aggregationService;
-    private final MongoTemplate mongoTemplate;
+    private final SystemStatsShardService shardService;
+    private final ApplicationEventPublisher eventPublisher;
 
     public BatchSettlementService(
-            RawEventBatchRepository rawEventBatchRepository,
+            RawBatchStore rawBatchStore,
             UsageAggregationService aggregationService,
-            MongoTemplate mongoTemplate) {
-        this.rawEventBatchRepository = rawEventBatchRepository;
+            SystemStatsShardService shardService,
+            ApplicationEventPublisher eventPublisher) {
+        this.rawBatchStore = rawBatchStore;
         this.aggregationService = aggregationService;
-        this.mongoTemplate = mongoTemplate;
+        this.shardService = shardService;
+        this.eventPublisher = eventPublisher;
     }
 
     /**
@@ -86,10 +92,14 @@ public class BatchSettlementService {
     private int processAllPendingBatches() {
         long startTime = System.currentTimeMillis();
 
-        List<RawEventBatch> pendingBatches = rawEventBatchRepository.findByProcessedFalseOrderByCreatedAtAsc();
+        List<RawEventBatch> pendingBatches = rawBatchStore.findUnprocessed();
 
         if (pendingBatches.isEmpty()) {
             log.info("No pending batches to settle");
+            Set<LocalDate> retried = shardService.retryFailedMerges();
+            if (!retried.isEmpty()) {
+                eventPublisher.publishEvent(new SettlementCompletedEvent(Set.of(), Set.of(), retried, Set.of()));
+            }
             return 0;
         }
 
@@ -99,14 +109,19 @@ public class BatchSettlementService {
         int failCount = 0;
         int skippedCount = 0;
         int totalEvents = 0;
+        // 失敗的批次也可能已部分寫入，一併納入失效範圍
+        List<UsageEventData> touchedEvents = new ArrayList<>();
+        List<String> settledBatchIds = new ArrayList<>();
 
         for (RawEventBatch batch : pendingBatches) {
             try {
                 List<UsageEventData> events = batch.events();
                 totalEvents += events.size();
+                touchedEvents.addAll(events);
 
                 aggregationService.processBatch(events);
-                markAsProcessed(batch.id());
+                rawBatchStore.markProcessed(batch.id());
+                settledBatchIds.add(batch.id());
 
                 successCount++;
                 log.debug("Batch settled: id={}, events={}", batch.id(), events.size());
@@ -123,21 +138,26 @@ public class BatchSettlementService {
             }
         }
 
+        if (!touchedEvents.isEmpty()) {
+            SettlementCompletedEvent event = SettlementCompletedEvent.of(touchedEvents, settledBatchIds);
+            // 先重試之前失敗的日期，再合併本次日期；本次失敗的日期留待下次結算重試
+            Set<LocalDate> retried = shardService.retryFailedMerges();
+            Set<LocalDate> dates = new HashSet<>(event.dates());
+            dates.addAll(retried);
+            try {
+                // 每次結算只合併一次，讀取端與事件監聽者看到的 system_stats 包含本次結算
+                shardService.merge(event.dates().stream().filter(date -> !retried.contains(date)).toList());
+            } catch (Exception e) {
+                log.error("Failed to merge system_stats shards, will retry on next settlement: {}", e.getMessage(), e);
+            }
+            eventPublisher.publishEvent(new SettlementCompletedEvent(event.userIds(), event.models(), dates,
+                event.settledBatchIds()));
+        }
+
         long duration = System.currentTimeMillis() - startTime;
         log.info("Settlement stats: {} success, {} failed, {} skipped (unknown pricing), {} events in {}ms",
             successCount, failCount, skippedCount, totalEvents, duration);
 
         return successCount;
     }
-
-    /**
-     * 標記批次為已處理。
-     *
-     * @param batchId 批次 ID
-     */
-    private void markAsProcessed(String batchId) {
-        Query query = Query.query(Criteria.where("_id").is(batchId));
-        Update update = Update.update("processed", true);
-        mongoTemplate.updateFirst(query, update, RawEventBatch.class);
-    }
 }
@@ -6,6 +6,10 @@ import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -28,12 +32,15 @@ public class BonusService {
 
     private final BonusRecordRepository bonusRecordRepository;
     private final UserQuotaRepository userQuotaRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     public BonusService(
             BonusRecordRepository bonusRecordRepository,
-            UserQuotaRepository userQuotaRepository) {
+            UserQuotaRepository userQuotaRepository,
+            ApplicationEventPublisher eventPublisher) {
         this.bonusRecordRepository = bonusRecordRepository;
         this.userQuotaRepository = userQuotaRepository;
+        this.eventPublisher = eventPublisher;
     }
 
     /**
@@ -87,6 +94,7 @@ public class BonusService {
 
         userQuotaRepository.updateQuotaStatusByUserId(userId, usagePercent, exceeded, now);
         log.info("Updated quota status after bonus: userId={}, usagePercent={}", userId, usagePercent);
+        eventPublisher.publishEvent(QuotaChangedEvent.of(userId));
 
         return userQuotaRepository.findByUserId(userId).orElse(quota);
     }
@@ -101,6 +109,18 @@ public class BonusService {
         return bonusRecordRepository.findByUserIdOrderByCreatedAtDesc(userId);
     }
 
+    /**
+     * Keyset 捲動查詢用戶額外額度記錄。
+     *
+     * @param userId 用戶 ID
+     * @param position 捲動位置
+     * @param limit 每頁筆數
+     * @return 查詢結果視窗（按建立時間降序）
+     */
+    public Window<BonusRecord> getUserBonusHistory(String userId, ScrollPosition position, int limit) {
+        return bonusRecordRepository.findByUserIdOrderByCreatedAtDescIdDesc(userId, position, Limit.of(limit));
+    }
+
     /**
      * 查詢用戶特定月份的額外額度記錄。
      *
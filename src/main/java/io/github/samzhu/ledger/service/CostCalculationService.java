@@ -111,6 +111,22 @@ public class CostCalculationService {
         return totalCost;
     }
 
+    /**
+     * 預估單筆用量事件的成本，供未結算用量疊加使用。
+     *
+     * <p>與 {@link #calculateCost} 相同，但找不到定價時回傳零成本且不記錄錯誤；
+     * 未知定價的事件會在結算時被攔下。
+     *
+     * @param event 用量事件
+     * @return 預估成本（美元）
+     */
+    public BigDecimal estimateCost(UsageEventData event) {
+        if (event.model() != null && findPricing(event.model()) == null) {
+            return BigDecimal.ZERO;
+        }
+        return calculateCost(event);
+    }
+
     /**
      * 計算指定 token 數量的成本。
      */
@@ -0,0 +1,185 @@
+package io.github.samzhu.ledger.service;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import io.github.samzhu.ledger.document.DailyModelUsage;
+import io.github.samzhu.ledger.document.DailyUserModelUsage;
+import io.github.samzhu.ledger.document.DailyUserUsage;
+import io.github.samzhu.ledger.document.SystemStats;
+import io.github.samzhu.ledger.dto.api.DailyModelUsageApiDto;
+import io.github.samzhu.ledger.dto.api.DailyUserUsageApiDto;
+import io.github.samzhu.ledger.dto.api.SystemStatsApiDto;
+import io.github.samzhu.ledger.repository.DailyModelUsageRepository;
+import io.github.samzhu.ledger.repository.DailyUserModelUsageRepository;
+import io.github.samzhu.ledger.repository.DailyUserUsageRepository;
+import io.github.samzhu.ledger.repository.SystemStatsRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+
+/**
+ * 儀表板即時更新（Server-Sent Events）。
+ *
+ * <p>收到 {@link SettlementCompletedEvent} 後，只讀取一次本次異動的文件，
+ * 再推送給所有訂閱者，讀取成本與觀看人數無關：
+ * <ul>
+ *   <li>{@value #EVENT_SYSTEM_STATS} - 異動日期的 {@code system_stats}</li>
+ *   <li>{@value #EVENT_MODEL_USAGE} - 異動（日期、模型）的 {@code daily_model_usage}</li>
+ *   <li>{@value #EVENT_USER_USAGE} - 異動且被至少一位訂閱者關注的用戶之 {@code daily_user_usage}</li>
+ * </ul>
+ *
+ * <p>讀取與推送在單一背景執行緒執行，不阻塞結算；直接讀取 repository 以略過查詢快取。
+ * 每 {@value #HEARTBEAT_MS} ms 送出註解行作為心跳，並清除已斷線的訂閱者。
+ *
+ * <p>指標：{@code ledger.dashboard.stream.subscribers} - 目前訂閱者數。
+ */
+@Service
+public class DashboardStreamService {
+
+    private static final Logger log = LoggerFactory.getLogger(DashboardStreamService.class);
+
+    public static final String EVENT_SYSTEM_STATS = "system-stats";
+    public static final String EVENT_MODEL_USAGE = "model-usage";
+    public static final String EVENT_USER_USAGE = "user-usage";
+
+    private static final long HEARTBEAT_MS = 25_000;
+    private static final long EMITTER_TIMEOUT_MS = 30 * 60 * 1000L;
+
+    private final SystemStatsRepository systemStatsRepository;
+    private final DailyModelUsageRepository dailyModelUsageRepository;
+    private final DailyUserUsageRepository dailyUserUsageRepository;
+    private final DailyUserModelUsageRepository dailyUserModelUsageRepository;
+    private final ModelDictionaryService modelDictionary;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final ExecutorService publisher = Executors.newSingleThreadExecutor(
+        Thread.ofPlatform().name("dashboard-stream").daemon().factory());
+
+    public DashboardStreamService(
+            SystemStatsRepository systemStatsRepository,
+            DailyModelUsageRepository dailyModelUsageRepository,
+            DailyUserUsageRepository dailyUserUsageRepository,
+            DailyUserModelUsageRepository dailyUserModelUsageRepository,
+            ModelDictionaryService modelDictionary,
+            MeterRegistry meterRegistry) {
+        this.systemStatsRepository = systemStatsRepository;
+        this.dailyModelUsageRepository = dailyModelUsageRepository;
+        this.dailyUserUsageRepository = dailyUserUsageRepository;
+        this.dailyUserModelUsageRepository = dailyUserModelUsageRepository;
+        this.modelDictionary = modelDictionary;
+        meterRegistry.gaugeCollectionSize("ledger.dashboard.stream.subscribers", Tags.empty(), subscribers);
+    }
+
+    /**
+     * 建立訂閱。
+     *
+     * @param watchedUsers 要接收用量更新的用戶，可為空
+     * @return SSE emitter
+     */
+    public SseEmitter subscribe(Set<String> watchedUsers) {
+        SseEmitter emitter = new SseEmitter(EMITTER_TIMEOUT_MS);
+        Subscriber subscriber = new Subscriber(emitter, Set.copyOf(watchedUsers));
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        log.debug("Dashboard stream subscribed: watchedUsers={}, subscribers={}",
+            watchedUsers.size(), subscribers.size());
+        return emitter;
+    }
+
+    /**
+     * 結算完成後推送異動。
+     */
+    @EventListener
+    public void onSettlementCompleted(SettlementCompletedEvent event) {
+        if (event.isEmpty() || subscribers.isEmpty()) {
+            return;
+        }
+        publisher.execute(() -> publish(event));
+    }
+
+    /**
+     * 心跳，同時清除已斷線的訂閱者。
+     */
+    @Scheduled(fixedRate = HEARTBEAT_MS)
+    public void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            send(subscriber, SseEmitter.event().comment("heartbeat"));
+        }
+    }
+
+    private void publish(SettlementCompletedEvent event) {
+        try {
+            List<String> statsIds = event.dates().stream().map(SystemStats::createId).toList();
+            List<SystemStatsApiDto> stats = new ArrayList<>();
+            systemStatsRepository.findByIdIn(statsIds).forEach(s -> stats.add(SystemStatsApiDto.from(s)));
+
+            List<String> modelIds = new ArrayList<>();
+            for (LocalDate date : event.dates()) {
+                event.models().forEach(model -> modelIds.add(DailyModelUsage.createId(date, model)));
+            }
+            List<DailyModelUsageApiDto> models = new ArrayList<>();
+            dailyModelUsageRepository.findByIdIn(modelIds).forEach(m -> models.add(DailyModelUsageApiDto.from(m)));
+
+            Set<String> watched = new HashSet<>();
+            subscribers.forEach(s -> watched.addAll(s.watchedUsers()));
+            watched.retainAll(event.userIds());
+            List<DailyUserUsageApiDto> users = new ArrayList<>();
+            if (!watched.isEmpty()) {
+                List<String> userIds = new ArrayList<>();
+                for (LocalDate date : event.dates()) {
+                    watched.forEach(userId -> userIds.add(DailyUserUsage.createId(date, userId)));
+                }
+                Map<String, Map<String, DailyUserUsage.ModelBreakdown>> userModels =
+                    DailyUserModelUsage.groupByUsage(dailyUserModelUsageRepository.findByUsageIdIn(userIds));
+                dailyUserUsageRepository.findByIdIn(userIds).forEach(u ->
+                    users.add(DailyUserUsageApiDto.from(u.withModelBreakdown(userModels.get(u.id()), modelDictionary::legacyModelName))));
+            }
+
+            for (Subscriber subscriber : subscribers) {
+                if (!stats.isEmpty()) {
+                    send(subscriber, SseEmitter.event().name(EVENT_SYSTEM_STATS).data(stats));
+                }
+                if (!models.isEmpty()) {
+                    send(subscriber, SseEmitter.event().name(EVENT_MODEL_USAGE).data(models));
+                }
+                List<DailyUserUsageApiDto> own = users.stream()
+                    .filter(u -> subscriber.watchedUsers().contains(u.userId()))
+                    .toList();
+                if (!own.isEmpty()) {
+                    send(subscriber, SseEmitter.event().name(EVENT_USER_USAGE).data(own));
+                }
+            }
+            log.debug("Dashboard stream published: {} stats, {} models, {} users to {} subscribers",
+                stats.size(), models.size(), users.size(), subscribers.size());
+        } catch (Exception e) {
+            log.error("Failed to publish dashboard stream update: {}", e.getMessage(), e);
+        }
+    }
+
+    private void send(Subscriber subscriber, SseEmitter.SseEventBuilder event) {
+        try {
+            subscriber.emitter().send(event);
+        } catch (IOException | IllegalStateException e) {
+            subscribers.remove(subscriber);
+            subscriber.emitter().completeWithError(e);
+        }
+    }
+
+    private record Subscriber(SseEmitter emitter, Set<String> watchedUsers) {}
+}
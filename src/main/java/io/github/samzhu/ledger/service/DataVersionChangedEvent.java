@@ -0,0 +1,13 @@
+package io.github.samzhu.ledger.service;
+
+/**
+ * 資料版本由其他實例變動事件，由 {@link DataVersionService} 同步到較新的版本時發佈。
+ *
+ * <p>其他實例的結算與日結不會觸發本實例的精準失效，本實例的查詢快取可能仍保存舊資料；
+ * 收到此事件後依變動的版本整體失效，避免以新的 ETag 回應舊內容。
+ *
+ * @param usage 用量彙總版本是否變動
+ * @param quota 配額版本是否變動
+ */
+public record DataVersionChangedEvent(boolean usage, boolean quota) {
+}
@@ -0,0 +1,221 @@
+package io.github.samzhu.ledger.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Date;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import io.github.samzhu.ledger.config.LedgerProperties;
+
+/**
+ * 彙總資料版本（generation）服務，作為 HTTP 條件式請求的驗證器。
+ *
+ * <p>彙總資料只在以下時機變動，每次變動遞增 {@code ledger_meta} 集合中單一文件的計數器：
+ * <ul>
+ *   <li>{@code usage} - 結算完成（{@link SettlementCompletedEvent}）、日結（{@link DayFinalizedEvent}）</li>
+ *   <li>{@code quota} - 結算完成、配額設定、額外額度、換月（{@link QuotaChangedEvent}）</li>
+ * </ul>
+ *
+ * <p>版本保存在記憶體：本實例的變動立即更新，其他實例的變動最晚在
+ * {@code ledger.http-cache.refresh-seconds} 後以單一文件主鍵讀取同步。
+ * 查詢端點據此回應 {@code 304 Not Modified}，不需執行查詢。
+ *
+ * <p>同步時發現其他實例造成的變動，發佈 {@link DataVersionChangedEvent}，
+ * 讓本實例的查詢快取在回應新 ETag 之前失效。
+ *
+ * @see io.github.samzhu.ledger.config.ConditionalGetInterceptor
+ */
+@Service
+public class DataVersionService {
+
+    private static final Logger log = LoggerFactory.getLogger(DataVersionService.class);
+
+    static final String COLLECTION = "ledger_meta";
+    static final String DOCUMENT_ID = "data_version";
+
+    private final MongoTemplate mongoTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final long refreshIntervalNanos;
+    private final Instant startedAt = Instant.now();
+    private volatile DataVersion current;
+    private volatile long lastRefreshNanos;
+    /** 最近一次讀到的版本，寫入失敗清除 {@code current} 時仍保留，用於判斷其他實例的變動 */
+    private DataVersion lastSeen;
+
+    public DataVersionService(MongoTemplate mongoTemplate, ApplicationEventPublisher eventPublisher,
+            LedgerProperties properties) {
+        this.mongoTemplate = mongoTemplate;
+        this.eventPublisher = eventPublisher;
+        LedgerProperties.HttpCacheConfig config = properties.httpCache() != null
+            ? properties.httpCache()
+            : LedgerProperties.HttpCacheConfig.defaults();
+        this.refreshIntervalNanos = Duration.ofSeconds(config.refreshSeconds()).toNanos();
+    }
+
+    /**
+     * 取得目前的資料版本。
+     *
+     * @return 資料版本；無法讀取時回傳 null（呼叫端應略過條件式處理）
+     */
+    public DataVersion current() {
+        if (current == null || System.nanoTime() - lastRefreshNanos > refreshIntervalNanos) {
+            refresh();
+        }
+        return current;
+    }
+
+    /**
+     * 結算完成後遞增用量與配額版本。
+     */
+    @EventListener
+    public void onSettlementCompleted(SettlementCompletedEvent event) {
+        if (!event.isEmpty()) {
+            increment(true, true);
+        }
+    }
+
+    /**
+     * 配額異動後遞增配額版本。
+     */
+    @EventListener
+    public void onQuotaChanged(QuotaChangedEvent event) {
+        increment(false, true);
+    }
+
+    /**
+     * 日結後遞增用量版本。
+     */
+    @EventListener
+    public void onDayFinalized(DayFinalizedEvent event) {
+        increment(true, false);
+    }
+
+    private void increment(boolean usage, boolean quota) {
+        Update update = new Update().currentDate("updatedAt");
+        if (usage) {
+            update.inc("usage", 1L);
+        }
+        if (quota) {
+            update.inc("quota", 1L);
+        }
+        try {
+            Document doc = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(DOCUMENT_ID)),
+                update,
+                FindAndModifyOptions.options().upsert(true).returnNew(true),
+                Document.class,
+                COLLECTION);
+            apply(doc, usage ? 1 : 0, quota ? 1 : 0);
+        } catch (Exception e) {
+            // 寫入失敗時清除本地版本，避免以舊版本回應 304
+            current = null;
+            log.warn("Failed to increment data version: {}", e.getMessage());
+        }
+    }
+
+    private void refresh() {
+        DataVersionChangedEvent changed = null;
+        synchronized (this) {
+            if (current != null && System.nanoTime() - lastRefreshNanos <= refreshIntervalNanos) {
+                return;
+            }
+            try {
+                Document doc = mongoTemplate.findById(DOCUMENT_ID, Document.class, COLLECTION);
+                if (doc == null) {
+                    current = new DataVersion(0, 0, startedAt);
+                    lastRefreshNanos = System.nanoTime();
+                } else {
+                    changed = applyLocked(doc, 0, 0);
+                }
+            } catch (Exception e) {
+                current = null;
+                log.warn("Failed to read data version: {}", e.getMessage());
+            }
+        }
+        publish(changed);
+    }
+
+    private void apply(Document doc, int usageIncrement, int quotaIncrement) {
+        DataVersionChangedEvent changed;
+        synchronized (this) {
+            changed = applyLocked(doc, usageIncrement, quotaIncrement);
+        }
+        publish(changed);
+    }
+
+    /**
+     * 套用讀到的版本。
+     *
+     * <p>版本前進超過本實例自身的遞增量時，代表其他實例有變動，回傳變動事件。
+     *
+     * @return 其他實例的變動；沒有時回傳 null
+     */
+    private DataVersionChangedEvent applyLocked(Document doc, int usageIncrement, int quotaIncrement) {
+        if (doc == null) {
+            return null;
+        }
+        DataVersion fetched = new DataVersion(
+            doc.get("usage") instanceof Number n ? n.longValue() : 0L,
+            doc.get("quota") instanceof Number n ? n.longValue() : 0L,
+            doc.get("updatedAt") instanceof Date date ? date.toInstant() : startedAt);
+        // 計數器只增不減，並行更新時保留較新的版本
+        if (current == null || fetched.usage() + fetched.quota() >= current.usage() + current.quota()) {
+            current = fetched;
+        }
+        lastRefreshNanos = System.nanoTime();
+
+        DataVersionChangedEvent changed = null;
+        if (lastSeen != null) {
+            boolean usage = fetched.usage() > lastSeen.usage() + usageIncrement;
+            boolean quota = fetched.quota() > lastSeen.quota() + quotaIncrement;
+            if (usage || quota) {
+                changed = new DataVersionChangedEvent(usage, quota);
+            }
+        }
+        if (lastSeen == null || fetched.usage() + fetched.quota() >= lastSeen.usage() + lastSeen.quota()) {
+            lastSeen = fetched;
+        }
+        return changed;
+    }
+
+    private void publish(DataVersionChangedEvent changed) {
+        if (changed != null) {
+            log.debug("Data version changed by another instance: {}", changed);
+            eventPublisher.publishEvent(changed);
+        }
+    }
+
+    /**
+     * 彙總資料版本。
+     *
+     * @param usage 用量彙總版本
+     * @param quota 配額版本
+     * @param updatedAt 最近一次變動時間
+     */
+    public record DataVersion(long usage, long quota, Instant updatedAt) {
+
+        /**
+         * 產生弱 ETag。
+         *
+         * <p>包含 UTC 日期，讓以「最近 N 天」計算區間的端點在換日時失效。
+         *
+         * @param today 今日（UTC）
+         * @return ETag，例如 {@code W/"u12-q30-2025-12-09"}
+         */
+        public String etag(LocalDate today) {
+            return "W/\"u" + usage + "-q" + quota + "-" + today + "\"";
+        }
+    }
+}
@@ -0,0 +1,418 @@
+package io.github.samzhu.ledger.service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import io.github.samzhu.ledger.config.LedgerProperties;
+import io.github.samzhu.ledger.document.DailyModelUsage;
+import io.github.samzhu.ledger.document.DailyUserUsage;
+import io.github.samzhu.ledger.document.SystemStats;
+import io.github.samzhu.ledger.document.SystemStats.TopItem;
+import io.github.samzhu.ledger.util.HyperLogLog;
+
+/**
+ * 日結服務，凍結並壓縮已結束日期的日用量文件。
+ *
+ * <p>UTC 日結束並超過延遲視窗（{@code ledger.finalization.lateness-hours}）後執行：
+ * <ul>
+ *   <li>最後一次計算衍生欄位（peakHour、topModels/topUsers、successRate）並凍結</li>
+ *   <li>以較低壓縮因子重新壓縮 T-Digest</li>
+ *   <li>{@code userIdSet} 轉為 HyperLogLog 草圖 {@code userSketch}，移除成員陣列</li>
+ *   <li>分片計數的日期先合併分片，日結後封存分片（見 {@link SystemStatsShardService#sealShards}）</li>
+ *   <li>標記 {@code finalized=true}，之後的遲到事件由
+ *       {@link UsageAggregationService} 的修正路徑以 {@code $inc} 處理</li>
+ *   <li>發佈 {@link DayFinalizedEvent}，遞增資料版本並失效查詢快取</li>
+ * </ul>
+ *
+ * <p>處理順序為 daily_user_usage → daily_model_usage → system_stats，
+ * 以 system_stats 的 {@code finalized} 作為整日完成的標記。
+ * 中斷時下次排程會從未完成的文件繼續（查詢條件為 {@code finalized != true}）。
+ *
+ * <p>日結讀取文件後以單次更新寫回，更新條件包含讀取時的請求數：
+ * 期間被結算寫入（{@code $addToSet} 用戶、digest 合併）的文件不會被覆寫，重新讀取後再日結。
+ * 結算端對未日結文件的寫入則以 {@code finalized != true} 為條件，不會在已日結文件重建 {@code userIdSet}。
+ *
+ * @see LedgerProperties.FinalizationConfig
+ */
+@Service
+public class DayFinalizationService {
+
+    private static final Logger log = LoggerFactory.getLogger(DayFinalizationService.class);
+
+    /** 每次 bulk 寫入的文件數 */
+    private static final int CHUNK_SIZE = 500;
+
+    /** 文件在讀取與寫回之間被結算更新時，重新讀取的次數上限 */
+    private static final int MAX_ATTEMPTS = 5;
+
+    private final MongoTemplate mongoTemplate;
+    private final LatencyDigestService digestService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final OverviewSnapshotService overviewSnapshotService;
+    private final SystemStatsShardService shardService;
+    private final Duration lateness;
+    private final int digestCompression;
+
+    public DayFinalizationService(
+            MongoTemplate mongoTemplate,
+            LatencyDigestService digestService,
+            ApplicationEventPublisher eventPublisher,
+            OverviewSnapshotService overviewSnapshotService,
+            SystemStatsShardService shardService,
+            LedgerProperties properties) {
+        this.mongoTemplate = mongoTemplate;
+        this.digestService = digestService;
+        this.eventPublisher = eventPublisher;
+        this.overviewSnapshotService = overviewSnapshotService;
+        this.shardService = shardService;
+        LedgerProperties.FinalizationConfig config = properties.finalization() != null
+            ? properties.finalization()
+            : LedgerProperties.FinalizationConfig.defaults();
+        this.lateness = Duration.ofHours(config.latenessHours());
+        this.digestCompression = config.digestCompression();
+    }
+
+    /**
+     * 定時日結任務（UTC），預設每小時 15 分執行。
+     */
+    @Scheduled(cron = "${ledger.finalization.cron:0 15 * * * *}", zone = "UTC")
+    public void scheduledFinalization() {
+        List<LocalDate> finalized = finalizeClosedDays();
+        if (!finalized.isEmpty()) {
+            log.info("Scheduled finalization completed: {}", finalized);
+        }
+    }
+
+    /**
+     * 日結所有已超過延遲視窗且尚未日結的日期。
+     *
+     * @return 本次完成日結的日期
+     */
+    public List<LocalDate> finalizeClosedDays() {
+        LocalDate lastClosedDate = lastFinalizableDate(Instant.now());
+
+        Query query = Query.query(Criteria.where("finalized").ne(true)
+                .and("_id").lte(lastClosedDate.toString()))
+            .with(Sort.by("_id"));
+        query.fields().include("_id");
+
+        List<LocalDate> finalized = new ArrayList<>();
+        for (Document doc : mongoTemplate.find(query, Document.class, collection(SystemStats.class))) {
+            LocalDate date = LocalDate.parse(doc.getString("_id"));
+            try {
+                finalizeDay(date);
+                finalized.add(date);
+            } catch (Exception e) {
+                log.error("Finalization failed for {}, will retry on next run: {}", date, e.getMessage(), e);
+            }
+        }
+        // 封存分片只需擋下日結當下進行中的批次，保留到下一個日期日結後
+        shardService.purgeSealedShards(lastClosedDate.minusDays(1));
+        return finalized;
+    }
+
+    /**
+     * 日結單一日期。
+     *
+     * @param date 要日結的日期
+     */
+    public void finalizeDay(LocalDate date) {
+        long startTime = System.currentTimeMillis();
+        Instant now = Instant.now();
+
+        // 分片計數的日期先合併，日結讀取的是完整的 system_stats
+        List<Document> mergedShards = shardService.mergeForFinalization(date);
+        int users = finalizeDailyUserUsage(date, now);
+        int models = finalizeDailyModelUsage(date, now);
+        finalizeSystemStats(date, now);
+        // 合併之後才寫入分片的事件由封存補入，不隨分片刪除
+        shardService.sealShards(date, mergedShards);
+        eventPublisher.publishEvent(new DayFinalizedEvent(date));
+        overviewSnapshotService.refreshDates(List.of(date));
+
+        log.info("Finalized {}: {} user docs, {} model docs in {}ms",
+            date, users, models, System.currentTimeMillis() - startTime);
+    }
+
+    private LocalDate lastFinalizableDate(Instant now) {
+        // 日期 D 於 D+1 00:00 UTC 結束，再經過延遲視窗後可日結
+        return LocalDate.ofInstant(now.minus(lateness), ZoneOffset.UTC).minusDays(1);
+    }
+
+    /**
+     * 日結用戶日用量：凍結 peakHour、重新壓縮 digest。
+     */
+    private int finalizeDailyUserUsage(LocalDate date, Instant now) {
+        return finalizeDocuments(DailyUserUsage.class, date, now,
+            List.of("latencyDigest", "hourlyBreakdown"),
+            (doc, update) -> {
+                Peak peak = findPeak(doc.get("hourlyBreakdown", Document.class), true);
+                update.set("peakHour", peak.hour()).set("peakHourRequests", peak.requests());
+            });
+    }
+
+    /**
+     * 日結模型日用量：userIdSet 轉草圖、凍結 peakHour、重新壓縮 digest。
+     */
+    private int finalizeDailyModelUsage(LocalDate date, Instant now) {
+        return finalizeDocuments(DailyModelUsage.class, date, now,
+            List.of("latencyDigest", "userIdSet", "userSketch", "hourlyRequestCount"),
+            (doc, update) -> {
+                applyUserSketch(doc, update);
+                Peak peak = findPeak(doc.get("hourlyRequestCount", Document.class), false);
+                update.set("peakHour", peak.hour()).set("peakHourRequests", peak.requests());
+            });
+    }
+
+    /**
+     * 日結系統日統計：最後一次計算排行榜與成功率，userIdSet 轉草圖。
+     */
+    private void finalizeSystemStats(LocalDate date, Instant now) {
+        Query query = Query.query(Criteria.where("_id").is(date.toString()));
+        query.fields().include("latencyDigest", "userIdSet", "userSketch", "hourlyRequestCount",
+            "successCount", "errorCount", "totalRequestCount", "finalized");
+
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            Document doc = mongoTemplate.findOne(query, Document.class, collection(SystemStats.class));
+            if (doc == null || Boolean.TRUE.equals(doc.getBoolean("finalized"))) {
+                return;
+            }
+
+            Update update = new Update();
+            applyUserSketch(doc, update);
+            applyRecompressedDigest(doc, update);
+
+            Peak peak = findPeak(doc.get("hourlyRequestCount", Document.class), false);
+            long success = toLong(doc.get("successCount"));
+            long errors = toLong(doc.get("errorCount"));
+
+            update.set("peakHour", peak.hour())
+                .set("peakHourRequests", peak.requests())
+                .set("successRate", success + errors > 0 ? (double) success / (success + errors) : 0.0)
+                .set("topModels", topItems(DailyModelUsage.class, date, "model", "requestCount", 5))
+                .set("topUsers", topItems(DailyUserUsage.class, date, "userId", "totalTokens", 10))
+                .set("finalized", true)
+                .set("finalizedAt", now);
+
+            if (mongoTemplate.updateFirst(unchanged(doc, "totalRequestCount"), update, SystemStats.class)
+                    .getMatchedCount() > 0) {
+                return;
+            }
+            log.debug("system_stats {} changed during finalization, retrying (attempt {})", date, attempt);
+        }
+        throw new IllegalStateException("system_stats " + date + " kept changing during finalization");
+    }
+
+    /**
+     * 日結某日期的所有未日結文件；讀取後又被結算更新的文件重新讀取後再日結。
+     *
+     * @param documentClass 文件類別（daily_user_usage 或 daily_model_usage）
+     * @param date 日期
+     * @param now 日結時間
+     * @param fields 需要載入的欄位
+     * @param customizer 各集合特有的凍結邏輯
+     * @return 日結的文件數
+     */
+    private int finalizeDocuments(Class<?> documentClass, LocalDate date, Instant now,
+            Collection<String> fields, UpdateCustomizer customizer) {
+        int count = 0;
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            Pass pass = finalizePass(documentClass, date, now, fields, customizer);
+            count += pass.finalized();
+            if (pass.finalized() == pass.read()) {
+                return count;
+            }
+            log.debug("{} of {} {} documents changed during finalization of {}, retrying (attempt {})",
+                pass.read() - pass.finalized(), pass.read(), collection(documentClass), date, attempt);
+        }
+        throw new IllegalStateException(collection(documentClass) + " documents of " + date
+            + " kept changing during finalization");
+    }
+
+    /**
+     * 以 bulk update 分批日結某日期的所有未日結文件（單次讀取）。
+     */
+    private Pass finalizePass(Class<?> documentClass, LocalDate date, Instant now,
+            Collection<String> fields, UpdateCustomizer customizer) {
+
+        Query query = Query.query(dayRange(date).and("finalized").ne(true));
+        query.fields().include(fields.toArray(String[]::new)).include("requestCount");
+
+        int read = 0;
+        int finalized = 0;
+        BulkOperations bulkOps = null;
+        int pending = 0;
+        try (Stream<Document> docs = mongoTemplate.stream(query, Document.class, collection(documentClass))) {
+            var iterator = docs.iterator();
+            while (iterator.hasNext()) {
+                Document doc = iterator.next();
+                Update update = new Update()
+                    .set("finalized", true)
+                    .set("finalizedAt", now);
+                applyRecompressedDigest(doc, update);
+                customizer.customize(doc, update);
+
+                if (bulkOps == null) {
+                    bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, documentClass);
+                }
+                bulkOps.updateOne(unchanged(doc, "requestCount"), update);
+                pending++;
+                read++;
+
+                if (pending >= CHUNK_SIZE) {
+                    finalized += bulkOps.execute().getMatchedCount();
+                    bulkOps = null;
+                    pending = 0;
+                }
+            }
+        }
+        if (bulkOps != null) {
+            finalized += bulkOps.execute().getMatchedCount();
+        }
+        return new Pass(read, finalized);
+    }
+
+    /**
+     * 寫回條件：讀取後未被結算更新。
+     *
+     * <p>結算的每次寫入都會累加請求數，{@code $addToSet} 用戶與 digest 合併不會單獨發生，
+     * 請求數不變即代表 userIdSet 與 digest 與讀取時相同。
+     */
+    private static Query unchanged(Document doc, String requestCountField) {
+        return Query.query(Criteria.where("_id").is(doc.get("_id"))
+            .and(requestCountField).is(doc.get(requestCountField))
+            .and("finalized").ne(true));
+    }
+
+    /**
+     * 將 userIdSet 轉為 HyperLogLog 草圖並移除成員陣列。
+     *
+     * <p>uniqueUsers 以陣列大小設定（精確值）；若已是草圖則保持不變。
+     */
+    private void applyUserSketch(Document doc, Update update) {
+        Object userIds = doc.get("userIdSet");
+        if (!(userIds instanceof List<?> list)) {
+            return;
+        }
+        HyperLogLog sketch = HyperLogLog.fromBytes(binary(doc.get("userSketch")));
+        list.forEach(userId -> sketch.add(String.valueOf(userId)));
+        update.set("userSketch", sketch.toBytes())
+            .set("uniqueUsers", list.size())
+            .unset("userIdSet");
+    }
+
+    /**
+     * 以日結壓縮因子重新壓縮 latencyDigest。
+     */
+    private void applyRecompressedDigest(Document doc, Update update) {
+        byte[] recompressed = digestService.recompress(binary(doc.get("latencyDigest")), digestCompression);
+        if (recompressed != null) {
+            update.set("latencyDigest", recompressed);
+        }
+    }
+
+    /**
+     * 查詢某日期的排行榜（僅取前 N 筆）。
+     *
+     * <p>排序欄位與結算路徑一致：模型依請求數，用戶依總 token 數。
+     */
+    private List<TopItem> topItems(Class<?> documentClass, LocalDate date, String idField, String sortField, int limit) {
+        Query query = Query.query(dayRange(date))
+            .with(Sort.by(Sort.Direction.DESC, sortField))
+            .limit(limit);
+        query.fields().include(idField, "requestCount", "totalTokens", "estimatedCostUsd");
+
+        return mongoTemplate.find(query, Document.class, collection(documentClass)).stream()
+            .map(doc -> new TopItem(
+                doc.getString(idField),
+                (int) toLong(doc.get("requestCount")),
+                toLong(doc.get("totalTokens")),
+                doc.get("estimatedCostUsd") instanceof Number n
+                    ? BigDecimal.valueOf(n.doubleValue())
+                    : BigDecimal.ZERO))
+            .toList();
+    }
+
+    /**
+     * 從每小時分布找出尖峰時段。
+     *
+     * @param hourly 每小時分布（key 為小時字串）
+     * @param nested 值是否為含 requestCount 的子文件
+     */
+    private Peak findPeak(Document hourly, boolean nested) {
+        if (hourly == null || hourly.isEmpty()) {
+            return new Peak(0, 0);
+        }
+        int peakHour = 0;
+        int peakRequests = 0;
+        for (Map.Entry<String, Object> entry : hourly.entrySet()) {
+            Object value = nested && entry.getValue() instanceof Document d
+                ? d.get("requestCount")
+                : entry.getValue();
+            int requests = (int) toLong(value);
+            if (requests > peakRequests) {
+                peakHour = Integer.parseInt(entry.getKey());
+                peakRequests = requests;
+            }
+        }
+        return new Peak(peakHour, peakRequests);
+    }
+
+    /**
+     * 某日期所有文件的 {@code _id} 範圍（ID 以 {@code YYYY-MM-DD_} 開頭）。
+     */
+    private static Criteria dayRange(LocalDate date) {
+        // '`' 為 '_' 的下一個字元
+        return Criteria.where("_id").gte(date + "_").lt(date + "`");
+    }
+
+    private String collection(Class<?> documentClass) {
+        return mongoTemplate.getCollectionName(documentClass);
+    }
+
+    private static byte[] binary(Object value) {
+        if (value instanceof Binary b) {
+            return b.getData();
+        }
+        return value instanceof byte[] bytes ? bytes : null;
+    }
+
+    private static long toLong(Object value) {
+        return value instanceof Number n ? n.longValue() : 0L;
+    }
+
+    /**
+     * 各集合特有的日結更新邏輯。
+     */
+    @FunctionalInterface
+    private interface UpdateCustomizer {
+        void customize(Document doc, Update update);
+    }
+
+    private record Peak(int hour, int requests) {}
+
+    /** 單次日結讀取的文件數與實際寫回的文件數 */
+    private record Pass(int read, int finalized) {}
+}
@@ -0,0 +1,21 @@
+package io.github.samzhu.ledger.service;
+
+import java.time.LocalDate;
+
+/**
+ * 日結完成事件，由 {@link DayFinalizationService} 於單一日期日結後發佈。
+ *
+ * <p>日結改寫該日所有用戶、模型的日用量文件與系統日統計（凍結衍生欄位、重新壓縮 digest），
+ * 查詢快取需失效所有包含該日期的項目。
+ *
+ * @param date 日結的 UTC 日期
+ */
+public record DayFinalizedEvent(LocalDate date) {
+
+    /**
+     * 日期區間 {@code [start, end]} 是否包含日結日期。
+     */
+    public boolean touchesRange(LocalDate start, LocalDate end) {
+        return (start == null || !date.isBefore(start)) && (end == null || !date.isAfter(end));
+    }
+}
@@ -1,24 +1,29 @@
 package io.github.samzhu.ledger.service;
 
-import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
-import io.github.samzhu.ledger.document.RawEventBatch;
-import io.github.samzhu.ledger.dto.UsageEventData;
+import io.github.samzhu.ledger.document.ErrorEvent;
 
 /**
  * 錯誤事件查詢服務。
  *
- * <p>從 RawEventBatch 文件中提取錯誤事件，提供給錯誤監控頁面使用。
+ * <p>錯誤事件來自兩個來源，合併後提供給錯誤監控頁面使用：
+ * <ul>
+ *   <li>{@code error_events} 集合 - flush 時寫入，依 {@code eventTime} 與篩選欄位建立索引，
+ *       查詢成本為 O(limit)，不需展開 {@code raw_event_batches}</li>
+ *   <li>{@link RecentErrorBuffer} - 本實例接收但尚未 flush 的錯誤</li>
+ * </ul>
  */
 @Service
 public class ErrorQueryService {
@@ -26,95 +31,66 @@ public class ErrorQueryService {
     private static final Logger log = LoggerFactory.getLogger(ErrorQueryService.class);
 
     private final MongoTemplate mongoTemplate;
+    private final RecentErrorBuffer recentErrorBuffer;
 
-    public ErrorQueryService(MongoTemplate mongoTemplate) {
+    public ErrorQueryService(MongoTemplate mongoTemplate, RecentErrorBuffer recentErrorBuffer) {
         this.mongoTemplate = mongoTemplate;
+        this.recentErrorBuffer = recentErrorBuffer;
     }
 
     /**
      * 取得最近的錯誤事件。
      *
-     * <p>從最近的 RawEventBatch 批次中提取錯誤事件，依時間倒序排列。
-     *
      * @param limit 最大回傳數量
-     * @return 錯誤事件列表
+     * @return 錯誤事件列表，依時間倒序
      */
     public List<ErrorEvent> getRecentErrors(int limit) {
-        log.debug("Querying recent error events, limit={}", limit);
-
-        // 查詢最近的批次（多查一些以確保有足夠的錯誤事件）
-        Query query = new Query()
-            .with(Sort.by(Sort.Direction.DESC, "createdAt"))
-            .with(PageRequest.of(0, 100));
-
-        List<RawEventBatch> batches = mongoTemplate.find(query, RawEventBatch.class);
-
-        // 從批次中提取錯誤事件
-        List<ErrorEvent> errorEvents = new ArrayList<>();
-        for (RawEventBatch batch : batches) {
-            if (batch.events() == null) continue;
+        return getRecentErrors(limit, null, null, null);
+    }
 
-            for (UsageEventData event : batch.events()) {
-                if (!event.isSuccess()) {
-                    errorEvents.add(ErrorEvent.from(event, batch.id()));
+    /**
+     * 取得最近的錯誤事件（可篩選）。
+     *
+     * <p>資料庫與記憶體緩衝各取至多 {@code limit} 筆，以事件鍵去重（優先保留已寫入、帶有 batchId 的版本），
+     * 依時間倒序排列後截斷。
+     *
+     * @param limit 最大回傳數量
+     * @param model 模型篩選，null 表示不篩選
+     * @param errorType 錯誤類型篩選，null 表示不篩選
+     * @param userId 用戶篩選，null 表示不篩選
+     * @return 錯誤事件列表，依時間倒序
+     */
+    public List<ErrorEvent> getRecentErrors(int limit, String model, String errorType, String userId) {
+        log.debug("Querying recent error events, limit={}, model={}, errorType={}, userId={}",
+            limit, model, errorType, userId);
 
-                    // 提前退出以提高效能
-                    if (errorEvents.size() >= limit * 2) break;
-                }
-            }
-            if (errorEvents.size() >= limit * 2) break;
+        Query query = new Query()
+            .with(Sort.by(Sort.Direction.DESC, "eventTime"))
+            .limit(limit);
+        if (model != null) {
+            query.addCriteria(Criteria.where("model").is(model));
+        }
+        if (errorType != null) {
+            query.addCriteria(Criteria.where("errorType").is(errorType));
+        }
+        if (userId != null) {
+            query.addCriteria(Criteria.where("userId").is(userId));
         }
 
-        // 依時間倒序排序並限制數量
-        errorEvents.sort(Comparator.comparing(ErrorEvent::eventTime).reversed());
+        Map<String, ErrorEvent> merged = new LinkedHashMap<>();
+        for (ErrorEvent event : mongoTemplate.find(query, ErrorEvent.class)) {
+            merged.putIfAbsent(event.eventKey(), event);
+        }
+        for (ErrorEvent event : recentErrorBuffer.recent(limit, model, errorType, userId)) {
+            merged.putIfAbsent(event.eventKey(), event);
+        }
 
-        List<ErrorEvent> result = errorEvents.size() > limit
-            ? errorEvents.subList(0, limit)
-            : errorEvents;
+        List<ErrorEvent> result = merged.values().stream()
+            .sorted(Comparator.comparing(ErrorEvent::eventTime).reversed())
+            .limit(limit)
+            .toList();
 
         log.debug("Found {} error events", result.size());
         return result;
     }
-
-    /**
-     * 錯誤事件資料。
-     */
-    public record ErrorEvent(
-        String batchId,
-        String userId,
-        java.time.Instant eventTime,
-        String model,
-        String status,
-        String errorType,
-        String traceId,
-        String anthropicRequestId,
-        String messageId,
-        String keyAlias,
-        long latencyMs,
-        int inputTokens,
-        int outputTokens,
-        boolean stream
-    ) {
-        /**
-         * 從 UsageEventData 建立 ErrorEvent。
-         */
-        public static ErrorEvent from(UsageEventData event, String batchId) {
-            return new ErrorEvent(
-                batchId,
-                event.userId(),
-                event.eventTime(),
-                event.model(),
-                event.status(),
-                event.errorType(),
-                event.traceId(),
-                event.anthropicRequestId(),
-                event.messageId(),
-                event.keyAlias(),
-                event.latencyMs(),
-                event.inputTokens(),
-                event.outputTokens(),
-                event.stream()
-            );
-        }
-    }
 }
@@ -1,20 +1,27 @@
 package io.github.samzhu.ledger.service;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.SmartLifecycle;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import io.github.samzhu.ledger.config.LedgerProperties;
+import io.github.samzhu.ledger.document.ErrorEvent;
 import io.github.samzhu.ledger.document.RawEventBatch;
+import io.github.samzhu.ledger.document.RawEventBatch.UsageDelta;
 import io.github.samzhu.ledger.dto.UsageEventData;
-import io.github.samzhu.ledger.repository.RawEventBatchRepository;
+import io.github.samzhu.ledger.repository.ErrorEventRepository;
+import io.github.samzhu.ledger.storage.RawBatchStore;
 
 /**
  * 事件緩衝服務，負責批次儲存用量事件到 MongoDB。
@@ -28,11 +35,16 @@ import io.github.samzhu.ledger.repository.RawEventBatchRepository;
  *
  * <p>寫入流程：
  * <ol>
- *   <li>將事件批次儲存為 {@link RawEventBatch}（processed=false）</li>
+ *   <li>將事件批次儲存為 {@link RawEventBatch}（processed=false），並附上依用戶、模型、日期彙整的用量增量</li>
+ *   <li>批次中的失敗事件另存為精簡的 {@link ErrorEvent}，供錯誤查詢使用</li>
  *   <li>聚合統計由 {@link BatchSettlementService} 定時執行（每小時整點）</li>
+ *   <li>寫入成功後發佈 {@link BatchFlushedEvent}，供未結算用量疊加立即納入</li>
  *   <li>若寫入失敗，事件會重新加入緩衝區等待下次 retry</li>
  * </ol>
  *
+ * <p>緩衝區另外維護依用戶、模型分組的用量增量，加入事件時累加、flush 時整組換新，
+ * 供 {@link PendingUsageService} 以單一用戶或模型查詢未 flush 的用量，不需掃描緩衝區。
+ *
  * <p>實作 {@link SmartLifecycle} 確保：
  * <ul>
  *   <li>關閉時 flush 所有緩衝事件到資料庫</li>
@@ -47,28 +59,50 @@ public class EventBufferService implements SmartLifecycle {
 
     private static final Logger log = LoggerFactory.getLogger(EventBufferService.class);
 
-    private final RawEventBatchRepository rawEventBatchRepository;
+    private final RawBatchStore rawBatchStore;
+    private final ErrorEventRepository errorEventRepository;
+    private final RecentErrorBuffer recentErrorBuffer;
+    private final CostCalculationService costService;
+    private final ApplicationEventPublisher eventPublisher;
     private final List<UsageEventData> eventBuffer = new CopyOnWriteArrayList<>();
+    private volatile BufferedDeltas bufferedDeltas = new BufferedDeltas();
     private final AtomicBoolean running = new AtomicBoolean(false);
 
     private final int batchSize;
+    private final Duration errorRetention;
 
     public EventBufferService(
-            RawEventBatchRepository rawEventBatchRepository,
+            RawBatchStore rawBatchStore,
+            ErrorEventRepository errorEventRepository,
+            RecentErrorBuffer recentErrorBuffer,
+            CostCalculationService costService,
+            ApplicationEventPublisher eventPublisher,
             LedgerProperties properties) {
-        this.rawEventBatchRepository = rawEventBatchRepository;
+        this.rawBatchStore = rawBatchStore;
+        this.errorEventRepository = errorEventRepository;
+        this.recentErrorBuffer = recentErrorBuffer;
+        this.costService = costService;
+        this.eventPublisher = eventPublisher;
         this.batchSize = properties.batch().size();
+        this.errorRetention = Duration.ofDays(properties.errors() != null
+            ? properties.errors().retentionDays()
+            : LedgerProperties.ErrorsConfig.defaults().retentionDays());
     }
 
     /**
      * 將事件加入緩衝區。
      *
-     * <p>若緩衝區大小達到 {@code batchSize}，立即觸發 flush。
+     * <p>失敗事件同時寫入 {@link RecentErrorBuffer}，flush 前即可查詢。
+     * 若緩衝區大小達到 {@code batchSize}，立即觸發 flush。
      *
      * @param event 用量事件
      */
     public void addEvent(UsageEventData event) {
         eventBuffer.add(event);
+        bufferedDeltas.add(UsageDelta.of(event, costService.estimateCost(event)));
+        if (!event.isSuccess()) {
+            recentErrorBuffer.add(ErrorEvent.from(event, null, errorRetention));
+        }
         log.debug("Event buffered: userId={}, model={}, bufferSize={}",
             event.userId(), event.model(), eventBuffer.size());
 
@@ -92,14 +126,19 @@ public class EventBufferService implements SmartLifecycle {
 
         List<UsageEventData> batch = new ArrayList<>(eventBuffer);
         eventBuffer.clear();
+        BufferedDeltas flushedDeltas = bufferedDeltas;
+        bufferedDeltas = new BufferedDeltas();
 
         log.info("Flushing {} events to database", batch.size());
         long startTime = System.currentTimeMillis();
 
+        RawEventBatch rawBatch;
         try {
             // 儲存原始事件批次（processed=false，等待結算服務處理）
-            RawEventBatch rawBatch = RawEventBatch.create(batch);
-            rawEventBatchRepository.save(rawBatch);
+            List<UsageDelta> deltas = UsageDelta.summarize(batch, costService::estimateCost);
+            rawBatch = rawBatchStore.save(RawEventBatch.create(batch, deltas));
+
+            saveErrorEvents(rawBatch);
 
             long duration = System.currentTimeMillis() - startTime;
             log.info("Flush completed: id={}, {} events in {}ms", rawBatch.id(), batch.size(), duration);
@@ -107,6 +146,31 @@ public class EventBufferService implements SmartLifecycle {
             log.error("Failed to flush {} events, re-adding to buffer for retry: {}",
                 batch.size(), e.getMessage(), e);
             eventBuffer.addAll(0, batch);
+            bufferedDeltas.addAll(flushedDeltas);
+            return;
+        }
+        eventPublisher.publishEvent(new BatchFlushedEvent(rawBatch.id(), rawBatch.deltas()));
+    }
+
+    /**
+     * 將批次中的失敗事件寫入 {@code error_events}。
+     *
+     * <p>原始批次已寫入，錯誤事件僅為查詢索引；寫入失敗只記錄錯誤，不重新加入緩衝區，避免原始事件重複。
+     */
+    private void saveErrorEvents(RawEventBatch rawBatch) {
+        List<ErrorEvent> errors = rawBatch.events().stream()
+            .filter(event -> !event.isSuccess())
+            .map(event -> ErrorEvent.from(event, rawBatch.id(), errorRetention))
+            .toList();
+        if (errors.isEmpty()) {
+            return;
+        }
+        try {
+            errorEventRepository.insert(errors);
+            log.debug("Saved {} error events for batch {}", errors.size(), rawBatch.id());
+        } catch (Exception e) {
+            log.error("Failed to save {} error events for batch {}: {}",
+                errors.size(), rawBatch.id(), e.getMessage(), e);
         }
     }
 
@@ -166,4 +230,66 @@ public class EventBufferService implements SmartLifecycle {
     public int getBufferSize() {
         return eventBuffer.size();
     }
+
+    /**
+     * 取得緩衝區事件的快照（尚未寫入資料庫的事件）。
+     *
+     * @return 緩衝區事件的不可變副本
+     */
+    public List<UsageEventData> getBufferedEvents() {
+        return List.copyOf(eventBuffer);
+    }
+
+    /**
+     * 取得用戶在緩衝區中的用量增量。
+     *
+     * @param userId 用戶 ID
+     * @return 依（模型、UTC 日期）彙整的增量
+     */
+    public List<UsageDelta> getBufferedUserDeltas(String userId) {
+        return bufferedDeltas.of(bufferedDeltas.byUser, userId);
+    }
+
+    /**
+     * 取得模型在緩衝區中的用量增量。
+     *
+     * @param model 模型名稱
+     * @return 依（用戶、UTC 日期）彙整的增量
+     */
+    public List<UsageDelta> getBufferedModelDeltas(String model) {
+        return bufferedDeltas.of(bufferedDeltas.byModel, model);
+    }
+
+    /**
+     * 緩衝區用量增量，依用戶與模型各自分組，以（用戶、模型、UTC 日期）為鍵累加。
+     */
+    private static final class BufferedDeltas {
+
+        private final Map<String, Map<String, UsageDelta>> byUser = new ConcurrentHashMap<>();
+        private final Map<String, Map<String, UsageDelta>> byModel = new ConcurrentHashMap<>();
+
+        void add(UsageDelta delta) {
+            merge(byUser, delta.userId(), delta);
+            merge(byModel, delta.model(), delta);
+        }
+
+        void addAll(BufferedDeltas other) {
+            other.byUser.values().forEach(deltas -> deltas.values().forEach(this::add));
+            // 無用戶 ID 的增量只存在於模型分組
+            other.byModel.values().forEach(deltas -> deltas.values().stream()
+                .filter(delta -> delta.userId() == null)
+                .forEach(this::add));
+        }
+
+        List<UsageDelta> of(Map<String, Map<String, UsageDelta>> grouped, String key) {
+            Map<String, UsageDelta> deltas = key != null ? grouped.get(key) : null;
+            return deltas != null ? List.copyOf(deltas.values()) : List.of();
+        }
+
+        private static void merge(Map<String, Map<String, UsageDelta>> grouped, String key, UsageDelta delta) {
+            if (key != null) {
+                grouped.computeIfAbsent(key, k -> new ConcurrentHashMap<>()).merge(delta.key(), delta, UsageDelta::plus);
+            }
+        }
+    }
 }
@@ -1,6 +1,7 @@
 package io.github.samzhu.ledger.service;
 
 import java.nio.ByteBuffer;
+import java.util.Collection;
 
 import org.springframework.stereotype.Service;
 
@@ -118,6 +119,39 @@ public class LatencyDigestService {
         return merged;
     }
 
+    /**
+     * 平行合併多個序列化的 T-Digest。
+     *
+     * <p>各執行緒先將分到的 digest 反序列化並合併為部分結果，最後再合併部分結果，
+     * 適合跨日期區間（數十至數百個 digest）的百分位查詢。
+     *
+     * @param serialized 序列化的 T-Digest bytes，null 或空的項目會略過
+     * @return 合併後的新 T-Digest
+     */
+    public TDigest mergeSerialized(Collection<byte[]> serialized) {
+        return serialized.parallelStream()
+            .filter(bytes -> bytes != null && bytes.length > 0)
+            .collect(this::createDigest, (digest, bytes) -> digest.add(deserialize(bytes)), TDigest::add);
+    }
+
+    /**
+     * 以指定壓縮因子重新壓縮序列化的 T-Digest。
+     *
+     * <p>用於日結：已結束日期只需讀取百分位數，可用較低的壓縮因子換取較小的文件。
+     *
+     * @param bytes 序列化的 T-Digest bytes，可為 null 或空
+     * @param targetCompression 目標壓縮因子
+     * @return 重新壓縮後的 bytes；輸入為空時回傳 null
+     */
+    public byte[] recompress(byte[] bytes, int targetCompression) {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        TDigest compressed = TDigest.createMergingDigest(targetCompression);
+        compressed.add(deserialize(bytes));
+        return serialize(compressed);
+    }
+
     /**
      * 將多個延遲值加入 T-Digest。
      *
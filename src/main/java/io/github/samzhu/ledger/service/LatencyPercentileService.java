@@ -0,0 +1,184 @@
+package io.github.samzhu.ledger.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import com.tdunning.math.stats.TDigest;
+
+import io.github.samzhu.ledger.config.QueryCacheConfig;
+import io.github.samzhu.ledger.document.DailyModelUsage;
+import io.github.samzhu.ledger.document.DailyUserUsage;
+import io.github.samzhu.ledger.document.HourlyUsage;
+import io.github.samzhu.ledger.document.SystemStats;
+
+/**
+ * 任意日期區間的延遲百分位查詢服務。
+ *
+ * <p>每日文件保存的 {@code latencyDigest}（T-Digest）可合併，
+ * 因此「模型 X 最近 30 天的 P99」不需要原始事件：
+ * <ol>
+ *   <li>以文件 ID 批次讀取區間內每日的 digest，projection 只載入 {@code latencyDigest}</li>
+ *   <li>以 {@link LatencyDigestService#mergeSerialized} 平行合併</li>
+ *   <li>合併結果以序列化形式快取（{@value QueryCacheConfig#LATENCY_DIGESTS}），
+ *       之後同區間的任意百分位查詢只需反序列化</li>
+ * </ol>
+ *
+ * <p>維度沿用 {@link HourlyUsage} 的定義：{@code user}、{@code model}、{@code system}（key 固定為 {@code all}）。
+ */
+@Service
+public class LatencyPercentileService {
+
+    private static final Logger log = LoggerFactory.getLogger(LatencyPercentileService.class);
+
+    private static final String DIGEST_FIELD = "latencyDigest";
+
+    private final MongoTemplate mongoTemplate;
+    private final LatencyDigestService digestService;
+
+    public LatencyPercentileService(MongoTemplate mongoTemplate, LatencyDigestService digestService) {
+        this.mongoTemplate = mongoTemplate;
+        this.digestService = digestService;
+    }
+
+    /**
+     * 合併日期區間內的延遲 digest。
+     *
+     * @param dimension 維度（user、model、system）
+     * @param key 維度鍵（userId、模型名稱或 {@code all}）
+     * @param startDate 起始日期（含）
+     * @param endDate 結束日期（含）
+     * @return 合併結果；區間內沒有延遲資料時 digest 為 null
+     * @throws IllegalArgumentException 維度不合法
+     */
+    @Cacheable(QueryCacheConfig.LATENCY_DIGESTS)
+    public MergedDigest getMergedDigest(String dimension, String key, LocalDate startDate, LocalDate endDate) {
+        long startTime = System.currentTimeMillis();
+
+        List<String> docIds = new ArrayList<>();
+        for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
+            docIds.add(documentId(dimension, key, date));
+        }
+
+        Query query = Query.query(Criteria.where("_id").in(docIds));
+        query.fields().include(DIGEST_FIELD);
+        List<byte[]> digests = mongoTemplate.find(query, Document.class, collection(dimension)).stream()
+            .map(doc -> binary(doc.get(DIGEST_FIELD)))
+            .filter(bytes -> bytes != null && bytes.length > 0)
+            .toList();
+
+        if (digests.isEmpty()) {
+            return new MergedDigest(null, 0);
+        }
+        TDigest merged = digestService.mergeSerialized(digests);
+
+        log.debug("Merged {} latency digests for {}={} ({} to {}) in {}ms",
+            digests.size(), dimension, key, startDate, endDate, System.currentTimeMillis() - startTime);
+        return new MergedDigest(digestService.serialize(merged), digests.size());
+    }
+
+    /**
+     * 由合併結果計算百分位數。
+     *
+     * @param merged 合併結果
+     * @param quantiles 百分位（0 到 1 之間，例如 0.99）
+     * @return 延遲統計與各百分位數；無資料時回傳空統計
+     */
+    public Percentiles percentiles(MergedDigest merged, List<Double> quantiles) {
+        if (merged.digest() == null) {
+            return Percentiles.empty(merged.days());
+        }
+        TDigest digest = digestService.deserialize(merged.digest());
+        LatencyDigestService.LatencyStats stats = digestService.calculateStats(digest);
+
+        Map<String, Double> values = new LinkedHashMap<>();
+        for (double quantile : quantiles) {
+            values.put(label(quantile), digest.quantile(quantile));
+        }
+        return new Percentiles(merged.days(), stats.count(), stats.minMs(), stats.maxMs(), stats.avgMs(), values);
+    }
+
+    /**
+     * 是否為支援的維度。
+     */
+    public static boolean isValidDimension(String dimension) {
+        return HourlyUsage.DIMENSION_USER.equals(dimension)
+            || HourlyUsage.DIMENSION_MODEL.equals(dimension)
+            || HourlyUsage.DIMENSION_SYSTEM.equals(dimension);
+    }
+
+    /**
+     * 百分位標籤，例如 0.5 為 {@code p50}、0.999 為 {@code p99.9}。
+     */
+    static String label(double quantile) {
+        return "p" + BigDecimal.valueOf(quantile).movePointRight(2).stripTrailingZeros().toPlainString();
+    }
+
+    private static String documentId(String dimension, String key, LocalDate date) {
+        return switch (dimension) {
+            case HourlyUsage.DIMENSION_USER -> DailyUserUsage.createId(date, key);
+            case HourlyUsage.DIMENSION_MODEL -> DailyModelUsage.createId(date, key);
+            case HourlyUsage.DIMENSION_SYSTEM -> SystemStats.createId(date);
+            default -> throw new IllegalArgumentException("Unsupported dimension: " + dimension);
+        };
+    }
+
+    private String collection(String dimension) {
+        return switch (dimension) {
+            case HourlyUsage.DIMENSION_USER -> mongoTemplate.getCollectionName(DailyUserUsage.class);
+            case HourlyUsage.DIMENSION_MODEL -> mongoTemplate.getCollectionName(DailyModelUsage.class);
+            default -> mongoTemplate.getCollectionName(SystemStats.class);
+        };
+    }
+
+    private static byte[] binary(Object value) {
+        if (value instanceof Binary b) {
+            return b.getData();
+        }
+        return value instanceof byte[] bytes ? bytes : null;
+    }
+
+    /**
+     * 區間合併後的 digest（序列化，可安全共用於快取）。
+     *
+     * @param digest 序列化的 T-Digest，無資料時為 null
+     * @param days 有延遲資料的天數
+     */
+    public record MergedDigest(byte[] digest, int days) {}
+
+    /**
+     * 區間延遲百分位。
+     *
+     * @param days 有延遲資料的天數
+     * @param count 樣本數
+     * @param minMs 最小延遲（毫秒）
+     * @param maxMs 最大延遲（毫秒）
+     * @param avgMs 平均延遲（毫秒）
+     * @param values 各百分位延遲（毫秒），key 如 {@code p50}、{@code p99.9}
+     */
+    public record Percentiles(
+        int days,
+        long count,
+        long minMs,
+        long maxMs,
+        double avgMs,
+        Map<String, Double> values
+    ) {
+        static Percentiles empty(int days) {
+            return new Percentiles(days, 0, 0, 0, 0.0, Map.of());
+        }
+    }
+}
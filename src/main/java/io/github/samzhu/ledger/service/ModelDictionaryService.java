@@ -0,0 +1,192 @@
+package io.github.samzhu.ledger.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import io.github.samzhu.ledger.document.ModelDictionary;
+
+/**
+ * 模型字典服務，配發並快取模型名稱對應的穩定數字 ID。
+ *
+ * <p>ID 一經配發即不變更，因此快取在記憶體中永不失效；
+ * 未命中時批次讀取 {@code model_dictionary}，仍不存在才以 {@code ledger_meta} 的序號配發。
+ * 模型數量有限，結算時幾乎都命中快取。
+ *
+ * @see ModelDictionary
+ */
+@Service
+public class ModelDictionaryService {
+
+    private static final Logger log = LoggerFactory.getLogger(ModelDictionaryService.class);
+
+    static final String SEQUENCE_ID = "model_id_seq";
+
+    /** 舊 key 找不到對應模型時，重新讀取字典的最短間隔 */
+    static final Duration RELOAD_INTERVAL = Duration.ofSeconds(30);
+
+    private final MongoTemplate mongoTemplate;
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+
+    /** 舊文件欄位 key → 原始模型名稱 */
+    private final Map<String, String> legacyNames = new ConcurrentHashMap<>();
+
+    /** 最近一次讀取整個字典的時間（{@link System#nanoTime()}），由 {@link #reloadDue()} 同步存取 */
+    private long lastReloadNanos;
+    private boolean reloaded;
+
+    public ModelDictionaryService(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * 取得多個模型的數字 ID，不存在時配發。
+     *
+     * @param models 模型名稱
+     * @return 模型名稱 → 數字 ID
+     */
+    public Map<String, Integer> idsOf(Collection<String> models) {
+        Map<String, Integer> result = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String model : models) {
+            Integer id = ids.get(model);
+            if (id != null) {
+                result.put(model, id);
+            } else {
+                missing.add(model);
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        for (ModelDictionary entry : mongoTemplate.find(
+                Query.query(Criteria.where("_id").in(missing)), ModelDictionary.class)) {
+            remember(entry.model(), entry.modelId());
+            result.put(entry.model(), entry.modelId());
+        }
+        for (String model : missing) {
+            if (!result.containsKey(model)) {
+                result.put(model, allocate(model));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 取得單一模型的數字 ID，不存在時配發。
+     *
+     * @param model 模型名稱
+     * @return 數字 ID
+     */
+    public int idOf(String model) {
+        return idsOf(List.of(model)).get(model);
+    }
+
+    /**
+     * 將舊文件的模型 key 還原為原始模型名稱。
+     *
+     * <p>舊版 {@code daily_user_usage.modelBreakdown} 以模型名稱作為欄位名稱，{@code .}、{@code $} 改寫為 {@code _}；
+     * 子文件則保留原始名稱，合併前需先還原，否則含 {@code .} 的模型會出現兩次。
+     * 未命中時讀取整個字典（模型數量有限）；字典中沒有對應模型時回傳原 key。
+     *
+     * <p>找不到的 key 不快取：模型之後可能由其他實例登錄。為避免已下線模型的 key 每次都讀取字典，
+     * 未命中時最多每 {@link #RELOAD_INTERVAL} 重新讀取一次；本實例登錄的模型則立即可還原。
+     *
+     * @param fieldKey 舊文件的模型 key
+     * @return 原始模型名稱
+     */
+    public String legacyModelName(String fieldKey) {
+        if (fieldKey.indexOf('_') < 0 || ids.containsKey(fieldKey)) {
+            return fieldKey;
+        }
+        String cached = legacyNames.get(fieldKey);
+        if (cached != null) {
+            return cached;
+        }
+        if (reloadDue()) {
+            mongoTemplate.findAll(ModelDictionary.class).forEach(entry -> remember(entry.model(), entry.modelId()));
+            if (ids.containsKey(fieldKey)) {
+                return fieldKey;
+            }
+        }
+        return legacyNames.getOrDefault(fieldKey, fieldKey);
+    }
+
+    /**
+     * 距離上次讀取整個字典已超過 {@link #RELOAD_INTERVAL} 時回傳 true 並記錄本次時間。
+     */
+    private synchronized boolean reloadDue() {
+        long now = System.nanoTime();
+        if (reloaded && now - lastReloadNanos < RELOAD_INTERVAL.toNanos()) {
+            return false;
+        }
+        reloaded = true;
+        lastReloadNanos = now;
+        return true;
+    }
+
+    /**
+     * 模型名稱作為 MongoDB 欄位名稱時的改寫（欄位名稱不能包含 {@code .} 與 {@code $}）。
+     *
+     * @param model 模型名稱
+     * @return 欄位名稱
+     */
+    public static String fieldKey(String model) {
+        return model.replace(".", "_").replace("$", "_");
+    }
+
+    private void remember(String model, int modelId) {
+        ids.put(model, modelId);
+        String key = fieldKey(model);
+        if (!key.equals(model)) {
+            legacyNames.put(key, model);
+        }
+    }
+
+    /**
+     * 配發新的數字 ID。
+     *
+     * <p>其他實例同時配發同一模型時主鍵衝突，改讀取勝出者的 ID。
+     */
+    private int allocate(String model) {
+        Document sequence = mongoTemplate.findAndModify(
+            Query.query(Criteria.where("_id").is(SEQUENCE_ID)),
+            new Update().inc("value", 1L),
+            FindAndModifyOptions.options().upsert(true).returnNew(true),
+            Document.class,
+            DataVersionService.COLLECTION);
+        int candidate = ((Number) sequence.get("value")).intValue();
+
+        int modelId;
+        try {
+            mongoTemplate.insert(new ModelDictionary(model, candidate, Instant.now()));
+            modelId = candidate;
+            log.info("Model dictionary: assigned id {} to {}", modelId, model);
+        } catch (DuplicateKeyException e) {
+            ModelDictionary winner = mongoTemplate.findById(model, ModelDictionary.class);
+            if (winner == null) {
+                throw e;
+            }
+            modelId = winner.modelId();
+        }
+        remember(model, modelId);
+        return modelId;
+    }
+}
@@ -0,0 +1,221 @@
+package io.github.samzhu.ledger.service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import io.github.samzhu.ledger.config.LedgerProperties;
+import io.github.samzhu.ledger.document.RawEventBatch;
+import io.github.samzhu.ledger.document.SystemStats;
+import io.github.samzhu.ledger.service.UsageExportService.Dataset;
+import io.github.samzhu.ledger.service.UsageExportService.Format;
+
+/**
+ * 離線分析匯出服務。
+ *
+ * <p>將已結束的日期增量匯出到本機或掛載目錄，分析工作可離線執行，不再查詢線上資料庫：
+ * <pre>
+ * {directory}/
+ *   raw_events/date=2025-12-09/part-00000.csv.gz
+ *   daily_user_usage/date=2025-12-09/part-00000.csv.gz
+ *   daily_model_usage/date=2025-12-09/part-00000.csv.gz
+ *   {dataset}/_watermark        已匯出的最後日期
+ * </pre>
+ *
+ * <ul>
+ *   <li>目錄採 Hive 分區命名（{@code date=YYYY-MM-DD}），DuckDB、Spark 等可直接以分區欄位裁剪讀取</li>
+ *   <li>欄位沿用 {@link UsageExportService.Dataset} 定義，只讀取匯出欄位（column pruning）</li>
+ *   <li>日彙總僅匯出已日結（{@code system_stats.finalized=true}）的日期；原始事件匯出 UTC 昨日以前的批次</li>
+ *   <li>先寫入暫存檔再原子搬移，中斷後重跑會覆寫同一分區，結果冪等</li>
+ * </ul>
+ *
+ * @see LedgerProperties.ExportConfig
+ */
+@Service
+public class OfflineExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(OfflineExportService.class);
+
+    private static final List<Dataset> DATASETS =
+        List.of(Dataset.RAW_EVENTS, Dataset.DAILY_USER_USAGE, Dataset.DAILY_MODEL_USAGE);
+
+    private static final String PART_FILE = "part-00000.csv.gz";
+    private static final String WATERMARK_FILE = "_watermark";
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    private final MongoTemplate mongoTemplate;
+    private final UsageExportService exportService;
+    private final LedgerProperties.ExportConfig config;
+    private final List<Dataset> datasets;
+    private final Path directory;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    public OfflineExportService(
+            MongoTemplate mongoTemplate,
+            UsageExportService exportService,
+            LedgerProperties properties) {
+        this.mongoTemplate = mongoTemplate;
+        this.exportService = exportService;
+        this.config = properties.export() != null
+            ? properties.export()
+            : LedgerProperties.ExportConfig.defaults();
+        this.directory = Path.of(config.directory());
+        LedgerProperties.StorageConfig storage = properties.storage() != null
+            ? properties.storage()
+            : LedgerProperties.StorageConfig.defaults();
+        // 內嵌儲存後端不保留已結算的原始批次
+        this.datasets = storage.retainsSettledBatches()
+            ? DATASETS
+            : DATASETS.stream().filter(dataset -> dataset != Dataset.RAW_EVENTS).toList();
+    }
+
+    /**
+     * 定時匯出任務（UTC），預設每小時 45 分執行；{@code ledger.export.enabled=false} 時不執行。
+     */
+    @Scheduled(cron = "${ledger.export.cron:0 45 * * * *}", zone = "UTC")
+    public void scheduledExport() {
+        if (!config.enabled()) {
+            return;
+        }
+        Map<String, List<LocalDate>> exported = exportPending();
+        if (exported.values().stream().anyMatch(dates -> !dates.isEmpty())) {
+            log.info("Scheduled offline export completed: {}", exported);
+        }
+    }
+
+    /**
+     * 匯出所有資料集水位線之後、已可匯出的日期。
+     *
+     * <p>同一資料集的日期依序匯出並逐日推進水位線；某日失敗時停止該資料集，下次從失敗的日期重試。
+     *
+     * @return 各資料集本次匯出的日期；已有匯出執行中時回傳空 Map
+     */
+    public Map<String, List<LocalDate>> exportPending() {
+        if (!running.compareAndSet(false, true)) {
+            log.info("Offline export already running, skipping");
+            return Map.of();
+        }
+        try {
+            Map<String, List<LocalDate>> result = new LinkedHashMap<>();
+            for (Dataset dataset : datasets) {
+                result.put(name(dataset), exportDataset(dataset));
+            }
+            return result;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private List<LocalDate> exportDataset(Dataset dataset) {
+        List<LocalDate> exported = new ArrayList<>();
+        try {
+            LocalDate watermark = readWatermark(dataset);
+            for (LocalDate date : pendingDates(dataset, watermark)) {
+                long rows = exportPartition(dataset, date);
+                writeWatermark(dataset, date);
+                exported.add(date);
+                log.debug("Exported {} partition {}: {} rows", name(dataset), date, rows);
+            }
+        } catch (Exception e) {
+            log.error("Offline export of {} failed after {} days, will retry on next run: {}",
+                name(dataset), exported.size(), e.getMessage(), e);
+        }
+        return exported;
+    }
+
+    private List<LocalDate> pendingDates(Dataset dataset, LocalDate watermark) {
+        if (dataset == Dataset.RAW_EVENTS) {
+            LocalDate lastClosedDate = LocalDate.now(ZoneOffset.UTC).minusDays(1);
+            LocalDate from = watermark != null ? watermark.plusDays(1) : firstRawBatchDate();
+            List<LocalDate> dates = new ArrayList<>();
+            for (LocalDate date = from; date != null && !date.isAfter(lastClosedDate)
+                    && dates.size() < config.maxDaysPerRun(); date = date.plusDays(1)) {
+                dates.add(date);
+            }
+            return dates;
+        }
+
+        Criteria criteria = Criteria.where("finalized").is(true);
+        if (watermark != null) {
+            criteria = criteria.and("_id").gt(watermark.toString());
+        }
+        Query query = Query.query(criteria)
+            .with(Sort.by(Sort.Direction.ASC, "_id"))
+            .limit(config.maxDaysPerRun());
+        query.fields().include("_id");
+        return mongoTemplate.find(query, Document.class, mongoTemplate.getCollectionName(SystemStats.class))
+            .stream()
+            .map(doc -> LocalDate.parse(doc.getString("_id")))
+            .toList();
+    }
+
+    private LocalDate firstRawBatchDate() {
+        Query query = new Query().with(Sort.by(Sort.Direction.ASC, "_id")).limit(1);
+        query.fields().include("_id");
+        Document first = mongoTemplate.findOne(query, Document.class,
+            mongoTemplate.getCollectionName(RawEventBatch.class));
+        if (first == null || !(first.get("_id") instanceof ObjectId id)) {
+            return null;
+        }
+        return LocalDate.ofInstant(id.getDate().toInstant(), ZoneOffset.UTC);
+    }
+
+    private long exportPartition(Dataset dataset, LocalDate date) throws IOException {
+        Path partition = directory.resolve(name(dataset)).resolve("date=" + date);
+        Files.createDirectories(partition);
+        Path target = partition.resolve(PART_FILE);
+        Path temp = partition.resolve(PART_FILE + ".tmp");
+
+        long rows;
+        try (OutputStream out = new GZIPOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temp)), GZIP_BUFFER_SIZE)) {
+            rows = exportService.export(dataset, Format.CSV, date, date, out);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return rows;
+    }
+
+    private LocalDate readWatermark(Dataset dataset) throws IOException {
+        Path file = directory.resolve(name(dataset)).resolve(WATERMARK_FILE);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        return LocalDate.parse(Files.readString(file, StandardCharsets.UTF_8).trim());
+    }
+
+    private void writeWatermark(Dataset dataset, LocalDate date) throws IOException {
+        Path dir = directory.resolve(name(dataset));
+        Path temp = dir.resolve(WATERMARK_FILE + ".tmp");
+        Files.writeString(temp, date.toString(), StandardCharsets.UTF_8);
+        Files.move(temp, dir.resolve(WATERMARK_FILE),
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String name(Dataset dataset) {
+        return dataset.name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,203 @@
+package io.github.samzhu.ledger.service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import io.github.samzhu.ledger.document.OverviewSnapshot;
+import io.github.samzhu.ledger.document.SystemStats;
+import io.github.samzhu.ledger.document.UserQuota;
+import io.github.samzhu.ledger.repository.SystemStatsRepository;
+import io.github.samzhu.ledger.repository.UserQuotaRepository;
+
+/**
+ * 儀表板總覽快照服務。
+ *
+ * <p>為 {@link OverviewSnapshot#WINDOWS} 的每個區間維護一份 {@code overview_snapshots} 文件：
+ * <ul>
+ *   <li>結算完成 - 只重新讀取本次異動日期的系統日統計，替換快照中對應的日期並重算彙總</li>
+ *   <li>日結 - 日結會改寫當日的百分位與排行榜，同樣替換該日</li>
+ *   <li>換日 - 快照的結束日不是今日時，於下次結算或讀取時整份重建</li>
+ * </ul>
+ *
+ * <p>多實例同時更新同一份快照時以 {@code version} 樂觀鎖偵測，衝突時重新讀取快照再套用一次。
+ * 快照更新失敗不影響結算，讀取端會退回即時查詢。
+ */
+@Service
+public class OverviewSnapshotService {
+
+    private static final Logger log = LoggerFactory.getLogger(OverviewSnapshotService.class);
+
+    static final int TOP_USERS = 10;
+    private static final int MAX_ATTEMPTS = 2;
+
+    private final MongoTemplate mongoTemplate;
+    private final SystemStatsRepository systemStatsRepository;
+    private final UserQuotaRepository userQuotaRepository;
+
+    public OverviewSnapshotService(
+            MongoTemplate mongoTemplate,
+            SystemStatsRepository systemStatsRepository,
+            UserQuotaRepository userQuotaRepository) {
+        this.mongoTemplate = mongoTemplate;
+        this.systemStatsRepository = systemStatsRepository;
+        this.userQuotaRepository = userQuotaRepository;
+    }
+
+    /**
+     * 取得以今日為結束日的總覽快照。
+     *
+     * <p>快照不存在或已過期（換日）時就地重建。
+     *
+     * @param days 區間天數
+     * @return 總覽快照；不是預先計算的區間或無法讀寫時回傳 empty（呼叫端應改為即時查詢）
+     */
+    public Optional<OverviewSnapshot> find(int days) {
+        if (!OverviewSnapshot.WINDOWS.contains(days)) {
+            return Optional.empty();
+        }
+        LocalDate today = today();
+        try {
+            OverviewSnapshot snapshot = mongoTemplate.findById(OverviewSnapshot.createId(days), OverviewSnapshot.class);
+            if (snapshot != null && snapshot.isCurrent(today)) {
+                return Optional.of(snapshot);
+            }
+            return Optional.ofNullable(update(days, current -> rebuild(days, today, current)));
+        } catch (DataAccessException e) {
+            log.warn("Failed to read overview snapshot {}: {}", OverviewSnapshot.createId(days), e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * 結算完成後更新涵蓋異動日期的快照。
+     */
+    @EventListener
+    public void onSettlementCompleted(SettlementCompletedEvent event) {
+        if (!event.isEmpty()) {
+            refreshDates(event.dates());
+        }
+    }
+
+    /**
+     * 以異動日期的最新系統日統計更新快照。
+     *
+     * <p>異動日期只讀取一次，由各區間共用；不在任何區間內的日期（例如遲到事件的舊日期）直接略過。
+     *
+     * @param dates 異動的 UTC 日期
+     */
+    public void refreshDates(Collection<LocalDate> dates) {
+        LocalDate today = today();
+        int widest = OverviewSnapshot.WINDOWS.stream().mapToInt(Integer::intValue).max().orElse(1);
+        LocalDate widestStart = today.minusDays(widest - 1);
+        List<String> docIds = dates.stream()
+            .filter(date -> !date.isBefore(widestStart) && !date.isAfter(today))
+            .map(SystemStats::createId)
+            .toList();
+        if (docIds.isEmpty()) {
+            return;
+        }
+
+        long startTime = System.currentTimeMillis();
+        try {
+            List<SystemStats> changed = systemStatsRepository.findByIdIn(docIds);
+            List<UserQuota> topUsers = topUsers();
+            for (int days : OverviewSnapshot.WINDOWS) {
+                LocalDate start = today.minusDays(days - 1);
+                List<SystemStats> inWindow = changed.stream()
+                    .filter(stats -> !stats.date().isBefore(start))
+                    .toList();
+                if (inWindow.isEmpty() && dates.stream().noneMatch(date -> !date.isBefore(start))) {
+                    continue;
+                }
+                update(days, current -> current != null && current.isCurrent(today)
+                    ? patch(current, inWindow, topUsers)
+                    : rebuild(days, today, current));
+            }
+            log.debug("Overview snapshots refreshed for {} in {}ms", docIds, System.currentTimeMillis() - startTime);
+        } catch (DataAccessException e) {
+            log.warn("Failed to refresh overview snapshots for {}: {}", docIds, e.getMessage());
+        }
+    }
+
+    /**
+     * 讀取快照、套用變更並寫回；樂觀鎖衝突時重新讀取後再試。
+     */
+    private OverviewSnapshot update(int days, Function<OverviewSnapshot, OverviewSnapshot> change) {
+        String id = OverviewSnapshot.createId(days);
+        for (int attempt = 1; ; attempt++) {
+            OverviewSnapshot current = mongoTemplate.findById(id, OverviewSnapshot.class);
+            try {
+                return mongoTemplate.save(change.apply(current));
+            } catch (DataAccessException e) {
+                if (attempt >= MAX_ATTEMPTS) {
+                    throw e;
+                }
+                log.debug("Overview snapshot {} changed concurrently, retrying: {}", id, e.getMessage());
+            }
+        }
+    }
+
+    private OverviewSnapshot rebuild(int days, LocalDate today, OverviewSnapshot current) {
+        LocalDate start = today.minusDays(days - 1);
+        List<String> docIds = new ArrayList<>();
+        for (LocalDate date = start; !date.isAfter(today); date = date.plusDays(1)) {
+            docIds.add(SystemStats.createId(date));
+        }
+        List<SystemStats> stats = systemStatsRepository.findByIdIn(docIds).stream()
+            .sorted(Comparator.comparing(SystemStats::id))
+            .toList();
+        return snapshot(days, start, today, stats, topUsers(), current);
+    }
+
+    private OverviewSnapshot patch(OverviewSnapshot current, List<SystemStats> changed, List<UserQuota> topUsers) {
+        Map<String, SystemStats> byId = new LinkedHashMap<>();
+        if (current.stats() != null) {
+            current.stats().forEach(stats -> byId.put(stats.id(), stats));
+        }
+        changed.forEach(stats -> byId.put(stats.id(), stats));
+        List<SystemStats> stats = byId.values().stream()
+            .sorted(Comparator.comparing(SystemStats::id))
+            .toList();
+        return snapshot(current.days(), current.startDate(), current.endDate(), stats, topUsers, current);
+    }
+
+    private static OverviewSnapshot snapshot(int days, LocalDate start, LocalDate end,
+            List<SystemStats> stats, List<UserQuota> topUsers, OverviewSnapshot current) {
+        return new OverviewSnapshot(
+            OverviewSnapshot.createId(days),
+            days,
+            start,
+            end,
+            stats,
+            topUsers,
+            OverviewSnapshot.Summary.of(stats),
+            Instant.now(),
+            current != null ? current.version() : null
+        );
+    }
+
+    private List<UserQuota> topUsers() {
+        return userQuotaRepository.findAllByOrderByTotalTokensDesc(PageRequest.of(0, TOP_USERS));
+    }
+
+    private static LocalDate today() {
+        return LocalDate.now(ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,268 @@
+package io.github.samzhu.ledger.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import io.github.samzhu.ledger.document.RawEventBatch;
+import io.github.samzhu.ledger.document.RawEventBatch.UsageDelta;
+import io.github.samzhu.ledger.storage.RawBatchStore;
+
+/**
+ * 未結算用量服務，供查詢疊加（fresh read）使用。
+ *
+ * <p>結算每小時執行，加上 flush 延遲，已結算的彙總最多落後實際用量約 90 分鐘。
+ * 未結算用量由兩部分組成：
+ * <ul>
+ *   <li>本地緩衝區 - {@link EventBufferService} 加入事件時即累加的用戶、模型增量</li>
+ *   <li>未結算批次 - {@code processed=false} 的 {@link RawEventBatch} 在 flush 時寫入的 {@code deltas}，
+ *       以 projection 讀取後建立依用戶、模型分組的記憶體索引</li>
+ * </ul>
+ *
+ * <p>查詢只讀取記憶體中最近一次成功建立的索引，不存取資料庫也不等待重建。索引同步方式：
+ * <ul>
+ *   <li>本實例 flush - {@link BatchFlushedEvent} 立即加入新批次</li>
+ *   <li>結算完成 - {@link SettlementCompletedEvent} 同步移除已結算批次（先於配額快照更新），再觸發背景重新讀取</li>
+ *   <li>其他實例 - 每 {@code ledger.overlay.refresh-seconds} 秒背景重新讀取</li>
+ * </ul>
+ * 重新讀取失敗時保留舊索引，下一輪再試。
+ *
+ * <p>疊加結果為近似值：其他實例的結算完成到本實例重新讀取之間可能重複計入，
+ * 事件離開緩衝區到批次寫入之間可能短暫漏計。
+ */
+@Service
+public class PendingUsageService {
+
+    private static final Logger log = LoggerFactory.getLogger(PendingUsageService.class);
+
+    private final RawBatchStore rawBatchStore;
+    private final EventBufferService bufferService;
+    private final CostCalculationService costService;
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(
+        Thread.ofPlatform().name("pending-usage-refresh").daemon().factory());
+    private volatile PendingIndex index = PendingIndex.of(Map.of());
+
+    public PendingUsageService(
+            RawBatchStore rawBatchStore,
+            EventBufferService bufferService,
+            CostCalculationService costService) {
+        this.rawBatchStore = rawBatchStore;
+        this.bufferService = bufferService;
+        this.costService = costService;
+    }
+
+    /**
+     * 用戶在日期區間內每日的未結算用量。
+     *
+     * @param userId 用戶 ID
+     * @param startDate 起始日期（含）
+     * @param endDate 結束日期（含）
+     * @return 依日期排序的未結算用量，沒有未結算用量的日期不列出
+     */
+    public Map<LocalDate, PendingUsage> userDaily(String userId, LocalDate startDate, LocalDate endDate) {
+        return daily(index.byUser().get(userId), bufferService.getBufferedUserDeltas(userId), startDate, endDate);
+    }
+
+    /**
+     * 模型在日期區間內每日的未結算用量。
+     *
+     * @param model 模型名稱
+     * @param startDate 起始日期（含）
+     * @param endDate 結束日期（含）
+     * @return 依日期排序的未結算用量，沒有未結算用量的日期不列出
+     */
+    public Map<LocalDate, PendingUsage> modelDaily(String model, LocalDate startDate, LocalDate endDate) {
+        return daily(index.byModel().get(model), bufferService.getBufferedModelDeltas(model), startDate, endDate);
+    }
+
+    /**
+     * 用戶在配額週期內的未結算用量。
+     *
+     * @param userId 用戶 ID
+     * @param period 配額週期（UTC 月份）
+     * @return 未結算用量
+     */
+    public PendingUsage userPeriod(String userId, YearMonth period) {
+        return userDaily(userId, period.atDay(1), period.atEndOfMonth()).values().stream()
+            .reduce(PendingUsage.EMPTY, PendingUsage::plus);
+    }
+
+    /**
+     * 本實例 flush 後立即將新批次加入索引。
+     */
+    @EventListener
+    public synchronized void onBatchFlushed(BatchFlushedEvent event) {
+        Map<String, List<UsageDelta>> byBatch = new HashMap<>(index.byBatch());
+        byBatch.put(event.batchId(), event.deltas());
+        index = PendingIndex.of(byBatch);
+    }
+
+    /**
+     * 結算完成後立即移除已結算批次，再於背景重新讀取。
+     *
+     * <p>{@link QuotaSnapshotService} 收到同一事件時同步重新讀取已結算的期間成本；
+     * 本監聽者排在最前，檢查時已結算批次不會再以未結算用量重複計入。
+     */
+    @EventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onSettlementCompleted(SettlementCompletedEvent event) {
+        removeSettled(event.settledBatchIds());
+        refresher.execute(this::refresh);
+    }
+
+    /**
+     * 定時重新讀取，納入其他實例 flush 與結算的變動（啟動後立即執行第一次）。
+     */
+    @Scheduled(fixedDelayString = "${ledger.overlay.refresh-seconds:15}", timeUnit = TimeUnit.SECONDS)
+    public void scheduledRefresh() {
+        refresh();
+    }
+
+    /**
+     * 從索引移除已結算批次。
+     *
+     * <p>與 {@link #refresh} 互斥：進行中的重新讀取可能在標記結算前讀到這些批次，須等它寫回索引後再移除。
+     */
+    synchronized void removeSettled(Collection<String> batchIds) {
+        if (batchIds.isEmpty()) {
+            return;
+        }
+        Map<String, List<UsageDelta>> byBatch = new HashMap<>(index.byBatch());
+        if (byBatch.keySet().removeAll(batchIds)) {
+            index = PendingIndex.of(byBatch);
+        }
+    }
+
+    private Map<LocalDate, PendingUsage> daily(List<UsageDelta> batchDeltas, List<UsageDelta> bufferedDeltas,
+            LocalDate startDate, LocalDate endDate) {
+        Map<LocalDate, PendingUsage> result = new TreeMap<>();
+        for (List<UsageDelta> deltas : List.of(batchDeltas != null ? batchDeltas : List.<UsageDelta>of(), bufferedDeltas)) {
+            for (UsageDelta delta : deltas) {
+                if (!delta.date().isBefore(startDate) && !delta.date().isAfter(endDate)) {
+                    result.merge(delta.date(), PendingUsage.of(delta), PendingUsage::plus);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 重新讀取未結算批次增量並替換索引。
+     *
+     * <p>只在背景執行緒呼叫；與 {@link #onBatchFlushed} 互斥，避免讀取期間 flush 的批次被覆蓋。
+     */
+    synchronized void refresh() {
+        long startTime = System.currentTimeMillis();
+        try {
+            List<RawEventBatch> batches = rawBatchStore.findUnprocessedSummaries();
+
+            Map<String, List<UsageDelta>> byBatch = new HashMap<>();
+            List<String> legacyIds = new ArrayList<>();
+            for (RawEventBatch batch : batches) {
+                if (batch.deltas() != null) {
+                    byBatch.put(batch.id(), batch.deltas());
+                } else {
+                    legacyIds.add(batch.id());
+                }
+            }
+            // 未附增量的舊批次改讀完整事件彙整
+            if (!legacyIds.isEmpty()) {
+                rawBatchStore.findAllById(legacyIds)
+                    .forEach(batch -> byBatch.put(batch.id(),
+                        UsageDelta.summarize(batch.events(), costService::estimateCost)));
+            }
+
+            index = PendingIndex.of(byBatch);
+            log.debug("Pending usage index refreshed: {} batches ({} legacy) in {}ms",
+                byBatch.size(), legacyIds.size(), System.currentTimeMillis() - startTime);
+        } catch (Exception e) {
+            // 保留舊索引，下一輪定時重新讀取再試
+            log.warn("Failed to refresh pending usage index: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 未結算批次增量的記憶體索引（不可變）。
+     */
+    record PendingIndex(
+        Map<String, List<UsageDelta>> byBatch,
+        Map<String, List<UsageDelta>> byUser,
+        Map<String, List<UsageDelta>> byModel
+    ) {
+        static PendingIndex of(Map<String, List<UsageDelta>> byBatch) {
+            return new PendingIndex(Map.copyOf(byBatch),
+                group(byBatch, UsageDelta::userId), group(byBatch, UsageDelta::model));
+        }
+
+        private static Map<String, List<UsageDelta>> group(Map<String, List<UsageDelta>> byBatch,
+                Function<UsageDelta, String> key) {
+            Map<String, List<UsageDelta>> grouped = new LinkedHashMap<>();
+            byBatch.values().forEach(deltas -> deltas.stream()
+                .filter(delta -> key.apply(delta) != null)
+                .forEach(delta -> grouped.computeIfAbsent(key.apply(delta), k -> new ArrayList<>()).add(delta)));
+            return grouped;
+        }
+    }
+
+    /**
+     * 未結算用量。
+     *
+     * @param requestCount 請求次數
+     * @param inputTokens 輸入 token 數（含 cache 讀寫）
+     * @param outputTokens 輸出 token 數
+     * @param totalTokens 總 token 數
+     * @param costUsd 預估成本 (USD)
+     */
+    public record PendingUsage(
+        int requestCount,
+        long inputTokens,
+        long outputTokens,
+        long totalTokens,
+        BigDecimal costUsd
+    ) {
+        public static final PendingUsage EMPTY = new PendingUsage(0, 0, 0, 0, BigDecimal.ZERO);
+
+        static PendingUsage of(UsageDelta delta) {
+            return new PendingUsage(delta.requestCount(), delta.inputTokens(), delta.outputTokens(),
+                delta.totalTokens(), delta.costUsd() != null ? delta.costUsd() : BigDecimal.ZERO);
+        }
+
+        /**
+         * 與另一筆未結算用量相加。
+         */
+        public PendingUsage plus(PendingUsage other) {
+            return new PendingUsage(
+                requestCount + other.requestCount,
+                inputTokens + other.inputTokens,
+                outputTokens + other.outputTokens,
+                totalTokens + other.totalTokens,
+                costUsd.add(other.costUsd));
+        }
+
+        /**
+         * 是否沒有未結算用量。
+         */
+        public boolean isEmpty() {
+            return requestCount == 0;
+        }
+    }
+}
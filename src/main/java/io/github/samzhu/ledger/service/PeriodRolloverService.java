@@ -0,0 +1,619 @@
+package io.github.samzhu.ledger.service;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.aggregation.Fields;
+import org.springframework.data.mongodb.core.aggregation.ObjectOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import io.github.samzhu.ledger.config.LedgerProperties;
+import io.github.samzhu.ledger.document.DailyUserUsage;
+import io.github.samzhu.ledger.document.DailyUserUsage.ModelBreakdown;
+import io.github.samzhu.ledger.document.MonthlyUserUsage;
+import io.github.samzhu.ledger.document.QuotaHistory;
+import io.github.samzhu.ledger.document.UserQuota;
+import io.github.samzhu.ledger.util.PeriodUtils;
+
+/**
+ * 月度週期換月服務，負責批量歸檔與重置所有用戶的配額週期。
+ *
+ * <p>原本換月是在結算時惰性處理（用戶新月份的第一個批次才觸發），
+ * 導致每月 1 號 00:00 後的第一次結算極慢，且不活躍的用戶永遠不會被歸檔。
+ * 此服務改為排程主動執行，處理流程：
+ * <ol>
+ *   <li>找出所有週期與當前月份不一致的 {@code user_quota}，依舊週期分組</li>
+ *   <li>分批（{@code ledger.rollover.chunk-size}）讀取 {@code monthly_user_usage} 取得模型分布，
+ *       缺少月彙總的用戶以一次 {@code daily_user_usage} 聚合補齊</li>
+ *   <li>批量寫入 {@code quota_history}，跳過已歸檔的用戶</li>
+ *   <li>以 bulk {@code updateOne} 重置該批用戶，條件包含歸檔時的 {@code periodRequestCount} 與 {@code periodCostUsd}</li>
+ *   <li>無用量的用戶以單一 {@code updateMulti} 重置（條件為當期請求數為 0）</li>
+ *   <li>條件不符（歸檔後又有結算累加）的用戶逐一重新讀取、更新歷史記錄後再重置</li>
+ * </ol>
+ *
+ * <p>重置條件比對歸檔時的用量，歸檔與重置之間其他實例結算的 {@code $inc} 不會遺失：
+ * 比對失敗的用戶改走逐一處理，歷史記錄與重置以同一份快照為準。
+ *
+ * <p>可重入設計：
+ * <ul>
+ *   <li>歸檔前先查詢已存在的歷史記錄，重跑時不會重複歸檔；記錄與目前用量不一致時以目前用量覆寫</li>
+ *   <li>重置條件包含舊週期年月，已重置的用戶不會再被處理</li>
+ *   <li>歸檔有非重複鍵錯誤時不執行重置，等待下次排程重試</li>
+ * </ul>
+ *
+ * <p>惰性換月（{@link UsageAggregationService}）仍保留作為備援，
+ * 並改用 {@link #archiveUserPeriod(UserQuota)} 讀取月彙總取得模型分布。
+ *
+ * <p>模型分布不論來自月彙總或日用量，都先還原為原始模型名稱再合併，
+ * 寫入 {@link QuotaHistory} 時統一使用 {@link ModelDictionaryService#fieldKey} 的格式。
+ *
+ * @see QuotaHistory
+ * @see UserQuota
+ */
+@Service
+public class PeriodRolloverService {
+
+    private static final Logger log = LoggerFactory.getLogger(PeriodRolloverService.class);
+
+    /** MongoDB duplicate key 錯誤碼 */
+    private static final int DUPLICATE_KEY_ERROR = 11000;
+
+    /** 逐一處理時，重新讀取用量後重試重置的次數 */
+    private static final int MAX_USER_ATTEMPTS = 3;
+
+    private final MongoTemplate mongoTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ModelDictionaryService modelDictionary;
+    private final int chunkSize;
+
+    public PeriodRolloverService(MongoTemplate mongoTemplate, LedgerProperties properties,
+            ApplicationEventPublisher eventPublisher, ModelDictionaryService modelDictionary) {
+        this.mongoTemplate = mongoTemplate;
+        this.eventPublisher = eventPublisher;
+        this.modelDictionary = modelDictionary;
+        this.chunkSize = properties.rollover() != null
+            ? properties.rollover().chunkSize()
+            : LedgerProperties.RolloverConfig.defaults().chunkSize();
+    }
+
+    /**
+     * 定時換月任務（UTC），預設每日 00:05 執行。
+     *
+     * <p>每日執行可確保服務於月初停機或執行中斷時，仍能於隔日續跑完成換月。
+     * 沒有過期週期時只需一次聚合查詢。
+     */
+    @Scheduled(cron = "${ledger.rollover.cron:0 5 0 * * *}", zone = "UTC")
+    public void scheduledRollover() {
+        log.info("Starting scheduled period rollover...");
+        RolloverResult result = rollover();
+        log.info("Scheduled period rollover completed: {}", result);
+    }
+
+    /**
+     * 將所有週期過期的用戶歸檔並重置至當前週期。
+     *
+     * @return 換月結果統計
+     */
+    public RolloverResult rollover() {
+        long startTime = System.currentTimeMillis();
+        int currentYear = PeriodUtils.getCurrentYear();
+        int currentMonth = PeriodUtils.getCurrentMonth();
+
+        List<int[]> stalePeriods = findStalePeriods(currentYear, currentMonth);
+        if (stalePeriods.isEmpty()) {
+            log.debug("No stale quota periods found for {}", PeriodUtils.formatPeriod(currentYear, currentMonth));
+            return new RolloverResult(0, 0, 0, 0);
+        }
+
+        int archived = 0;
+        int reset = 0;
+        int failedPeriods = 0;
+
+        for (int[] period : stalePeriods) {
+            int oldYear = period[0];
+            int oldMonth = period[1];
+            try {
+                PeriodOutcome outcome = rolloverPeriod(oldYear, oldMonth, currentYear, currentMonth);
+                archived += outcome.archived();
+                reset += outcome.reset();
+            } catch (Exception e) {
+                failedPeriods++;
+                log.error("Period rollover failed for {}, will retry on next run: {}",
+                    PeriodUtils.formatPeriod(oldYear, oldMonth), e.getMessage(), e);
+            }
+        }
+
+        long duration = System.currentTimeMillis() - startTime;
+        log.info("Rollover stats: {} stale periods, {} archived, {} reset, {} failed in {}ms",
+            stalePeriods.size(), archived, reset, failedPeriods, duration);
+        if (reset > 0) {
+            eventPublisher.publishEvent(QuotaChangedEvent.all());
+        }
+
+        return new RolloverResult(stalePeriods.size(), archived, reset, failedPeriods);
+    }
+
+    /**
+     * 歸檔單一用戶的當期資料（惰性換月使用）。
+     *
+     * <p>若該週期無用量或已歸檔則略過。
+     *
+     * @param quota 週期即將重置的用戶配額
+     */
+    public void archiveUserPeriod(UserQuota quota) {
+        int year = quota.periodYear();
+        int month = quota.periodMonth();
+
+        if (quota.periodRequestCount() <= 0) {
+            return;
+        }
+        if (!findArchivedRequestCounts(List.of(quota.userId()), year, month).isEmpty()) {
+            return;
+        }
+
+        ModelDistribution distribution = loadModelDistribution(List.of(quota), year, month)
+            .getOrDefault(quota.userId(), ModelDistribution.empty());
+
+        mongoTemplate.insert(
+            QuotaHistory.fromUserQuota(quota, distribution.modelTokens(), distribution.modelCosts()));
+        log.info("Archived quota history: userId={}, period={}", quota.userId(), PeriodUtils.formatPeriod(year, month));
+    }
+
+    /**
+     * 查詢所有與當前週期不一致的舊週期（年、月）。
+     */
+    private List<int[]> findStalePeriods(int currentYear, int currentMonth) {
+        Aggregation aggregation = Aggregation.newAggregation(
+            Aggregation.match(staleCriteria(currentYear, currentMonth)),
+            Aggregation.group("periodYear", "periodMonth"));
+
+        List<int[]> periods = new ArrayList<>();
+        for (Document doc : mongoTemplate.aggregate(aggregation, UserQuota.class, Document.class)) {
+            Document id = doc.get("_id", Document.class);
+            periods.add(new int[] {
+                id.get("periodYear", Number.class).intValue(),
+                id.get("periodMonth", Number.class).intValue() });
+        }
+        return periods;
+    }
+
+    /**
+     * 歸檔並重置指定舊週期的所有用戶。
+     *
+     * @return 歸檔與重置的用戶數
+     * @throws IllegalStateException 若有非重複鍵的寫入錯誤（此時不可重置週期）
+     */
+    private PeriodOutcome rolloverPeriod(int year, int month, int newYear, int newMonth) {
+        Query query = Query.query(Criteria.where("periodYear").is(year)
+                .and("periodMonth").is(month)
+                .and("periodRequestCount").gt(0))
+            .with(Sort.by("userId"));
+
+        int archived = 0;
+        int reset = 0;
+        Set<String> mismatched = new LinkedHashSet<>();
+        List<UserQuota> chunk = new ArrayList<>(chunkSize);
+        try (Stream<UserQuota> users = mongoTemplate.stream(query, UserQuota.class)) {
+            var iterator = users.iterator();
+            while (iterator.hasNext()) {
+                chunk.add(iterator.next());
+                if (chunk.size() >= chunkSize) {
+                    archived += archiveChunk(chunk, year, month, mismatched);
+                    reset += resetChunk(chunk, mismatched, newYear, newMonth);
+                    chunk.clear();
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            archived += archiveChunk(chunk, year, month, mismatched);
+            reset += resetChunk(chunk, mismatched, newYear, newMonth);
+        }
+        log.info("Archived {} quota histories for period {}", archived, PeriodUtils.formatPeriod(year, month));
+
+        reset += resetIdleUsers(year, month, newYear, newMonth);
+
+        // 歸檔後又有累加、或歷史記錄已過期的用戶，以及重置期間剛產生用量的無用量用戶
+        Query remainingQuery = Query.query(Criteria.where("periodYear").is(year).and("periodMonth").is(month));
+        remainingQuery.fields().include("userId");
+        mongoTemplate.find(remainingQuery, UserQuota.class).forEach(quota -> mismatched.add(quota.userId()));
+        for (String userId : mismatched) {
+            reset += rolloverUser(userId, year, month, newYear, newMonth);
+        }
+
+        log.info("Period reset: {} users ({} retried individually), {} -> {}", reset, mismatched.size(),
+            PeriodUtils.formatPeriod(year, month), PeriodUtils.formatPeriod(newYear, newMonth));
+        return new PeriodOutcome(archived, reset);
+    }
+
+    /**
+     * 批量寫入一批用戶的歷史記錄，略過已歸檔者。
+     *
+     * <p>已歸檔但記錄的請求數與目前用量不一致（前次執行歸檔後又有累加）的用戶加入 {@code mismatched}，
+     * 由逐一處理覆寫記錄，不參與批量重置。
+     */
+    private int archiveChunk(List<UserQuota> chunk, int year, int month, Set<String> mismatched) {
+        Map<String, Integer> archivedCounts = findArchivedRequestCounts(
+            chunk.stream().map(UserQuota::userId).toList(), year, month);
+
+        List<UserQuota> pending = new ArrayList<>();
+        for (UserQuota quota : chunk) {
+            Integer archivedCount = archivedCounts.get(quota.userId());
+            if (archivedCount == null) {
+                pending.add(quota);
+            } else if (archivedCount != quota.periodRequestCount()) {
+                mismatched.add(quota.userId());
+            }
+        }
+        if (pending.isEmpty()) {
+            return 0;
+        }
+
+        Map<String, ModelDistribution> distributions = loadModelDistribution(pending, year, month);
+        List<QuotaHistory> histories = pending.stream()
+            .map(quota -> {
+                ModelDistribution distribution =
+                    distributions.getOrDefault(quota.userId(), ModelDistribution.empty());
+                return QuotaHistory.fromUserQuota(quota, distribution.modelTokens(), distribution.modelCosts());
+            })
+            .toList();
+
+        if (histories.isEmpty()) {
+            return 0;
+        }
+
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, QuotaHistory.class);
+        bulkOps.insert(histories);
+        try {
+            return bulkOps.execute().getInsertedCount();
+        } catch (BulkOperationException e) {
+            // 併發的惰性換月可能已寫入相同週期（unique index），其餘錯誤須中止重置
+            boolean onlyDuplicates = e.getErrors().stream()
+                .allMatch(error -> error.getCode() == DUPLICATE_KEY_ERROR);
+            if (!onlyDuplicates) {
+                throw new IllegalStateException("Failed to archive quota histories for period "
+                    + PeriodUtils.formatPeriod(year, month), e);
+            }
+            return e.getResult().getInsertedCount();
+        }
+    }
+
+    /**
+     * 以 bulk updateOne 重置一批已歸檔的用戶。
+     *
+     * <p>條件包含歸檔快照的 {@code periodRequestCount} 與 {@code periodCostUsd}；
+     * 歸檔後又被結算累加的用戶不會符合，留待 {@link #rolloverUser} 逐一處理。
+     *
+     * @return 被重置的用戶數
+     */
+    private int resetChunk(List<UserQuota> chunk, Set<String> mismatched, int newYear, int newMonth) {
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, UserQuota.class);
+        int operations = 0;
+        for (UserQuota quota : chunk) {
+            if (!mismatched.contains(quota.userId())) {
+                bulkOps.updateOne(snapshotQuery(quota), resetUpdate(newYear, newMonth));
+                operations++;
+            }
+        }
+        return operations > 0 ? bulkOps.execute().getModifiedCount() : 0;
+    }
+
+    /**
+     * 以單一 updateMulti 重置舊週期沒有用量的用戶。
+     *
+     * <p>條件包含 {@code periodRequestCount = 0}，重置前剛被累加的用戶不會符合。
+     *
+     * @return 被重置的用戶數
+     */
+    private int resetIdleUsers(int oldYear, int oldMonth, int newYear, int newMonth) {
+        Query query = Query.query(Criteria.where("periodYear").is(oldYear)
+            .and("periodMonth").is(oldMonth)
+            .and("periodRequestCount").is(0));
+        return (int) mongoTemplate.updateMulti(query, resetUpdate(newYear, newMonth), UserQuota.class)
+            .getModifiedCount();
+    }
+
+    /**
+     * 逐一歸檔並重置單一用戶。
+     *
+     * <p>重新讀取目前用量，以其覆寫（或建立）歷史記錄，再以相同快照為條件重置；
+     * 條件不符（期間又被累加）時重新讀取重試，最多 {@value #MAX_USER_ATTEMPTS} 次，
+     * 仍未成功則留待下次排程或惰性換月。
+     *
+     * @return 被重置的用戶數（0 或 1）
+     */
+    private int rolloverUser(String userId, int oldYear, int oldMonth, int newYear, int newMonth) {
+        Query current = Query.query(Criteria.where("userId").is(userId)
+            .and("periodYear").is(oldYear)
+            .and("periodMonth").is(oldMonth));
+        for (int attempt = 1; attempt <= MAX_USER_ATTEMPTS; attempt++) {
+            UserQuota quota = mongoTemplate.findOne(current, UserQuota.class);
+            if (quota == null) {
+                // 已由惰性換月重置
+                return 0;
+            }
+            if (quota.periodRequestCount() > 0) {
+                upsertHistory(quota);
+            }
+            if (mongoTemplate.updateFirst(snapshotQuery(quota), resetUpdate(newYear, newMonth), UserQuota.class)
+                    .getModifiedCount() > 0) {
+                return 1;
+            }
+        }
+        log.warn("Period reset for userId={} kept changing during rollover of {}, will retry on next run",
+            userId, PeriodUtils.formatPeriod(oldYear, oldMonth));
+        return 0;
+    }
+
+    /**
+     * 以用戶目前用量建立或覆寫該週期的歷史記錄。
+     */
+    private void upsertHistory(UserQuota quota) {
+        ModelDistribution distribution = loadModelDistribution(List.of(quota), quota.periodYear(), quota.periodMonth())
+            .getOrDefault(quota.userId(), ModelDistribution.empty());
+        QuotaHistory history = QuotaHistory.fromUserQuota(quota, distribution.modelTokens(), distribution.modelCosts());
+
+        Document fields = new Document();
+        mongoTemplate.getConverter().write(history, fields);
+        Query query = Query.query(Criteria.where("userId").is(quota.userId())
+            .and("periodYear").is(quota.periodYear())
+            .and("periodMonth").is(quota.periodMonth()));
+        mongoTemplate.upsert(query, Update.fromDocument(fields, "_id"), QuotaHistory.class);
+    }
+
+    /**
+     * 以快照用量為條件的單一用戶查詢。
+     */
+    private static Query snapshotQuery(UserQuota quota) {
+        return Query.query(Criteria.where("userId").is(quota.userId())
+            .and("periodYear").is(quota.periodYear())
+            .and("periodMonth").is(quota.periodMonth())
+            .and("periodRequestCount").is(quota.periodRequestCount())
+            .and("periodCostUsd").is(quota.periodCostUsd()));
+    }
+
+    /**
+     * 重置當期用量、額外額度與配額狀態；累計統計保持不變。
+     */
+    private static Update resetUpdate(int newYear, int newMonth) {
+        return new Update()
+            .set("periodYear", newYear)
+            .set("periodMonth", newMonth)
+            .set("periodStartAt", PeriodUtils.getPeriodStart(newYear, newMonth))
+            .set("periodEndAt", PeriodUtils.getPeriodEnd(newYear, newMonth))
+            .set("periodInputTokens", 0L)
+            .set("periodOutputTokens", 0L)
+            .set("periodTokens", 0L)
+            .set("periodCostUsd", 0.0)
+            .set("periodRequestCount", 0)
+            .set("bonusCostUsd", 0.0)
+            .set("bonusReason", null)
+            .set("bonusGrantedAt", null)
+            .set("costUsagePercent", 0.0)
+            .set("quotaExceeded", false)
+            .set("lastUpdatedAt", Instant.now());
+    }
+
+    /**
+     * 查詢指定用戶中已有該週期歷史記錄者，及記錄中的請求數。
+     */
+    private Map<String, Integer> findArchivedRequestCounts(List<String> userIds, int year, int month) {
+        Query query = Query.query(Criteria.where("userId").in(userIds)
+            .and("periodYear").is(year)
+            .and("periodMonth").is(month));
+        query.fields().include("userId", "totalRequestCount");
+
+        Map<String, Integer> result = new HashMap<>();
+        for (QuotaHistory history : mongoTemplate.find(query, QuotaHistory.class)) {
+            result.put(history.userId(), history.totalRequestCount());
+        }
+        return result;
+    }
+
+    /**
+     * 取得一批用戶在某月的模型 Token 與成本分布。
+     *
+     * <p>優先讀取 {@code monthly_user_usage}（每位用戶 1 筆文件）；
+     * 月彙總不存在或不完整（請求數少於當期用量，例如月彙總上線前的月份）的用戶，
+     * 改以一次 {@code daily_user_usage} 聚合補齊。
+     *
+     * @param quotas 用戶配額
+     * @param year 年份
+     * @param month 月份
+     * @return userId → 模型分布
+     */
+    private Map<String, ModelDistribution> loadModelDistribution(List<UserQuota> quotas, int year, int month) {
+        YearMonth period = YearMonth.of(year, month);
+        List<String> monthlyIds = quotas.stream()
+            .map(quota -> MonthlyUserUsage.createId(period, quota.userId()))
+            .toList();
+
+        Query query = Query.query(Criteria.where("_id").in(monthlyIds));
+        query.fields().include("userId", "requestCount", "modelBreakdown");
+        Map<String, MonthlyUserUsage> monthly = new HashMap<>();
+        for (MonthlyUserUsage usage : mongoTemplate.find(query, MonthlyUserUsage.class)) {
+            monthly.put(usage.userId(), usage);
+        }
+
+        Map<String, ModelDistribution> result = new HashMap<>();
+        List<String> fallbackUserIds = new ArrayList<>();
+        for (UserQuota quota : quotas) {
+            MonthlyUserUsage usage = monthly.get(quota.userId());
+            if (usage == null || usage.requestCount() < quota.periodRequestCount()) {
+                fallbackUserIds.add(quota.userId());
+                continue;
+            }
+            // 月彙總的 key 與舊日文件相同，是改寫後的模型名稱
+            result.put(quota.userId(), ModelDistribution.of(DailyUserUsage.mergeModelBreakdown(
+                usage.modelBreakdown(), null, modelDictionary::legacyModelName)));
+        }
+
+        if (!fallbackUserIds.isEmpty()) {
+            log.debug("Monthly rollup missing for {} users in {}, aggregating daily usage",
+                fallbackUserIds.size(), PeriodUtils.formatPeriod(year, month));
+            result.putAll(aggregateDailyDistribution(year, month, fallbackUserIds));
+        }
+        return result;
+    }
+
+    /**
+     * 以伺服器端聚合從日用量計算各用戶的模型 Token 與成本分布。
+     *
+     * <p>使用 {@code _id} 範圍（{@code YYYY-MM-01} 至次月 1 號）比對，
+     * 可利用主鍵索引且不受月份天數影響。模型分布存放於 {@code daily_user_model_usage} 子文件，
+     * 舊資料仍在 {@code daily_user_usage.modelBreakdown}，兩者分別聚合，
+     * 舊資料的 key 還原為原始模型名稱後再合併。
+     *
+     * @param year 年份
+     * @param month 月份
+     * @param userIds 要計算的用戶
+     * @return userId → 模型分布
+     */
+    private Map<String, ModelDistribution> aggregateDailyDistribution(int year, int month, List<String> userIds) {
+        LocalDate periodStart = LocalDate.of(year, month, 1);
+        Criteria match = Criteria.where("_id")
+            .gte(periodStart.toString())
+            .lt(periodStart.plusMonths(1).toString())
+            .and("userId").in(userIds);
+
+        Aggregation aggregation = Aggregation.newAggregation(
+            Aggregation.match(match),
+            Aggregation.project("userId")
+                .and(ObjectOperators.valueOf("modelBreakdown").toArray()).as("models"),
+            Aggregation.unwind("models"),
+            Aggregation.group(Fields.from(Fields.field("userId", "userId"), Fields.field("model", "models.k")))
+                .sum("models.v.inputTokens").as("inputTokens")
+                .sum("models.v.outputTokens").as("outputTokens")
+                .sum("models.v.costUsd").as("cost"));
+
+        // 模型分布子文件的 ID 同樣以日期開頭，可用相同的 _id 範圍比對
+        Aggregation childAggregation = Aggregation.newAggregation(
+            Aggregation.match(match),
+            Aggregation.group("userId", "model")
+                .sum("inputTokens").as("inputTokens")
+                .sum("outputTokens").as("outputTokens")
+                .sum("costUsd").as("cost"));
+
+        Map<String, Map<String, ModelBreakdown>> legacy =
+            byUser(mongoTemplate.aggregate(aggregation, "daily_user_usage", Document.class));
+        Map<String, Map<String, ModelBreakdown>> children =
+            byUser(mongoTemplate.aggregate(childAggregation, "daily_user_model_usage", Document.class));
+
+        Map<String, ModelDistribution> result = new HashMap<>();
+        Set<String> users = new LinkedHashSet<>(legacy.keySet());
+        users.addAll(children.keySet());
+        UnaryOperator<String> legacyModelName = modelDictionary::legacyModelName;
+        for (String userId : users) {
+            result.put(userId, ModelDistribution.of(DailyUserUsage.mergeModelBreakdown(
+                legacy.get(userId), children.get(userId), legacyModelName)));
+        }
+        return result;
+    }
+
+    /**
+     * 將 (userId, model) 分組結果轉為 userId → 模型 → 分布（只含 Token 與成本）。
+     */
+    private static Map<String, Map<String, ModelBreakdown>> byUser(AggregationResults<Document> rows) {
+        Map<String, Map<String, ModelBreakdown>> result = new HashMap<>();
+        for (Document doc : rows) {
+            Document id = doc.get("_id", Document.class);
+            ModelBreakdown breakdown = new ModelBreakdown(
+                toLong(doc.get("inputTokens")), toLong(doc.get("outputTokens")), 0, 0, 0, 0,
+                BigDecimal.valueOf(toDouble(doc.get("cost"))));
+            result.computeIfAbsent(id.getString("userId"), k -> new HashMap<>())
+                .merge(id.getString("model"), breakdown, ModelBreakdown::plus);
+        }
+        return result;
+    }
+
+    private static long toLong(Object value) {
+        return value instanceof Number n ? n.longValue() : 0L;
+    }
+
+    private static double toDouble(Object value) {
+        return value instanceof Number n ? n.doubleValue() : 0.0;
+    }
+
+    /**
+     * 週期與當前不一致的條件。
+     */
+    private static Criteria staleCriteria(int currentYear, int currentMonth) {
+        return new Criteria().orOperator(
+            Criteria.where("periodYear").ne(currentYear),
+            Criteria.where("periodMonth").ne(currentMonth));
+    }
+
+    /**
+     * 單一用戶在某月的模型分布。
+     *
+     * <p>key 為 {@link ModelDictionaryService#fieldKey} 格式（Map key 寫入 MongoDB 時不可包含 {@code .}）。
+     *
+     * @param modelTokens 各模型 Token 數
+     * @param modelCosts 各模型成本 (USD)
+     */
+    record ModelDistribution(
+        Map<String, Long> modelTokens,
+        Map<String, Double> modelCosts
+    ) {
+        /**
+         * 由原始模型名稱為 key 的分布建立。
+         */
+        static ModelDistribution of(Map<String, ModelBreakdown> models) {
+            ModelDistribution distribution = new ModelDistribution(new HashMap<>(), new HashMap<>());
+            models.forEach((model, breakdown) -> {
+                String key = ModelDictionaryService.fieldKey(model);
+                distribution.modelTokens().merge(key, breakdown.inputTokens() + breakdown.outputTokens(), Long::sum);
+                distribution.modelCosts().merge(key,
+                    breakdown.costUsd() != null ? breakdown.costUsd().doubleValue() : 0.0, Double::sum);
+            });
+            return distribution;
+        }
+
+        static ModelDistribution empty() {
+            return new ModelDistribution(Map.of(), Map.of());
+        }
+    }
+
+    /**
+     * 單一舊週期的歸檔與重置數。
+     */
+    private record PeriodOutcome(int archived, int reset) {}
+
+    /**
+     * 換月結果。
+     *
+     * @param stalePeriods 處理的舊週期數
+     * @param archived 新寫入的歷史記錄數
+     * @param reset 被重置的用戶數
+     * @param failedPeriods 失敗的舊週期數（下次排程重試）
+     */
+    public record RolloverResult(
+        int stalePeriods,
+        int archived,
+        int reset,
+        int failedPeriods
+    ) {}
+}
@@ -0,0 +1,230 @@
+package io.github.samzhu.ledger.service;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import io.github.samzhu.ledger.config.QueryCacheConfig;
+import io.github.samzhu.ledger.config.QueryCacheConfig.QueryKey;
+import io.github.samzhu.ledger.document.HourlyUsage;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * 查詢快取失效服務。
+ *
+ * <p>收到 {@link SettlementCompletedEvent} 後，只移除查詢範圍與本次異動重疊的快取項目：
+ * <ul>
+ *   <li>日用量 - 用戶/模型相符，且日期區間包含異動日期</li>
+ *   <li>月用量 - 用戶/模型相符，且月份區間包含異動月份</li>
+ *   <li>小時用量 - 維度鍵相符（system 維度一律相符），且日期區間包含異動日期</li>
+ *   <li>用戶配額 - 用戶相符；排行與清單在任一用戶異動時整體失效</li>
+ *   <li>模型彙總 - 最近 N 天包含異動日期</li>
+ *   <li>區間延遲 digest - 維度鍵相符，且日期區間包含異動日期</li>
+ * </ul>
+ *
+ * <p>配額設定、額外額度與換月等非結算寫入，由 {@link QuotaChangedEvent} 觸發
+ * {@link #evictUserQuota(String)}、{@link #evictAllQuotas()} 失效。
+ * 日結（{@link DayFinalizedEvent}）失效所有查詢範圍包含該日期的日用量、系統統計、延遲 digest 與模型彙總。
+ *
+ * <p>其他實例的結算與日結無法精準失效；{@link DataVersionService} 同步到其他實例的變動時
+ * 發佈 {@link DataVersionChangedEvent}，依變動的版本整體清空用量或配額快取，
+ * 讓 ETag 與回應內容一致。
+ *
+ * <p>指標：{@code ledger.cache.invalidations{cache}} - 精準失效移除的項目數。
+ */
+@Service
+public class QueryCacheInvalidator {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryCacheInvalidator.class);
+
+    private final CacheManager cacheManager;
+    private final MeterRegistry meterRegistry;
+
+    public QueryCacheInvalidator(CacheManager cacheManager, MeterRegistry meterRegistry) {
+        this.cacheManager = cacheManager;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 依結算異動範圍失效快取。
+     *
+     * @param event 結算完成事件
+     */
+    @EventListener
+    public void onSettlementCompleted(SettlementCompletedEvent event) {
+        if (event.isEmpty()) {
+            return;
+        }
+
+        evictIf(QueryCacheConfig.USER_DAILY_USAGE, key ->
+            event.userIds().contains(key.param(0))
+                && event.touchesRange((LocalDate) key.param(1), (LocalDate) key.param(2)));
+        evictIf(QueryCacheConfig.MODEL_DAILY_USAGE, key ->
+            event.models().contains(key.param(0))
+                && event.touchesRange((LocalDate) key.param(1), (LocalDate) key.param(2)));
+        evictIf(QueryCacheConfig.SYSTEM_DAILY_STATS, key ->
+            event.touchesRange((LocalDate) key.param(0), (LocalDate) key.param(1)));
+
+        evictIf(QueryCacheConfig.USER_MONTHLY_USAGE, key ->
+            event.userIds().contains(key.param(0))
+                && event.touchesMonths((YearMonth) key.param(1), (YearMonth) key.param(2)));
+        evictIf(QueryCacheConfig.MODEL_MONTHLY_USAGE, key ->
+            event.models().contains(key.param(0))
+                && event.touchesMonths((YearMonth) key.param(1), (YearMonth) key.param(2)));
+
+        evictIf(QueryCacheConfig.HOURLY_USAGE, key ->
+            matchesHourlyKey(event, key)
+                && event.touchesRange((LocalDate) key.param(2), (LocalDate) key.param(3)));
+
+        evictIf(QueryCacheConfig.LATENCY_DIGESTS, key ->
+            matchesHourlyKey(event, key)
+                && event.touchesRange((LocalDate) key.param(2), (LocalDate) key.param(3)));
+
+        evictIf(QueryCacheConfig.USER_QUOTA, key -> event.userIds().contains(key.param(0)));
+        evictIf(QueryCacheConfig.USER_QUOTA_LISTS, key -> true);
+
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        evictIf(QueryCacheConfig.MODEL_SUMMARIES, key ->
+            key.param(0) instanceof Integer days
+                && event.touchesRange(today.minusDays(days - 1), today));
+
+        log.debug("Query cache invalidated for {}", event);
+    }
+
+    /**
+     * 日結後失效包含該日期的快取。
+     *
+     * @param event 日結完成事件
+     */
+    @EventListener
+    public void onDayFinalized(DayFinalizedEvent event) {
+        evictIf(QueryCacheConfig.USER_DAILY_USAGE, key ->
+            event.touchesRange((LocalDate) key.param(1), (LocalDate) key.param(2)));
+        evictIf(QueryCacheConfig.MODEL_DAILY_USAGE, key ->
+            event.touchesRange((LocalDate) key.param(1), (LocalDate) key.param(2)));
+        evictIf(QueryCacheConfig.SYSTEM_DAILY_STATS, key ->
+            event.touchesRange((LocalDate) key.param(0), (LocalDate) key.param(1)));
+        evictIf(QueryCacheConfig.LATENCY_DIGESTS, key ->
+            event.touchesRange((LocalDate) key.param(2), (LocalDate) key.param(3)));
+
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        evictIf(QueryCacheConfig.MODEL_SUMMARIES, key ->
+            key.param(0) instanceof Integer days
+                && event.touchesRange(today.minusDays(days - 1), today));
+
+        log.debug("Query cache invalidated for {}", event);
+    }
+
+    /**
+     * 其他實例變動資料版本後整體失效。
+     *
+     * @param event 資料版本變動事件
+     */
+    @EventListener
+    public void onDataVersionChanged(DataVersionChangedEvent event) {
+        if (event.usage()) {
+            evictAllUsage();
+        }
+        if (event.quota()) {
+            evictAllQuotas();
+        }
+        log.debug("Query cache cleared for {}", event);
+    }
+
+    /**
+     * 依配額異動事件失效配額快取。
+     *
+     * @param event 配額異動事件
+     */
+    @EventListener
+    public void onQuotaChanged(QuotaChangedEvent event) {
+        if (event.allUsers()) {
+            evictAllQuotas();
+        } else {
+            event.userIds().forEach(this::evictUserQuota);
+        }
+    }
+
+    /**
+     * 失效單一用戶的配額快取（含排行與清單）。
+     *
+     * @param userId 用戶 ID
+     */
+    public void evictUserQuota(String userId) {
+        evictIf(QueryCacheConfig.USER_QUOTA, key -> userId.equals(key.param(0)));
+        evictIf(QueryCacheConfig.USER_QUOTA_LISTS, key -> true);
+    }
+
+    /**
+     * 失效所有配額快取（例如換月重置後）。
+     */
+    public void evictAllQuotas() {
+        evictIf(QueryCacheConfig.USER_QUOTA, key -> true);
+        evictIf(QueryCacheConfig.USER_QUOTA_LISTS, key -> true);
+    }
+
+    /**
+     * 失效所有用量快取（配額以外）。
+     */
+    public void evictAllUsage() {
+        for (String cacheName : List.of(
+                QueryCacheConfig.USER_DAILY_USAGE,
+                QueryCacheConfig.MODEL_DAILY_USAGE,
+                QueryCacheConfig.SYSTEM_DAILY_STATS,
+                QueryCacheConfig.USER_MONTHLY_USAGE,
+                QueryCacheConfig.MODEL_MONTHLY_USAGE,
+                QueryCacheConfig.HOURLY_USAGE,
+                QueryCacheConfig.MODEL_SUMMARIES,
+                QueryCacheConfig.LATENCY_DIGESTS)) {
+            evictIf(cacheName, key -> true);
+        }
+    }
+
+    private boolean matchesHourlyKey(SettlementCompletedEvent event, QueryKey key) {
+        Object dimension = key.param(0);
+        Object value = key.param(1);
+        if (HourlyUsage.DIMENSION_USER.equals(dimension)) {
+            return event.userIds().contains(value);
+        }
+        if (HourlyUsage.DIMENSION_MODEL.equals(dimension)) {
+            return event.models().contains(value);
+        }
+        return true;
+    }
+
+    /**
+     * 移除符合條件的快取項目。
+     *
+     * <p>Caffeine 快取逐一比對鍵；其他實作（例如停用快取時的 no-op）直接清空。
+     */
+    private void evictIf(String cacheName, Predicate<QueryKey> predicate) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache == null) {
+            return;
+        }
+        if (cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache<?, ?> nativeCache) {
+            int[] removed = {0};
+            nativeCache.asMap().keySet().removeIf(key -> {
+                boolean matches = key instanceof QueryKey queryKey && predicate.test(queryKey);
+                if (matches) {
+                    removed[0]++;
+                }
+                return matches;
+            });
+            if (removed[0] > 0) {
+                meterRegistry.counter("ledger.cache.invalidations", "cache", cacheName).increment(removed[0]);
+            }
+        } else {
+            cache.clear();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package io.github.samzhu.ledger.service;
+
+import java.util.Set;
+
+/**
+ * 配額異動事件，於結算以外的配額寫入後發佈。
+ *
+ * <p>發佈來源：
+ * <ul>
+ *   <li>{@link BonusService#grantBonus} - 單一用戶的額外額度</li>
+ *   <li>{@code QuotaApiController#updateQuotaConfig} - 單一用戶的配額設定</li>
+ *   <li>{@link PeriodRolloverService#rollover()} - 換月重置，影響所有用戶</li>
+ * </ul>
+ *
+ * <p>結算造成的配額異動由 {@link SettlementCompletedEvent} 描述。
+ *
+ * @param userIds 異動的用戶
+ * @param allUsers 是否影響所有用戶（此時忽略 {@code userIds}）
+ */
+public record QuotaChangedEvent(
+    Set<String> userIds,
+    boolean allUsers
+) {
+    public QuotaChangedEvent {
+        userIds = Set.copyOf(userIds);
+    }
+
+    /**
+     * 單一用戶的配額異動。
+     */
+    public static QuotaChangedEvent of(String userId) {
+        return new QuotaChangedEvent(Set.of(userId), false);
+    }
+
+    /**
+     * 所有用戶的配額異動。
+     */
+    public static QuotaChangedEvent all() {
+        return new QuotaChangedEvent(Set.of(), true);
+    }
+}
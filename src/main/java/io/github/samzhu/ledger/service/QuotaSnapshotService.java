@@ -0,0 +1,280 @@
+package io.github.samzhu.ledger.service;
+
+import java.time.YearMonth;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import io.github.samzhu.ledger.config.LedgerProperties;
+import io.github.samzhu.ledger.document.UserQuota;
+import io.github.samzhu.ledger.util.PeriodUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+
+/**
+ * 配額狀態的記憶體快照，供閘道在轉送請求前做低延遲的配額檢查。
+ *
+ * <p>每位用戶保留判斷放行所需的最小欄位（啟用旗標、有效上限、當期成本、週期），
+ * 檢查時只讀取 {@link ConcurrentHashMap}，不存取資料庫。
+ *
+ * <p>同步方式：
+ * <ul>
+ *   <li>啟動 - {@link ApplicationReadyEvent} 後以 projection 串流載入整個 {@code user_quota}</li>
+ *   <li>結算 - {@link SettlementCompletedEvent} 重新讀取異動用戶</li>
+ *   <li>配額設定、額外額度、換月 - {@link QuotaChangedEvent} 重新讀取異動用戶或全部重載</li>
+ *   <li>定時全量重載（{@code ledger.quota-snapshot.resync-cron}）作為多實例間的最終一致保障</li>
+ * </ul>
+ *
+ * <p>快照記錄的週期早於當前週期（換月尚未執行）時，視為新週期、當期成本為零。
+ *
+ * <p>{@code ledger.overlay.quota-check=true}（預設）時，當期成本另加上 {@link PendingUsageService}
+ * 的未結算成本，避免結算前的空窗期超額使用。
+ *
+ * <p>指標：{@code ledger.quota.snapshot.size} - 快照中的用戶數。
+ */
+@Service
+public class QuotaSnapshotService {
+
+    private static final Logger log = LoggerFactory.getLogger(QuotaSnapshotService.class);
+
+    private static final String[] FIELDS = {
+        "userId", "quotaEnabled", "costLimitUsd", "bonusCostUsd", "periodCostUsd", "periodYear", "periodMonth"
+    };
+
+    private final MongoTemplate mongoTemplate;
+    private final PendingUsageService pendingUsageService;
+    private final boolean overlayByDefault;
+    private final Map<String, QuotaSnapshot> snapshots = new ConcurrentHashMap<>();
+    private final AtomicBoolean loaded = new AtomicBoolean(false);
+    private final AtomicLong version = new AtomicLong();
+
+    public QuotaSnapshotService(
+            MongoTemplate mongoTemplate,
+            PendingUsageService pendingUsageService,
+            LedgerProperties properties,
+            MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.pendingUsageService = pendingUsageService;
+        this.overlayByDefault = properties.overlay() != null
+            ? properties.overlay().quotaCheck()
+            : LedgerProperties.OverlayConfig.defaults().quotaCheck();
+        meterRegistry.gaugeMapSize("ledger.quota.snapshot.size", Tags.empty(), snapshots);
+    }
+
+    /**
+     * 檢查用戶是否可繼續使用，是否疊加未結算成本依 {@code ledger.overlay.quota-check}。
+     *
+     * @param userId 用戶 ID
+     * @return 檢查結果
+     */
+    public QuotaCheck check(String userId) {
+        return check(userId, overlayByDefault);
+    }
+
+    /**
+     * 檢查用戶是否可繼續使用。
+     *
+     * <p>快照尚未載入完成時（啟動初期），改讀單一文件。
+     *
+     * @param userId 用戶 ID
+     * @param includePending 是否疊加未結算成本
+     * @return 檢查結果
+     */
+    public QuotaCheck check(String userId, boolean includePending) {
+        QuotaSnapshot snapshot = snapshots.get(userId);
+        if (snapshot == null && !loaded.get()) {
+            snapshot = loadUsers(Set.of(userId)).get(userId);
+        }
+
+        int year = PeriodUtils.getCurrentYear();
+        int month = PeriodUtils.getCurrentMonth();
+        String periodToken = PeriodUtils.formatPeriod(year, month);
+
+        if (snapshot == null || !snapshot.quotaEnabled() || snapshot.effectiveLimitUsd() <= 0) {
+            return new QuotaCheck(true, QuotaCheck.UNLIMITED, null, periodToken, version.get());
+        }
+
+        double periodCost = PeriodUtils.isSamePeriod(snapshot.periodYear(), snapshot.periodMonth(), year, month)
+            ? snapshot.periodCostUsd()
+            : 0.0;
+        if (includePending) {
+            periodCost += pendingUsageService.userPeriod(userId, YearMonth.of(year, month)).costUsd().doubleValue();
+        }
+        double remaining = snapshot.effectiveLimitUsd() - periodCost;
+        boolean allowed = remaining > 0;
+        return new QuotaCheck(
+            allowed,
+            allowed ? QuotaCheck.OK : QuotaCheck.EXCEEDED,
+            Math.max(remaining, 0.0),
+            periodToken,
+            version.get());
+    }
+
+    /**
+     * 啟動後全量載入。
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        reload();
+    }
+
+    /**
+     * 結算完成後重新讀取異動用戶。
+     */
+    @EventListener
+    public void onSettlementCompleted(SettlementCompletedEvent event) {
+        if (!event.userIds().isEmpty()) {
+            refresh(event.userIds());
+        }
+    }
+
+    /**
+     * 配額異動後重新讀取異動用戶或全部重載。
+     */
+    @EventListener
+    public void onQuotaChanged(QuotaChangedEvent event) {
+        if (event.allUsers()) {
+            reload();
+        } else {
+            refresh(event.userIds());
+        }
+    }
+
+    /**
+     * 定時全量重載，同步其他實例造成的異動。
+     */
+    @Scheduled(cron = "${ledger.quota-snapshot.resync-cron:0 0/5 * * * *}")
+    public void scheduledReload() {
+        reload();
+    }
+
+    /**
+     * 全量重載快照。
+     *
+     * <p>逐筆串流讀取並覆寫，重載期間檢查仍可讀到舊值；最後移除已不存在的用戶。
+     */
+    public void reload() {
+        long startTime = System.currentTimeMillis();
+        try {
+            Set<String> seen = ConcurrentHashMap.newKeySet();
+            try (Stream<Document> docs = mongoTemplate.stream(projection(new Query()), Document.class,
+                    mongoTemplate.getCollectionName(UserQuota.class))) {
+                docs.forEach(doc -> {
+                    String userId = doc.getString("userId");
+                    if (userId != null) {
+                        snapshots.put(userId, QuotaSnapshot.from(doc));
+                        seen.add(userId);
+                    }
+                });
+            }
+            snapshots.keySet().retainAll(seen);
+            loaded.set(true);
+            version.incrementAndGet();
+            log.info("Quota snapshot reloaded: {} users in {}ms",
+                snapshots.size(), System.currentTimeMillis() - startTime);
+        } catch (Exception e) {
+            log.error("Failed to reload quota snapshot: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 重新讀取指定用戶。
+     *
+     * @param userIds 用戶 ID
+     */
+    public void refresh(Collection<String> userIds) {
+        try {
+            Map<String, QuotaSnapshot> fresh = loadUsers(userIds);
+            userIds.forEach(userId -> {
+                QuotaSnapshot snapshot = fresh.get(userId);
+                if (snapshot != null) {
+                    snapshots.put(userId, snapshot);
+                } else {
+                    snapshots.remove(userId);
+                }
+            });
+            version.incrementAndGet();
+            log.debug("Quota snapshot refreshed for {} users", userIds.size());
+        } catch (Exception e) {
+            log.error("Failed to refresh quota snapshot for {} users: {}", userIds.size(), e.getMessage(), e);
+        }
+    }
+
+    private Map<String, QuotaSnapshot> loadUsers(Collection<String> userIds) {
+        Query query = projection(Query.query(Criteria.where("userId").in(userIds)));
+        Map<String, QuotaSnapshot> result = new ConcurrentHashMap<>();
+        mongoTemplate.find(query, Document.class, mongoTemplate.getCollectionName(UserQuota.class))
+            .forEach(doc -> {
+                String userId = doc.getString("userId");
+                if (userId != null) {
+                    result.put(userId, QuotaSnapshot.from(doc));
+                }
+            });
+        return result;
+    }
+
+    private static Query projection(Query query) {
+        query.fields().include(FIELDS).exclude("_id");
+        return query;
+    }
+
+    /**
+     * 單一用戶的配額快照。
+     */
+    record QuotaSnapshot(
+        boolean quotaEnabled,
+        double effectiveLimitUsd,
+        double periodCostUsd,
+        int periodYear,
+        int periodMonth
+    ) {
+        static QuotaSnapshot from(Document doc) {
+            return new QuotaSnapshot(
+                Boolean.TRUE.equals(doc.getBoolean("quotaEnabled")),
+                number(doc.get("costLimitUsd")) + number(doc.get("bonusCostUsd")),
+                number(doc.get("periodCostUsd")),
+                (int) number(doc.get("periodYear")),
+                (int) number(doc.get("periodMonth")));
+        }
+
+        private static double number(Object value) {
+            return value instanceof Number n ? n.doubleValue() : 0.0;
+        }
+    }
+
+    /**
+     * 配額檢查結果。
+     *
+     * @param allowed 是否放行
+     * @param status 狀態：{@value #UNLIMITED}、{@value #OK}、{@value #EXCEEDED}
+     * @param remainingUsd 剩餘額度，未啟用配額時為 null
+     * @param periodToken 當前週期（yyyy-MM），週期變更時閘道應丟棄本地快取的結果
+     * @param snapshotVersion 快照版本，每次重載或更新遞增
+     */
+    public record QuotaCheck(
+        boolean allowed,
+        String status,
+        Double remainingUsd,
+        String periodToken,
+        long snapshotVersion
+    ) {
+        public static final String UNLIMITED = "UNLIMITED";
+        public static final String OK = "OK";
+        public static final String EXCEEDED = "EXCEEDED";
+    }
+}
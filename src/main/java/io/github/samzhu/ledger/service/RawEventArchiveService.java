@@ -0,0 +1,304 @@
+package io.github.samzhu.ledger.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import io.github.samzhu.ledger.config.LedgerProperties;
+import io.github.samzhu.ledger.document.RawEventArchive;
+import io.github.samzhu.ledger.document.RawEventBatch;
+
+/**
+ * 原始事件批次的保留與冷儲存服務。
+ *
+ * <p>結算只將批次標記為 {@code processed=true}，批次會永久留在 {@code raw_event_batches}。
+ * 此服務定時將已結算、建立超過 {@code hotDays} 天的批次依建立日期（UTC）搬移到 {@code raw_event_archive}：
+ * <ol>
+ *   <li>依 {@code _id} 順序串流讀取當日批次的原始 BSON，串接並以 gzip 壓縮為區段（{@link RawEventArchive}）</li>
+ *   <li>區段寫入後，將其中批次標記 {@code archivedAt}，並設定 {@code expireAt = now + graceHours}</li>
+ *   <li>TTL index（{@code raw_event_batches.expireAt}）於寬限期後刪除原批次</li>
+ * </ol>
+ *
+ * <p>區段 ID 由日期與第一個批次 ID 組成，中斷後重跑覆寫同一區段；讀取端以批次 ID 去重。
+ * 未結算的批次（例如未知模型定價）不搬移。
+ *
+ * <p>{@link #archivedBatches} 與 {@link #archivedEventRows} 供重播與匯出讀取冷儲存，
+ * 回傳的文件與熱集合中的批次格式相同。
+ *
+ * @see LedgerProperties.RawRetentionConfig
+ */
+@Service
+public class RawEventArchiveService {
+
+    private static final Logger log = LoggerFactory.getLogger(RawEventArchiveService.class);
+
+    private static final DocumentCodec CODEC = new DocumentCodec();
+
+    private final MongoTemplate mongoTemplate;
+    private final LedgerProperties.RawRetentionConfig config;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    public RawEventArchiveService(MongoTemplate mongoTemplate, LedgerProperties properties) {
+        this.mongoTemplate = mongoTemplate;
+        this.config = properties.rawRetention() != null
+            ? properties.rawRetention()
+            : LedgerProperties.RawRetentionConfig.defaults();
+    }
+
+    /**
+     * 定時搬移任務（UTC），預設每日 03:30 執行；{@code ledger.raw-retention.enabled=false} 時不執行。
+     */
+    @Scheduled(cron = "${ledger.raw-retention.cron:0 30 3 * * *}", zone = "UTC")
+    public void scheduledArchive() {
+        if (!config.enabled()) {
+            return;
+        }
+        List<ArchivedDay> archived = archiveExpired();
+        if (!archived.isEmpty()) {
+            log.info("Scheduled raw event archive completed: {}", archived);
+        }
+    }
+
+    /**
+     * 搬移已超過保留天數的已結算批次。
+     *
+     * <p>從最早尚未搬移的日期開始，每次最多 {@code maxDaysPerRun} 天；某日失敗時停止，下次從該日重試。
+     *
+     * @return 各日期搬移結果；已有搬移執行中時回傳空列表
+     */
+    public List<ArchivedDay> archiveExpired() {
+        if (!running.compareAndSet(false, true)) {
+            log.info("Raw event archive already running, skipping");
+            return List.of();
+        }
+        List<ArchivedDay> result = new ArrayList<>();
+        try {
+            LocalDate cutoff = LocalDate.now(ZoneOffset.UTC).minusDays(config.hotDays());
+            LocalDate date = firstArchivableDate(cutoff);
+            while (date != null && date.isBefore(cutoff) && result.size() < config.maxDaysPerRun()) {
+                result.add(archiveDay(date));
+                date = firstArchivableDate(cutoff);
+            }
+        } catch (Exception e) {
+            log.error("Raw event archive failed after {} days, will retry on next run: {}",
+                result.size(), e.getMessage(), e);
+        } finally {
+            running.set(false);
+        }
+        return result;
+    }
+
+    /**
+     * 讀取冷儲存中指定日期區間（批次建立日期，UTC）的批次。
+     *
+     * <p>依區段 ID 順序逐段解壓，同一時間只在記憶體保留一個區段；重複出現的批次只回傳一次。
+     * 呼叫端須關閉回傳的 Stream。
+     *
+     * @param startDate 起始日期（含）
+     * @param endDate 結束日期（含）
+     * @return 原始批次文件，格式與 {@code raw_event_batches} 相同
+     */
+    public Stream<Document> archivedBatches(LocalDate startDate, LocalDate endDate) {
+        Query query = Query.query(Criteria.where("_id").gte(startDate + "_").lt(endDate + "`"))
+            .with(Sort.by(Sort.Direction.ASC, "_id"))
+            .cursorBatchSize(1);
+        Set<Object> seen = new HashSet<>();
+        return mongoTemplate.stream(query, RawEventArchive.class)
+            .flatMap(segment -> decode(segment.payload()).stream())
+            .filter(batch -> seen.add(batch.get("_id")));
+    }
+
+    /**
+     * 讀取冷儲存中指定日期區間的事件，每個事件一列，欄位與 {@code raw-events} 匯出相同。
+     *
+     * @param startDate 起始日期（含）
+     * @param endDate 結束日期（含）
+     * @return 事件列（含 {@code batchId}），呼叫端須關閉
+     */
+    public Stream<Document> archivedEventRows(LocalDate startDate, LocalDate endDate) {
+        return archivedBatches(startDate, endDate).flatMap(batch -> {
+            Object batchId = batch.get("_id");
+            List<Document> events = batch.getList("events", Document.class, List.of());
+            return events.stream().map(event -> {
+                Document row = new Document("batchId", batchId);
+                row.putAll(event);
+                return row;
+            });
+        });
+    }
+
+    private LocalDate firstArchivableDate(LocalDate cutoff) {
+        Query query = Query.query(archivableCriteria()
+                .and("_id").lt(UsageExportService.minObjectId(cutoff)))
+            .with(Sort.by(Sort.Direction.ASC, "_id"))
+            .limit(1);
+        query.fields().include("_id");
+        Document first = mongoTemplate.findOne(query, Document.class, mongoTemplate.getCollectionName(RawEventBatch.class));
+        if (first == null || !(first.get("_id") instanceof ObjectId id)) {
+            return null;
+        }
+        return LocalDate.ofInstant(id.getDate().toInstant(), ZoneOffset.UTC);
+    }
+
+    private ArchivedDay archiveDay(LocalDate date) throws IOException {
+        long startTime = System.currentTimeMillis();
+        Query query = Query.query(archivableCriteria()
+                .and("_id").gte(UsageExportService.minObjectId(date)).lt(UsageExportService.minObjectId(date.plusDays(1))))
+            .with(Sort.by(Sort.Direction.ASC, "_id"))
+            .cursorBatchSize(100);
+
+        long maxBytes = config.segmentMaxMb() * 1024L * 1024L;
+        SegmentBuilder segment = new SegmentBuilder(date);
+        int segments = 0;
+        int batches = 0;
+        try (Stream<Document> stream = mongoTemplate.stream(query, Document.class,
+                mongoTemplate.getCollectionName(RawEventBatch.class))) {
+            var iterator = stream.iterator();
+            while (iterator.hasNext()) {
+                Document batch = iterator.next();
+                byte[] bson = encode(batch);
+                if (!segment.isEmpty() && segment.rawBytes + bson.length > maxBytes) {
+                    writeSegment(segment);
+                    segments++;
+                    segment = new SegmentBuilder(date);
+                }
+                segment.add(batch, bson);
+                batches++;
+            }
+        }
+        if (!segment.isEmpty()) {
+            writeSegment(segment);
+            segments++;
+        }
+
+        log.info("Archived raw event batches for {}: {} batches in {} segments in {}ms",
+            date, batches, segments, System.currentTimeMillis() - startTime);
+        return new ArchivedDay(date, batches, segments);
+    }
+
+    private void writeSegment(SegmentBuilder segment) throws IOException {
+        Instant now = Instant.now();
+        RawEventArchive archive = segment.build(now);
+        mongoTemplate.save(archive);
+
+        List<ObjectId> ids = segment.batchIds.stream().map(ObjectId::new).toList();
+        mongoTemplate.updateMulti(
+            Query.query(Criteria.where("_id").in(ids)),
+            new Update().set("archivedAt", now).set("expireAt", now.plus(Duration.ofHours(config.graceHours()))),
+            RawEventBatch.class);
+        log.debug("Archive segment {} written: {} batches, {} events, {} -> {} bytes",
+            archive.id(), archive.batchCount(), archive.eventCount(), archive.rawBytes(), archive.payload().length);
+    }
+
+    private static Criteria archivableCriteria() {
+        return Criteria.where("processed").is(true).and("archivedAt").exists(false);
+    }
+
+    static byte[] encode(Document document) {
+        ByteBuffer buffer = new RawBsonDocument(document, CODEC).getByteBuffer().asNIO();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * 解壓區段，依序讀回每份 BSON 文件（前 4 bytes 為 little-endian 文件長度）。
+     */
+    static List<Document> decode(byte[] payload) {
+        List<Document> documents = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(payload)))) {
+            byte[] lengthBytes = new byte[4];
+            while (in.readNBytes(lengthBytes, 0, 4) == 4) {
+                int length = ByteBuffer.wrap(lengthBytes).order(ByteOrder.LITTLE_ENDIAN).getInt();
+                byte[] bson = new byte[length];
+                System.arraycopy(lengthBytes, 0, bson, 0, 4);
+                in.readFully(bson, 4, length - 4);
+                documents.add(new RawBsonDocument(bson).decode(CODEC));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to decode raw event archive segment", e);
+        }
+        return documents;
+    }
+
+    /**
+     * 組裝中的冷儲存區段。
+     */
+    static final class SegmentBuilder {
+        private final LocalDate date;
+        private final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        private final GZIPOutputStream gzip;
+        private final List<String> batchIds = new ArrayList<>();
+        private long rawBytes;
+        private int eventCount;
+
+        SegmentBuilder(LocalDate date) throws IOException {
+            this.date = date;
+            this.gzip = new GZIPOutputStream(compressed, 64 * 1024);
+        }
+
+        void add(Document batch, byte[] bson) throws IOException {
+            gzip.write(bson);
+            rawBytes += bson.length;
+            batchIds.add(batch.get("_id").toString());
+            eventCount += batch.getList("events", Document.class, List.of()).size();
+        }
+
+        boolean isEmpty() {
+            return batchIds.isEmpty();
+        }
+
+        RawEventArchive build(Instant archivedAt) throws IOException {
+            gzip.close();
+            return new RawEventArchive(
+                RawEventArchive.createId(date, batchIds.get(0)),
+                date,
+                List.copyOf(batchIds),
+                batchIds.size(),
+                eventCount,
+                RawEventArchive.CODEC_BSON_GZIP,
+                rawBytes,
+                compressed.toByteArray(),
+                archivedAt);
+        }
+    }
+
+    /**
+     * 單日搬移結果。
+     *
+     * @param date 批次建立日期（UTC）
+     * @param batches 搬移的批次數
+     * @param segments 寫入的區段數
+     */
+    public record ArchivedDay(LocalDate date, int batches, int segments) {}
+}
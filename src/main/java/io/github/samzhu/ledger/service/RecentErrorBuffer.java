@@ -0,0 +1,67 @@
+package io.github.samzhu.ledger.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.springframework.stereotype.Component;
+
+import io.github.samzhu.ledger.config.LedgerProperties;
+import io.github.samzhu.ledger.document.ErrorEvent;
+
+/**
+ * 最近錯誤事件的記憶體環形緩衝（每個實例一份）。
+ *
+ * <p>失敗事件在接收時即寫入，尚未 flush 至 {@code error_events} 的錯誤也能立即查詢：
+ * <ul>
+ *   <li>無鎖 - 以 {@link AtomicLong} 取得序號、{@link AtomicReferenceArray} 寫入槽位，寫入端不阻塞</li>
+ *   <li>固定容量 - 滿了之後覆寫最舊的項目</li>
+ *   <li>讀取為盡力而為的快照，與並行寫入交錯時可能略過正被覆寫的槽位</li>
+ * </ul>
+ */
+@Component
+public class RecentErrorBuffer {
+
+    private final AtomicReferenceArray<ErrorEvent> slots;
+    private final AtomicLong sequence = new AtomicLong();
+
+    public RecentErrorBuffer(LedgerProperties properties) {
+        LedgerProperties.ErrorsConfig config = properties.errors() != null
+            ? properties.errors()
+            : LedgerProperties.ErrorsConfig.defaults();
+        this.slots = new AtomicReferenceArray<>(config.recentBufferSize());
+    }
+
+    /**
+     * 加入一筆錯誤事件。
+     *
+     * @param event 錯誤事件
+     */
+    public void add(ErrorEvent event) {
+        long seq = sequence.getAndIncrement();
+        slots.set((int) (seq % slots.length()), event);
+    }
+
+    /**
+     * 取得最近的錯誤事件（新到舊）。
+     *
+     * @param limit 最大回傳數量
+     * @param model 模型篩選，null 表示不篩選
+     * @param errorType 錯誤類型篩選，null 表示不篩選
+     * @param userId 用戶篩選，null 表示不篩選
+     * @return 符合條件的錯誤事件
+     */
+    public List<ErrorEvent> recent(int limit, String model, String errorType, String userId) {
+        long end = sequence.get();
+        long start = Math.max(0, end - slots.length());
+        List<ErrorEvent> result = new ArrayList<>(Math.min(limit, slots.length()));
+        for (long seq = end - 1; seq >= start && result.size() < limit; seq--) {
+            ErrorEvent event = slots.get((int) (seq % slots.length()));
+            if (event != null && event.matches(model, errorType, userId)) {
+                result.add(event);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,98 @@
+package io.github.samzhu.ledger.service;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import io.github.samzhu.ledger.dto.UsageEventData;
+
+/**
+ * 結算完成事件，由 {@link BatchSettlementService} 於每次結算後發佈。
+ *
+ * <p>描述本次結算異動的範圍，供查詢快取精準失效：
+ * 日用量文件 ID 為 {@code {date}_{userId}}、{@code {date}_{model}}，
+ * 系統日統計為 {@code {date}}，皆可由下列集合組出。
+ *
+ * <p>{@code settledBatchIds} 供 {@link PendingUsageService} 在配額快照更新前同步移除已結算批次，
+ * 避免同一筆用量同時計入已結算彙總與未結算疊加。
+ *
+ * @param userIds 異動的用戶
+ * @param models 異動的模型
+ * @param dates 異動的 UTC 日期
+ * @param settledBatchIds 本次標記為已結算的批次 ID
+ */
+public record SettlementCompletedEvent(
+    Set<String> userIds,
+    Set<String> models,
+    Set<LocalDate> dates,
+    Set<String> settledBatchIds
+) {
+    public SettlementCompletedEvent {
+        userIds = Set.copyOf(userIds);
+        models = Set.copyOf(models);
+        dates = Set.copyOf(dates);
+        settledBatchIds = Set.copyOf(settledBatchIds);
+    }
+
+    /**
+     * 從結算的事件建立。
+     *
+     * @param events 已結算（或嘗試結算）的事件
+     * @param settledBatchIds 標記為已結算的批次 ID
+     * @return 結算完成事件
+     */
+    public static SettlementCompletedEvent of(Collection<UsageEventData> events, Collection<String> settledBatchIds) {
+        Set<String> userIds = new HashSet<>();
+        Set<String> models = new HashSet<>();
+        Set<LocalDate> dates = new HashSet<>();
+        for (UsageEventData event : events) {
+            userIds.add(event.userId());
+            if (event.model() != null) {
+                models.add(event.model());
+            }
+            dates.add(event.eventTime().atZone(ZoneOffset.UTC).toLocalDate());
+        }
+        userIds.remove(null);
+        return new SettlementCompletedEvent(userIds, models, dates, Set.copyOf(settledBatchIds));
+    }
+
+    /**
+     * 異動的 UTC 月份。
+     */
+    public Set<YearMonth> months() {
+        return dates.stream().map(YearMonth::from).collect(Collectors.toSet());
+    }
+
+    /**
+     * 日期區間 {@code [start, end]} 是否包含任一異動日期。
+     */
+    public boolean touchesRange(LocalDate start, LocalDate end) {
+        return dates.stream().anyMatch(date ->
+            (start == null || !date.isBefore(start)) && (end == null || !date.isAfter(end)));
+    }
+
+    /**
+     * 月份區間 {@code [start, end]} 是否包含任一異動月份。
+     */
+    public boolean touchesMonths(YearMonth start, YearMonth end) {
+        return months().stream().anyMatch(month ->
+            (start == null || !month.isBefore(start)) && (end == null || !month.isAfter(end)));
+    }
+
+    /**
+     * 是否沒有任何異動。
+     */
+    public boolean isEmpty() {
+        return dates.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "SettlementCompletedEvent[users=" + userIds.size() + ", models=" + models.size()
+            + ", dates=" + dates + ", batches=" + settledBatchIds.size() + "]";
+    }
+}
@@ -0,0 +1,640 @@
+package io.github.samzhu.ledger.service;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.bson.types.Decimal128;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import com.tdunning.math.stats.TDigest;
+
+import io.github.samzhu.ledger.config.LedgerProperties;
+import io.github.samzhu.ledger.document.DailyModelUsage;
+import io.github.samzhu.ledger.document.DailyUserUsage;
+import io.github.samzhu.ledger.document.SystemStats;
+import io.github.samzhu.ledger.document.SystemStats.TopItem;
+import io.github.samzhu.ledger.document.SystemStatsShard;
+import io.github.samzhu.ledger.dto.UsageEventData;
+import io.github.samzhu.ledger.util.HyperLogLog;
+
+/**
+ * 系統日統計分片計數器服務。
+ *
+ * <p>{@code system_stats/{date}} 是每次結算、每個實例都會寫入的單一文件，
+ * 在限制單一文件持續寫入速率的後端（例如 Firestore MongoDB 相容模式）會成為整條管線的序列化點。
+ * 啟用 {@code ledger.counter-sharding} 後：
+ * <ul>
+ *   <li>寫入 - 每個批次依第一個事件雜湊選擇一份 {@link SystemStatsShard}，只對該分片 {@code $inc}</li>
+ *   <li>合併 - 每次結算結束時讀取當日所有分片，加總後重算比率、百分位、尖峰時段與排行榜，
+ *       以一次 {@code $set} 寫回 {@code system_stats}；原文件即為合併結果的快取，讀取端不需改變。
+ *       合併失敗的日期保留在重試清單，下次結算（即使沒有新批次）再合併</li>
+ *   <li>日結 - {@link DayFinalizationService} 先強制合併，日結後封存分片；合併之後才寫入分片的差量補入已日結的原文件，
+ *       之後的遲到事件照常走原文件修正路徑</li>
+ * </ul>
+ *
+ * <p>是否分片以日期為單位決定並記錄在原文件的 {@code sharded} 欄位：
+ * 啟用時新建立的日期才分片，已有資料（未分片）的日期維持直接寫入，避免切換當日重複或遺漏計數。
+ * 分片數依集合設定（{@code shards.system_stats}），其他熱點文件（例如高用量用戶的 {@code daily_user_usage}）
+ * 可依相同方式擴充。
+ *
+ * @see LedgerProperties.CounterShardingConfig
+ */
+@Service
+public class SystemStatsShardService {
+
+    private static final Logger log = LoggerFactory.getLogger(SystemStatsShardService.class);
+
+    private static final int DUPLICATE_KEY_ERROR = 11000;
+
+    /** 分片中可直接相減的整數累計欄位 */
+    private static final List<String> COUNTER_FIELDS = List.of("totalInputTokens", "totalOutputTokens",
+        "totalTokens", "totalCacheReadTokens", "totalRequestCount", "successCount", "errorCount", "totalLatencyMs");
+
+    private final MongoTemplate mongoTemplate;
+    private final CostCalculationService costService;
+    private final LatencyDigestService digestService;
+    private final boolean enabled;
+    private final int shardCount;
+
+    /** 已確定分片與否的日期（決定後不再改變） */
+    private final Map<LocalDate, Boolean> decisions = new ConcurrentHashMap<>();
+
+    /** 合併失敗、待重試的日期 */
+    private final Set<LocalDate> failedMerges = ConcurrentHashMap.newKeySet();
+
+    public SystemStatsShardService(
+            MongoTemplate mongoTemplate,
+            CostCalculationService costService,
+            LatencyDigestService digestService,
+            LedgerProperties properties) {
+        this.mongoTemplate = mongoTemplate;
+        this.costService = costService;
+        this.digestService = digestService;
+        LedgerProperties.CounterShardingConfig config = properties.counterSharding() != null
+            ? properties.counterSharding()
+            : LedgerProperties.CounterShardingConfig.defaults();
+        this.enabled = config.enabled();
+        this.shardCount = config.shardCount(mongoTemplate.getCollectionName(SystemStats.class));
+    }
+
+    /**
+     * 找出以分片計數的日期。
+     *
+     * <p>原文件已標記 {@code sharded} 的日期一律分片（即使之後停用）；
+     * 啟用時尚無原文件的日期，建立只含 {@code sharded=true} 的原文件後分片。
+     *
+     * @param dates 日期
+     * @return 以分片計數的日期
+     */
+    public Set<LocalDate> shardedDates(Collection<LocalDate> dates) {
+        Set<LocalDate> sharded = new HashSet<>();
+        List<LocalDate> undecided = new ArrayList<>();
+        for (LocalDate date : dates) {
+            Boolean decision = decisions.get(date);
+            if (decision == null) {
+                undecided.add(date);
+            } else if (decision) {
+                sharded.add(date);
+            }
+        }
+        if (undecided.isEmpty()) {
+            return sharded;
+        }
+
+        Query query = Query.query(Criteria.where("_id").in(undecided.stream().map(SystemStats::createId).toList()));
+        query.fields().include("sharded");
+        Map<String, Document> existing = new HashMap<>();
+        mongoTemplate.find(query, Document.class, collection()).forEach(doc -> existing.put(doc.getString("_id"), doc));
+
+        for (LocalDate date : undecided) {
+            Document doc = existing.get(SystemStats.createId(date));
+            if (doc == null && enabled && shardCount > 1) {
+                // 其他實例可能同時以未分片方式建立原文件，以實際寫入後的文件為準
+                doc = mongoTemplate.findAndModify(
+                    Query.query(Criteria.where("_id").is(SystemStats.createId(date))),
+                    new Update().setOnInsert("date", date).setOnInsert("sharded", true),
+                    FindAndModifyOptions.options().upsert(true).returnNew(true),
+                    Document.class, collection());
+            }
+            if (doc == null) {
+                // 未啟用且尚無原文件：不快取，之後啟用時仍可分片
+                continue;
+            }
+            boolean isSharded = Boolean.TRUE.equals(doc.getBoolean("sharded"));
+            decisions.put(date, isSharded);
+            if (isSharded) {
+                sharded.add(date);
+            }
+        }
+        return sharded;
+    }
+
+    /**
+     * 將事件累加到分片。
+     *
+     * <p>同一日期的事件寫入同一份分片，分片依第一個事件雜湊選擇；只有 {@code latencyDigest} 需要讀取後寫回，
+     * 衝突範圍限於同一分片。
+     *
+     * <p>批次開始後才日結的日期，分片已由 {@link #sealShards} 封存，該日期的事件不寫入並回傳給呼叫端。
+     *
+     * @param events 用量事件（日期須已由 {@link #shardedDates} 判定為分片）
+     * @return 分片已封存、須改寫已日結原文件的日期
+     */
+    public Set<LocalDate> increment(List<UsageEventData> events) {
+        if (events.isEmpty()) {
+            return Set.of();
+        }
+        int shard = Math.floorMod(shardKey(events.get(0)).hashCode(), shardCount);
+        Map<LocalDate, List<UsageEventData>> grouped = events.stream()
+            .collect(Collectors.groupingBy(e -> toUtcDate(e.eventTime())));
+
+        Query digestQuery = Query.query(Criteria.where("_id").in(grouped.keySet().stream()
+            .map(date -> SystemStatsShard.createId(date, shard)).toList()));
+        digestQuery.fields().include("latencyDigest");
+        Map<String, byte[]> digests = new HashMap<>();
+        mongoTemplate.find(digestQuery, Document.class, shardCollection())
+            .forEach(doc -> digests.put(doc.getString("_id"), binary(doc.get("latencyDigest"))));
+
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SystemStatsShard.class);
+        List<LocalDate> order = new ArrayList<>();
+        Instant now = Instant.now();
+        grouped.forEach((date, dateEvents) -> {
+            String shardId = SystemStatsShard.createId(date, shard);
+            int successCount = (int) dateEvents.stream().filter(UsageEventData::isSuccess).count();
+
+            TDigest digest = digestService.deserialize(digests.get(shardId));
+            dateEvents.forEach(e -> digest.add(e.latencyMs()));
+
+            Update update = new Update()
+                .setOnInsert("date", date)
+                .setOnInsert("shard", shard)
+                .inc("totalInputTokens", dateEvents.stream().mapToLong(UsageEventData::totalInputTokens).sum())
+                .inc("totalOutputTokens", dateEvents.stream().mapToLong(UsageEventData::outputTokens).sum())
+                .inc("totalTokens", dateEvents.stream().mapToLong(UsageEventData::totalTokens).sum())
+                .inc("totalCacheReadTokens", dateEvents.stream().mapToLong(UsageEventData::cacheReadTokens).sum())
+                .inc("totalRequestCount", dateEvents.size())
+                .inc("totalEstimatedCostUsd", costService.calculateBatchCost(dateEvents).doubleValue())
+                .inc("successCount", successCount)
+                .inc("errorCount", dateEvents.size() - successCount)
+                .inc("totalLatencyMs", dateEvents.stream().mapToLong(UsageEventData::latencyMs).sum())
+                .inc("systemCacheSavedUsd", costService.calculateCacheSavings(dateEvents).doubleValue())
+                .set("latencyDigest", digestService.serialize(digest))
+                .set("lastUpdatedAt", now);
+            update.addToSet("userIdSet").each(dateEvents.stream().map(UsageEventData::userId).distinct().toArray());
+            dateEvents.stream()
+                .collect(Collectors.groupingBy(e -> e.eventTime().atZone(ZoneOffset.UTC).getHour(), Collectors.counting()))
+                .forEach((hour, count) -> update.inc("hourlyRequestCount." + hour, count.intValue()));
+
+            // 查詢排除封存文件：已封存的分片 upsert 改為插入相同 _id 而失敗，不會累加到已合併的分片
+            bulkOps.upsert(Query.query(Criteria.where("_id").is(shardId).and("sealed").ne(true)), update);
+            order.add(date);
+        });
+        try {
+            bulkOps.execute();
+        } catch (BulkOperationException e) {
+            boolean onlyDuplicates = e.getErrors().stream()
+                .allMatch(error -> error.getCode() == DUPLICATE_KEY_ERROR);
+            if (!onlyDuplicates) {
+                throw e;
+            }
+            Set<LocalDate> sealed = e.getErrors().stream()
+                .map(error -> order.get(error.getIndex()))
+                .collect(Collectors.toCollection(TreeSet::new));
+            log.info("system_stats shards for {} were sealed by finalization, writing to system_stats instead", sealed);
+            return sealed;
+        }
+        log.debug("Incremented system_stats shard {} for {} dates", shard, grouped.size());
+        return Set.of();
+    }
+
+    /**
+     * 合併分片並寫回原文件。
+     *
+     * <p>未分片或已日結的日期略過；每個日期只讀取一次分片、寫入一次原文件。
+     * 單一日期失敗不影響其他日期，失敗的日期加入重試清單，由 {@link #retryFailedMerges()} 重試。
+     *
+     * @param dates 要合併的日期
+     * @throws IllegalStateException 任一日期合併失敗
+     */
+    public void merge(Collection<LocalDate> dates) {
+        Set<LocalDate> failed = new TreeSet<>();
+        for (LocalDate date : new TreeSet<>(dates)) {
+            if (!mergeOrRecord(date)) {
+                failed.add(date);
+            }
+        }
+        if (!failed.isEmpty()) {
+            throw new IllegalStateException("Failed to merge system_stats shards for " + failed);
+        }
+    }
+
+    /**
+     * 重試先前合併失敗的日期。
+     *
+     * @return 本次合併成功的日期
+     */
+    public Set<LocalDate> retryFailedMerges() {
+        Set<LocalDate> merged = new TreeSet<>();
+        for (LocalDate date : new TreeSet<>(failedMerges)) {
+            if (mergeOrRecord(date)) {
+                merged.add(date);
+            }
+        }
+        if (!merged.isEmpty()) {
+            log.info("Retried system_stats shard merge for {}", merged);
+        }
+        return merged;
+    }
+
+    /**
+     * 日結前的最後一次合併。
+     *
+     * <p>回傳合併時讀到的分片內容，日結後由 {@link #sealShards} 據以找出合併之後才寫入的差量。
+     *
+     * @param date 日期
+     * @return 合併的分片內容；未分片的日期回傳空清單
+     */
+    public List<Document> mergeForFinalization(LocalDate date) {
+        if (!isSharded(date)) {
+            return List.of();
+        }
+        List<Document> shards = mergeDate(date);
+        failedMerges.remove(date);
+        return shards;
+    }
+
+    private boolean mergeOrRecord(LocalDate date) {
+        try {
+            if (isSharded(date)) {
+                long startTime = System.currentTimeMillis();
+                int shards = mergeDate(date).size();
+                log.debug("Merged {} system_stats shards for {} in {}ms", shards, date, System.currentTimeMillis() - startTime);
+            }
+            failedMerges.remove(date);
+            return true;
+        } catch (Exception e) {
+            failedMerges.add(date);
+            log.warn("Failed to merge system_stats shards for {}, queued for retry: {}", date, e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean isSharded(LocalDate date) {
+        Boolean decision = decisions.get(date);
+        if (decision != null) {
+            return decision;
+        }
+        // 其他實例分片的日期（本實例尚未判定）也需合併，例如日結
+        Query query = Query.query(Criteria.where("_id").is(SystemStats.createId(date)));
+        query.fields().include("sharded");
+        Document doc = mongoTemplate.findOne(query, Document.class, collection());
+        if (doc == null) {
+            return false;
+        }
+        boolean isSharded = Boolean.TRUE.equals(doc.getBoolean("sharded"));
+        decisions.put(date, isSharded);
+        return isSharded;
+    }
+
+    /**
+     * 封存日期的分片（日結後呼叫）。
+     *
+     * <p>批次在開始時判定日期未日結，之後才寫入分片；這類寫入可能落在最後一次合併之後，直接刪除分片會遺失。
+     * 每份分片以 findAndReplace 原子地換成只含 {@code sealed=true} 的封存文件並取回換掉前的內容，
+     * 減去合併時讀到的內容後，差量補入已日結的原文件；之後的寫入由 {@link #increment} 回報，改寫原文件。
+     *
+     * @param date 日期
+     * @param merged {@link #mergeForFinalization} 回傳的分片內容
+     */
+    public void sealShards(LocalDate date, List<Document> merged) {
+        boolean sharded = isSharded(date);
+        decisions.remove(date);
+        failedMerges.remove(date);
+        if (!sharded) {
+            return;
+        }
+
+        Map<String, Document> baseline = new HashMap<>();
+        merged.forEach(doc -> baseline.put(doc.getString("_id"), doc));
+        Set<String> shardIds = new TreeSet<>(baseline.keySet());
+        for (int shard = 0; shard < shardCount; shard++) {
+            shardIds.add(SystemStatsShard.createId(date, shard));
+        }
+        Query existing = Query.query(dayRange(date));
+        existing.fields().include("_id");
+        mongoTemplate.find(existing, Document.class, shardCollection()).forEach(doc -> shardIds.add(doc.getString("_id")));
+
+        List<Document> unmerged = new ArrayList<>();
+        for (String shardId : shardIds) {
+            Document previous = mongoTemplate.findAndReplace(
+                Query.query(Criteria.where("_id").is(shardId)),
+                new Document("_id", shardId).append("sealed", true),
+                FindAndReplaceOptions.options().upsert(),
+                shardCollection());
+            if (previous == null || Boolean.TRUE.equals(previous.getBoolean("sealed"))) {
+                continue;
+            }
+            Document delta = subtract(previous, baseline.get(shardId));
+            if (toLong(delta.get("totalRequestCount")) > 0) {
+                unmerged.add(delta);
+            }
+        }
+        if (!unmerged.isEmpty()) {
+            foldIntoFinalized(date, unmerged);
+            log.info("Folded {} requests written to system_stats shards after the final merge of {}",
+                sum(unmerged, "totalRequestCount"), date);
+        }
+    }
+
+    /**
+     * 清除早於指定日期的封存分片。
+     *
+     * <p>封存文件只需擋下日結當下仍在進行的批次，之後的批次在開始時就會判定日期已日結而直接修正原文件。
+     *
+     * @param before 清除此日期之前的封存分片
+     */
+    public void purgeSealedShards(LocalDate before) {
+        long deleted = mongoTemplate.remove(Query.query(Criteria.where("_id").lt(before.toString())
+            .and("sealed").is(true)), SystemStatsShard.class).getDeletedCount();
+        if (deleted > 0) {
+            log.debug("Purged {} sealed system_stats shards before {}", deleted, before);
+        }
+    }
+
+    /**
+     * 分片封存前的內容減去合併時讀到的內容；未參與合併的分片整份都是差量。
+     *
+     * <p>T-Digest 無法相減：已參與合併的分片只補計數，不補百分位。
+     */
+    private static Document subtract(Document current, Document merged) {
+        if (merged == null) {
+            return current;
+        }
+        Document delta = new Document();
+        COUNTER_FIELDS.forEach(field -> delta.put(field, toLong(current.get(field)) - toLong(merged.get(field))));
+        for (String field : List.of("totalEstimatedCostUsd", "systemCacheSavedUsd")) {
+            delta.put(field, decimal(current.get(field)).subtract(decimal(merged.get(field))).doubleValue());
+        }
+
+        Set<String> users = new HashSet<>(current.getList("userIdSet", String.class, List.of()));
+        users.removeAll(merged.getList("userIdSet", String.class, List.of()));
+        delta.put("userIdSet", List.copyOf(users));
+
+        Document hourly = new Document();
+        Document currentHourly = current.get("hourlyRequestCount", Document.class);
+        Document mergedHourly = merged.get("hourlyRequestCount", Document.class);
+        if (currentHourly != null) {
+            currentHourly.forEach((hour, count) -> {
+                long diff = toLong(count) - (mergedHourly != null ? toLong(mergedHourly.get(hour)) : 0L);
+                if (diff > 0) {
+                    hourly.put(hour, diff);
+                }
+            });
+        }
+        delta.put("hourlyRequestCount", hourly);
+        return delta;
+    }
+
+    /**
+     * 將分片差量補入已日結的原文件（與遲到修正相同：合併用戶草圖，比率以累計值重算）。
+     */
+    private void foldIntoFinalized(LocalDate date, List<Document> deltas) {
+        Query query = Query.query(Criteria.where("_id").is(SystemStats.createId(date)));
+        query.fields().include("userSketch", "latencyDigest", "hourlyRequestCount", "totalRequestCount",
+            "successCount", "errorCount", "avgLatencyMs", "totalInputTokens", "totalCacheReadTokens");
+        Document found = mongoTemplate.findOne(query, Document.class, collection());
+        Document current = found != null ? found : new Document();
+
+        long requests = sum(deltas, "totalRequestCount");
+        long success = sum(deltas, "successCount");
+        long errors = sum(deltas, "errorCount");
+        long input = sum(deltas, "totalInputTokens");
+        long cacheRead = sum(deltas, "totalCacheReadTokens");
+        long currentRequests = toLong(current.get("totalRequestCount"));
+        long totalRequests = currentRequests + requests;
+        long totalSuccess = success + toLong(current.get("successCount"));
+        long totalErrors = errors + toLong(current.get("errorCount"));
+        double currentLatency = current.get("avgLatencyMs") instanceof Number n ? n.doubleValue() * currentRequests : 0.0;
+
+        Update update = new Update()
+            .setOnInsert("date", date)
+            .setOnInsert("finalized", true)
+            .inc("totalInputTokens", input)
+            .inc("totalOutputTokens", sum(deltas, "totalOutputTokens"))
+            .inc("totalTokens", sum(deltas, "totalTokens"))
+            .inc("totalCacheReadTokens", cacheRead)
+            .inc("totalRequestCount", (int) requests)
+            .inc("totalEstimatedCostUsd", decimalSum(deltas, "totalEstimatedCostUsd").doubleValue())
+            .inc("successCount", (int) success)
+            .inc("errorCount", (int) errors)
+            .inc("systemCacheSavedUsd", decimalSum(deltas, "systemCacheSavedUsd").doubleValue())
+            .set("successRate", ratio(totalSuccess, totalSuccess + totalErrors))
+            .set("avgLatencyMs", totalRequests > 0 ? (currentLatency + sum(deltas, "totalLatencyMs")) / totalRequests : 0.0)
+            .set("systemCacheHitRate", ratio(cacheRead + toLong(current.get("totalCacheReadTokens")),
+                input + toLong(current.get("totalInputTokens"))))
+            .set("lastUpdatedAt", Instant.now());
+
+        HyperLogLog userSketch = HyperLogLog.fromBytes(binary(current.get("userSketch")));
+        Map<Integer, Integer> hourly = new TreeMap<>();
+        Document currentHourly = current.get("hourlyRequestCount", Document.class);
+        if (currentHourly != null) {
+            currentHourly.forEach((hour, count) -> hourly.merge(Integer.valueOf(hour), (int) toLong(count), Integer::sum));
+        }
+        List<byte[]> digests = new ArrayList<>();
+        for (Document delta : deltas) {
+            delta.getList("userIdSet", String.class, List.of()).forEach(userSketch::add);
+            Document deltaHourly = delta.get("hourlyRequestCount", Document.class);
+            if (deltaHourly != null) {
+                deltaHourly.forEach((hour, count) -> {
+                    update.inc("hourlyRequestCount." + hour, (int) toLong(count));
+                    hourly.merge(Integer.valueOf(hour), (int) toLong(count), Integer::sum);
+                });
+            }
+            byte[] digest = binary(delta.get("latencyDigest"));
+            if (digest != null) {
+                digests.add(digest);
+            }
+        }
+        if (!digests.isEmpty()) {
+            digests.add(binary(current.get("latencyDigest")));
+            TDigest digest = digestService.mergeSerialized(digests);
+            update.set("p50LatencyMs", digest.quantile(0.5))
+                .set("p90LatencyMs", digest.quantile(0.9))
+                .set("p99LatencyMs", digest.quantile(0.99))
+                .set("latencyDigest", digestService.serialize(digest));
+        }
+        Map.Entry<Integer, Integer> peak = hourly.entrySet().stream()
+            .max(Map.Entry.comparingByValue())
+            .orElse(Map.entry(0, 0));
+
+        update.set("uniqueUsers", (int) userSketch.estimate())
+            .set("userSketch", userSketch.toBytes())
+            .set("peakHour", peak.getKey())
+            .set("peakHourRequests", peak.getValue());
+        mongoTemplate.upsert(query, update, SystemStats.class);
+    }
+
+    private List<Document> mergeDate(LocalDate date) {
+        Query mainQuery = Query.query(Criteria.where("_id").is(SystemStats.createId(date))
+            .and("finalized").ne(true));
+        List<Document> shards = mongoTemplate.find(Query.query(dayRange(date)), Document.class, shardCollection());
+        if (shards.isEmpty()) {
+            return shards;
+        }
+
+        long requests = sum(shards, "totalRequestCount");
+        long success = sum(shards, "successCount");
+        long errors = sum(shards, "errorCount");
+        long input = sum(shards, "totalInputTokens");
+        long cacheRead = sum(shards, "totalCacheReadTokens");
+        Set<String> userIds = new HashSet<>();
+        Map<Integer, Integer> hourly = new TreeMap<>();
+        List<byte[]> digests = new ArrayList<>();
+        for (Document shard : shards) {
+            userIds.addAll(shard.getList("userIdSet", String.class, List.of()));
+            Document shardHourly = shard.get("hourlyRequestCount", Document.class);
+            if (shardHourly != null) {
+                shardHourly.forEach((hour, count) ->
+                    hourly.merge(Integer.valueOf(hour), (int) toLong(count), Integer::sum));
+            }
+            digests.add(binary(shard.get("latencyDigest")));
+        }
+        TDigest digest = digestService.mergeSerialized(digests);
+        Map.Entry<Integer, Integer> peak = hourly.entrySet().stream()
+            .max(Map.Entry.comparingByValue())
+            .orElse(Map.entry(0, 0));
+
+        Update update = new Update()
+            .setOnInsert("date", date)
+            .set("sharded", true)
+            .set("totalInputTokens", input)
+            .set("totalOutputTokens", sum(shards, "totalOutputTokens"))
+            .set("totalTokens", sum(shards, "totalTokens"))
+            .set("totalCacheReadTokens", cacheRead)
+            .set("totalRequestCount", (int) requests)
+            .set("totalEstimatedCostUsd", decimalSum(shards, "totalEstimatedCostUsd").doubleValue())
+            .set("successCount", (int) success)
+            .set("errorCount", (int) errors)
+            .set("successRate", ratio(success, success + errors))
+            .set("avgLatencyMs", requests > 0 ? (double) sum(shards, "totalLatencyMs") / requests : 0.0)
+            .set("p50LatencyMs", digest.size() > 0 ? digest.quantile(0.5) : 0.0)
+            .set("p90LatencyMs", digest.size() > 0 ? digest.quantile(0.9) : 0.0)
+            .set("p99LatencyMs", digest.size() > 0 ? digest.quantile(0.99) : 0.0)
+            .set("latencyDigest", digestService.serialize(digest))
+            .set("systemCacheHitRate", ratio(cacheRead, input))
+            .set("systemCacheSavedUsd", decimalSum(shards, "systemCacheSavedUsd").doubleValue())
+            .set("userIdSet", userIds)
+            .set("uniqueUsers", userIds.size())
+            .set("hourlyRequestCount", hourly)
+            .set("peakHour", peak.getKey())
+            .set("peakHourRequests", peak.getValue())
+            .set("topModels", topItems(DailyModelUsage.class, date, "model", "requestCount", 5))
+            .set("topUsers", topItems(DailyUserUsage.class, date, "userId", "totalTokens", 10))
+            .set("lastUpdatedAt", Instant.now());
+        mongoTemplate.updateFirst(mainQuery, update, SystemStats.class);
+        return shards;
+    }
+
+    /**
+     * 查詢某日期的排行榜（與一般路徑相同：模型依請求數、用戶依 token 數）。
+     */
+    private List<TopItem> topItems(Class<?> documentClass, LocalDate date, String idField, String sortField, int limit) {
+        Query query = Query.query(dayRange(date))
+            .with(Sort.by(Sort.Direction.DESC, sortField))
+            .limit(limit);
+        query.fields().include(idField, "requestCount", "totalTokens", "estimatedCostUsd");
+        return mongoTemplate.find(query, Document.class, mongoTemplate.getCollectionName(documentClass)).stream()
+            .map(doc -> new TopItem(
+                doc.getString(idField),
+                (int) toLong(doc.get("requestCount")),
+                toLong(doc.get("totalTokens")),
+                decimal(doc.get("estimatedCostUsd"))))
+            .toList();
+    }
+
+    private static String shardKey(UsageEventData event) {
+        return event.messageId() != null ? event.messageId() : event.userId() + "@" + event.eventTime();
+    }
+
+    private static long sum(List<Document> docs, String field) {
+        return docs.stream().mapToLong(doc -> toLong(doc.get(field))).sum();
+    }
+
+    private static BigDecimal decimalSum(List<Document> docs, String field) {
+        return docs.stream().map(doc -> decimal(doc.get(field))).reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    /**
+     * 某日期所有分片（或日彙總）的 {@code _id} 範圍（ID 以 {@code YYYY-MM-DD_} 開頭）。
+     */
+    private static Criteria dayRange(LocalDate date) {
+        // '`' 為 '_' 的下一個字元
+        return Criteria.where("_id").gte(date + "_").lt(date + "`");
+    }
+
+    private static double ratio(long numerator, long denominator) {
+        return denominator > 0 ? (double) numerator / denominator : 0.0;
+    }
+
+    private static long toLong(Object value) {
+        return value instanceof Number n ? n.longValue() : 0L;
+    }
+
+    private static BigDecimal decimal(Object value) {
+        if (value instanceof Decimal128 d) {
+            return d.bigDecimalValue();
+        }
+        if (value instanceof Number n) {
+            return BigDecimal.valueOf(n.doubleValue());
+        }
+        if (value instanceof String str && !str.isBlank()) {
+            return new BigDecimal(str);
+        }
+        return BigDecimal.ZERO;
+    }
+
+    private static byte[] binary(Object value) {
+        if (value instanceof Binary b) {
+            return b.getData();
+        }
+        return value instanceof byte[] bytes ? bytes : null;
+    }
+
+    private String collection() {
+        return mongoTemplate.getCollectionName(SystemStats.class);
+    }
+
+    private String shardCollection() {
+        return mongoTemplate.getCollectionName(SystemStatsShard.class);
+    }
+
+    private static LocalDate toUtcDate(Instant timestamp) {
+        return timestamp.atZone(ZoneOffset.UTC).toLocalDate();
+    }
+}
@@ -3,20 +3,28 @@ package io.github.samzhu.ledger.service;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.nio.ByteBuffer;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+import org.bson.types.Binary;
+import org.bson.types.Decimal128;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.BulkOperationException;
 import org.springframework.data.mongodb.core.BulkOperations;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
@@ -29,18 +37,23 @@ import com.tdunning.math.stats.TDigest;
 
 import io.github.samzhu.ledger.config.LedgerProperties;
 import io.github.samzhu.ledger.document.DailyModelUsage;
+import io.github.samzhu.ledger.document.DailyUserModelUsage;
 import io.github.samzhu.ledger.document.DailyUserUsage;
 import io.github.samzhu.ledger.document.DailyUserUsage.CostBreakdown;
 import io.github.samzhu.ledger.document.DailyUserUsage.HourlyBreakdown;
 import io.github.samzhu.ledger.document.DailyUserUsage.ModelBreakdown;
-import io.github.samzhu.ledger.document.QuotaHistory;
+import io.github.samzhu.ledger.document.HourlyUsage;
+import io.github.samzhu.ledger.document.MonthlyModelUsage;
+import io.github.samzhu.ledger.document.MonthlyUserUsage;
 import io.github.samzhu.ledger.document.SystemStats;
 import io.github.samzhu.ledger.document.SystemStats.TopItem;
 import io.github.samzhu.ledger.document.UserQuota;
 import io.github.samzhu.ledger.dto.UsageEventData;
-import io.github.samzhu.ledger.repository.QuotaHistoryRepository;
 import io.github.samzhu.ledger.repository.UserQuotaRepository;
+import io.github.samzhu.ledger.util.HyperLogLog;
 import io.github.samzhu.ledger.util.PeriodUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 
 /**
  * 用量事件聚合服務（增強版）。
@@ -62,6 +75,9 @@ import io.github.samzhu.ledger.util.PeriodUtils;
  *   <li>成本細分（輸入/輸出/Cache 讀寫）</li>
  * </ul>
  *
+ * <p>比率、平均值、百分位數、Cache 效率與成本細分皆由既有累計值與本批次合併計算，
+ * 不以單一批次的結果覆寫整日值。
+ *
  * @see <a href="https://docs.spring.io/spring-data/mongodb/reference/mongodb/template-update.html">Spring Data MongoDB Update Operations</a>
  */
 @Service
@@ -69,12 +85,19 @@ public class UsageAggregationService {
 
     private static final Logger log = LoggerFactory.getLogger(UsageAggregationService.class);
 
+    private static final int DUPLICATE_KEY_ERROR = 11000;
+
     private final MongoTemplate mongoTemplate;
     private final CostCalculationService costService;
     private final LatencyDigestService digestService;
     private final LedgerProperties properties;
     private final UserQuotaRepository userQuotaRepository;
-    private final QuotaHistoryRepository quotaHistoryRepository;
+    private final PeriodRolloverService periodRolloverService;
+    private final WatermarkService watermarkService;
+    private final SystemStatsShardService shardService;
+    private final ModelDictionaryService modelDictionary;
+    private final Counter onTimeEvents;
+    private final Counter lateEvents;
 
     public UsageAggregationService(
             MongoTemplate mongoTemplate,
@@ -82,13 +105,28 @@ public class UsageAggregationService {
             LatencyDigestService digestService,
             LedgerProperties properties,
             UserQuotaRepository userQuotaRepository,
-            QuotaHistoryRepository quotaHistoryRepository) {
+            PeriodRolloverService periodRolloverService,
+            WatermarkService watermarkService,
+            SystemStatsShardService shardService,
+            ModelDictionaryService modelDictionary,
+            MeterRegistry meterRegistry) {
         this.mongoTemplate = mongoTemplate;
         this.costService = costService;
         this.digestService = digestService;
         this.properties = properties;
         this.userQuotaRepository = userQuotaRepository;
-        this.quotaHistoryRepository = quotaHistoryRepository;
+        this.periodRolloverService = periodRolloverService;
+        this.watermarkService = watermarkService;
+        this.shardService = shardService;
+        this.modelDictionary = modelDictionary;
+        this.onTimeEvents = Counter.builder("ledger.settlement.events")
+            .description("Usage events settled, by settlement path")
+            .tag("path", "on_time")
+            .register(meterRegistry);
+        this.lateEvents = Counter.builder("ledger.settlement.events")
+            .description("Usage events settled, by settlement path")
+            .tag("path", "late")
+            .register(meterRegistry);
         log.info("UsageAggregationService initialized with enhanced analytics and quota management");
     }
 
@@ -99,10 +137,24 @@ public class UsageAggregationService {
      * <ol>
      *   <li>依 (date, userId) 分組 → 更新 daily_user_usage</li>
      *   <li>依 (date, model) 分組 → 更新 daily_model_usage</li>
+     *   <li>依 (month, userId) / (month, model) 分組 → 更新 monthly_user_usage、monthly_model_usage</li>
+     *   <li>依 (hour, dimension, key) 分組 → 更新 hourly_usage</li>
      *   <li>依 userId 分組 → 更新 user_quota</li>
      *   <li>依 date 分組 → 更新 system_stats</li>
      * </ol>
      *
+     * <p>日文件（daily_user_usage、daily_model_usage、system_stats）依事件時間分兩條路徑：
+     * <ul>
+     *   <li>準時事件 - 一般路徑，累加後重算 peakHour、uniqueUsers、排行榜等整日衍生欄位</li>
+     *   <li>遲到事件 - 事件時間早於水位線（{@link WatermarkService}），
+     *       或日期已日結（{@link DayFinalizationService}）；走修正路徑，只累加差量、
+     *       合併 digest 與草圖，不重算整日衍生欄位</li>
+     * </ul>
+     * 月、小時彙總與配額不受影響，兩種事件都以 {@code $inc} 累加。
+     *
+     * <p>啟用分片計數器的日期，system_stats 改寫入分片（{@link SystemStatsShardService}），
+     * 由結算結束時的合併寫回原文件。
+     *
      * @param events 要處理的用量事件列表
      */
     public void processBatch(List<UsageEventData> events) {
@@ -114,10 +166,31 @@ public class UsageAggregationService {
         long startTime = System.currentTimeMillis();
         log.info("Processing aggregation batch: {} events", events.size());
 
-        updateDailyUserUsage(events);
-        updateDailyModelUsage(events);
+        // 遲到事件（早於水位線或日期已日結）走修正路徑，其餘走一般路徑
+        Instant watermark = watermarkService.advance(events);
+        Set<LocalDate> finalizedDates = findFinalizedDates(events);
+        Map<Boolean, List<UsageEventData>> partitioned = events.stream()
+            .collect(Collectors.partitioningBy(e -> WatermarkService.isLate(e.eventTime(), watermark)
+                || finalizedDates.contains(toUtcDate(e.eventTime()))));
+        List<UsageEventData> onTime = partitioned.get(false);
+        List<UsageEventData> late = partitioned.get(true);
+        onTimeEvents.increment(onTime.size());
+        lateEvents.increment(late.size());
+
+        if (!onTime.isEmpty()) {
+            updateDailyUserUsage(onTime);
+            updateDailyModelUsage(onTime);
+        }
+        updateMonthlyUserUsage(events);
+        updateMonthlyModelUsage(events);
+        updateHourlyUsage(events);
         updateUserQuota(events);
-        updateSystemStats(events);
+        if (!onTime.isEmpty()) {
+            updateSystemStats(onTime);
+        }
+        if (!late.isEmpty()) {
+            applyLateCorrections(late, finalizedDates, watermark);
+        }
 
         long duration = System.currentTimeMillis() - startTime;
         log.info("Aggregation completed: {} events processed in {}ms", events.size(), duration);
@@ -133,9 +206,12 @@ public class UsageAggregationService {
 
         Map<String, List<UsageEventData>> grouped = events.stream()
             .collect(Collectors.groupingBy(e -> DailyUserUsage.createId(toUtcDate(e.eventTime()), e.userId())));
+        Map<String, org.bson.Document> existing = loadInternalFields(grouped.keySet(), DailyUserUsage.class,
+            "latencyDigest", "totalInputTokens", "totalCacheReadTokens", "cacheEfficiency", "costBreakdown");
 
         grouped.forEach((docId, userEvents) -> {
             UsageEventData first = userEvents.get(0);
+            org.bson.Document current = existing.get(docId);
 
             // === 基本統計 ===
             // totalInputTokens = inputTokens + cacheCreationTokens + cacheReadTokens (由 UsageEventData 計算)
@@ -153,22 +229,21 @@ public class UsageAggregationService {
             Map<String, Integer> errorBreakdown = aggregateErrorBreakdown(userEvents);
 
             // === T-Digest 延遲百分位 ===
-            TDigest digest = loadOrCreateDigest(docId, DailyUserUsage.class);
+            TDigest digest = digestService.deserialize(binaryField(current, "latencyDigest"));
             userEvents.forEach(e -> digest.add(e.latencyMs()));
             DailyUserUsage.LatencyStats latencyStats = calculateLatencyStats(digest);
             byte[] digestBytes = serializeDigest(digest);
 
-            // === Cache 效率 ===
-            DailyUserUsage.CacheEfficiency cacheEfficiency = calculateCacheEfficiency(userEvents);
+            // === Cache 效率（與既有累計值合併）===
+            CacheTotals cache = mergeCacheEfficiency(current, userEvents);
+            DailyUserUsage.CacheEfficiency cacheEfficiency =
+                new DailyUserUsage.CacheEfficiency(cache.hitRate(), cache.tokensSaved(), cache.costSaved());
 
             // === 每小時分布 (peakHour will be computed after bulk update) ===
             Map<Integer, HourlyBreakdown> hourlyBreakdown = aggregateHourlyBreakdown(userEvents);
 
-            // === 模型分布 ===
-            Map<String, ModelBreakdown> modelBreakdown = aggregateModelBreakdown(userEvents);
-
-            // === 成本細分 ===
-            CostBreakdown costBreakdown = costService.calculateCostBreakdown(userEvents);
+            // === 成本細分（與既有累計值合併）===
+            CostBreakdown costBreakdown = mergeCostBreakdown(current, costService.calculateCostBreakdown(userEvents));
 
             Query query = Query.query(Criteria.where("_id").is(docId));
             Update update = new Update()
@@ -200,26 +275,17 @@ public class UsageAggregationService {
                 update.inc("hourlyBreakdown." + hour + ".costUsd", breakdown.costUsd().doubleValue());
             });
 
-            // 模型分布使用 $inc
-            modelBreakdown.forEach((model, breakdown) -> {
-                String prefix = "modelBreakdown." + sanitizeFieldName(model) + ".";
-                update.inc(prefix + "inputTokens", breakdown.inputTokens());
-                update.inc(prefix + "outputTokens", breakdown.outputTokens());
-                update.inc(prefix + "cacheReadTokens", breakdown.cacheReadTokens());
-                update.inc(prefix + "requestCount", breakdown.requestCount());
-                update.inc(prefix + "successCount", breakdown.successCount());
-                update.inc(prefix + "errorCount", breakdown.errorCount());
-                update.inc(prefix + "costUsd", breakdown.costUsd().doubleValue());
-            });
-
             bulkOps.upsert(query, update);
         });
 
         bulkOps.execute();
+        updateDailyUserModelUsage(grouped);
 
         // Compute derived fields (peakHour) from accumulated data
         grouped.keySet().forEach(docId -> {
+            // 只需讀取每小時分布（上限 24 個 key）
             Query query = Query.query(Criteria.where("_id").is(docId));
+            query.fields().include("hourlyBreakdown");
             DailyUserUsage current = mongoTemplate.findOne(query, DailyUserUsage.class);
             if (current == null) return;
 
@@ -248,6 +314,53 @@ public class UsageAggregationService {
         log.debug("Updated daily_user_usage: {} documents", grouped.size());
     }
 
+    /**
+     * 更新用戶日用量的模型細分子文件。
+     *
+     * <p>每個（日期、用戶、模型）一份子文件，以模型字典的數字 ID 組成文件 ID 並 {@code $inc} 累加，
+     * 父文件大小不隨模型數量增加。正常路徑與遲到修正路徑共用。
+     *
+     * @param grouped 父文件 ID → 該用戶當日事件
+     */
+    private void updateDailyUserModelUsage(Map<String, List<UsageEventData>> grouped) {
+        Set<String> models = grouped.values().stream()
+            .flatMap(List::stream)
+            .map(UsageEventData::model)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toSet());
+        if (models.isEmpty()) {
+            return;
+        }
+        Map<String, Integer> modelIds = modelDictionary.idsOf(models);
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, DailyUserModelUsage.class);
+        Instant now = Instant.now();
+
+        grouped.forEach((usageId, userEvents) -> {
+            UsageEventData first = userEvents.get(0);
+            aggregateModelBreakdown(userEvents).forEach((model, breakdown) -> {
+                int modelId = modelIds.get(model);
+                Update update = new Update()
+                    .setOnInsert("usageId", usageId)
+                    .setOnInsert("date", toUtcDate(first.eventTime()))
+                    .setOnInsert("userId", first.userId())
+                    .setOnInsert("modelId", modelId)
+                    .setOnInsert("model", model)
+                    .inc("inputTokens", breakdown.inputTokens())
+                    .inc("outputTokens", breakdown.outputTokens())
+                    .inc("cacheReadTokens", breakdown.cacheReadTokens())
+                    .inc("requestCount", breakdown.requestCount())
+                    .inc("successCount", breakdown.successCount())
+                    .inc("errorCount", breakdown.errorCount())
+                    .inc("costUsd", breakdown.costUsd().doubleValue())
+                    .set("lastUpdatedAt", now);
+                bulkOps.upsert(Query.query(Criteria.where("_id").is(DailyUserModelUsage.createId(usageId, modelId))),
+                    update);
+            });
+        });
+
+        bulkOps.execute();
+    }
+
     /**
      * 更新模型日用量聚合（增強版）。
      *
@@ -259,9 +372,13 @@ public class UsageAggregationService {
         Map<String, List<UsageEventData>> grouped = events.stream()
             .filter(e -> e.model() != null)
             .collect(Collectors.groupingBy(e -> DailyModelUsage.createId(toUtcDate(e.eventTime()), e.model())));
+        Map<String, org.bson.Document> existing = loadInternalFields(grouped.keySet(), DailyModelUsage.class,
+            "latencyDigest", "totalInputTokens", "totalCacheReadTokens", "cacheEfficiency");
+        List<String> order = new ArrayList<>();
 
         grouped.forEach((docId, modelEvents) -> {
             UsageEventData first = modelEvents.get(0);
+            org.bson.Document current = existing.get(docId);
 
             // === 基本統計 ===
             // totalInputTokens = inputTokens + cacheCreationTokens + cacheReadTokens (由 UsageEventData 計算)
@@ -284,18 +401,20 @@ public class UsageAggregationService {
             Map<String, Integer> errorBreakdown = aggregateErrorBreakdown(modelEvents);
 
             // === T-Digest 延遲百分位 ===
-            TDigest digest = loadOrCreateDigest(docId, DailyModelUsage.class);
+            TDigest digest = digestService.deserialize(binaryField(current, "latencyDigest"));
             modelEvents.forEach(e -> digest.add(e.latencyMs()));
             DailyModelUsage.LatencyStats latencyStats = calculateModelLatencyStats(digest);
             byte[] digestBytes = serializeDigest(digest);
 
-            // === Cache 效率 ===
-            DailyModelUsage.CacheEfficiency cacheEfficiency = calculateModelCacheEfficiency(modelEvents);
+            // === Cache 效率（與既有累計值合併）===
+            CacheTotals cache = mergeCacheEfficiency(current, modelEvents);
+            DailyModelUsage.CacheEfficiency cacheEfficiency =
+                new DailyModelUsage.CacheEfficiency(cache.hitRate(), cache.tokensSaved(), cache.costSaved());
 
             // === 每小時分布 (peakHour will be computed after bulk update) ===
             Map<Integer, Integer> hourlyRequestCount = aggregateHourlyRequestCount(modelEvents);
 
-            Query query = Query.query(Criteria.where("_id").is(docId));
+            Query query = Query.query(unlessFinalized(docId));
             Update update = new Update()
                 .setOnInsert("date", toUtcDate(first.eventTime()))
                 .setOnInsert("model", first.model())
@@ -313,10 +432,8 @@ public class UsageAggregationService {
                 .set("cacheEfficiency", cacheEfficiency)
                 .set("lastUpdatedAt", Instant.now());
 
-            // Use $addToSet for each userId (accumulates across batches)
-            for (String userId : batchUserIds) {
-                update.addToSet("userIdSet", userId);
-            }
+            // $addToSet + $each (accumulates across batches); repeated addToSet(key, value) keeps only the last value
+            update.addToSet("userIdSet").each(batchUserIds.toArray());
 
             // 錯誤分布使用 $inc
             errorBreakdown.forEach((type, count) ->
@@ -327,13 +444,14 @@ public class UsageAggregationService {
                 update.inc("hourlyRequestCount." + hour, count));
 
             bulkOps.upsert(query, update);
+            order.add(docId);
         });
 
-        bulkOps.execute();
+        List<UsageEventData> finalizedMeanwhile = executeUnlessFinalized(bulkOps, order, grouped);
 
         // Compute derived fields (uniqueUsers, peakHour) from accumulated data
         grouped.keySet().forEach(docId -> {
-            Query query = Query.query(Criteria.where("_id").is(docId));
+            Query query = Query.query(unlessFinalized(docId));
             DailyModelUsage current = mongoTemplate.findOne(query, DailyModelUsage.class);
             if (current == null) return;
 
@@ -363,9 +481,487 @@ public class UsageAggregationService {
             mongoTemplate.updateFirst(query, derivedUpdate, DailyModelUsage.class);
         });
 
+        if (!finalizedMeanwhile.isEmpty()) {
+            correctDailyModelUsage(finalizedMeanwhile, datesOf(finalizedMeanwhile));
+        }
         log.debug("Updated daily_model_usage: {} documents", grouped.size());
     }
 
+    /**
+     * 更新用戶月用量彙總。
+     *
+     * <p>與日用量相同的增量方式（{@code $inc} + digest 合併），
+     * 本批次涉及的月 digest 以單次 {@code $in} 查詢載入。
+     */
+    private void updateMonthlyUserUsage(List<UsageEventData> events) {
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, MonthlyUserUsage.class);
+
+        Map<String, List<UsageEventData>> grouped = events.stream()
+            .collect(Collectors.groupingBy(e -> MonthlyUserUsage.createId(toUtcMonth(e.eventTime()), e.userId())));
+
+        Map<String, org.bson.Document> existing =
+            loadInternalFields(grouped.keySet(), MonthlyUserUsage.class, "latencyDigest");
+
+        grouped.forEach((docId, userEvents) -> {
+            UsageEventData first = userEvents.get(0);
+            YearMonth month = toUtcMonth(first.eventTime());
+
+            long totalInput = userEvents.stream().mapToLong(UsageEventData::totalInputTokens).sum();
+            long totalOutput = userEvents.stream().mapToLong(UsageEventData::outputTokens).sum();
+            long totalCacheCreation = userEvents.stream().mapToLong(UsageEventData::cacheCreationTokens).sum();
+            long totalCacheRead = userEvents.stream().mapToLong(UsageEventData::cacheReadTokens).sum();
+            long totalTokens = userEvents.stream().mapToLong(UsageEventData::totalTokens).sum();
+            int successCount = (int) userEvents.stream().filter(UsageEventData::isSuccess).count();
+            int errorCount = userEvents.size() - successCount;
+
+            BigDecimal totalCost = costService.calculateBatchCost(userEvents);
+
+            // === T-Digest 延遲百分位（月層級） ===
+            TDigest digest = digestService.deserialize(binaryField(existing.get(docId), "latencyDigest"));
+            userEvents.forEach(e -> digest.add(e.latencyMs()));
+
+            Query query = Query.query(Criteria.where("_id").is(docId));
+            Update update = new Update()
+                .setOnInsert("year", month.getYear())
+                .setOnInsert("month", month.getMonthValue())
+                .setOnInsert("userId", first.userId())
+                .inc("totalInputTokens", totalInput)
+                .inc("totalOutputTokens", totalOutput)
+                .inc("totalCacheCreationTokens", totalCacheCreation)
+                .inc("totalCacheReadTokens", totalCacheRead)
+                .inc("totalTokens", totalTokens)
+                .inc("requestCount", userEvents.size())
+                .inc("successCount", successCount)
+                .inc("errorCount", errorCount)
+                .inc("estimatedCostUsd", totalCost.doubleValue())
+                .set("latencyStats", calculateLatencyStats(digest))
+                .set("latencyDigest", serializeDigest(digest))
+                .set("lastUpdatedAt", Instant.now());
+
+            update.addToSet("activeDays").each(userEvents.stream()
+                .map(e -> toUtcDate(e.eventTime()).getDayOfMonth())
+                .distinct()
+                .toArray());
+
+            aggregateErrorBreakdown(userEvents).forEach((type, count) ->
+                update.inc("errorBreakdown." + type, count));
+
+            aggregateModelBreakdown(userEvents).forEach((model, breakdown) -> {
+                String prefix = "modelBreakdown." + sanitizeFieldName(model) + ".";
+                update.inc(prefix + "inputTokens", breakdown.inputTokens());
+                update.inc(prefix + "outputTokens", breakdown.outputTokens());
+                update.inc(prefix + "cacheReadTokens", breakdown.cacheReadTokens());
+                update.inc(prefix + "requestCount", breakdown.requestCount());
+                update.inc(prefix + "successCount", breakdown.successCount());
+                update.inc(prefix + "errorCount", breakdown.errorCount());
+                update.inc(prefix + "costUsd", breakdown.costUsd().doubleValue());
+            });
+
+            bulkOps.upsert(query, update);
+        });
+
+        bulkOps.execute();
+        log.debug("Updated monthly_user_usage: {} documents", grouped.size());
+    }
+
+    /**
+     * 更新模型月用量彙總。
+     *
+     * <p>獨立用戶數以 HyperLogLog 草圖合併後估算，文件大小固定。
+     */
+    private void updateMonthlyModelUsage(List<UsageEventData> events) {
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, MonthlyModelUsage.class);
+
+        Map<String, List<UsageEventData>> grouped = events.stream()
+            .filter(e -> e.model() != null)
+            .collect(Collectors.groupingBy(e -> MonthlyModelUsage.createId(toUtcMonth(e.eventTime()), e.model())));
+
+        Map<String, org.bson.Document> existing =
+            loadInternalFields(grouped.keySet(), MonthlyModelUsage.class, "latencyDigest", "userSketch");
+
+        grouped.forEach((docId, modelEvents) -> {
+            UsageEventData first = modelEvents.get(0);
+            YearMonth month = toUtcMonth(first.eventTime());
+            org.bson.Document current = existing.get(docId);
+
+            long totalInput = modelEvents.stream().mapToLong(UsageEventData::totalInputTokens).sum();
+            long totalOutput = modelEvents.stream().mapToLong(UsageEventData::outputTokens).sum();
+            long totalCacheCreation = modelEvents.stream().mapToLong(UsageEventData::cacheCreationTokens).sum();
+            long totalCacheRead = modelEvents.stream().mapToLong(UsageEventData::cacheReadTokens).sum();
+            long totalTokens = modelEvents.stream().mapToLong(UsageEventData::totalTokens).sum();
+            int successCount = (int) modelEvents.stream().filter(UsageEventData::isSuccess).count();
+            int errorCount = modelEvents.size() - successCount;
+
+            BigDecimal totalCost = costService.calculateBatchCost(modelEvents);
+
+            // === T-Digest 延遲百分位（月層級） ===
+            TDigest digest = digestService.deserialize(binaryField(current, "latencyDigest"));
+            modelEvents.forEach(e -> digest.add(e.latencyMs()));
+
+            // === 獨立用戶草圖 ===
+            HyperLogLog userSketch = HyperLogLog.fromBytes(binaryField(current, "userSketch"));
+            modelEvents.forEach(e -> userSketch.add(e.userId()));
+
+            Query query = Query.query(Criteria.where("_id").is(docId));
+            Update update = new Update()
+                .setOnInsert("year", month.getYear())
+                .setOnInsert("month", month.getMonthValue())
+                .setOnInsert("model", first.model())
+                .inc("totalInputTokens", totalInput)
+                .inc("totalOutputTokens", totalOutput)
+                .inc("totalCacheCreationTokens", totalCacheCreation)
+                .inc("totalCacheReadTokens", totalCacheRead)
+                .inc("totalTokens", totalTokens)
+                .inc("requestCount", modelEvents.size())
+                .inc("successCount", successCount)
+                .inc("errorCount", errorCount)
+                .inc("estimatedCostUsd", totalCost.doubleValue())
+                .set("uniqueUsers", (int) userSketch.estimate())
+                .set("userSketch", userSketch.toBytes())
+                .set("latencyStats", calculateModelLatencyStats(digest))
+                .set("latencyDigest", serializeDigest(digest))
+                .set("lastUpdatedAt", Instant.now());
+
+            aggregateErrorBreakdown(modelEvents).forEach((type, count) ->
+                update.inc("errorBreakdown." + type, count));
+
+            bulkOps.upsert(query, update);
+        });
+
+        bulkOps.execute();
+        log.debug("Updated monthly_model_usage: {} documents", grouped.size());
+    }
+
+    /**
+     * 更新小時粒度用量（用戶、模型、系統三個維度）。
+     *
+     * <p>每個（小時、維度、鍵）一筆文件，與日用量相同以 {@code $inc} 累加，
+     * 小時 digest 以單次 {@code $in} 查詢載入。{@code expireAt} 依
+     * {@code ledger.hourly.retention-days} 設定，由 TTL index 自動清除。
+     */
+    private void updateHourlyUsage(List<UsageEventData> events) {
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, HourlyUsage.class);
+
+        Map<HourlyKey, List<UsageEventData>> grouped = new HashMap<>();
+        for (UsageEventData event : events) {
+            Instant hour = HourlyUsage.truncateToHour(event.eventTime());
+            grouped.computeIfAbsent(new HourlyKey(hour, HourlyUsage.DIMENSION_USER, event.userId()),
+                k -> new ArrayList<>()).add(event);
+            grouped.computeIfAbsent(new HourlyKey(hour, HourlyUsage.DIMENSION_SYSTEM, HourlyUsage.SYSTEM_KEY),
+                k -> new ArrayList<>()).add(event);
+            if (event.model() != null) {
+                grouped.computeIfAbsent(new HourlyKey(hour, HourlyUsage.DIMENSION_MODEL, event.model()),
+                    k -> new ArrayList<>()).add(event);
+            }
+        }
+
+        Map<String, org.bson.Document> existing = loadInternalFields(
+            grouped.keySet().stream().map(HourlyKey::docId).toList(), HourlyUsage.class, "latencyDigest");
+        Duration retention = Duration.ofDays(properties.hourly() != null
+            ? properties.hourly().retentionDays()
+            : LedgerProperties.HourlyConfig.defaults().retentionDays());
+
+        grouped.forEach((hourlyKey, hourEvents) -> {
+            String docId = hourlyKey.docId();
+
+            long totalInput = hourEvents.stream().mapToLong(UsageEventData::totalInputTokens).sum();
+            long totalOutput = hourEvents.stream().mapToLong(UsageEventData::outputTokens).sum();
+            long totalCacheCreation = hourEvents.stream().mapToLong(UsageEventData::cacheCreationTokens).sum();
+            long totalCacheRead = hourEvents.stream().mapToLong(UsageEventData::cacheReadTokens).sum();
+            long totalTokens = hourEvents.stream().mapToLong(UsageEventData::totalTokens).sum();
+            int successCount = (int) hourEvents.stream().filter(UsageEventData::isSuccess).count();
+            int errorCount = hourEvents.size() - successCount;
+
+            BigDecimal totalCost = costService.calculateBatchCost(hourEvents);
+
+            // === T-Digest 延遲百分位（小時層級） ===
+            TDigest digest = digestService.deserialize(binaryField(existing.get(docId), "latencyDigest"));
+            hourEvents.forEach(e -> digest.add(e.latencyMs()));
+
+            Query query = Query.query(Criteria.where("_id").is(docId));
+            Update update = new Update()
+                .setOnInsert("hour", hourlyKey.hour())
+                .setOnInsert("dimension", hourlyKey.dimension())
+                .setOnInsert("key", hourlyKey.key())
+                .setOnInsert("expireAt", hourlyKey.hour().plus(retention))
+                .inc("totalInputTokens", totalInput)
+                .inc("totalOutputTokens", totalOutput)
+                .inc("totalCacheCreationTokens", totalCacheCreation)
+                .inc("totalCacheReadTokens", totalCacheRead)
+                .inc("totalTokens", totalTokens)
+                .inc("requestCount", hourEvents.size())
+                .inc("successCount", successCount)
+                .inc("errorCount", errorCount)
+                .inc("estimatedCostUsd", totalCost.doubleValue())
+                .set("latencyStats", calculateLatencyStats(digest))
+                .set("latencyDigest", serializeDigest(digest))
+                .set("lastUpdatedAt", Instant.now());
+
+            aggregateErrorBreakdown(hourEvents).forEach((type, count) ->
+                update.inc("errorBreakdown." + type, count));
+
+            bulkOps.upsert(query, update);
+        });
+
+        bulkOps.execute();
+        log.debug("Updated hourly_usage: {} documents", grouped.size());
+    }
+
+    /**
+     * 查詢批次中已日結的日期。
+     *
+     * <p>以 system_stats 的 {@code finalized} 作為整日日結完成的標記。
+     */
+    private Set<LocalDate> findFinalizedDates(List<UsageEventData> events) {
+        List<String> dates = events.stream()
+            .map(e -> toUtcDate(e.eventTime()).toString())
+            .distinct()
+            .toList();
+
+        Query query = Query.query(Criteria.where("_id").in(dates).and("finalized").is(true));
+        query.fields().include("_id");
+
+        Set<LocalDate> result = new HashSet<>();
+        for (org.bson.Document doc : mongoTemplate.find(query, org.bson.Document.class,
+                mongoTemplate.getCollectionName(SystemStats.class))) {
+            result.add(LocalDate.parse(doc.getString("_id")));
+        }
+        return result;
+    }
+
+    /**
+     * 遲到事件的修正路徑。
+     *
+     * <p>只以 {@code $inc} 累加差量；延遲百分位、Cache 效率與成本細分由既有累計值合併後更新。
+     * peakHour、topModels/topUsers 等整日衍生欄位不重算：
+     * 未日結的日期由下一次一般路徑或日結補上，已日結的日期維持凍結值。
+     *
+     * <p>獨立用戶：已日結的文件合併 HyperLogLog 草圖並以估算值更新 uniqueUsers；
+     * 未日結的文件仍累加 {@code userIdSet}，由後續一般路徑或日結計算 uniqueUsers。
+     *
+     * @param events 遲到事件
+     * @param finalizedDates 已日結的日期
+     * @param watermark 本批次的水位線
+     */
+    private void applyLateCorrections(List<UsageEventData> events, Set<LocalDate> finalizedDates,
+            Instant watermark) {
+        correctDailyUserUsage(events, finalizedDates);
+        correctDailyModelUsage(events, finalizedDates);
+        correctSystemStats(events, finalizedDates);
+        log.info("Applied late corrections: {} events (watermark={}, finalized dates={})",
+            events.size(), watermark, finalizedDates);
+    }
+
+    private void correctDailyUserUsage(List<UsageEventData> events, Set<LocalDate> finalizedDates) {
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, DailyUserUsage.class);
+
+        Map<String, List<UsageEventData>> grouped = events.stream()
+            .collect(Collectors.groupingBy(e -> DailyUserUsage.createId(toUtcDate(e.eventTime()), e.userId())));
+        Map<String, org.bson.Document> existing = loadInternalFields(grouped.keySet(), DailyUserUsage.class,
+            "latencyDigest", "totalInputTokens", "totalCacheReadTokens", "cacheEfficiency", "costBreakdown");
+        Instant now = Instant.now();
+
+        grouped.forEach((docId, userEvents) -> {
+            UsageEventData first = userEvents.get(0);
+            LocalDate date = toUtcDate(first.eventTime());
+            org.bson.Document current = existing.get(docId);
+
+            TDigest digest = digestService.deserialize(binaryField(current, "latencyDigest"));
+            userEvents.forEach(e -> digest.add(e.latencyMs()));
+            CacheTotals cache = mergeCacheEfficiency(current, userEvents);
+
+            Update update = new Update()
+                .setOnInsert("date", date)
+                .setOnInsert("userId", first.userId())
+                .inc("totalInputTokens", userEvents.stream().mapToLong(UsageEventData::totalInputTokens).sum())
+                .inc("totalOutputTokens", userEvents.stream().mapToLong(UsageEventData::outputTokens).sum())
+                .inc("totalCacheCreationTokens", userEvents.stream().mapToLong(UsageEventData::cacheCreationTokens).sum())
+                .inc("totalCacheReadTokens", userEvents.stream().mapToLong(UsageEventData::cacheReadTokens).sum())
+                .inc("totalTokens", userEvents.stream().mapToLong(UsageEventData::totalTokens).sum())
+                .inc("requestCount", userEvents.size())
+                .inc("successCount", (int) userEvents.stream().filter(UsageEventData::isSuccess).count())
+                .inc("errorCount", (int) userEvents.stream().filter(e -> !e.isSuccess()).count())
+                .inc("estimatedCostUsd", costService.calculateBatchCost(userEvents).doubleValue())
+                .set("latencyStats", calculateLatencyStats(digest))
+                .set("latencyDigest", serializeDigest(digest))
+                .set("cacheEfficiency",
+                    new DailyUserUsage.CacheEfficiency(cache.hitRate(), cache.tokensSaved(), cache.costSaved()))
+                .set("costBreakdown", mergeCostBreakdown(current, costService.calculateCostBreakdown(userEvents)))
+                .set("lastUpdatedAt", now);
+            if (finalizedDates.contains(date)) {
+                update.setOnInsert("finalized", true).setOnInsert("finalizedAt", now);
+            }
+
+            aggregateErrorBreakdown(userEvents).forEach((type, count) ->
+                update.inc("errorBreakdown." + type, count));
+
+            aggregateHourlyBreakdown(userEvents).forEach((hour, breakdown) -> {
+                update.inc("hourlyBreakdown." + hour + ".requestCount", breakdown.requestCount());
+                update.inc("hourlyBreakdown." + hour + ".totalTokens", breakdown.totalTokens());
+                update.inc("hourlyBreakdown." + hour + ".costUsd", breakdown.costUsd().doubleValue());
+            });
+
+            bulkOps.upsert(Query.query(Criteria.where("_id").is(docId)), update);
+        });
+
+        bulkOps.execute();
+        updateDailyUserModelUsage(grouped);
+    }
+
+    private void correctDailyModelUsage(List<UsageEventData> events, Set<LocalDate> finalizedDates) {
+        Map<String, List<UsageEventData>> grouped = events.stream()
+            .filter(e -> e.model() != null)
+            .collect(Collectors.groupingBy(e -> DailyModelUsage.createId(toUtcDate(e.eventTime()), e.model())));
+        if (grouped.isEmpty()) {
+            return;
+        }
+
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, DailyModelUsage.class);
+        Map<String, org.bson.Document> existing = loadInternalFields(grouped.keySet(), DailyModelUsage.class,
+            "latencyDigest", "userSketch", "totalInputTokens", "totalCacheReadTokens", "cacheEfficiency");
+        Instant now = Instant.now();
+        List<String> order = new ArrayList<>();
+
+        grouped.forEach((docId, modelEvents) -> {
+            UsageEventData first = modelEvents.get(0);
+            LocalDate date = toUtcDate(first.eventTime());
+            org.bson.Document current = existing.get(docId);
+
+            TDigest digest = digestService.deserialize(binaryField(current, "latencyDigest"));
+            modelEvents.forEach(e -> digest.add(e.latencyMs()));
+            CacheTotals cache = mergeCacheEfficiency(current, modelEvents);
+
+            Update update = new Update()
+                .setOnInsert("date", date)
+                .setOnInsert("model", first.model())
+                .inc("totalInputTokens", modelEvents.stream().mapToLong(UsageEventData::totalInputTokens).sum())
+                .inc("totalOutputTokens", modelEvents.stream().mapToLong(UsageEventData::outputTokens).sum())
+                .inc("totalCacheCreationTokens", modelEvents.stream().mapToLong(UsageEventData::cacheCreationTokens).sum())
+                .inc("totalCacheReadTokens", modelEvents.stream().mapToLong(UsageEventData::cacheReadTokens).sum())
+                .inc("totalTokens", modelEvents.stream().mapToLong(UsageEventData::totalTokens).sum())
+                .inc("requestCount", modelEvents.size())
+                .inc("successCount", (int) modelEvents.stream().filter(UsageEventData::isSuccess).count())
+                .inc("errorCount", (int) modelEvents.stream().filter(e -> !e.isSuccess()).count())
+                .inc("estimatedCostUsd", costService.calculateBatchCost(modelEvents).doubleValue())
+                .set("latencyStats", calculateModelLatencyStats(digest))
+                .set("latencyDigest", serializeDigest(digest))
+                .set("cacheEfficiency",
+                    new DailyModelUsage.CacheEfficiency(cache.hitRate(), cache.tokensSaved(), cache.costSaved()))
+                .set("lastUpdatedAt", now);
+            applyLateUsers(update, current, modelEvents, finalizedDates.contains(date), now);
+
+            aggregateErrorBreakdown(modelEvents).forEach((type, count) ->
+                update.inc("errorBreakdown." + type, count));
+
+            aggregateHourlyRequestCount(modelEvents).forEach((hour, count) ->
+                update.inc("hourlyRequestCount." + hour, count));
+
+            bulkOps.upsert(Query.query(finalizedDates.contains(date)
+                ? Criteria.where("_id").is(docId)
+                : unlessFinalized(docId)), update);
+            order.add(docId);
+        });
+
+        List<UsageEventData> finalizedMeanwhile = executeUnlessFinalized(bulkOps, order, grouped);
+        if (!finalizedMeanwhile.isEmpty()) {
+            correctDailyModelUsage(finalizedMeanwhile, datesOf(finalizedMeanwhile));
+        }
+    }
+
+    private void correctSystemStats(List<UsageEventData> allEvents, Set<LocalDate> finalizedDates) {
+        // 已日結的日期不再合併分片，一律修正原文件
+        Map<Boolean, List<UsageEventData>> byFinalized = allEvents.stream()
+            .collect(Collectors.partitioningBy(e -> finalizedDates.contains(toUtcDate(e.eventTime()))));
+        List<UsageEventData> events = new ArrayList<>(byFinalized.get(true));
+        events.addAll(incrementShardedSystemStats(byFinalized.get(false)));
+        if (events.isEmpty()) {
+            return;
+        }
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SystemStats.class);
+
+        Map<LocalDate, List<UsageEventData>> grouped = events.stream()
+            .collect(Collectors.groupingBy(e -> toUtcDate(e.eventTime())));
+        Map<String, org.bson.Document> existing = loadInternalFields(
+            grouped.keySet().stream().map(SystemStats::createId).toList(), SystemStats.class,
+            "latencyDigest", "userSketch", "successCount", "errorCount", "totalRequestCount", "avgLatencyMs",
+            "totalInputTokens", "totalCacheReadTokens");
+        Instant now = Instant.now();
+        List<LocalDate> order = new ArrayList<>();
+
+        grouped.forEach((date, dateEvents) -> {
+            org.bson.Document current = existing.get(SystemStats.createId(date));
+            long totalInput = dateEvents.stream().mapToLong(UsageEventData::totalInputTokens).sum();
+            long totalCacheRead = dateEvents.stream().mapToLong(UsageEventData::cacheReadTokens).sum();
+            int successCount = (int) dateEvents.stream().filter(UsageEventData::isSuccess).count();
+            int errorCount = dateEvents.size() - successCount;
+
+            // 比率類欄位由累計值加上差量重算，不以本批次覆寫
+            long totalSuccess = successCount + longField(current, "successCount");
+            long totalErrors = errorCount + longField(current, "errorCount");
+
+            Update update = new Update()
+                .setOnInsert("date", date)
+                .inc("totalInputTokens", totalInput)
+                .inc("totalOutputTokens", dateEvents.stream().mapToLong(UsageEventData::outputTokens).sum())
+                .inc("totalTokens", dateEvents.stream().mapToLong(UsageEventData::totalTokens).sum())
+                .inc("totalCacheReadTokens", totalCacheRead)
+                .inc("totalRequestCount", dateEvents.size())
+                .inc("totalEstimatedCostUsd", costService.calculateBatchCost(dateEvents).doubleValue())
+                .inc("successCount", successCount)
+                .inc("errorCount", errorCount)
+                .inc("systemCacheSavedUsd", costService.calculateCacheSavings(dateEvents).doubleValue())
+                .set("successRate", ratio(totalSuccess, totalSuccess + totalErrors))
+                .set("avgLatencyMs", mergeAverageLatency(current, dateEvents))
+                .set("systemCacheHitRate", ratio(totalCacheRead + longField(current, "totalCacheReadTokens"),
+                    totalInput + longField(current, "totalInputTokens")))
+                .set("lastUpdatedAt", now);
+            applyLateUsers(update, current, dateEvents, finalizedDates.contains(date), now);
+
+            // 既有文件沒有 digest（舊資料）時不覆寫百分位數，避免以少量遲到事件取代整日值
+            byte[] digestBytes = binaryField(current, "latencyDigest");
+            if (digestBytes != null || current == null) {
+                TDigest digest = digestService.deserialize(digestBytes);
+                dateEvents.forEach(e -> digest.add(e.latencyMs()));
+                update.set("p50LatencyMs", digest.quantile(0.5))
+                    .set("p90LatencyMs", digest.quantile(0.9))
+                    .set("p99LatencyMs", digest.quantile(0.99))
+                    .set("latencyDigest", serializeDigest(digest));
+            }
+
+            aggregateHourlyRequestCount(dateEvents).forEach((hour, count) ->
+                update.inc("hourlyRequestCount." + hour, count));
+
+            bulkOps.upsert(Query.query(finalizedDates.contains(date)
+                ? Criteria.where("_id").is(SystemStats.createId(date))
+                : unlessFinalized(SystemStats.createId(date))), update);
+            order.add(date);
+        });
+
+        List<UsageEventData> finalizedMeanwhile = executeUnlessFinalized(bulkOps, order, grouped);
+        if (!finalizedMeanwhile.isEmpty()) {
+            correctSystemStats(finalizedMeanwhile, datesOf(finalizedMeanwhile));
+        }
+    }
+
+    /**
+     * 修正路徑的獨立用戶累計。
+     *
+     * <p>已日結：合併 HyperLogLog 草圖並更新 uniqueUsers；未日結：累加 {@code userIdSet}。
+     */
+    static void applyLateUsers(Update update, org.bson.Document current, List<UsageEventData> events,
+            boolean finalized, Instant now) {
+        if (finalized) {
+            HyperLogLog userSketch = HyperLogLog.fromBytes(binaryField(current, "userSketch"));
+            events.forEach(e -> userSketch.add(e.userId()));
+            update.set("uniqueUsers", (int) userSketch.estimate())
+                .set("userSketch", userSketch.toBytes())
+                .setOnInsert("finalized", true)
+                .setOnInsert("finalizedAt", now);
+        } else {
+            update.addToSet("userIdSet").each(events.stream().map(UsageEventData::userId).distinct().toArray());
+        }
+    }
+
     /**
      * 更新用戶配額與累計統計（含週期重置邏輯）。
      *
@@ -470,18 +1066,8 @@ public class UsageAggregationService {
         int oldMonth = quota.periodMonth();
 
         // 1. 歸檔至 quota_history（如有用量且尚未歸檔）
-        if (quota.periodRequestCount() > 0 &&
-            !quotaHistoryRepository.existsByUserIdAndPeriodYearAndPeriodMonth(
-                quota.userId(), oldYear, oldMonth)) {
-
-            // 取得模型使用分布（從 daily_user_usage 聚合）
-            Map<String, Long> modelTokens = aggregateModelTokensForUser(quota.userId(), oldYear, oldMonth);
-            Map<String, Double> modelCosts = aggregateModelCostsForUser(quota.userId(), oldYear, oldMonth);
-
-            QuotaHistory history = QuotaHistory.fromUserQuota(quota, modelTokens, modelCosts);
-            quotaHistoryRepository.save(history);
-            log.info("Archived quota history: userId={}, period={}-{}", quota.userId(), oldYear, oldMonth);
-        }
+        //    通常已由 PeriodRolloverService 排程處理，此處為排程尚未執行時的備援
+        periodRolloverService.archiveUserPeriod(quota);
 
         // 2. 重置週期並設定新用量
         Instant now = Instant.now();
@@ -543,64 +1129,26 @@ public class UsageAggregationService {
         userQuotaRepository.updateQuotaStatusByUserId(userId, usagePercent, exceeded, Instant.now());
     }
 
-    /**
-     * 聚合用戶某月的模型 Token 使用分布。
-     */
-    private Map<String, Long> aggregateModelTokensForUser(String userId, int year, int month) {
-        // 查詢該用戶該月所有日期的 daily_user_usage
-        String startId = String.format("%d-%02d-01_%s", year, month, userId);
-        String endId = String.format("%d-%02d-31_%s", year, month, userId);
-
-        Query query = Query.query(Criteria.where("_id").gte(startId).lte(endId));
-        query.fields().include("modelBreakdown");
-
-        List<DailyUserUsage> usages = mongoTemplate.find(query, DailyUserUsage.class);
-
-        Map<String, Long> result = new HashMap<>();
-        for (DailyUserUsage usage : usages) {
-            if (usage.modelBreakdown() != null) {
-                usage.modelBreakdown().forEach((model, breakdown) -> {
-                    long tokens = breakdown.inputTokens() + breakdown.outputTokens();
-                    result.merge(model, tokens, Long::sum);
-                });
-            }
-        }
-        return result;
-    }
-
-    /**
-     * 聚合用戶某月的模型成本分布。
-     */
-    private Map<String, Double> aggregateModelCostsForUser(String userId, int year, int month) {
-        String startId = String.format("%d-%02d-01_%s", year, month, userId);
-        String endId = String.format("%d-%02d-31_%s", year, month, userId);
-
-        Query query = Query.query(Criteria.where("_id").gte(startId).lte(endId));
-        query.fields().include("modelBreakdown");
-
-        List<DailyUserUsage> usages = mongoTemplate.find(query, DailyUserUsage.class);
-
-        Map<String, Double> result = new HashMap<>();
-        for (DailyUserUsage usage : usages) {
-            if (usage.modelBreakdown() != null) {
-                usage.modelBreakdown().forEach((model, breakdown) -> {
-                    result.merge(model, breakdown.costUsd().doubleValue(), Double::sum);
-                });
-            }
-        }
-        return result;
-    }
-
     /**
      * 更新系統日統計（增強版）。
      */
-    private void updateSystemStats(List<UsageEventData> events) {
+    private void updateSystemStats(List<UsageEventData> allEvents) {
+        List<UsageEventData> events = incrementShardedSystemStats(allEvents);
+        if (events.isEmpty()) {
+            return;
+        }
         BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SystemStats.class);
 
         Map<LocalDate, List<UsageEventData>> grouped = events.stream()
             .collect(Collectors.groupingBy(e -> toUtcDate(e.eventTime())));
+        Map<String, org.bson.Document> existing = loadInternalFields(
+            grouped.keySet().stream().map(SystemStats::createId).toList(), SystemStats.class,
+            "latencyDigest", "totalRequestCount", "avgLatencyMs", "totalInputTokens", "totalCacheReadTokens");
+        List<LocalDate> order = new ArrayList<>();
 
         grouped.forEach((date, dateEvents) -> {
+            org.bson.Document current = existing.get(SystemStats.createId(date));
+
             // totalInputTokens = inputTokens + cacheCreationTokens + cacheReadTokens (由 UsageEventData 計算)
             long totalInput = dateEvents.stream().mapToLong(UsageEventData::totalInputTokens).sum();
             long totalOutput = dateEvents.stream().mapToLong(UsageEventData::outputTokens).sum();
@@ -615,18 +1163,18 @@ public class UsageAggregationService {
 
             BigDecimal totalCost = costService.calculateBatchCost(dateEvents);
 
-            // 延遲統計
-            TDigest digest = loadOrCreateDigest(date.toString(), SystemStats.class);
+            // 延遲統計（digest 持久化，百分位數涵蓋整日）
+            TDigest digest = digestService.deserialize(binaryField(current, "latencyDigest"));
             dateEvents.forEach(e -> digest.add(e.latencyMs()));
-            double avgLatency = dateEvents.isEmpty() ? 0.0 :
-                dateEvents.stream().mapToLong(UsageEventData::latencyMs).average().orElse(0.0);
+            double avgLatency = mergeAverageLatency(current, dateEvents);
             double p50 = digest.size() > 0 ? digest.quantile(0.5) : 0.0;
             double p90 = digest.size() > 0 ? digest.quantile(0.9) : 0.0;
             double p99 = digest.size() > 0 ? digest.quantile(0.99) : 0.0;
 
-            // Cache 效率
+            // Cache 效率（以整日累計 token 計算）
             long totalCacheRead = dateEvents.stream().mapToLong(UsageEventData::cacheReadTokens).sum();
-            double cacheHitRate = totalInput > 0 ? (double) totalCacheRead / totalInput : 0.0;
+            double cacheHitRate = ratio(totalCacheRead + longField(current, "totalCacheReadTokens"),
+                totalInput + longField(current, "totalInputTokens"));
             BigDecimal cacheSaved = costService.calculateCacheSavings(dateEvents);
 
             // 每小時分布 (peakHour will be computed after bulk update)
@@ -634,12 +1182,13 @@ public class UsageAggregationService {
 
             // topModels and topUsers will be computed from accumulated data after bulk update
 
-            Query query = Query.query(Criteria.where("_id").is(date.toString()));
+            Query query = Query.query(unlessFinalized(date.toString()));
             Update update = new Update()
                 .setOnInsert("date", date)
                 .inc("totalInputTokens", totalInput)
                 .inc("totalOutputTokens", totalOutput)
                 .inc("totalTokens", totalTokens)
+                .inc("totalCacheReadTokens", totalCacheRead)
                 .inc("totalRequestCount", dateEvents.size())
                 .inc("totalEstimatedCostUsd", totalCost.doubleValue())
                 .inc("successCount", successCount)
@@ -648,27 +1197,27 @@ public class UsageAggregationService {
                 .set("p50LatencyMs", p50)
                 .set("p90LatencyMs", p90)
                 .set("p99LatencyMs", p99)
+                .set("latencyDigest", serializeDigest(digest))
                 .set("systemCacheHitRate", cacheHitRate)
                 .inc("systemCacheSavedUsd", cacheSaved.doubleValue())
                 .set("lastUpdatedAt", Instant.now());
 
-            // Use $addToSet for each userId (accumulates across batches)
-            for (String userId : batchUserIds) {
-                update.addToSet("userIdSet", userId);
-            }
+            // $addToSet + $each (accumulates across batches); repeated addToSet(key, value) keeps only the last value
+            update.addToSet("userIdSet").each(batchUserIds.toArray());
 
             // 每小時分布使用 $inc
             hourlyRequestCount.forEach((hour, count) ->
                 update.inc("hourlyRequestCount." + hour, count));
 
             bulkOps.upsert(query, update);
+            order.add(date);
         });
 
-        bulkOps.execute();
+        List<UsageEventData> finalizedMeanwhile = executeUnlessFinalized(bulkOps, order, grouped);
 
         // Compute derived fields (successRate, uniqueUsers, peakHour, topModels, topUsers) from accumulated data
         grouped.keySet().forEach(date -> {
-            Query query = Query.query(Criteria.where("_id").is(date.toString()));
+            Query query = Query.query(unlessFinalized(date.toString()));
             SystemStats current = mongoTemplate.findOne(query, SystemStats.class);
             if (current == null) return;
 
@@ -710,9 +1259,79 @@ public class UsageAggregationService {
             mongoTemplate.updateFirst(query, derivedUpdate, SystemStats.class);
         });
 
+        if (!finalizedMeanwhile.isEmpty()) {
+            correctSystemStats(finalizedMeanwhile, datesOf(finalizedMeanwhile));
+        }
         log.debug("Updated system_stats: {} documents", grouped.size());
     }
 
+    /**
+     * 分片日期的事件累加到分片計數器。
+     *
+     * <p>批次開始後才日結的日期分片已封存，這些事件改以已日結日期修正 system_stats。
+     *
+     * @return 其餘需直接寫入 system_stats 的事件
+     */
+    private List<UsageEventData> incrementShardedSystemStats(List<UsageEventData> events) {
+        if (events.isEmpty()) {
+            return events;
+        }
+        Set<LocalDate> sharded = shardService.shardedDates(events.stream()
+            .map(e -> toUtcDate(e.eventTime()))
+            .collect(Collectors.toSet()));
+        if (sharded.isEmpty()) {
+            return events;
+        }
+        Map<Boolean, List<UsageEventData>> split = events.stream()
+            .collect(Collectors.partitioningBy(e -> sharded.contains(toUtcDate(e.eventTime()))));
+        Set<LocalDate> sealed = shardService.increment(split.get(true));
+        if (!sealed.isEmpty()) {
+            correctSystemStats(split.get(true).stream()
+                .filter(e -> sealed.contains(toUtcDate(e.eventTime())))
+                .toList(), sealed);
+        }
+        return split.get(false);
+    }
+
+    /**
+     * 累加 {@code userIdSet} 的 upsert 條件：只寫入未日結文件。
+     *
+     * <p>批次開始時判定未日結、寫入前才日結的文件，upsert 改為插入相同 _id 而失敗（duplicate key），
+     * 不會在已日結文件重建 {@code userIdSet}；這些事件由 {@link #executeUnlessFinalized} 取回後改走已日結修正。
+     */
+    private static Criteria unlessFinalized(String docId) {
+        return Criteria.where("_id").is(docId).and("finalized").ne(true);
+    }
+
+    /**
+     * 執行 bulk upsert，回傳因文件已日結而未寫入的事件（見 {@link #unlessFinalized}）。
+     *
+     * @param order 各項 upsert 對應的分組 key（依加入順序）
+     * @param grouped 分組的事件
+     */
+    private static <K> List<UsageEventData> executeUnlessFinalized(BulkOperations bulkOps, List<K> order,
+            Map<K, List<UsageEventData>> grouped) {
+        try {
+            bulkOps.execute();
+            return List.of();
+        } catch (BulkOperationException e) {
+            boolean onlyDuplicates = e.getErrors().stream()
+                .allMatch(error -> error.getCode() == DUPLICATE_KEY_ERROR);
+            if (!onlyDuplicates) {
+                throw e;
+            }
+            List<UsageEventData> rejected = new ArrayList<>();
+            e.getErrors().forEach(error -> rejected.addAll(grouped.get(order.get(error.getIndex()))));
+            log.info("{} documents were finalized during settlement, applying {} events as corrections",
+                e.getErrors().size(), rejected.size());
+            return rejected;
+        }
+    }
+
+    private Set<LocalDate> datesOf(List<UsageEventData> events) {
+        return events.stream().map(e -> toUtcDate(e.eventTime())).collect(Collectors.toSet());
+    }
+
     // ========== 輔助方法 ==========
 
     /**
@@ -805,43 +1424,55 @@ public class UsageAggregationService {
     }
 
     /**
-     * 計算 Cache 效率指標（用於 DailyUserUsage）。
+     * 合併 Cache 效率指標（用於 DailyUserUsage、DailyModelUsage）。
      *
-     * <p>hitRate = cacheReadTokens / totalInputTokens
+     * <p>tokensSaved、costSaved 為既有累計值加上本批次；
+     * hitRate = 整日累計 cacheReadTokens / 整日累計 totalInputTokens。
+     *
+     * @param current 既有文件（僅含 totalInputTokens、totalCacheReadTokens、cacheEfficiency），可為 null
+     * @param events 本批次事件
      */
-    private DailyUserUsage.CacheEfficiency calculateCacheEfficiency(List<UsageEventData> events) {
+    private CacheTotals mergeCacheEfficiency(org.bson.Document current, List<UsageEventData> events) {
         // totalInputTokens = inputTokens + cacheCreationTokens + cacheReadTokens
-        long totalInput = events.stream().mapToLong(UsageEventData::totalInputTokens).sum();
-        long cacheRead = events.stream().mapToLong(UsageEventData::cacheReadTokens).sum();
-
-        if (totalInput == 0) {
-            return DailyUserUsage.CacheEfficiency.empty();
-        }
+        long totalInput = events.stream().mapToLong(UsageEventData::totalInputTokens).sum()
+            + longField(current, "totalInputTokens");
+        long cacheRead = events.stream().mapToLong(UsageEventData::cacheReadTokens).sum()
+            + longField(current, "totalCacheReadTokens");
 
-        double hitRate = (double) cacheRead / totalInput;
-        BigDecimal savedCost = costService.calculateCacheSavings(events);
+        org.bson.Document previous = current != null ? current.get("cacheEfficiency", org.bson.Document.class) : null;
+        BigDecimal savedCost = costService.calculateCacheSavings(events).add(decimalField(previous, "costSaved"));
 
-        return new DailyUserUsage.CacheEfficiency(hitRate, cacheRead, savedCost);
+        return new CacheTotals(ratio(cacheRead, totalInput), cacheRead, savedCost);
     }
 
     /**
-     * 計算 Cache 效率指標（用於 DailyModelUsage）。
-     *
-     * <p>hitRate = cacheReadTokens / totalInputTokens
+     * 合併成本細分：既有累計值加上本批次。
      */
-    private DailyModelUsage.CacheEfficiency calculateModelCacheEfficiency(List<UsageEventData> events) {
-        // totalInputTokens = inputTokens + cacheCreationTokens + cacheReadTokens
-        long totalInput = events.stream().mapToLong(UsageEventData::totalInputTokens).sum();
-        long cacheRead = events.stream().mapToLong(UsageEventData::cacheReadTokens).sum();
-
-        if (totalInput == 0) {
-            return DailyModelUsage.CacheEfficiency.empty();
+    private CostBreakdown mergeCostBreakdown(org.bson.Document current, CostBreakdown delta) {
+        org.bson.Document previous = current != null ? current.get("costBreakdown", org.bson.Document.class) : null;
+        if (previous == null) {
+            return delta;
         }
+        return new CostBreakdown(
+            delta.inputCost().add(decimalField(previous, "inputCost")),
+            delta.outputCost().add(decimalField(previous, "outputCost")),
+            delta.cacheReadCost().add(decimalField(previous, "cacheReadCost")),
+            delta.cacheWriteCost().add(decimalField(previous, "cacheWriteCost")));
+    }
 
-        double hitRate = (double) cacheRead / totalInput;
-        BigDecimal savedCost = costService.calculateCacheSavings(events);
+    /**
+     * 合併平均延遲：以既有請求數加權。
+     */
+    private double mergeAverageLatency(org.bson.Document current, List<UsageEventData> events) {
+        long previousCount = longField(current, "totalRequestCount");
+        double previousAvg = current != null && current.get("avgLatencyMs") instanceof Number n ? n.doubleValue() : 0.0;
+        long latencySum = events.stream().mapToLong(UsageEventData::latencyMs).sum();
+        long count = previousCount + events.size();
+        return count > 0 ? (previousAvg * previousCount + latencySum) / count : 0.0;
+    }
 
-        return new DailyModelUsage.CacheEfficiency(hitRate, cacheRead, savedCost);
+    private static double ratio(long numerator, long denominator) {
+        return denominator > 0 ? (double) numerator / denominator : 0.0;
     }
 
     /**
@@ -950,33 +1581,64 @@ public class UsageAggregationService {
     }
 
     /**
-     * 載入或建立 T-Digest。
+     * 以單次 {@code $in} 查詢載入多筆文件的內部欄位（digest、草圖）。
+     *
+     * @return docId → 原始文件（僅含指定欄位），不存在的文件不會出現在結果中
      */
-    private TDigest loadOrCreateDigest(String docId, Class<?> documentClass) {
-        // 嘗試從現有文件載入 digest bytes
-        Query query = Query.query(Criteria.where("_id").is(docId));
-        query.fields().include("latencyDigest");
-
-        var doc = mongoTemplate.findOne(query, documentClass);
-        if (doc != null) {
-            byte[] bytes = extractDigestBytes(doc);
-            if (bytes != null && bytes.length > 0) {
-                return digestService.deserialize(bytes);
-            }
+    private Map<String, org.bson.Document> loadInternalFields(
+            Collection<String> docIds, Class<?> documentClass, String... fields) {
+        if (docIds.isEmpty()) {
+            return Map.of();
+        }
+        Query query = Query.query(Criteria.where("_id").in(docIds));
+        query.fields().include(fields);
+
+        Map<String, org.bson.Document> result = new HashMap<>();
+        for (org.bson.Document doc : mongoTemplate.find(query, org.bson.Document.class,
+                mongoTemplate.getCollectionName(documentClass))) {
+            result.put(doc.getString("_id"), doc);
+        }
+        return result;
+    }
+
+    /**
+     * 從原始文件取出 binary 欄位。
+     */
+    private static byte[] binaryField(org.bson.Document doc, String field) {
+        if (doc == null) {
+            return null;
         }
-        return digestService.createDigest();
+        Object value = doc.get(field);
+        if (value instanceof Binary binary) {
+            return binary.getData();
+        }
+        return value instanceof byte[] bytes ? bytes : null;
+    }
+
+    /**
+     * 從原始文件取出數值欄位。
+     */
+    private long longField(org.bson.Document doc, String field) {
+        return doc != null && doc.get(field) instanceof Number n ? n.longValue() : 0L;
     }
 
     /**
-     * 從文件中提取 digest bytes。
+     * 從原始文件取出金額欄位。
+     *
+     * <p>相容 {@code $inc} 寫入的 double、{@code $set} 寫入的字串與 Decimal128。
      */
-    private byte[] extractDigestBytes(Object doc) {
-        if (doc instanceof DailyUserUsage u) {
-            return u.latencyDigest();
-        } else if (doc instanceof DailyModelUsage m) {
-            return m.latencyDigest();
+    private BigDecimal decimalField(org.bson.Document doc, String field) {
+        Object value = doc != null ? doc.get(field) : null;
+        if (value instanceof Decimal128 d) {
+            return d.bigDecimalValue();
         }
-        return null;
+        if (value instanceof Number n) {
+            return BigDecimal.valueOf(n.doubleValue());
+        }
+        if (value instanceof String str && !str.isBlank()) {
+            return new BigDecimal(str);
+        }
+        return BigDecimal.ZERO;
     }
 
     /**
@@ -1031,7 +1693,7 @@ public class UsageAggregationService {
      */
     private String sanitizeFieldName(String name) {
         // MongoDB field names 不能包含 '.' 和 '$'
-        return name.replace(".", "_").replace("$", "_");
+        return ModelDictionaryService.fieldKey(name);
     }
 
     /**
@@ -1045,4 +1707,25 @@ public class UsageAggregationService {
     private LocalDate toUtcDate(Instant timestamp) {
         return timestamp.atZone(ZoneOffset.UTC).toLocalDate();
     }
+
+    /**
+     * 將 Instant 轉換為 UTC 年月。
+     */
+    private YearMonth toUtcMonth(Instant timestamp) {
+        return YearMonth.from(timestamp.atZone(ZoneOffset.UTC));
+    }
+
+    /**
+     * 合併後的 Cache 效率（DailyUserUsage、DailyModelUsage 共用）。
+     */
+    private record CacheTotals(double hitRate, long tokensSaved, BigDecimal costSaved) {}
+
+    /**
+     * 小時用量分組鍵。
+     */
+    private record HourlyKey(Instant hour, String dimension, String key) {
+        String docId() {
+            return HourlyUsage.createId(hour, dimension, key);
+        }
+    }
 }
@@ -0,0 +1,465 @@
+package io.github.samzhu.ledger.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.aggregation.ProjectionOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+/**
+ * 用量資料匯出服務。
+ *
+ * <p>以 MongoDB cursor 逐筆讀取（僅載入匯出欄位），邊讀邊寫入輸出串流，
+ * 記憶體用量與匯出筆數無關：
+ * <ul>
+ *   <li>NDJSON - 以 Jackson streaming {@link JsonGenerator} 每行輸出一個物件</li>
+ *   <li>CSV - 第一行為欄位名稱，字串欄位依 RFC 4180 跳脫</li>
+ * </ul>
+ *
+ * <p>日彙總集合以 {@code _id}（{@code {date}_{key}}）範圍查詢並依 {@code _id} 排序，直接走主鍵索引；
+ * {@code quota_history} 以週期欄位篩選；{@code raw_event_batches} 以 ObjectId 內含的建立時間
+ * 範圍查詢，{@code $unwind} 後每個事件輸出一列。
+ *
+ * <p>原始事件先輸出已搬移到冷儲存的批次（{@link RawEventArchiveService}），再輸出熱集合中尚未搬移的批次；
+ * 寬限期內兩邊都有的批次只從冷儲存輸出。
+ */
+@Service
+public class UsageExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(UsageExportService.class);
+
+    /** cursor 每次向資料庫取回的筆數 */
+    private static final int CURSOR_BATCH_SIZE = 1000;
+
+    /** 每寫出多少筆 flush 一次，讓回應以 chunk 持續送出 */
+    private static final int FLUSH_INTERVAL = 1000;
+
+    private final MongoTemplate mongoTemplate;
+    private final RawEventArchiveService archiveService;
+    private final JsonFactory jsonFactory = JsonFactory.builder().build();
+
+    public UsageExportService(MongoTemplate mongoTemplate, RawEventArchiveService archiveService) {
+        this.mongoTemplate = mongoTemplate;
+        this.archiveService = archiveService;
+    }
+
+    /**
+     * 匯出資料集。
+     *
+     * @param dataset 資料集
+     * @param format 輸出格式
+     * @param startDate 起始日期（含）；{@code quota_history} 取其所在月份
+     * @param endDate 結束日期（含）；{@code quota_history} 取其所在月份
+     * @param out 輸出串流，由呼叫端負責關閉
+     * @return 匯出筆數
+     * @throws IOException 寫出失敗（通常為用戶端中斷連線）
+     */
+    public long export(Dataset dataset, Format format, LocalDate startDate, LocalDate endDate,
+            OutputStream out) throws IOException {
+        long startTime = System.currentTimeMillis();
+
+        long count;
+        try (Stream<Document> docs = rows(dataset, startDate, endDate);
+             RowWriter writer = format == Format.CSV ? new CsvRowWriter(out) : new NdjsonRowWriter(out)) {
+            writer.writeHeader(dataset.columns());
+            count = 0;
+            var iterator = docs.iterator();
+            while (iterator.hasNext()) {
+                writer.writeRow(dataset.columns(), iterator.next());
+                if (++count % FLUSH_INTERVAL == 0) {
+                    writer.flush();
+                }
+            }
+        }
+
+        log.info("Exported {} {} rows as {} for {} to {} in {}ms",
+            count, dataset.collection(), format, startDate, endDate, System.currentTimeMillis() - startTime);
+        return count;
+    }
+
+    private Stream<Document> rows(Dataset dataset, LocalDate startDate, LocalDate endDate) {
+        if (dataset == Dataset.RAW_EVENTS) {
+            ProjectionOperation projection = Aggregation.project().and("_id").as("batchId");
+            for (Column column : dataset.columns()) {
+                if (!column.field().equals("batchId")) {
+                    projection = projection.and("events." + column.field()).as(column.field());
+                }
+            }
+            Aggregation aggregation = Aggregation.newAggregation(
+                    Aggregation.match(dataset.criteria(startDate, endDate)),
+                    Aggregation.sort(Sort.Direction.ASC, "_id"),
+                    Aggregation.unwind("events"),
+                    projection)
+                .withOptions(AggregationOptions.builder().cursorBatchSize(CURSOR_BATCH_SIZE).build());
+            // 熱集合 cursor 在冷儲存讀完後才開啟，避免長時間閒置逾時
+            return Stream.concat(
+                archiveService.archivedEventRows(startDate, endDate),
+                Stream.of(aggregation).flatMap(hot -> mongoTemplate.aggregateStream(hot, dataset.collection(), Document.class)));
+        }
+
+        Query query = Query.query(dataset.criteria(startDate, endDate))
+            .with(Sort.by(Sort.Direction.ASC, "_id"))
+            .cursorBatchSize(CURSOR_BATCH_SIZE);
+        query.fields().include(dataset.columns().stream().map(Column::field).toArray(String[]::new));
+        return mongoTemplate.stream(query, Document.class, dataset.collection());
+    }
+
+    /**
+     * 匯出格式。
+     */
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String contentType() {
+            return contentType;
+        }
+
+        public String extension() {
+            return extension;
+        }
+
+        /**
+         * 解析格式名稱（不分大小寫）。
+         *
+         * @throws IllegalArgumentException 不支援的格式
+         */
+        public static Format of(String name) {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * 可匯出的資料集。
+     */
+    public enum Dataset {
+        DAILY_USER_USAGE("daily_user_usage", List.of(
+            Column.date("date"),
+            Column.text("userId"),
+            Column.number("totalInputTokens"),
+            Column.number("totalOutputTokens"),
+            Column.number("totalCacheCreationTokens"),
+            Column.number("totalCacheReadTokens"),
+            Column.number("totalTokens"),
+            Column.number("requestCount"),
+            Column.number("successCount"),
+            Column.number("errorCount"),
+            Column.number("estimatedCostUsd"),
+            Column.bool("finalized"))),
+
+        DAILY_MODEL_USAGE("daily_model_usage", List.of(
+            Column.date("date"),
+            Column.text("model"),
+            Column.number("totalInputTokens"),
+            Column.number("totalOutputTokens"),
+            Column.number("totalCacheCreationTokens"),
+            Column.number("totalCacheReadTokens"),
+            Column.number("totalTokens"),
+            Column.number("requestCount"),
+            Column.number("successCount"),
+            Column.number("errorCount"),
+            Column.number("uniqueUsers"),
+            Column.number("estimatedCostUsd"),
+            Column.bool("finalized"))),
+
+        QUOTA_HISTORY("quota_history", List.of(
+            Column.text("userId"),
+            Column.number("periodYear"),
+            Column.number("periodMonth"),
+            Column.number("totalInputTokens"),
+            Column.number("totalOutputTokens"),
+            Column.number("totalTokens"),
+            Column.number("totalCostUsd"),
+            Column.number("totalRequestCount"),
+            Column.number("costLimitUsd"),
+            Column.number("bonusCostUsd"),
+            Column.number("effectiveLimitUsd"),
+            Column.number("finalUsagePercent"),
+            Column.bool("wasExceeded"),
+            Column.timestamp("archivedAt"))),
+
+        RAW_EVENTS("raw_event_batches", List.of(
+            Column.text("batchId"),
+            Column.text("userId"),
+            Column.timestamp("eventTime"),
+            Column.text("model"),
+            Column.number("inputTokens"),
+            Column.number("outputTokens"),
+            Column.number("cacheCreationTokens"),
+            Column.number("cacheReadTokens"),
+            Column.text("messageId"),
+            Column.number("latencyMs"),
+            Column.bool("stream"),
+            Column.text("stopReason"),
+            Column.text("status"),
+            Column.text("errorType"),
+            Column.text("keyAlias"),
+            Column.text("traceId"),
+            Column.text("anthropicRequestId")));
+
+        private final String collection;
+        private final List<Column> columns;
+
+        Dataset(String collection, List<Column> columns) {
+            this.collection = collection;
+            this.columns = columns;
+        }
+
+        public String collection() {
+            return collection;
+        }
+
+        public List<Column> columns() {
+            return columns;
+        }
+
+        /**
+         * 解析路徑名稱，例如 {@code daily-user-usage}。
+         *
+         * @throws IllegalArgumentException 不支援的資料集
+         */
+        public static Dataset of(String name) {
+            return valueOf(name.replace('-', '_').toUpperCase(Locale.ROOT));
+        }
+
+        Criteria criteria(LocalDate startDate, LocalDate endDate) {
+            if (this == QUOTA_HISTORY) {
+                return new Criteria().andOperator(
+                    new Criteria().orOperator(
+                        Criteria.where("periodYear").gt(startDate.getYear()),
+                        Criteria.where("periodYear").is(startDate.getYear())
+                            .and("periodMonth").gte(startDate.getMonthValue())),
+                    new Criteria().orOperator(
+                        Criteria.where("periodYear").lt(endDate.getYear()),
+                        Criteria.where("periodYear").is(endDate.getYear())
+                            .and("periodMonth").lte(endDate.getMonthValue())));
+            }
+            if (this == RAW_EVENTS) {
+                // 批次 ID 為 ObjectId，前 4 bytes 為建立時間（秒）
+                return Criteria.where("_id")
+                    .gte(minObjectId(startDate))
+                    .lt(minObjectId(endDate.plusDays(1)))
+                    .and("archivedAt").exists(false);
+            }
+            // '`' 為 '_' 的下一個字元
+            return Criteria.where("_id").gte(startDate + "_").lt(endDate + "`");
+        }
+    }
+
+    /**
+     * 指定日期 00:00 UTC 建立的最小 ObjectId，用於以批次 ID 做時間範圍查詢。
+     */
+    static ObjectId minObjectId(LocalDate date) {
+        long epochSecond = date.atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+        return new ObjectId("%08x0000000000000000".formatted(epochSecond));
+    }
+
+    /**
+     * 匯出欄位。
+     *
+     * @param field 文件欄位名稱，同時作為輸出欄位名稱
+     * @param type 輸出型別
+     */
+    public record Column(String field, ColumnType type) {
+        static Column text(String field) {
+            return new Column(field, ColumnType.TEXT);
+        }
+
+        static Column number(String field) {
+            return new Column(field, ColumnType.NUMBER);
+        }
+
+        static Column bool(String field) {
+            return new Column(field, ColumnType.BOOLEAN);
+        }
+
+        static Column date(String field) {
+            return new Column(field, ColumnType.DATE);
+        }
+
+        static Column timestamp(String field) {
+            return new Column(field, ColumnType.TIMESTAMP);
+        }
+    }
+
+    /**
+     * 欄位輸出型別。
+     */
+    public enum ColumnType {
+        TEXT, NUMBER, BOOLEAN, DATE, TIMESTAMP
+    }
+
+    /**
+     * 將欄位值轉為輸出用字串，null 表示缺值。
+     *
+     * <p>{@code LocalDate} 以系統時區午夜的 {@link Date} 儲存（Spring Data 預設轉換），依相同時區還原；
+     * 金額可能以 Decimal128 或字串（BigDecimal 預設表示法）儲存，統一輸出為數值文字。
+     */
+    static String format(Column column, Object value) {
+        if (value == null) {
+            return null;
+        }
+        return switch (column.type()) {
+            case DATE -> value instanceof Date date
+                ? LocalDate.ofInstant(date.toInstant(), ZoneId.systemDefault()).toString()
+                : value.toString();
+            case TIMESTAMP -> value instanceof Date date ? date.toInstant().toString() : value.toString();
+            case NUMBER -> value instanceof Decimal128 decimal
+                ? decimal.bigDecimalValue().toPlainString()
+                : value.toString();
+            default -> value instanceof ObjectId objectId ? objectId.toHexString() : value.toString();
+        };
+    }
+
+    private interface RowWriter extends AutoCloseable {
+        void writeHeader(List<Column> columns) throws IOException;
+
+        void writeRow(List<Column> columns, Document doc) throws IOException;
+
+        void flush() throws IOException;
+
+        @Override
+        void close() throws IOException;
+    }
+
+    /**
+     * NDJSON：每行一個 JSON 物件，欄位缺值時輸出 null。
+     */
+    private final class NdjsonRowWriter implements RowWriter {
+
+        private final JsonGenerator generator;
+
+        NdjsonRowWriter(OutputStream out) throws IOException {
+            this.generator = jsonFactory.createGenerator(out, JsonEncoding.UTF8)
+                .configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+            this.generator.setRootValueSeparator(new SerializedString("\n"));
+        }
+
+        @Override
+        public void writeHeader(List<Column> columns) {
+            // NDJSON 無標頭
+        }
+
+        @Override
+        public void writeRow(List<Column> columns, Document doc) throws IOException {
+            generator.writeStartObject();
+            for (Column column : columns) {
+                String value = format(column, doc.get(column.field()));
+                generator.writeFieldName(column.field());
+                if (value == null) {
+                    generator.writeNull();
+                } else if (column.type() == ColumnType.NUMBER) {
+                    generator.writeNumber(value);
+                } else if (column.type() == ColumnType.BOOLEAN) {
+                    generator.writeBoolean(Boolean.parseBoolean(value));
+                } else {
+                    generator.writeString(value);
+                }
+            }
+            generator.writeEndObject();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            generator.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.writeRaw('\n');
+            generator.close();
+        }
+    }
+
+    /**
+     * CSV：RFC 4180，欄位缺值時輸出空字串。
+     */
+    private static final class CsvRowWriter implements RowWriter {
+
+        private final Writer writer;
+
+        CsvRowWriter(OutputStream out) {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void writeHeader(List<Column> columns) throws IOException {
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write(columns.get(i).field());
+            }
+            writer.write("\r\n");
+        }
+
+        @Override
+        public void writeRow(List<Column> columns, Document doc) throws IOException {
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                Column column = columns.get(i);
+                String value = format(column, doc.get(column.field()));
+                if (value != null) {
+                    writer.write(column.type() == ColumnType.TEXT ? escape(value) : value);
+                }
+            }
+            writer.write("\r\n");
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writer.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            // 不關閉底層串流，僅送出緩衝內容
+            writer.flush();
+        }
+
+        private static String escape(String value) {
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0
+                    && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                return value;
+            }
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+    }
+}
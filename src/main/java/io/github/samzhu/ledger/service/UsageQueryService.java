@@ -1,23 +1,54 @@
 package io.github.samzhu.ledger.service;
 
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
+import org.bson.Document;
+import org.bson.types.Binary;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.cache.annotation.CacheConfig;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
+import com.tdunning.math.stats.TDigest;
+
+import io.github.samzhu.ledger.config.QueryCacheConfig;
 import io.github.samzhu.ledger.document.DailyModelUsage;
+import io.github.samzhu.ledger.document.DailyUserModelUsage;
 import io.github.samzhu.ledger.document.DailyUserUsage;
+import io.github.samzhu.ledger.document.HourlyUsage;
+import io.github.samzhu.ledger.document.MonthlyModelUsage;
+import io.github.samzhu.ledger.document.MonthlyUserUsage;
 import io.github.samzhu.ledger.document.SystemStats;
 import io.github.samzhu.ledger.document.UserQuota;
 import io.github.samzhu.ledger.repository.DailyModelUsageRepository;
+import io.github.samzhu.ledger.repository.DailyUserModelUsageRepository;
 import io.github.samzhu.ledger.repository.DailyUserUsageRepository;
+import io.github.samzhu.ledger.repository.HourlyUsageRepository;
+import io.github.samzhu.ledger.repository.MonthlyModelUsageRepository;
+import io.github.samzhu.ledger.repository.MonthlyUserUsageRepository;
 import io.github.samzhu.ledger.repository.SystemStatsRepository;
 import io.github.samzhu.ledger.repository.UserQuotaRepository;
+import io.github.samzhu.ledger.util.HyperLogLog;
 
 /**
  * 用量統計查詢服務。
@@ -34,51 +65,109 @@ import io.github.samzhu.ledger.repository.UserQuotaRepository;
  * 日期區間查詢：生成所有日期的 document IDs → findByIdIn()
  * 單一實體查詢：直接 findById()
  * 排行榜查詢：使用 index + limit
+ * 跨實體區間彙總：_id 前綴範圍 + aggregation（伺服器端加總）
  * </pre>
+ *
+ * <p>讀取只載入顯示所需的欄位：repository 的 {@code findByIdIn} 一律不載入 T-Digest、
+ * HyperLogLog 與用戶集合等結算用欄位；只顯示每日總計的頁面改用 {@code *Totals} 查詢，
+ * 連錯誤、小時、模型與成本細分也不載入。
+ *
+ * <p>查詢結果經由 {@link QueryCacheConfig} 的 Caffeine 快取，
+ * 結算完成後由 {@link QueryCacheInvalidator} 依異動範圍精準失效。
  */
 @Service
+@CacheConfig(keyGenerator = QueryCacheConfig.KEY_GENERATOR)
 public class UsageQueryService {
 
     private static final Logger log = LoggerFactory.getLogger(UsageQueryService.class);
 
+    /** 超額等級（同時作為 {@code $bucket} 的 default bucket） */
+    private static final String LEVEL_EXCEEDED = "EXCEEDED";
+
     private final DailyUserUsageRepository dailyUserUsageRepository;
+    private final DailyUserModelUsageRepository dailyUserModelUsageRepository;
     private final DailyModelUsageRepository dailyModelUsageRepository;
     private final UserQuotaRepository userQuotaRepository;
     private final SystemStatsRepository systemStatsRepository;
+    private final MonthlyUserUsageRepository monthlyUserUsageRepository;
+    private final MonthlyModelUsageRepository monthlyModelUsageRepository;
+    private final HourlyUsageRepository hourlyUsageRepository;
+    private final MongoTemplate mongoTemplate;
+    private final LatencyDigestService digestService;
+    private final ModelDictionaryService modelDictionary;
 
     public UsageQueryService(
             DailyUserUsageRepository dailyUserUsageRepository,
+            DailyUserModelUsageRepository dailyUserModelUsageRepository,
             DailyModelUsageRepository dailyModelUsageRepository,
             UserQuotaRepository userQuotaRepository,
-            SystemStatsRepository systemStatsRepository) {
+            SystemStatsRepository systemStatsRepository,
+            MonthlyUserUsageRepository monthlyUserUsageRepository,
+            MonthlyModelUsageRepository monthlyModelUsageRepository,
+            HourlyUsageRepository hourlyUsageRepository,
+            MongoTemplate mongoTemplate,
+            LatencyDigestService digestService,
+            ModelDictionaryService modelDictionary) {
         this.dailyUserUsageRepository = dailyUserUsageRepository;
+        this.dailyUserModelUsageRepository = dailyUserModelUsageRepository;
         this.dailyModelUsageRepository = dailyModelUsageRepository;
         this.userQuotaRepository = userQuotaRepository;
         this.systemStatsRepository = systemStatsRepository;
+        this.monthlyUserUsageRepository = monthlyUserUsageRepository;
+        this.monthlyModelUsageRepository = monthlyModelUsageRepository;
+        this.hourlyUsageRepository = hourlyUsageRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.digestService = digestService;
+        this.modelDictionary = modelDictionary;
     }
 
     /**
      * 查詢用戶在指定期間的日用量。
      *
      * <p>使用 ID 批次查詢優化效能，避免範圍查詢的成本。
+     * 模型分布由 {@code daily_user_model_usage} 子文件以同一批 ID 查詢後合併。
      *
      * @param userId 用戶 ID
      * @param startDate 起始日期（含）
      * @param endDate 結束日期（含）
      * @return 日用量列表
      */
+    @Cacheable(QueryCacheConfig.USER_DAILY_USAGE)
     public List<DailyUserUsage> getUserDailyUsage(String userId, LocalDate startDate, LocalDate endDate) {
         List<String> docIds = generateDateUserIds(startDate, endDate, userId);
         log.debug("Querying user daily usage: userId={}, period={} to {}, docIds={}",
             userId, startDate, endDate, docIds.size());
 
-        List<DailyUserUsage> results = dailyUserUsageRepository.findByIdIn(docIds);
+        Map<String, Map<String, DailyUserUsage.ModelBreakdown>> models =
+            DailyUserModelUsage.groupByUsage(dailyUserModelUsageRepository.findByUsageIdIn(docIds));
+        List<DailyUserUsage> results = dailyUserUsageRepository.findByIdIn(docIds).stream()
+            .map(usage -> usage.withModelBreakdown(models.get(usage.id()), modelDictionary::legacyModelName))
+            .toList();
         log.info("User daily usage query: userId={}, period={} to {}, found {} records",
             userId, startDate, endDate, results.size());
 
         return results;
     }
 
+    /**
+     * 查詢用戶在指定期間的每日總計（不含細分）。
+     *
+     * <p>與 {@link #getUserDailyUsage} 共用快取與失效規則（快取鍵包含方法名稱）。
+     *
+     * @param userId 用戶 ID
+     * @param startDate 起始日期（含）
+     * @param endDate 結束日期（含）
+     * @return 日用量列表，僅總計與延遲統計欄位有值
+     */
+    @Cacheable(QueryCacheConfig.USER_DAILY_USAGE)
+    public List<DailyUserUsage> getUserDailyTotals(String userId, LocalDate startDate, LocalDate endDate) {
+        List<DailyUserUsage> results =
+            dailyUserUsageRepository.findTotalsByIdIn(generateDateUserIds(startDate, endDate, userId));
+        log.debug("User daily totals query: userId={}, period={} to {}, found {} records",
+            userId, startDate, endDate, results.size());
+        return results;
+    }
+
     /**
      * 查詢模型在指定期間的日用量。
      *
@@ -87,6 +176,7 @@ public class UsageQueryService {
      * @param endDate 結束日期（含）
      * @return 日用量列表
      */
+    @Cacheable(QueryCacheConfig.MODEL_DAILY_USAGE)
     public List<DailyModelUsage> getModelDailyUsage(String model, LocalDate startDate, LocalDate endDate) {
         List<String> docIds = generateDateModelIds(startDate, endDate, model);
         log.debug("Querying model daily usage: model={}, period={} to {}", model, startDate, endDate);
@@ -98,6 +188,25 @@ public class UsageQueryService {
         return results;
     }
 
+    /**
+     * 查詢模型在指定期間的每日總計（不含細分）。
+     *
+     * <p>與 {@link #getModelDailyUsage} 共用快取與失效規則（快取鍵包含方法名稱）。
+     *
+     * @param model 模型名稱
+     * @param startDate 起始日期（含）
+     * @param endDate 結束日期（含）
+     * @return 日用量列表，僅總計欄位有值
+     */
+    @Cacheable(QueryCacheConfig.MODEL_DAILY_USAGE)
+    public List<DailyModelUsage> getModelDailyTotals(String model, LocalDate startDate, LocalDate endDate) {
+        List<DailyModelUsage> results =
+            dailyModelUsageRepository.findTotalsByIdIn(generateDateModelIds(startDate, endDate, model));
+        log.debug("Model daily totals query: model={}, period={} to {}, found {} records",
+            model, startDate, endDate, results.size());
+        return results;
+    }
+
     /**
      * 查詢系統在指定期間的日統計。
      *
@@ -105,6 +214,7 @@ public class UsageQueryService {
      * @param endDate 結束日期（含）
      * @return 系統日統計列表
      */
+    @Cacheable(QueryCacheConfig.SYSTEM_DAILY_STATS)
     public List<SystemStats> getSystemDailyStats(LocalDate startDate, LocalDate endDate) {
         List<String> docIds = generateDateIds(startDate, endDate);
         log.debug("Querying system daily stats: period={} to {}", startDate, endDate);
@@ -116,15 +226,90 @@ public class UsageQueryService {
         return results;
     }
 
+    /**
+     * 查詢用戶在指定月份區間的月用量。
+     *
+     * <p>讀取月彙總文件，一年只需 12 筆，不必加總日用量。
+     *
+     * @param userId 用戶 ID
+     * @param startMonth 起始月份（含）
+     * @param endMonth 結束月份（含）
+     * @return 月用量列表
+     */
+    @Cacheable(QueryCacheConfig.USER_MONTHLY_USAGE)
+    public List<MonthlyUserUsage> getUserMonthlyUsage(String userId, YearMonth startMonth, YearMonth endMonth) {
+        List<String> docIds = new ArrayList<>();
+        for (YearMonth month = startMonth; !month.isAfter(endMonth); month = month.plusMonths(1)) {
+            docIds.add(MonthlyUserUsage.createId(month, userId));
+        }
+
+        List<MonthlyUserUsage> results = monthlyUserUsageRepository.findByIdIn(docIds);
+        log.info("User monthly usage query: userId={}, period={} to {}, found {} records",
+            userId, startMonth, endMonth, results.size());
+
+        return results;
+    }
+
+    /**
+     * 查詢模型在指定月份區間的月用量。
+     *
+     * @param model 模型名稱
+     * @param startMonth 起始月份（含）
+     * @param endMonth 結束月份（含）
+     * @return 月用量列表
+     */
+    @Cacheable(QueryCacheConfig.MODEL_MONTHLY_USAGE)
+    public List<MonthlyModelUsage> getModelMonthlyUsage(String model, YearMonth startMonth, YearMonth endMonth) {
+        List<String> docIds = new ArrayList<>();
+        for (YearMonth month = startMonth; !month.isAfter(endMonth); month = month.plusMonths(1)) {
+            docIds.add(MonthlyModelUsage.createId(month, model));
+        }
+
+        List<MonthlyModelUsage> results = monthlyModelUsageRepository.findByIdIn(docIds);
+        log.info("Model monthly usage query: model={}, period={} to {}, found {} records",
+            model, startMonth, endMonth, results.size());
+
+        return results;
+    }
+
+    /**
+     * 查詢指定維度在日期區間內的小時用量。
+     *
+     * <p>預先產生每小時的 document IDs 後批次查詢，結果依時間升序排列。
+     *
+     * @param dimension 維度（{@code user}、{@code model}、{@code system}）
+     * @param key 維度鍵
+     * @param startDate 起始日期（含，UTC）
+     * @param endDate 結束日期（含，UTC）
+     * @return 小時用量列表（僅包含有資料的小時）
+     */
+    @Cacheable(QueryCacheConfig.HOURLY_USAGE)
+    public List<HourlyUsage> getHourlyUsage(String dimension, String key, LocalDate startDate, LocalDate endDate) {
+        List<String> docIds = new ArrayList<>();
+        Instant end = endDate.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+        for (Instant hour = startDate.atStartOfDay(ZoneOffset.UTC).toInstant();
+                hour.isBefore(end); hour = hour.plus(1, ChronoUnit.HOURS)) {
+            docIds.add(HourlyUsage.createId(hour, dimension, key));
+        }
+
+        List<HourlyUsage> results = new ArrayList<>(hourlyUsageRepository.findByIdIn(docIds));
+        results.sort((a, b) -> a.hour().compareTo(b.hour()));
+        log.info("Hourly usage query: {}={}, period={} to {}, found {} records",
+            dimension, key, startDate, endDate, results.size());
+
+        return results;
+    }
+
     /**
      * 查詢用戶配額與累計統計。
      *
      * @param userId 用戶 ID
      * @return 用戶配額（若存在）
      */
+    @Cacheable(QueryCacheConfig.USER_QUOTA)
     public Optional<UserQuota> getUserQuota(String userId) {
         log.debug("Querying user quota: userId={}", userId);
-        return userQuotaRepository.findById(userId);
+        return userQuotaRepository.findByUserId(userId);
     }
 
     /**
@@ -133,19 +318,25 @@ public class UsageQueryService {
      * @param limit 回傳筆數上限
      * @return 排序後的用戶配額列表
      */
+    @Cacheable(QueryCacheConfig.USER_QUOTA_LISTS)
     public List<UserQuota> getTopUsers(int limit) {
         log.debug("Querying top {} users by token usage", limit);
         return userQuotaRepository.findAllByOrderByTotalTokensDesc(PageRequest.of(0, limit));
     }
 
     /**
-     * 查詢所有用戶配額。
+     * Keyset 捲動查詢用戶，按最後活動時間降序。
+     *
+     * <p>以上一頁最後一筆的 {@code (lastActiveAt, _id)} 作為查詢條件，
+     * 由 {@code user_quota (lastActiveAt, _id)} 索引直接定位，不使用 skip 亦不計算總數。
      *
-     * @return 所有用戶的配額列表
+     * @param position 捲動位置
+     * @param limit 每頁筆數
+     * @return 查詢結果視窗
      */
-    public List<UserQuota> getAllUsers() {
-        log.debug("Querying all users");
-        return userQuotaRepository.findAll();
+    public Window<UserQuota> scrollUsers(ScrollPosition position, int limit) {
+        log.debug("Scrolling users: limit={}", limit);
+        return userQuotaRepository.findAllByOrderByLastActiveAtDescIdDesc(position, Limit.of(limit));
     }
 
     /**
@@ -153,6 +344,7 @@ public class UsageQueryService {
      *
      * @return 已超額的用戶配額列表
      */
+    @Cacheable(QueryCacheConfig.USER_QUOTA_LISTS)
     public List<UserQuota> getExceededQuotaUsers() {
         log.debug("Querying users with exceeded quota");
         return userQuotaRepository.findByQuotaExceededTrue();
@@ -164,11 +356,127 @@ public class UsageQueryService {
      * @param limit 回傳筆數上限
      * @return 依最近活動時間排序的用戶配額列表
      */
+    @Cacheable(QueryCacheConfig.USER_QUOTA_LISTS)
     public List<UserQuota> getRecentActiveUsers(int limit) {
         log.debug("Querying {} recent active users", limit);
         return userQuotaRepository.findAllByOrderByLastActiveAtDesc(PageRequest.of(0, limit)).getContent();
     }
 
+    /**
+     * 查詢配額儀表板資料（伺服器端彙總）。
+     *
+     * <p>以單次 {@code $facet} aggregation 取得啟用配額用戶的：
+     * <ul>
+     *   <li>{@code summary} - 啟用數、超額數、當期成本與額外額度合計</li>
+     *   <li>{@code levels} - 使用率分級計數（OK &lt; 50% ≤ WARNING &lt; 80% ≤ CRITICAL &lt; 100% ≤ EXCEEDED）</li>
+     * </ul>
+     * 彙總需掃過所有啟用配額的用戶；{@code $facet} 內的排序無法使用索引，
+     * 因此使用率最高的前 N 位用戶另以 find + sort + limit 查詢，
+     * 由 {@code user_quota} 的 {@code (quotaEnabled, costUsagePercent, _id)} 索引直接取前 N 筆。
+     *
+     * @param limit 回傳用戶數上限
+     * @return 配額儀表板彙總
+     */
+    @Cacheable(QueryCacheConfig.USER_QUOTA_LISTS)
+    public QuotaOverview getQuotaOverview(int limit) {
+        log.debug("Querying quota overview: limit={}", limit);
+
+        Aggregation aggregation = Aggregation.newAggregation(
+            Aggregation.match(Criteria.where("quotaEnabled").is(true)),
+            Aggregation.facet(
+                    Aggregation.group()
+                        .count().as("count")
+                        .sum(ConditionalOperators.when(Criteria.where("quotaExceeded").is(true)).then(1).otherwise(0))
+                            .as("exceededCount")
+                        .sum("periodCostUsd").as("totalPeriodCostUsd")
+                        .sum("bonusCostUsd").as("totalBonusGrantedUsd"))
+                .as("summary")
+                .and(Aggregation.bucket("costUsagePercent")
+                        .withBoundaries(0, 50, 80, 100)
+                        .withDefaultBucket(LEVEL_EXCEEDED)
+                        .andOutputCount().as("count"))
+                .as("levels"));
+
+        Document result = mongoTemplate.aggregate(aggregation, UserQuota.class, Document.class).getUniqueMappedResult();
+        Document summary = firstFacet(result, "summary");
+
+        Map<String, Long> levels = new LinkedHashMap<>();
+        List.of("OK", "WARNING", "CRITICAL", LEVEL_EXCEEDED).forEach(level -> levels.put(level, 0L));
+        for (Document bucket : facet(result, "levels")) {
+            levels.merge(toUsageLevel(bucket.get("_id")), number(bucket.get("count")).longValue(), Long::sum);
+        }
+
+        return new QuotaOverview(
+            number(summary.get("count")).longValue(),
+            number(summary.get("exceededCount")).longValue(),
+            number(summary.get("totalPeriodCostUsd")).doubleValue(),
+            number(summary.get("totalBonusGrantedUsd")).doubleValue(),
+            levels,
+            mongoTemplate.find(Query.query(Criteria.where("quotaEnabled").is(true))
+                .with(Sort.by(Sort.Direction.DESC, "costUsagePercent", "_id"))
+                .limit(limit), UserQuota.class));
+    }
+
+    /**
+     * 查詢用戶清單頁資料（伺服器端彙總）。
+     *
+     * <p>以 {@code $group} aggregation 取得全部用戶的統計（總數、啟用/超額數、token 與成本合計），
+     * 依最近活動時間排序的前 N 位用戶另以 find + sort + limit 查詢（{@code (lastActiveAt, _id)} 索引），
+     * 取代載入整個集合。
+     *
+     * @param limit 回傳用戶數上限
+     * @return 用戶清單彙總
+     */
+    @Cacheable(QueryCacheConfig.USER_QUOTA_LISTS)
+    public UserOverview getUserOverview(int limit) {
+        log.debug("Querying user overview: limit={}", limit);
+
+        Aggregation aggregation = Aggregation.newAggregation(
+            Aggregation.group()
+                .count().as("count")
+                .sum(ConditionalOperators.when(Criteria.where("quotaEnabled").is(true)).then(1).otherwise(0))
+                    .as("quotaEnabledCount")
+                .sum(ConditionalOperators.when(Criteria.where("quotaExceeded").is(true)).then(1).otherwise(0))
+                    .as("quotaExceededCount")
+                .sum("totalTokens").as("totalTokens")
+                .sum("totalEstimatedCostUsd").as("totalCostUsd"));
+
+        Document result = mongoTemplate.aggregate(aggregation, UserQuota.class, Document.class).getUniqueMappedResult();
+        Document summary = result != null ? result : new Document();
+
+        return new UserOverview(
+            number(summary.get("count")).longValue(),
+            number(summary.get("quotaEnabledCount")).longValue(),
+            number(summary.get("quotaExceededCount")).longValue(),
+            number(summary.get("totalTokens")).longValue(),
+            number(summary.get("totalCostUsd")).doubleValue(),
+            mongoTemplate.find(new Query()
+                .with(Sort.by(Sort.Direction.DESC, "lastActiveAt", "_id"))
+                .limit(limit), UserQuota.class));
+    }
+
+    private static List<Document> facet(Document result, String name) {
+        return result != null ? result.getList(name, Document.class, List.of()) : List.of();
+    }
+
+    private static Document firstFacet(Document result, String name) {
+        List<Document> docs = facet(result, name);
+        return docs.isEmpty() ? new Document() : docs.get(0);
+    }
+
+    /**
+     * 將 {@code $bucket} 下界轉為使用等級（與 {@link UserQuota#getUsageLevel()} 一致）。
+     */
+    private static String toUsageLevel(Object bucketId) {
+        if (!(bucketId instanceof Number lowerBound)) {
+            return LEVEL_EXCEEDED;
+        }
+        double value = lowerBound.doubleValue();
+        if (value >= 80) return "CRITICAL";
+        if (value >= 50) return "WARNING";
+        return "OK";
+    }
+
     /**
      * 生成用戶日用量的 document IDs。
      */
@@ -205,61 +513,107 @@ public class UsageQueryService {
     /**
      * 取得所有使用過的模型清單（依 token 用量排序）。
      *
-     * <p>從最近 N 天的 DailyModelUsage 聚合出不重複的模型列表。
+     * <p>以單一 aggregation 在伺服器端彙總最近 N 天的 DailyModelUsage：
+     * <ul>
+     *   <li>以 {@code _id} 前綴（{@code YYYY-MM-DD_}）做範圍比對，走主鍵索引，不掃描歷史資料</li>
+     *   <li>{@code $group} 只加總計數欄位，並收集各日 digest 與獨立用戶資料</li>
+     *   <li>各日 T-Digest 合併後計算區間平均延遲與百分位數</li>
+     *   <li>獨立用戶以 HyperLogLog 合併（已日結日期用草圖，未日結日期用 userIdSet），跨日不重複計算</li>
+     * </ul>
      *
      * @param days 查詢天數
      * @return 模型統計列表，按總 token 數降序排列
      */
+    @Cacheable(QueryCacheConfig.MODEL_SUMMARIES)
     public List<ModelSummary> getAllModels(int days) {
-        LocalDate endDate = LocalDate.now();
+        LocalDate endDate = LocalDate.now(ZoneOffset.UTC);
         LocalDate startDate = endDate.minusDays(days - 1);
 
         log.debug("Querying all models for period: {} to {}", startDate, endDate);
 
-        // 查詢所有日期的模型用量
-        List<DailyModelUsage> allUsages = dailyModelUsageRepository.findAll();
-
-        // 過濾日期範圍並依模型聚合
-        java.util.Map<String, ModelSummary> modelMap = new java.util.HashMap<>();
-        for (DailyModelUsage usage : allUsages) {
-            if (usage.date() != null && !usage.date().isBefore(startDate) && !usage.date().isAfter(endDate)) {
-                modelMap.compute(usage.model(), (model, existing) -> {
-                    if (existing == null) {
-                        return new ModelSummary(
-                            model,
-                            usage.totalInputTokens(),
-                            usage.totalOutputTokens(),
-                            usage.totalTokens(),
-                            usage.requestCount(),
-                            usage.successCount(),
-                            usage.uniqueUsers(),
-                            usage.estimatedCostUsd(),
-                            usage.latencyStats() != null ? usage.latencyStats().avgLatencyMs() : 0.0
-                        );
-                    } else {
-                        return new ModelSummary(
-                            model,
-                            existing.totalInputTokens() + usage.totalInputTokens(),
-                            existing.totalOutputTokens() + usage.totalOutputTokens(),
-                            existing.totalTokens() + usage.totalTokens(),
-                            existing.totalRequestCount() + usage.requestCount(),
-                            existing.totalSuccessCount() + usage.successCount(),
-                            Math.max(existing.uniqueUsers(), usage.uniqueUsers()),
-                            existing.totalEstimatedCostUsd().add(usage.estimatedCostUsd()),
-                            (existing.avgLatencyMs() + (usage.latencyStats() != null ? usage.latencyStats().avgLatencyMs() : 0.0)) / 2
-                        );
-                    }
-                });
-            }
-        }
+        // '`' 為 '_' 的下一個字元，[start_, end`) 涵蓋區間內所有日期
+        Aggregation aggregation = Aggregation.newAggregation(
+            Aggregation.match(Criteria.where("_id").gte(startDate + "_").lt(endDate + "`")),
+            Aggregation.group("model")
+                .sum("totalInputTokens").as("totalInputTokens")
+                .sum("totalOutputTokens").as("totalOutputTokens")
+                .sum("totalTokens").as("totalTokens")
+                .sum("requestCount").as("requestCount")
+                .sum("successCount").as("successCount")
+                .sum("estimatedCostUsd").as("estimatedCostUsd")
+                .max("uniqueUsers").as("maxDailyUsers")
+                .push("latencyDigest").as("digests")
+                .push("userSketch").as("userSketches")
+                .push("userIdSet").as("userIdSets"));
 
-        List<ModelSummary> result = new ArrayList<>(modelMap.values());
+        List<ModelSummary> result = new ArrayList<>();
+        for (Document doc : mongoTemplate.aggregate(aggregation, DailyModelUsage.class, Document.class)) {
+            result.add(toModelSummary(doc));
+        }
         result.sort((a, b) -> Long.compare(b.totalTokens(), a.totalTokens()));
 
         log.info("Found {} models for period {} to {}", result.size(), startDate, endDate);
         return result;
     }
 
+    /**
+     * 將 aggregation 結果轉為模型統計摘要（合併 digest 與獨立用戶）。
+     */
+    private ModelSummary toModelSummary(Document doc) {
+        TDigest digest = digestService.createDigest();
+        for (Object bytes : doc.getList("digests", Object.class, List.of())) {
+            byte[] data = binary(bytes);
+            if (data != null) {
+                digest.add(digestService.deserialize(data));
+            }
+        }
+        LatencyDigestService.LatencyStats latency = digestService.calculateStats(digest);
+
+        HyperLogLog users = HyperLogLog.create();
+        boolean hasUserData = false;
+        for (Object sketch : doc.getList("userSketches", Object.class, List.of())) {
+            byte[] data = binary(sketch);
+            if (data != null) {
+                users.merge(HyperLogLog.fromBytes(data));
+                hasUserData = true;
+            }
+        }
+        for (Object userIds : doc.getList("userIdSets", Object.class, List.of())) {
+            if (userIds instanceof List<?> list) {
+                list.forEach(userId -> users.add(String.valueOf(userId)));
+                hasUserData = true;
+            }
+        }
+        // 舊資料沒有 userIdSet/草圖時，以單日最大值作為下限
+        int uniqueUsers = (int) Math.max(hasUserData ? users.estimate() : 0, number(doc.get("maxDailyUsers")).longValue());
+
+        return new ModelSummary(
+            doc.getString("_id"),
+            number(doc.get("totalInputTokens")).longValue(),
+            number(doc.get("totalOutputTokens")).longValue(),
+            number(doc.get("totalTokens")).longValue(),
+            number(doc.get("requestCount")).intValue(),
+            number(doc.get("successCount")).intValue(),
+            uniqueUsers,
+            java.math.BigDecimal.valueOf(number(doc.get("estimatedCostUsd")).doubleValue()),
+            latency.avgMs(),
+            latency.p50Ms(),
+            latency.p90Ms(),
+            latency.p99Ms()
+        );
+    }
+
+    private static byte[] binary(Object value) {
+        if (value instanceof Binary b) {
+            return b.getData();
+        }
+        return value instanceof byte[] bytes ? bytes : null;
+    }
+
+    private static Number number(Object value) {
+        return value instanceof Number n ? n : 0;
+    }
+
     /**
      * 模型統計摘要。
      *
@@ -271,7 +625,10 @@ public class UsageQueryService {
      * @param totalSuccessCount 總成功數
      * @param uniqueUsers 獨立用戶數
      * @param totalEstimatedCostUsd 總成本
-     * @param avgLatencyMs 平均延遲
+     * @param avgLatencyMs 平均延遲（區間內所有請求）
+     * @param p50LatencyMs P50 延遲
+     * @param p90LatencyMs P90 延遲
+     * @param p99LatencyMs P99 延遲
      */
     public record ModelSummary(
         String model,
@@ -282,7 +639,10 @@ public class UsageQueryService {
         int totalSuccessCount,
         int uniqueUsers,
         java.math.BigDecimal totalEstimatedCostUsd,
-        double avgLatencyMs
+        double avgLatencyMs,
+        double p50LatencyMs,
+        double p90LatencyMs,
+        double p99LatencyMs
     ) {
         /**
          * 計算成功率。
@@ -291,4 +651,42 @@ public class UsageQueryService {
             return totalRequestCount > 0 ? (double) totalSuccessCount / totalRequestCount * 100.0 : 0.0;
         }
     }
+
+    /**
+     * 配額儀表板彙總。
+     *
+     * @param quotaEnabledCount 啟用配額的用戶數
+     * @param exceededCount 已超額的用戶數
+     * @param totalPeriodCostUsd 當期成本合計
+     * @param totalBonusGrantedUsd 額外額度合計
+     * @param usageLevels 各使用等級的用戶數（OK、WARNING、CRITICAL、EXCEEDED）
+     * @param topUsers 使用率最高的用戶（降序）
+     */
+    public record QuotaOverview(
+        long quotaEnabledCount,
+        long exceededCount,
+        double totalPeriodCostUsd,
+        double totalBonusGrantedUsd,
+        Map<String, Long> usageLevels,
+        List<UserQuota> topUsers
+    ) {}
+
+    /**
+     * 用戶清單彙總。
+     *
+     * @param totalUsers 用戶總數
+     * @param quotaEnabledCount 啟用配額的用戶數
+     * @param quotaExceededCount 已超額的用戶數
+     * @param totalTokens 累計 token 合計
+     * @param totalCostUsd 累計成本合計
+     * @param users 最近活躍的用戶（依 lastActiveAt 降序）
+     */
+    public record UserOverview(
+        long totalUsers,
+        long quotaEnabledCount,
+        long quotaExceededCount,
+        long totalTokens,
+        double totalCostUsd,
+        List<UserQuota> users
+    ) {}
 }
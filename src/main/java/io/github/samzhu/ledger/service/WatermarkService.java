@@ -0,0 +1,125 @@
+package io.github.samzhu.ledger.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import io.github.samzhu.ledger.config.LedgerProperties;
+import io.github.samzhu.ledger.document.HourlyUsage;
+import io.github.samzhu.ledger.dto.UsageEventData;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * 結算的事件時間水位線（watermark）。
+ *
+ * <p>水位線 = 已觀察到的最大事件時間 − 允許遲到時間（{@code ledger.watermark.allowed-lateness-minutes}）。
+ * 事件時間早於水位線的事件視為遲到事件，由 {@link UsageAggregationService} 改走修正路徑。
+ *
+ * <ul>
+ *   <li>最大事件時間只前進不後退，且不超過目前時間，避免時鐘偏移的事件把水位線推到未來</li>
+ *   <li>狀態保存在記憶體；重啟後首次使用時以 {@code hourly_usage} 最新的系統小時作為起點</li>
+ * </ul>
+ *
+ * <p>指標：{@code ledger.settlement.watermark.lag} - 目前時間與水位線的差距（秒）。
+ *
+ * @see LedgerProperties.WatermarkConfig
+ */
+@Service
+public class WatermarkService {
+
+    private static final Logger log = LoggerFactory.getLogger(WatermarkService.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final Duration allowedLateness;
+    private final AtomicReference<Instant> maxEventTime = new AtomicReference<>();
+    private volatile boolean seeded;
+
+    public WatermarkService(MongoTemplate mongoTemplate, LedgerProperties properties, MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        LedgerProperties.WatermarkConfig config = properties.watermark() != null
+            ? properties.watermark()
+            : LedgerProperties.WatermarkConfig.defaults();
+        this.allowedLateness = Duration.ofMinutes(config.allowedLatenessMinutes());
+
+        Gauge.builder("ledger.settlement.watermark.lag", this, WatermarkService::lagSeconds)
+            .description("Seconds between now and the settlement event-time watermark")
+            .baseUnit("seconds")
+            .register(meterRegistry);
+    }
+
+    /**
+     * 以批次事件推進水位線。
+     *
+     * @param events 本批次事件
+     * @return 推進後的水位線；尚無任何事件時為 {@link Instant#MIN}
+     */
+    public Instant advance(List<UsageEventData> events) {
+        seedIfNeeded();
+
+        Instant now = Instant.now();
+        events.stream()
+            .map(UsageEventData::eventTime)
+            .max(Instant::compareTo)
+            .map(max -> max.isAfter(now) ? now : max)
+            .ifPresent(max -> maxEventTime.accumulateAndGet(max,
+                (current, candidate) -> current == null || candidate.isAfter(current) ? candidate : current));
+
+        return current();
+    }
+
+    /**
+     * 目前的水位線。
+     *
+     * @return 水位線；尚無任何事件時為 {@link Instant#MIN}
+     */
+    public Instant current() {
+        Instant max = maxEventTime.get();
+        return max != null ? max.minus(allowedLateness) : Instant.MIN;
+    }
+
+    /**
+     * 判斷事件是否遲到。
+     *
+     * @param eventTime 事件時間
+     * @param watermark 水位線
+     * @return 事件時間早於水位線時為 true
+     */
+    public static boolean isLate(Instant eventTime, Instant watermark) {
+        return eventTime.isBefore(watermark);
+    }
+
+    private void seedIfNeeded() {
+        if (seeded) {
+            return;
+        }
+        seeded = true;
+        try {
+            Query query = Query.query(Criteria.where("dimension").is(HourlyUsage.DIMENSION_SYSTEM))
+                .with(Sort.by(Sort.Direction.DESC, "hour"))
+                .limit(1);
+            query.fields().include("hour");
+            HourlyUsage latest = mongoTemplate.findOne(query, HourlyUsage.class);
+            if (latest != null && latest.hour() != null) {
+                maxEventTime.compareAndSet(null, latest.hour());
+                log.info("Watermark seeded from hourly_usage: maxEventTime={}", latest.hour());
+            }
+        } catch (Exception e) {
+            log.warn("Failed to seed watermark, starting from first batch: {}", e.getMessage());
+        }
+    }
+
+    private double lagSeconds() {
+        Instant max = maxEventTime.get();
+        return max != null ? Duration.between(current(), Instant.now()).toSeconds() : 0.0;
+    }
+}
@@ -0,0 +1,380 @@
+package io.github.samzhu.ledger.storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.github.samzhu.ledger.document.RawEventBatch;
+
+/**
+ * 以本機檔案實作的原始批次儲存（log-structured）。
+ *
+ * <p>所有異動都附加（append）到目前的區段檔 {@code segment-{序號}.log}，超過大小上限即換新區段。
+ * 每筆記錄格式為 {@code [長度 int][類型 byte][CRC32 int][內容]}：
+ * <ul>
+ *   <li>{@code BATCH} - 內容為 {@code [ID 長度 short][ID][批次 JSON]}</li>
+ *   <li>{@code PROCESSED} - 內容為批次 ID，標記該批次已結算</li>
+ * </ul>
+ *
+ * <p>啟動時以 memory-map 依序重播所有區段，只解析記錄標頭與 ID，重建未結算批次的位置索引；
+ * 最後一個區段尾端不完整或 CRC 不符的記錄（寫入中途當機）會被截斷；
+ * 較舊的區段已封存，出現損毀代表磁碟或檔案被外部修改，啟動失敗而不略過其中已提交的批次。
+ * 讀取批次時直接從 memory-map 區段取出 JSON 解碼，不需額外的檔案讀取。
+ *
+ * <p>已結算批次不保留：最舊的區段內批次全部結算後即刪除檔案。只從最舊的區段依序刪除，
+ * 確保 {@code PROCESSED} 記錄所指的批次不會在重播時復活；長期未結算的批次（例如未知模型定價）
+ * 會暫緩其後區段的回收。
+ *
+ * <p>單一實例使用，所有操作以物件鎖序列化。批次 ID 沿用 ObjectId 格式，與 MongoDB 後端一致。
+ *
+ * @see RawBatchStore
+ */
+public class EmbeddedRawBatchStore implements RawBatchStore, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(EmbeddedRawBatchStore.class);
+
+    private static final byte TYPE_BATCH = 1;
+    private static final byte TYPE_PROCESSED = 2;
+
+    /** 長度 (4) + 類型 (1) + CRC32 (4) */
+    private static final int HEADER_BYTES = 9;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final long segmentMaxBytes;
+    private final boolean fsync;
+    private final ObjectMapper objectMapper;
+
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    /** 未結算批次的位置，依寫入順序（即建立時間）排列 */
+    private final Map<String, Location> pending = new LinkedHashMap<>();
+    private Segment active;
+    private FileChannel writer;
+
+    /**
+     * 開啟（或建立）區段目錄並重播既有記錄。
+     *
+     * @param directory 區段檔目錄
+     * @param segmentMaxBytes 單一區段檔上限（bytes）
+     * @param fsync 每次寫入後是否強制落盤
+     * @param objectMapper 批次 JSON 編解碼
+     * @throws IOException 目錄或區段檔無法存取
+     */
+    public EmbeddedRawBatchStore(Path directory, long segmentMaxBytes, boolean fsync, ObjectMapper objectMapper)
+            throws IOException {
+        this.directory = directory;
+        this.segmentMaxBytes = segmentMaxBytes;
+        this.fsync = fsync;
+        this.objectMapper = objectMapper;
+        Files.createDirectories(directory);
+        recover();
+    }
+
+    @Override
+    public synchronized RawEventBatch save(RawEventBatch batch) {
+        String id = batch.id() != null ? batch.id() : new ObjectId().toHexString();
+        RawEventBatch stored = new RawEventBatch(id, batch.events(), batch.eventCount(), batch.createdAt(),
+            false, batch.deltas(), null, null);
+        try {
+            byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+            byte[] json = objectMapper.writeValueAsBytes(stored);
+            ByteBuffer payload = ByteBuffer.allocate(Short.BYTES + idBytes.length + json.length)
+                .putShort((short) idBytes.length)
+                .put(idBytes)
+                .put(json);
+            Location location = append(TYPE_BATCH, payload.array());
+            pending.put(id, location);
+            location.segment().live++;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append raw batch to " + active.path, e);
+        }
+        return stored;
+    }
+
+    @Override
+    public synchronized List<RawEventBatch> findUnprocessed() {
+        List<RawEventBatch> result = new ArrayList<>(pending.size());
+        for (Location location : pending.values()) {
+            result.add(read(location));
+        }
+        return result;
+    }
+
+    /**
+     * 查詢尚未結算的批次摘要。
+     *
+     * <p>批次以單一 JSON 保存，摘要與完整批次讀取成本相同，直接回傳完整批次。
+     */
+    @Override
+    public List<RawEventBatch> findUnprocessedSummaries() {
+        return findUnprocessed();
+    }
+
+    /**
+     * 依 ID 查詢批次。
+     *
+     * <p>已結算批次不保留索引，只回傳未結算的批次。
+     */
+    @Override
+    public synchronized List<RawEventBatch> findAllById(Collection<String> ids) {
+        List<RawEventBatch> result = new ArrayList<>();
+        for (String id : ids) {
+            Location location = pending.get(id);
+            if (location != null) {
+                result.add(read(location));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized void markProcessed(String batchId) {
+        Location location = pending.get(batchId);
+        if (location == null) {
+            return;
+        }
+        try {
+            append(TYPE_PROCESSED, batchId.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to mark raw batch " + batchId + " as processed", e);
+        }
+        pending.remove(batchId);
+        location.segment().live--;
+        reclaim();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    // ========== 寫入 ==========
+
+    private Location append(byte type, byte[] payload) throws IOException {
+        if (active.size > 0 && active.size + HEADER_BYTES + payload.length > segmentMaxBytes) {
+            roll();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + payload.length)
+            .putInt(payload.length)
+            .put(type)
+            .putInt((int) crc.getValue())
+            .put(payload)
+            .flip();
+        long offset = active.size;
+        while (record.hasRemaining()) {
+            writer.write(record);
+        }
+        if (fsync) {
+            writer.force(false);
+        }
+        active.size += record.capacity();
+        return new Location(active, offset, record.capacity());
+    }
+
+    private void roll() throws IOException {
+        writer.close();
+        long sequence = active.sequence + 1;
+        active = new Segment(sequence, segmentPath(sequence), 0);
+        segments.put(sequence, active);
+        writer = FileChannel.open(active.path,
+            StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        log.debug("Embedded raw batch store rolled to segment {}", active.path.getFileName());
+        reclaim();
+    }
+
+    /**
+     * 依序刪除最舊且已無未結算批次的區段。
+     */
+    private void reclaim() {
+        while (segments.size() > 1) {
+            Segment oldest = segments.firstEntry().getValue();
+            if (oldest == active || oldest.live > 0) {
+                return;
+            }
+            segments.pollFirstEntry();
+            oldest.mapped = null;
+            try {
+                Files.deleteIfExists(oldest.path);
+                log.debug("Embedded raw batch store reclaimed segment {}", oldest.path.getFileName());
+            } catch (IOException e) {
+                log.warn("Failed to delete settled segment {}: {}", oldest.path, e.getMessage());
+            }
+        }
+    }
+
+    // ========== 讀取與重播 ==========
+
+    private RawEventBatch read(Location location) {
+        try {
+            ByteBuffer record = location.segment().view(location.offset(), location.length());
+            record.position(HEADER_BYTES);
+            int idLength = record.getShort();
+            record.position(record.position() + idLength);
+            byte[] json = new byte[record.remaining()];
+            record.get(json);
+            return objectMapper.readValue(json, RawEventBatch.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read raw batch from " + location.segment().path, e);
+        }
+    }
+
+    private void recover() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : files) {
+                long sequence = parseSequence(path);
+                segments.put(sequence, new Segment(sequence, path, Files.size(path)));
+            }
+        }
+        if (segments.isEmpty()) {
+            segments.put(1L, new Segment(1L, segmentPath(1L), 0));
+        }
+        active = segments.lastEntry().getValue();
+
+        for (Segment segment : segments.values()) {
+            replay(segment);
+        }
+        writer = FileChannel.open(active.path,
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        reclaim();
+        log.info("Embedded raw batch store opened: directory={}, segments={}, pending batches={}",
+            directory, segments.size(), pending.size());
+    }
+
+    private void replay(Segment segment) throws IOException {
+        if (segment.size == 0) {
+            return;
+        }
+        ByteBuffer buffer = segment.view(0, (int) segment.size);
+        int position = 0;
+        while (position < segment.size) {
+            int length = -1;
+            if (segment.size - position >= HEADER_BYTES) {
+                length = buffer.getInt(position);
+            }
+            if (length < 0 || position + HEADER_BYTES + (long) length > segment.size
+                    || !checksumMatches(buffer, position, length)) {
+                truncate(segment, position);
+                return;
+            }
+            byte type = buffer.get(position + Integer.BYTES);
+            int payloadStart = position + HEADER_BYTES;
+            if (type == TYPE_BATCH) {
+                int idLength = buffer.getShort(payloadStart);
+                String id = decode(buffer, payloadStart + Short.BYTES, idLength);
+                pending.put(id, new Location(segment, position, HEADER_BYTES + length));
+                segment.live++;
+            } else if (type == TYPE_PROCESSED) {
+                Location location = pending.remove(decode(buffer, payloadStart, length));
+                if (location != null) {
+                    location.segment().live--;
+                }
+            }
+            position += HEADER_BYTES + length;
+        }
+    }
+
+    private static boolean checksumMatches(ByteBuffer buffer, int position, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(position + HEADER_BYTES, length));
+        return (int) crc.getValue() == buffer.getInt(position + Integer.BYTES + 1);
+    }
+
+    /**
+     * 截斷不完整的尾端記錄。
+     *
+     * <p>只有最後一個區段可能在寫入中途中斷。較舊區段出現損毀時，其後的記錄可能含未結算批次，
+     * 略過會讓批次從未結算索引消失、區段隨後被回收，因此直接拋出例外讓啟動失敗，由人工處理區段檔。
+     *
+     * @throws IOException 損毀位於已封存的區段
+     */
+    private void truncate(Segment segment, int position) throws IOException {
+        if (segment != active) {
+            throw new IOException("Corrupt record in sealed segment " + segment.path + " at offset " + position
+                + "; refusing to start so committed batches after it are not dropped");
+        }
+        log.warn("Truncating incomplete tail of segment {}: {} -> {} bytes",
+            segment.path.getFileName(), segment.size, position);
+        try (FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.WRITE)) {
+            channel.truncate(position);
+        }
+        segment.size = position;
+        segment.mapped = null;
+    }
+
+    private static String decode(ByteBuffer buffer, int offset, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private Path segmentPath(long sequence) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+    }
+
+    private static long parseSequence(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * 區段檔。
+     *
+     * <p>{@code live} 為區段內尚未結算的批次數。讀取時 memory-map 整個區段，
+     * 目前區段增長超出映射範圍時重新映射。
+     */
+    private static final class Segment {
+        final long sequence;
+        final Path path;
+        long size;
+        int live;
+        MappedByteBuffer mapped;
+
+        Segment(long sequence, Path path, long size) {
+            this.sequence = sequence;
+            this.path = path;
+            this.size = size;
+        }
+
+        ByteBuffer view(long offset, int length) throws IOException {
+            if (mapped == null || offset + length > mapped.capacity()) {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                }
+            }
+            return mapped.slice((int) offset, length);
+        }
+    }
+
+    /**
+     * 記錄在區段中的位置（含標頭）。
+     */
+    private record Location(Segment segment, long offset, int length) {}
+}
@@ -0,0 +1,59 @@
+package io.github.samzhu.ledger.storage;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import io.github.samzhu.ledger.document.RawEventBatch;
+import io.github.samzhu.ledger.repository.RawEventBatchRepository;
+
+/**
+ * 以 MongoDB {@code raw_event_batches} 集合實作的原始批次儲存。
+ *
+ * <p>批次 ID 由 MongoDB 產生 ObjectId；已結算批次保留於集合中，
+ * 由 {@link io.github.samzhu.ledger.service.RawEventArchiveService} 搬移到冷儲存。
+ *
+ * @see RawBatchStore
+ */
+public class MongoRawBatchStore implements RawBatchStore {
+
+    private final RawEventBatchRepository repository;
+    private final MongoTemplate mongoTemplate;
+
+    public MongoRawBatchStore(RawEventBatchRepository repository, MongoTemplate mongoTemplate) {
+        this.repository = repository;
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public RawEventBatch save(RawEventBatch batch) {
+        return repository.save(batch);
+    }
+
+    @Override
+    public List<RawEventBatch> findUnprocessed() {
+        return repository.findByProcessedFalseOrderByCreatedAtAsc();
+    }
+
+    @Override
+    public List<RawEventBatch> findUnprocessedSummaries() {
+        Query query = Query.query(Criteria.where("processed").is(false));
+        query.fields().include("deltas", "eventCount");
+        return mongoTemplate.find(query, RawEventBatch.class);
+    }
+
+    @Override
+    public List<RawEventBatch> findAllById(Collection<String> ids) {
+        return mongoTemplate.find(Query.query(Criteria.where("_id").in(ids)), RawEventBatch.class);
+    }
+
+    @Override
+    public void markProcessed(String batchId) {
+        Query query = Query.query(Criteria.where("_id").is(batchId));
+        mongoTemplate.updateFirst(query, Update.update("processed", true), RawEventBatch.class);
+    }
+}
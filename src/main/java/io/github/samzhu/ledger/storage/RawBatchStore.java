@@ -0,0 +1,65 @@
+package io.github.samzhu.ledger.storage;
+
+import java.util.Collection;
+import java.util.List;
+
+import io.github.samzhu.ledger.document.RawEventBatch;
+
+/**
+ * 原始事件批次儲存 SPI。
+ *
+ * <p>涵蓋事件進入帳本的路徑：flush 寫入批次、結算讀取未處理批次並標記完成、
+ * 未結算用量疊加讀取批次增量。服務只透過此介面存取原始批次，不直接依賴 MongoDB。
+ *
+ * <p>實作：
+ * <ul>
+ *   <li>{@link MongoRawBatchStore} - {@code raw_event_batches} 集合（預設）</li>
+ *   <li>{@link EmbeddedRawBatchStore} - 本機 append-only 區段檔，供單節點部署、CI 與壓測使用</li>
+ * </ul>
+ *
+ * <p>後端依 {@code ledger.storage.backend} 選擇，參見 {@link io.github.samzhu.ledger.config.StorageConfiguration}。
+ *
+ * <p>此介面只涵蓋原始批次；彙總寫入與範圍讀取仍直接使用 MongoDB，
+ * 後續規劃見 {@code docs/STORAGE-SPI-PLAN.md}。
+ */
+public interface RawBatchStore {
+
+    /**
+     * 儲存新批次並配發 ID。
+     *
+     * @param batch 新批次（{@code id} 為 null）
+     * @return 含 ID 的批次
+     */
+    RawEventBatch save(RawEventBatch batch);
+
+    /**
+     * 查詢尚未結算的批次（含完整事件），依建立時間升序排列。
+     *
+     * @return 未結算的批次
+     */
+    List<RawEventBatch> findUnprocessed();
+
+    /**
+     * 查詢尚未結算的批次摘要。
+     *
+     * <p>只保證 {@code id}、{@code eventCount} 與 {@code deltas} 有值，實作可不載入 {@code events}。
+     *
+     * @return 未結算的批次摘要
+     */
+    List<RawEventBatch> findUnprocessedSummaries();
+
+    /**
+     * 依 ID 查詢批次（含完整事件）。
+     *
+     * @param ids 批次 ID
+     * @return 存在的批次，順序不保證
+     */
+    List<RawEventBatch> findAllById(Collection<String> ids);
+
+    /**
+     * 標記批次已結算。
+     *
+     * @param batchId 批次 ID
+     */
+    void markProcessed(String batchId);
+}
@@ -0,0 +1,146 @@
+package io.github.samzhu.ledger.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+
+/**
+ * Keyset 分頁游標編解碼工具類。
+ *
+ * <p>將 Spring Data {@link KeysetScrollPosition} 的鍵值（排序欄位 + {@code _id}）
+ * 編碼為不透明字串，供 API 以 {@code cursor} 參數往返：
+ * <ul>
+ *   <li>下一頁以 {@code (sortKey, _id) > last} 條件查詢，走索引 seek，成本與頁數無關</li>
+ *   <li>不執行 {@code count} 查詢，以多取一筆判斷是否還有下一頁</li>
+ * </ul>
+ *
+ * <p>格式為 URL-safe Base64 的 {@code key \u001F type \u001F value} 列，
+ * 型別保留 MongoDB 原始值型別（字串、數值、日期、ObjectId），確保條件比較正確。
+ *
+ * @see <a href="https://docs.spring.io/spring-data/mongodb/reference/repositories/scrolling.html">Scrolling</a>
+ */
+public final class KeysetCursor {
+
+    private static final String FIELD_SEPARATOR = "\u001F";
+    private static final String ENTRY_SEPARATOR = "\u001E";
+
+    private KeysetCursor() {
+        // 工具類不允許實例化
+    }
+
+    /**
+     * 解析游標為捲動位置。
+     *
+     * @param cursor 游標字串，null 或空白表示第一頁
+     * @return 捲動位置
+     * @throws IllegalArgumentException 游標格式錯誤
+     */
+    public static KeysetScrollPosition decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return ScrollPosition.keyset();
+        }
+
+        String payload;
+        try {
+            payload = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+
+        Map<String, Object> keys = new LinkedHashMap<>();
+        for (String entry : payload.split(ENTRY_SEPARATOR)) {
+            String[] parts = entry.split(FIELD_SEPARATOR, 3);
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            keys.put(parts[0], decodeValue(parts[1], parts[2]));
+        }
+        return ScrollPosition.forward(keys);
+    }
+
+    /**
+     * 取得下一頁游標。
+     *
+     * @param window 查詢結果視窗
+     * @return 下一頁游標；已是最後一頁時回傳 null
+     */
+    public static String next(Window<?> window) {
+        if (window.isEmpty() || !window.hasNext()) {
+            return null;
+        }
+        ScrollPosition position = window.positionAt(window.size() - 1);
+        if (!(position instanceof KeysetScrollPosition keyset)) {
+            return null;
+        }
+        return encode(keyset.getKeys());
+    }
+
+    static String encode(Map<String, ?> keys) {
+        StringBuilder payload = new StringBuilder();
+        for (Map.Entry<String, ?> entry : keys.entrySet()) {
+            if (!payload.isEmpty()) {
+                payload.append(ENTRY_SEPARATOR);
+            }
+            payload.append(entry.getKey()).append(FIELD_SEPARATOR);
+            appendValue(payload, entry.getValue());
+        }
+        return Base64.getUrlEncoder().withoutPadding()
+            .encodeToString(payload.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void appendValue(StringBuilder payload, Object value) {
+        if (value == null) {
+            payload.append('n').append(FIELD_SEPARATOR);
+        } else if (value instanceof Date date) {
+            payload.append('t').append(FIELD_SEPARATOR).append(date.getTime());
+        } else if (value instanceof Instant instant) {
+            payload.append('t').append(FIELD_SEPARATOR).append(instant.toEpochMilli());
+        } else if (value instanceof ObjectId objectId) {
+            payload.append('o').append(FIELD_SEPARATOR).append(objectId.toHexString());
+        } else if (value instanceof Integer number) {
+            payload.append('i').append(FIELD_SEPARATOR).append(number);
+        } else if (value instanceof Long number) {
+            payload.append('l').append(FIELD_SEPARATOR).append(number);
+        } else if (value instanceof Number number) {
+            payload.append('d').append(FIELD_SEPARATOR).append(number.doubleValue());
+        } else if (value instanceof Boolean bool) {
+            payload.append('b').append(FIELD_SEPARATOR).append(bool);
+        } else {
+            payload.append('s').append(FIELD_SEPARATOR).append(value);
+        }
+    }
+
+    private static Object decodeValue(String type, String value) {
+        try {
+            return switch (type) {
+                case "n" -> null;
+                case "t" -> new Date(Long.parseLong(value));
+                case "o" -> new ObjectId(value);
+                case "i" -> Integer.parseInt(value);
+                case "l" -> Long.parseLong(value);
+                case "d" -> Double.parseDouble(value);
+                case "b" -> parseBoolean(value);
+                case "s" -> value;
+                default -> throw new IllegalArgumentException("Invalid cursor");
+            };
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    private static boolean parseBoolean(String value) {
+        return switch (value) {
+            case "true" -> true;
+            case "false" -> false;
+            default -> throw new IllegalArgumentException("Invalid cursor");
+        };
+    }
+}
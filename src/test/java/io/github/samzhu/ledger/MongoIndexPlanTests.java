@@ -0,0 +1,52 @@
+package io.github.samzhu.ledger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+
+import io.github.samzhu.ledger.config.MongoIndexInitializer;
+import io.github.samzhu.ledger.config.MongoIndexInitializer.EnsureResult;
+import io.github.samzhu.ledger.config.MongoIndexInitializer.IndexStatus;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest
+class MongoIndexPlanTests {
+
+    @Autowired
+    private MongoIndexInitializer indexInitializer;
+
+    @Test
+    void shouldCreateAllRegisteredIndexes() {
+        // When
+        List<EnsureResult> results = indexInitializer.ensureAll();
+
+        // Then
+        assertThat(results).allSatisfy(result ->
+            assertThat(result.error()).as("%s.%s", result.collection(), result.name()).isNull());
+        assertThat(indexInitializer.status()).allSatisfy(status ->
+            assertThat(status.present()).as("%s.%s", status.collection(), status.name()).isTrue());
+    }
+
+    @Test
+    void registeredQueriesShouldNotScanCollections() {
+        // Given
+        indexInitializer.ensureAll();
+
+        // When
+        List<IndexStatus> statuses = indexInitializer.status();
+
+        // Then - 查詢形態退化為 COLLSCAN 即失敗，避免新查詢缺索引上線
+        assertThat(statuses).allSatisfy(status ->
+            assertThat(status.collectionScan())
+                .as("%s.%s (%s) uses %s", status.collection(), status.name(), status.purpose(), status.usedIndexes())
+                .isFalse());
+        assertThat(statuses)
+            .filteredOn(status -> !status.usedIndexes().isEmpty())
+            .isNotEmpty();
+    }
+}
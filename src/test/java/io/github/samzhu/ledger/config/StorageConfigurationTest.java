@@ -0,0 +1,58 @@
+package io.github.samzhu.ledger.config;
+
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.samzhu.ledger.config.LedgerProperties.ExportConfig;
+import io.github.samzhu.ledger.config.LedgerProperties.RawRetentionConfig;
+
+class StorageConfigurationTest {
+
+    @Test
+    void shouldRejectEmbeddedBackendWithRawRetention() {
+        // Given: 冷儲存搬移預設啟用
+        LedgerProperties properties = properties(RawRetentionConfig.defaults(), ExportConfig.defaults());
+
+        // When / Then
+        assertThatThrownBy(() -> StorageConfiguration.requireNoRawRetention(properties))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining("ledger.raw-retention.enabled=false");
+    }
+
+    @Test
+    void shouldRejectEmbeddedBackendWithOfflineExport() {
+        // Given
+        LedgerProperties properties = properties(retention(false),
+            new ExportConfig(true, "./export", "0 45 * * * *", 31));
+
+        // When / Then
+        assertThatThrownBy(() -> StorageConfiguration.requireNoRawRetention(properties))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining("ledger.export.enabled=false");
+    }
+
+    @Test
+    void shouldAcceptEmbeddedBackendWhenRetentionAndExportDisabled() {
+        // Given
+        LedgerProperties properties = properties(retention(false), ExportConfig.defaults());
+
+        // When / Then
+        assertThatCode(() -> StorageConfiguration.requireNoRawRetention(properties)).doesNotThrowAnyException();
+    }
+
+    private static RawRetentionConfig retention(boolean enabled) {
+        RawRetentionConfig d = RawRetentionConfig.defaults();
+        return new RawRetentionConfig(enabled, d.hotDays(), d.cron(), d.graceHours(), d.segmentMaxMb(), d.maxDaysPerRun());
+    }
+
+    private static LedgerProperties properties(RawRetentionConfig rawRetention, ExportConfig export) {
+        LedgerProperties p = LedgerProperties.defaults(Map.of());
+        return new LedgerProperties(p.batch(), p.pricing(), p.latency(), p.quota(), p.rollover(), p.hourly(),
+            p.finalization(), p.watermark(), p.cache(), p.errors(), p.quotaSnapshot(), export, p.httpCache(),
+            p.overlay(), rawRetention, p.counterSharding(), p.storage());
+    }
+}
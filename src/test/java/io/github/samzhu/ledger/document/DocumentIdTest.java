@@ -2,7 +2,9 @@ package io.github.samzhu.ledger.document;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.YearMonth;
 
 import org.junit.jupiter.api.Test;
 
@@ -58,4 +60,40 @@ class DocumentIdTest {
         // Then
         assertThat(id).isEqualTo("2025-06-15_user@example.com");
     }
+
+    @Test
+    void monthlyUsageShouldCreateZeroPaddedId() {
+        // Given
+        YearMonth month = YearMonth.of(2025, 3);
+
+        // When & Then
+        assertThat(MonthlyUserUsage.createId(month, "test-user")).isEqualTo("2025-03_test-user");
+        assertThat(MonthlyModelUsage.createId(month, "claude-sonnet-4-20250514"))
+            .isEqualTo("2025-03_claude-sonnet-4-20250514");
+    }
+
+    @Test
+    void hourlyUsageShouldTruncateToUtcHour() {
+        // Given
+        Instant eventTime = Instant.parse("2025-12-09T14:37:12Z");
+
+        // When
+        String id = HourlyUsage.createId(eventTime, HourlyUsage.DIMENSION_MODEL, "claude-sonnet-4-20250514");
+
+        // Then
+        assertThat(id).isEqualTo("2025-12-09T14_model_claude-sonnet-4-20250514");
+    }
+
+    @Test
+    void dailyUserModelUsageShouldAppendNumericModelId() {
+        // Given
+        String usageId = DailyUserUsage.createId(LocalDate.of(2025, 12, 9), "user_a");
+
+        // When
+        String id = DailyUserModelUsage.createId(usageId, 7);
+
+        // Then - 以日期開頭，月聚合可沿用 _id 範圍比對
+        assertThat(id).isEqualTo("2025-12-09_user_a_7");
+        assertThat(id).startsWith("2025-12-09_");
+    }
 }
@@ -12,7 +12,6 @@ import org.junit.jupiter.api.Test;
 
 import io.github.samzhu.ledger.config.LedgerProperties;
 import io.github.samzhu.ledger.exception.UnknownModelPricingException;
-import io.github.samzhu.ledger.config.LedgerProperties.BatchConfig;
 import io.github.samzhu.ledger.config.LedgerProperties.ModelPricing;
 import io.github.samzhu.ledger.dto.UsageEventData;
 
@@ -44,12 +43,7 @@ class CostCalculationServiceTest {
             )
         );
 
-        LedgerProperties properties = new LedgerProperties(
-            new BatchConfig(1000, "0 0,30 * * * *", "0 0 * * * *"),
-            pricing,
-            new LedgerProperties.LatencyConfig(100),
-            new LedgerProperties.QuotaConfig(0, java.math.BigDecimal.ZERO, "MONTHLY")
-        );
+        LedgerProperties properties = LedgerProperties.defaults(pricing);
 
         costService = new CostCalculationService(properties);
     }
@@ -126,6 +120,18 @@ class CostCalculationServiceTest {
             .hasMessageContaining("trace-1");
     }
 
+    @Test
+    void shouldEstimateZeroCostForUnknownModel() {
+        // Given: unknown model (non-null but not configured)
+        UsageEventData event = createEvent(
+            "unknown-model",
+            1000, 500, 0, 0
+        );
+
+        // When/Then: estimate should not throw
+        assertThat(costService.estimateCost(event)).isEqualByComparingTo(BigDecimal.ZERO);
+    }
+
     @Test
     void shouldReturnZeroForNullModel() {
         // Given: null model (error event)
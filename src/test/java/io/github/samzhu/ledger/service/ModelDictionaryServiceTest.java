@@ -0,0 +1,109 @@
+package io.github.samzhu.ledger.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import io.github.samzhu.ledger.document.ModelDictionary;
+
+class ModelDictionaryServiceTest {
+
+    private MongoTemplate mongoTemplate;
+    private ModelDictionaryService service;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        service = new ModelDictionaryService(mongoTemplate);
+    }
+
+    @Test
+    void shouldRewriteDotsAndDollarsInFieldKey() {
+        // When / Then
+        assertThat(ModelDictionaryService.fieldKey("gpt-4.1")).isEqualTo("gpt-4_1");
+        assertThat(ModelDictionaryService.fieldKey("a.b$c")).isEqualTo("a_b_c");
+        assertThat(ModelDictionaryService.fieldKey("claude-sonnet-4-20250514")).isEqualTo("claude-sonnet-4-20250514");
+    }
+
+    @Test
+    void shouldRestoreDottedModelNameFromDictionary() {
+        // Given
+        givenDictionary("gpt-4.1", "claude-sonnet-4-20250514");
+
+        // When / Then
+        assertThat(service.legacyModelName("gpt-4_1")).isEqualTo("gpt-4.1");
+    }
+
+    @Test
+    void shouldReturnKeyWithoutUnderscoreAsIs() {
+        // When
+        String name = service.legacyModelName("claude-sonnet-4-20250514");
+
+        // Then: 不可能是改寫過的 key，不讀取字典
+        assertThat(name).isEqualTo("claude-sonnet-4-20250514");
+        verify(mongoTemplate, never()).findAll(ModelDictionary.class);
+    }
+
+    @Test
+    void shouldPreferExactModelNameContainingUnderscore() {
+        // Given: 字典同時有 "a_b" 與 "a.b"
+        givenDictionary("a.b", "a_b");
+
+        // When / Then
+        assertThat(service.legacyModelName("a_b")).isEqualTo("a_b");
+    }
+
+    @Test
+    void shouldKeepUnknownKeyAndReadDictionaryOnce() {
+        // Given
+        givenDictionary("gpt-4.1");
+
+        // When
+        String first = service.legacyModelName("retired_model");
+        String second = service.legacyModelName("retired_model");
+        String known = service.legacyModelName("gpt-4_1");
+
+        // Then: 找不到的 key 原樣回傳，重新讀取字典有間隔限制
+        assertThat(first).isEqualTo("retired_model");
+        assertThat(second).isEqualTo("retired_model");
+        assertThat(known).isEqualTo("gpt-4.1");
+        verify(mongoTemplate, times(1)).findAll(ModelDictionary.class);
+    }
+
+    @Test
+    void shouldResolvePreviouslyUnknownKeyOnceModelIsRegistered() {
+        // Given: 查詢時字典尚無此模型
+        givenDictionary("gpt-4.1");
+        assertThat(service.legacyModelName("gpt-4_5")).isEqualTo("gpt-4_5");
+
+        // When: 之後結算登錄了該模型
+        when(mongoTemplate.find(any(Query.class), eq(ModelDictionary.class)))
+            .thenReturn(List.of(new ModelDictionary("gpt-4.5", 2, Instant.EPOCH)));
+        service.idOf("gpt-4.5");
+
+        // Then: 未命中沒有被快取，立即可還原
+        assertThat(service.legacyModelName("gpt-4_5")).isEqualTo("gpt-4.5");
+    }
+
+    private void givenDictionary(String... models) {
+        List<ModelDictionary> entries = new ArrayList<>();
+        for (int i = 0; i < models.length; i++) {
+            entries.add(new ModelDictionary(models[i], i + 1, Instant.EPOCH));
+        }
+        when(mongoTemplate.findAll(ModelDictionary.class)).thenReturn(entries);
+    }
+}
@@ -0,0 +1,70 @@
+package io.github.samzhu.ledger.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.github.samzhu.ledger.document.RawEventBatch.UsageDelta;
+import io.github.samzhu.ledger.service.PendingUsageService.PendingUsage;
+import io.github.samzhu.ledger.storage.RawBatchStore;
+
+class PendingUsageServiceTest {
+
+    private static final String MODEL = "claude-sonnet-4-20250514";
+
+    private PendingUsageService service;
+    private LocalDate today;
+
+    @BeforeEach
+    void setUp() {
+        RawBatchStore rawBatchStore = mock(RawBatchStore.class);
+        // 背景重新讀取失敗時保留舊索引，索引只會因事件而改變
+        when(rawBatchStore.findUnprocessedSummaries()).thenThrow(new IllegalStateException("unavailable"));
+        service = new PendingUsageService(rawBatchStore, mock(EventBufferService.class),
+            mock(CostCalculationService.class));
+        today = LocalDate.now(ZoneOffset.UTC);
+    }
+
+    @Test
+    void shouldDropSettledBatchesSynchronously() {
+        // Given: 本實例 flush 的兩個批次
+        service.onBatchFlushed(new BatchFlushedEvent("batch-1", List.of(delta(1, "0.50"))));
+        service.onBatchFlushed(new BatchFlushedEvent("batch-2", List.of(delta(2, "0.25"))));
+
+        // When: batch-1 結算完成
+        service.onSettlementCompleted(new SettlementCompletedEvent(
+            Set.of("alice"), Set.of(MODEL), Set.of(today), Set.of("batch-1")));
+
+        // Then: 不等背景重新讀取，已結算批次立即不再計入
+        PendingUsage pending = service.userPeriod("alice", YearMonth.from(today));
+        assertThat(pending.requestCount()).isEqualTo(2);
+        assertThat(pending.costUsd()).isEqualByComparingTo("0.25");
+    }
+
+    @Test
+    void shouldKeepIndexWhenNoBatchWasSettled() {
+        // Given
+        service.onBatchFlushed(new BatchFlushedEvent("batch-1", List.of(delta(1, "0.50"))));
+
+        // When: 只重試分片合併的結算完成事件
+        service.onSettlementCompleted(new SettlementCompletedEvent(Set.of(), Set.of(), Set.of(today), Set.of()));
+
+        // Then
+        assertThat(service.userPeriod("alice", YearMonth.from(today)).requestCount()).isEqualTo(1);
+    }
+
+    private UsageDelta delta(int requests, String cost) {
+        return new UsageDelta("alice", MODEL, today, requests, 100L * requests, 50L * requests,
+            150L * requests, new BigDecimal(cost));
+    }
+}
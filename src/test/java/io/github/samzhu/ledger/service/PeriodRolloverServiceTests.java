@@ -0,0 +1,155 @@
+package io.github.samzhu.ledger.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import io.github.samzhu.ledger.TestcontainersConfiguration;
+import io.github.samzhu.ledger.document.DailyUserModelUsage;
+import io.github.samzhu.ledger.document.DailyUserUsage;
+import io.github.samzhu.ledger.document.MonthlyUserUsage;
+import io.github.samzhu.ledger.document.QuotaHistory;
+import io.github.samzhu.ledger.document.UserQuota;
+import io.github.samzhu.ledger.dto.api.QuotaHistoryResponse;
+import io.github.samzhu.ledger.util.PeriodUtils;
+
+/**
+ * 換月歸檔的模型分布：含 {@code .} 的模型不論來自月彙總或日用量，都只歸檔一次。
+ */
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest
+class PeriodRolloverServiceTests {
+
+    private static final String DOTTED_MODEL = "claude-3.5-sonnet";
+    private static final String DOTTED_KEY = "claude-3_5-sonnet";
+    private static final String PLAIN_MODEL = "claude-sonnet-4-20250514";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private PeriodRolloverService rolloverService;
+
+    @Autowired
+    private ModelDictionaryService modelDictionary;
+
+    private YearMonth period;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate.getCollectionNames().forEach(name -> mongoTemplate.remove(new Query(), name));
+        modelDictionary.idsOf(List.of(DOTTED_MODEL, PLAIN_MODEL));
+        period = YearMonth.now(ZoneOffset.UTC).minusMonths(1);
+    }
+
+    @Test
+    void shouldRestoreDottedModelFromMonthlyRollup() {
+        // Given: 月彙總完整，key 為改寫後的模型名稱
+        givenQuota("alice", 3);
+        mongoTemplate.insert(new Document("_id", MonthlyUserUsage.createId(period, "alice"))
+            .append("year", period.getYear())
+            .append("month", period.getMonthValue())
+            .append("userId", "alice")
+            .append("requestCount", 3)
+            .append("modelBreakdown", new Document()
+                .append(DOTTED_KEY, breakdown(100, 50, 0.5))
+                .append(PLAIN_MODEL, breakdown(20, 10, 0.1))),
+            "monthly_user_usage");
+
+        // When
+        rolloverService.rollover();
+
+        // Then: 以欄位名稱格式歸檔，回應還原為原始名稱
+        QuotaHistory history = history("alice");
+        assertThat(history.modelTokens()).containsOnly(
+            Map.entry(DOTTED_KEY, 150L), Map.entry(PLAIN_MODEL, 30L));
+        assertThat(history.modelCosts().get(DOTTED_KEY)).isCloseTo(0.5, within(1e-9));
+        assertThat(responseModels(history)).containsOnlyKeys(DOTTED_MODEL, PLAIN_MODEL);
+    }
+
+    @Test
+    void shouldMergeLegacyAndChildDocumentsInDailyFallback() {
+        // Given: 無月彙總；同一模型分別在舊文件（改寫後 key）與子文件（原始名稱）
+        givenQuota("bob", 2);
+        String legacyDay = period.atDay(5).toString();
+        mongoTemplate.insert(new Document("_id", legacyDay + "_bob")
+            .append("userId", "bob")
+            .append("requestCount", 1)
+            .append("modelBreakdown", new Document(DOTTED_KEY, breakdown(10, 5, 0.1))),
+            "daily_user_usage");
+        String usageId = DailyUserUsage.createId(period.atDay(6), "bob");
+        mongoTemplate.insert(new Document("_id", usageId)
+            .append("userId", "bob")
+            .append("requestCount", 1),
+            "daily_user_usage");
+        mongoTemplate.insert(new Document("_id",
+                DailyUserModelUsage.createId(usageId, modelDictionary.idOf(DOTTED_MODEL)))
+            .append("usageId", usageId)
+            .append("userId", "bob")
+            .append("model", DOTTED_MODEL)
+            .append("inputTokens", 20L)
+            .append("outputTokens", 10L)
+            .append("costUsd", 0.2),
+            "daily_user_model_usage");
+
+        // When
+        rolloverService.rollover();
+
+        // Then: 兩處的用量合併為同一模型
+        QuotaHistory history = history("bob");
+        assertThat(history.modelTokens()).containsOnly(Map.entry(DOTTED_KEY, 45L));
+        assertThat(history.modelCosts().get(DOTTED_KEY)).isCloseTo(0.3, within(1e-9));
+        assertThat(responseModels(history)).containsOnlyKeys(DOTTED_MODEL);
+    }
+
+    private void givenQuota(String userId, int requestCount) {
+        Instant start = PeriodUtils.getPeriodStart(period.getYear(), period.getMonthValue());
+        mongoTemplate.insert(UserQuota.builder()
+            .userId(userId)
+            .periodYear(period.getYear())
+            .periodMonth(period.getMonthValue())
+            .periodStartAt(start)
+            .periodEndAt(PeriodUtils.getPeriodEnd(period.getYear(), period.getMonthValue()))
+            .periodRequestCount(requestCount)
+            .totalRequestCount(requestCount)
+            .firstSeenAt(start)
+            .lastActiveAt(start)
+            .lastUpdatedAt(start)
+            .build());
+    }
+
+    private QuotaHistory history(String userId) {
+        QuotaHistory history = mongoTemplate.findOne(Query.query(Criteria.where("userId").is(userId)
+            .and("periodYear").is(period.getYear())
+            .and("periodMonth").is(period.getMonthValue())), QuotaHistory.class);
+        assertThat(history).isNotNull();
+        return history;
+    }
+
+    private Map<String, QuotaHistoryResponse.ModelDetail> responseModels(QuotaHistory history) {
+        return QuotaHistoryResponse.fromHistoryList(history.userId(), List.of(history), null,
+                modelDictionary::legacyModelName)
+            .history().getFirst().modelBreakdown();
+    }
+
+    private static Document breakdown(long input, long output, double cost) {
+        return new Document("inputTokens", input)
+            .append("outputTokens", output)
+            .append("costUsd", cost);
+    }
+}
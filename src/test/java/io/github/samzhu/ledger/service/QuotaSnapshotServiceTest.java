@@ -0,0 +1,307 @@
+package io.github.samzhu.ledger.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import io.github.samzhu.ledger.config.LedgerProperties;
+import io.github.samzhu.ledger.document.UserQuota;
+import io.github.samzhu.ledger.service.PendingUsageService.PendingUsage;
+import io.github.samzhu.ledger.service.QuotaSnapshotService.QuotaCheck;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class QuotaSnapshotServiceTest {
+
+    private static final String COLLECTION = "user_quota";
+
+    private MongoTemplate mongoTemplate;
+    private PendingUsageService pendingUsageService;
+    private QuotaSnapshotService service;
+    private YearMonth current;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        pendingUsageService = mock(PendingUsageService.class);
+        when(mongoTemplate.getCollectionName(UserQuota.class)).thenReturn(COLLECTION);
+        when(pendingUsageService.userPeriod(anyString(), any(YearMonth.class))).thenReturn(PendingUsage.EMPTY);
+
+        service = new QuotaSnapshotService(mongoTemplate, pendingUsageService,
+            LedgerProperties.defaults(Map.of()), new SimpleMeterRegistry());
+        current = YearMonth.now(ZoneOffset.UTC);
+    }
+
+    @Test
+    void shouldTreatUnknownUserAsUnlimited() {
+        // Given: user_quota 中沒有此用戶
+        givenUsers();
+
+        // When
+        QuotaCheck check = service.check("ghost", false);
+
+        // Then
+        assertThat(check.allowed()).isTrue();
+        assertThat(check.status()).isEqualTo(QuotaCheck.UNLIMITED);
+        assertThat(check.remainingUsd()).isNull();
+        assertThat(check.periodToken()).isEqualTo(current.toString());
+    }
+
+    @Test
+    void shouldTreatDisabledQuotaAsUnlimited() {
+        // Given: 有上限且已超額，但未啟用配額
+        givenUsers(quota("alice", false, 10.0, 0.0, 50.0, current));
+
+        // When
+        QuotaCheck check = service.check("alice", false);
+
+        // Then
+        assertThat(check.allowed()).isTrue();
+        assertThat(check.status()).isEqualTo(QuotaCheck.UNLIMITED);
+        assertThat(check.remainingUsd()).isNull();
+    }
+
+    @Test
+    void shouldTreatZeroLimitAsUnlimited() {
+        // Given: 啟用配額但上限與額外額度皆為 0
+        givenUsers(quota("alice", true, 0.0, 0.0, 50.0, current));
+
+        // When
+        QuotaCheck check = service.check("alice", false);
+
+        // Then
+        assertThat(check.allowed()).isTrue();
+        assertThat(check.status()).isEqualTo(QuotaCheck.UNLIMITED);
+    }
+
+    @Test
+    void shouldAllowWhenUnderLimitIncludingBonus() {
+        // Given: 上限 10 + 額外額度 5，當期已用 12
+        givenUsers(quota("alice", true, 10.0, 5.0, 12.0, current));
+
+        // When
+        QuotaCheck check = service.check("alice", false);
+
+        // Then
+        assertThat(check.allowed()).isTrue();
+        assertThat(check.status()).isEqualTo(QuotaCheck.OK);
+        assertThat(check.remainingUsd()).isCloseTo(3.0, within(1e-9));
+    }
+
+    @Test
+    void shouldRejectWhenRemainingIsExactlyZero() {
+        // Given: 當期已用剛好等於上限
+        givenUsers(quota("alice", true, 10.0, 0.0, 10.0, current));
+
+        // When
+        QuotaCheck check = service.check("alice", false);
+
+        // Then: remaining <= 0 即拒絕
+        assertThat(check.allowed()).isFalse();
+        assertThat(check.status()).isEqualTo(QuotaCheck.EXCEEDED);
+        assertThat(check.remainingUsd()).isZero();
+    }
+
+    @Test
+    void shouldClampRemainingToZeroWhenOverLimit() {
+        // Given: 當期已用超過上限
+        givenUsers(quota("alice", true, 10.0, 0.0, 25.0, current));
+
+        // When
+        QuotaCheck check = service.check("alice", false);
+
+        // Then
+        assertThat(check.allowed()).isFalse();
+        assertThat(check.status()).isEqualTo(QuotaCheck.EXCEEDED);
+        assertThat(check.remainingUsd()).isZero();
+    }
+
+    @Test
+    void shouldIgnorePeriodCostFromPreviousPeriod() {
+        // Given: 快照仍是上個月（換月尚未執行），當期成本已超額
+        givenUsers(quota("alice", true, 10.0, 0.0, 25.0, current.minusMonths(1)));
+
+        // When
+        QuotaCheck check = service.check("alice", false);
+
+        // Then: 視為新週期，成本歸零
+        assertThat(check.allowed()).isTrue();
+        assertThat(check.status()).isEqualTo(QuotaCheck.OK);
+        assertThat(check.remainingUsd()).isCloseTo(10.0, within(1e-9));
+    }
+
+    @Test
+    void shouldIgnorePeriodCostFromSameMonthOfPreviousYear() {
+        // Given: 月份相同但年份不同
+        givenUsers(quota("alice", true, 10.0, 0.0, 25.0, current.minusYears(1)));
+
+        // When
+        QuotaCheck check = service.check("alice", false);
+
+        // Then
+        assertThat(check.allowed()).isTrue();
+        assertThat(check.remainingUsd()).isCloseTo(10.0, within(1e-9));
+    }
+
+    @Test
+    void shouldAddPendingCostWhenOverlayRequested() {
+        // Given: 已結算 4、未結算 5
+        givenUsers(quota("alice", true, 10.0, 0.0, 4.0, current));
+        givenPending("alice", "5");
+
+        // When
+        QuotaCheck check = service.check("alice", true);
+
+        // Then
+        assertThat(check.allowed()).isTrue();
+        assertThat(check.remainingUsd()).isCloseTo(1.0, within(1e-9));
+        verify(pendingUsageService).userPeriod("alice", current);
+    }
+
+    @Test
+    void shouldRejectWhenPendingCostExhaustsQuota() {
+        // Given: 已結算部分尚未超額，加上未結算後超額
+        givenUsers(quota("alice", true, 10.0, 0.0, 4.0, current));
+        givenPending("alice", "6");
+
+        // When
+        QuotaCheck check = service.check("alice", true);
+
+        // Then
+        assertThat(check.allowed()).isFalse();
+        assertThat(check.status()).isEqualTo(QuotaCheck.EXCEEDED);
+        assertThat(check.remainingUsd()).isZero();
+    }
+
+    @Test
+    void shouldAddPendingCostOnTopOfFreshPeriod() {
+        // Given: 快照為上個月，只剩未結算成本計入當期
+        givenUsers(quota("alice", true, 10.0, 0.0, 25.0, current.minusMonths(1)));
+        givenPending("alice", "3");
+
+        // When
+        QuotaCheck check = service.check("alice", true);
+
+        // Then
+        assertThat(check.remainingUsd()).isCloseTo(7.0, within(1e-9));
+    }
+
+    @Test
+    void shouldSkipPendingLookupWhenOverlayNotRequested() {
+        // Given
+        givenUsers(quota("alice", true, 10.0, 0.0, 4.0, current));
+        givenPending("alice", "100");
+
+        // When
+        QuotaCheck check = service.check("alice", false);
+
+        // Then
+        assertThat(check.allowed()).isTrue();
+        assertThat(check.remainingUsd()).isCloseTo(6.0, within(1e-9));
+        verify(pendingUsageService, never()).userPeriod(anyString(), any(YearMonth.class));
+    }
+
+    @Test
+    void shouldOverlayPendingByDefault() {
+        // Given: ledger.overlay.quota-check 預設為 true
+        givenUsers(quota("alice", true, 10.0, 0.0, 4.0, current));
+        givenPending("alice", "6");
+
+        // When
+        QuotaCheck check = service.check("alice");
+
+        // Then
+        assertThat(check.allowed()).isFalse();
+    }
+
+    @Test
+    void shouldReadDecimal128Amounts() {
+        // Given: 金額以 Decimal128 儲存
+        Document doc = quota("alice", true, 0.0, 0.0, 0.0, current)
+            .append("costLimitUsd", new Decimal128(new BigDecimal("10.50")))
+            .append("bonusCostUsd", new Decimal128(new BigDecimal("1.25")))
+            .append("periodCostUsd", new Decimal128(new BigDecimal("2.75")));
+        givenUsers(doc);
+
+        // When
+        QuotaCheck check = service.check("alice", false);
+
+        // Then
+        assertThat(check.remainingUsd()).isCloseTo(9.0, within(1e-9));
+    }
+
+    @Test
+    void shouldServeFromSnapshotAfterReload() {
+        // Given: 全量載入後
+        when(mongoTemplate.stream(any(Query.class), eq(Document.class), eq(COLLECTION)))
+            .thenReturn(Stream.of(quota("alice", true, 10.0, 0.0, 4.0, current)));
+        service.reload();
+
+        // When
+        QuotaCheck known = service.check("alice", false);
+        QuotaCheck unknown = service.check("ghost", false);
+
+        // Then: 已載入時不再逐筆查詢，未在快照中的用戶視為無限制
+        assertThat(known.remainingUsd()).isCloseTo(6.0, within(1e-9));
+        assertThat(unknown.status()).isEqualTo(QuotaCheck.UNLIMITED);
+        assertThat(known.snapshotVersion()).isEqualTo(1L);
+        verify(mongoTemplate, never()).find(any(Query.class), eq(Document.class), eq(COLLECTION));
+    }
+
+    @Test
+    void shouldDropRemovedUsersOnRefresh() {
+        // Given: 快照中原有 alice，之後文件被刪除
+        when(mongoTemplate.stream(any(Query.class), eq(Document.class), eq(COLLECTION)))
+            .thenReturn(Stream.of(quota("alice", true, 10.0, 0.0, 25.0, current)));
+        service.reload();
+        givenUsers();
+
+        // When
+        service.refresh(List.of("alice"));
+        QuotaCheck check = service.check("alice", false);
+
+        // Then
+        assertThat(check.status()).isEqualTo(QuotaCheck.UNLIMITED);
+        assertThat(check.snapshotVersion()).isEqualTo(2L);
+    }
+
+    private void givenUsers(Document... docs) {
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq(COLLECTION)))
+            .thenReturn(List.of(docs));
+    }
+
+    private void givenPending(String userId, String costUsd) {
+        when(pendingUsageService.userPeriod(userId, current))
+            .thenReturn(new PendingUsage(1, 0, 0, 0, new BigDecimal(costUsd)));
+    }
+
+    private static Document quota(String userId, boolean enabled, double limit, double bonus,
+            double periodCost, YearMonth period) {
+        return new Document("userId", userId)
+            .append("quotaEnabled", enabled)
+            .append("costLimitUsd", limit)
+            .append("bonusCostUsd", bonus)
+            .append("periodCostUsd", periodCost)
+            .append("periodYear", period.getYear())
+            .append("periodMonth", period.getMonthValue());
+    }
+}
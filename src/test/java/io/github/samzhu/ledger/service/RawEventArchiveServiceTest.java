@@ -0,0 +1,197 @@
+package io.github.samzhu.ledger.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import io.github.samzhu.ledger.config.LedgerProperties;
+import io.github.samzhu.ledger.document.RawEventArchive;
+
+class RawEventArchiveServiceTest {
+
+    private static final LocalDate DATE = LocalDate.of(2026, 3, 15);
+    private static final Instant ARCHIVED_AT = Instant.parse("2026-04-20T03:30:00Z");
+
+    @Test
+    void shouldRoundTripBatchesThroughSegment() throws IOException {
+        // Given: 多個批次，含巢狀事件、Decimal128、日期與 long
+        Document first = batch(new ObjectId(), 3);
+        Document second = batch(new ObjectId(), 1);
+        Document third = batch(new ObjectId(), 2);
+
+        // When
+        RawEventArchive archive = segment(first, second, third);
+        List<Document> decoded = RawEventArchiveService.decode(archive.payload());
+
+        // Then: 依寫入順序還原，內容與原文件相同
+        assertThat(decoded).containsExactly(first, second, third);
+        assertThat(decoded.get(0).getList("events", Document.class).get(0).get("costUsd"))
+            .isEqualTo(new Decimal128(new BigDecimal("0.012345")));
+    }
+
+    @Test
+    void shouldRecordSegmentMetadata() throws IOException {
+        // Given
+        Document first = batch(new ObjectId(), 3);
+        Document second = batch(new ObjectId(), 2);
+        long rawBytes = RawEventArchiveService.encode(first).length + RawEventArchiveService.encode(second).length;
+
+        // When
+        RawEventArchive archive = segment(first, second);
+
+        // Then
+        String firstId = first.getObjectId("_id").toHexString();
+        assertThat(archive.id()).isEqualTo(RawEventArchive.createId(DATE, firstId));
+        assertThat(archive.date()).isEqualTo(DATE);
+        assertThat(archive.batchIds()).containsExactly(firstId, second.getObjectId("_id").toHexString());
+        assertThat(archive.batchCount()).isEqualTo(2);
+        assertThat(archive.eventCount()).isEqualTo(5);
+        assertThat(archive.codec()).isEqualTo(RawEventArchive.CODEC_BSON_GZIP);
+        assertThat(archive.rawBytes()).isEqualTo(rawBytes);
+        assertThat(archive.archivedAt()).isEqualTo(ARCHIVED_AT);
+    }
+
+    @Test
+    void shouldDecodeEmptySegment() throws IOException {
+        // Given: 合法但不含任何文件的 gzip
+        byte[] payload = gzip(new byte[0]);
+
+        // When / Then
+        assertThat(RawEventArchiveService.decode(payload)).isEmpty();
+    }
+
+    @Test
+    void shouldRejectPayloadThatIsNotGzip() {
+        // Given
+        byte[] payload = {1, 2, 3, 4, 5, 6, 7, 8};
+
+        // When / Then
+        assertThatThrownBy(() -> RawEventArchiveService.decode(payload))
+            .isInstanceOf(UncheckedIOException.class);
+    }
+
+    @Test
+    void shouldRejectTruncatedDocument() throws IOException {
+        // Given: 長度前綴宣稱的 bytes 多於實際內容
+        byte[] bson = RawEventArchiveService.encode(batch(new ObjectId(), 2));
+        byte[] payload = gzip(Arrays.copyOf(bson, bson.length - 10));
+
+        // When / Then
+        assertThatThrownBy(() -> RawEventArchiveService.decode(payload))
+            .isInstanceOf(UncheckedIOException.class);
+    }
+
+    @Test
+    void shouldRejectTruncatedGzipStream() throws IOException {
+        // Given: gzip 尾端被截斷
+        byte[] payload = segment(batch(new ObjectId(), 2)).payload();
+        byte[] truncated = Arrays.copyOf(payload, payload.length / 2);
+
+        // When / Then
+        assertThatThrownBy(() -> RawEventArchiveService.decode(truncated))
+            .isInstanceOf(UncheckedIOException.class);
+    }
+
+    @Test
+    void shouldDeduplicateBatchesAcrossRerunSegments() throws IOException {
+        // Given: 中斷重跑後，第二個區段重複包含已寫入的批次
+        Document first = batch(new ObjectId(), 1);
+        Document second = batch(new ObjectId(), 2);
+        Document third = batch(new ObjectId(), 3);
+        RawEventArchiveService service = serviceWith(segment(first, second), segment(second, third));
+
+        // When
+        List<Document> batches;
+        try (Stream<Document> stream = service.archivedBatches(DATE, DATE)) {
+            batches = stream.toList();
+        }
+
+        // Then: 每個批次只回傳一次，保持區段順序
+        assertThat(batches).containsExactly(first, second, third);
+    }
+
+    @Test
+    void shouldExpandDeduplicatedBatchesIntoEventRows() throws IOException {
+        // Given
+        Document first = batch(new ObjectId(), 1);
+        Document second = batch(new ObjectId(), 2);
+        RawEventArchiveService service = serviceWith(segment(first, second), segment(second));
+
+        // When
+        List<Document> rows;
+        try (Stream<Document> stream = service.archivedEventRows(DATE, DATE)) {
+            rows = stream.toList();
+        }
+
+        // Then: 重複批次的事件不會重複輸出，每列帶上 batchId
+        assertThat(rows).hasSize(3);
+        assertThat(rows).extracting(row -> row.get("batchId"))
+            .containsExactly(first.get("_id"), second.get("_id"), second.get("_id"));
+        assertThat(rows.get(1).getString("eventId")).isEqualTo("evt-0");
+    }
+
+    private static RawEventArchiveService serviceWith(RawEventArchive... segments) {
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.stream(any(Query.class), eq(RawEventArchive.class)))
+            .thenReturn(Stream.of(segments));
+        return new RawEventArchiveService(mongoTemplate, LedgerProperties.defaults(Map.of()));
+    }
+
+    private static RawEventArchive segment(Document... batches) throws IOException {
+        RawEventArchiveService.SegmentBuilder builder = new RawEventArchiveService.SegmentBuilder(DATE);
+        for (Document batch : batches) {
+            builder.add(batch, RawEventArchiveService.encode(batch));
+        }
+        return builder.build(ARCHIVED_AT);
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(content);
+        }
+        return out.toByteArray();
+    }
+
+    private static Document batch(ObjectId id, int eventCount) {
+        List<Document> events = new ArrayList<>();
+        for (int i = 0; i < eventCount; i++) {
+            events.add(new Document("eventId", "evt-" + i)
+                .append("userId", "user-" + i)
+                .append("model", "claude-sonnet-4-20250514")
+                .append("inputTokens", 1000L + i)
+                .append("outputTokens", 500)
+                .append("costUsd", new Decimal128(new BigDecimal("0.012345")))
+                .append("timestamp", new Date(1_773_532_800_000L + i)));
+        }
+        return new Document("_id", id)
+            .append("eventCount", eventCount)
+            .append("processed", true)
+            .append("createdAt", new Date(1_773_532_800_000L))
+            .append("events", events);
+    }
+}
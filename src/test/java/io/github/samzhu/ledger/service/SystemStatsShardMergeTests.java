@@ -0,0 +1,253 @@
+package io.github.samzhu.ledger.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import io.github.samzhu.ledger.TestcontainersConfiguration;
+import io.github.samzhu.ledger.config.LedgerProperties;
+import io.github.samzhu.ledger.config.LedgerProperties.CounterShardingConfig;
+import io.github.samzhu.ledger.document.SystemStats;
+import io.github.samzhu.ledger.document.SystemStatsShard;
+import io.github.samzhu.ledger.dto.UsageEventData;
+import io.github.samzhu.ledger.repository.UserQuotaRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * 分片計數器合併結果須與未分片的直接寫入路徑一致。
+ *
+ * <p>同一組事件分別走兩條路徑結算，比較 {@code system_stats} 的加總、比率、尖峰時段、獨立用戶與排行榜。
+ */
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest
+class SystemStatsShardMergeTests {
+
+    private static final int SHARDS = 4;
+    private static final int BATCHES = 12;
+    private static final int EVENTS_PER_BATCH = 5;
+    private static final List<String> MODELS = List.of(
+        "claude-sonnet-4-20250514", "claude-opus-4-20250514", "claude-haiku-3-5-20241022");
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private CostCalculationService costService;
+
+    @Autowired
+    private LatencyDigestService digestService;
+
+    @Autowired
+    private LedgerProperties properties;
+
+    @Autowired
+    private UserQuotaRepository userQuotaRepository;
+
+    @Autowired
+    private PeriodRolloverService periodRolloverService;
+
+    @Autowired
+    private ModelDictionaryService modelDictionary;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void clean() {
+        mongoTemplate.getCollectionNames().forEach(name -> mongoTemplate.remove(new Query(), name));
+    }
+
+    @Test
+    void mergedShardsShouldMatchUnshardedPath() {
+        // Given: 跨多個批次、用戶、模型與小時的事件，含失敗事件與 cache token
+        List<List<UsageEventData>> batches = batches();
+        Set<LocalDate> dates = batches.stream().flatMap(List::stream)
+            .map(e -> e.eventTime().atZone(ZoneOffset.UTC).toLocalDate())
+            .collect(Collectors.toSet());
+
+        // When: 未分片路徑
+        settle(new CounterShardingConfig(false, Map.of("system_stats", SHARDS)), batches);
+        Map<LocalDate, Document> unsharded = systemStats(dates);
+
+        // When: 分片路徑，結算後合併
+        clean();
+        SystemStatsShardService sharded = settle(new CounterShardingConfig(true, Map.of("system_stats", SHARDS)), batches);
+        long shardDocs = mongoTemplate.count(new Query(), SystemStatsShard.class);
+        sharded.merge(dates);
+        Map<LocalDate, Document> merged = systemStats(dates);
+
+        // Then: 確實寫入多個分片，且合併結果與直接寫入相同
+        assertThat(shardDocs).isGreaterThan(dates.size());
+        for (LocalDate date : dates) {
+            Document expected = unsharded.get(date);
+            Document actual = merged.get(date);
+            assertThat(expected).as("unsharded %s", date).isNotNull();
+            assertThat(actual).as("merged %s", date).isNotNull();
+            assertThat(actual.getBoolean("sharded")).isTrue();
+
+            for (String field : List.of("totalInputTokens", "totalOutputTokens", "totalTokens", "totalCacheReadTokens",
+                    "totalRequestCount", "successCount", "errorCount", "uniqueUsers", "peakHour", "peakHourRequests")) {
+                assertThat(number(actual, field)).as("%s %s", date, field).isEqualTo(number(expected, field));
+            }
+            for (String field : List.of("totalEstimatedCostUsd", "systemCacheSavedUsd", "successRate",
+                    "systemCacheHitRate", "avgLatencyMs")) {
+                assertThat(decimal(actual, field)).as("%s %s", date, field)
+                    .isCloseTo(decimal(expected, field), within(1e-9));
+            }
+            assertThat(Set.copyOf(actual.getList("userIdSet", String.class)))
+                .as("%s userIdSet", date)
+                .isEqualTo(Set.copyOf(expected.getList("userIdSet", String.class)));
+            assertThat(hourly(actual)).as("%s hourlyRequestCount", date).isEqualTo(hourly(expected));
+            // 同分項目的先後不保證，只比較內容
+            assertThat(actual.getList("topModels", Document.class)).as("%s topModels", date)
+                .containsExactlyInAnyOrderElementsOf(expected.getList("topModels", Document.class));
+            assertThat(actual.getList("topUsers", Document.class)).as("%s topUsers", date)
+                .containsExactlyInAnyOrderElementsOf(expected.getList("topUsers", Document.class));
+        }
+    }
+
+    @Test
+    void shardWritesAfterFinalMergeShouldBeFoldedWhenSealing() {
+        // Given: 分片結算後進行日結前的最後一次合併
+        List<List<UsageEventData>> batches = batches();
+        List<List<UsageEventData>> settled = batches.subList(0, BATCHES - 2);
+        SystemStatsShardService sharded = settle(new CounterShardingConfig(true, Map.of("system_stats", SHARDS)), settled);
+        Set<LocalDate> dates = settled.stream().flatMap(List::stream).map(this::date).collect(Collectors.toSet());
+        Map<LocalDate, List<Document>> merged = new TreeMap<>();
+        dates.forEach(date -> merged.put(date, sharded.mergeForFinalization(date)));
+
+        // When: 批次開始時日期尚未日結，寫入分片時已完成最後一次合併
+        List<UsageEventData> inFlight = batches.get(BATCHES - 2).stream()
+            .filter(e -> dates.contains(date(e))).toList();
+        assertThat(sharded.increment(inFlight)).isEmpty();
+        mongoTemplate.updateMulti(Query.query(Criteria.where("_id").in(dates.stream().map(SystemStats::createId).toList())),
+            new Update().set("finalized", true), SystemStats.class);
+        merged.forEach(sharded::sealShards);
+        List<UsageEventData> afterSeal = batches.get(BATCHES - 1).stream()
+            .filter(e -> dates.contains(date(e))).toList();
+        Set<LocalDate> rejected = sharded.increment(afterSeal);
+
+        // Then: 合併後寫入的事件補入原文件；封存後的寫入被拒絕並回報日期
+        List<UsageEventData> counted = new ArrayList<>(inFlight);
+        settled.forEach(counted::addAll);
+        Map<LocalDate, Document> stats = systemStats(dates);
+        for (LocalDate date : dates) {
+            List<UsageEventData> expected = counted.stream().filter(e -> date(e).equals(date)).toList();
+            assertThat(number(stats.get(date), "totalRequestCount")).as("%s totalRequestCount", date)
+                .isEqualTo(expected.size());
+            assertThat(number(stats.get(date), "successCount")).as("%s successCount", date)
+                .isEqualTo(expected.stream().filter(UsageEventData::isSuccess).count());
+            assertThat(number(stats.get(date), "totalTokens")).as("%s totalTokens", date)
+                .isEqualTo(expected.stream().mapToLong(UsageEventData::totalTokens).sum());
+        }
+        assertThat(rejected).isEqualTo(afterSeal.stream().map(this::date).collect(Collectors.toSet()));
+        assertThat(mongoTemplate.findAll(Document.class, mongoTemplate.getCollectionName(SystemStatsShard.class)))
+            .allSatisfy(shard -> {
+                assertThat(shard.getBoolean("sealed")).isTrue();
+                assertThat(shard).doesNotContainKey("totalRequestCount");
+            });
+    }
+
+    /**
+     * 以指定分片設定建立一組結算服務（各自獨立的水位線），依序處理批次。
+     */
+    private SystemStatsShardService settle(CounterShardingConfig sharding, List<List<UsageEventData>> batches) {
+        LedgerProperties config = withSharding(sharding);
+        SystemStatsShardService shardService = new SystemStatsShardService(mongoTemplate, costService, digestService, config);
+        WatermarkService watermarkService = new WatermarkService(mongoTemplate, config, meterRegistry);
+        UsageAggregationService aggregationService = new UsageAggregationService(mongoTemplate, costService,
+            digestService, config, userQuotaRepository, periodRolloverService, watermarkService, shardService,
+            modelDictionary, meterRegistry);
+        batches.forEach(aggregationService::processBatch);
+        return shardService;
+    }
+
+    private Map<LocalDate, Document> systemStats(Set<LocalDate> dates) {
+        Map<LocalDate, Document> result = new TreeMap<>();
+        for (LocalDate date : dates) {
+            result.put(date, mongoTemplate.findById(SystemStats.createId(date), Document.class,
+                mongoTemplate.getCollectionName(SystemStats.class)));
+        }
+        return result;
+    }
+
+    /**
+     * 12 個批次、每批 5 筆，事件時間遞增且整體在 1 小時內（不會判定為遲到），通常跨越小時邊界。
+     */
+    private static List<List<UsageEventData>> batches() {
+        Instant start = Instant.now().minus(Duration.ofMinutes(55)).truncatedTo(ChronoUnit.SECONDS);
+        List<List<UsageEventData>> batches = new ArrayList<>();
+        int seq = 0;
+        for (int b = 0; b < BATCHES; b++) {
+            List<UsageEventData> batch = new ArrayList<>();
+            for (int i = 0; i < EVENTS_PER_BATCH; i++, seq++) {
+                boolean success = seq % 7 != 3;
+                batch.add(new UsageEventData(
+                    "user-" + (seq * 5 % 9),
+                    start.plusSeconds(seq * 50L),
+                    MODELS.get(seq % MODELS.size()),
+                    200 + seq * 13, 80 + seq * 7, seq % 4 == 0 ? 500 : 0, seq % 3 == 0 ? 1200 : 0,
+                    "msg-" + seq, 150L + (seq * 37 % 900), seq % 2 == 0, "end_turn",
+                    success ? "success" : "error", success ? null : "overloaded_error",
+                    "key-1", "trace-" + seq, "req-" + seq));
+            }
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    private LedgerProperties withSharding(CounterShardingConfig sharding) {
+        LedgerProperties p = properties;
+        return new LedgerProperties(p.batch(), p.pricing(), p.latency(), p.quota(), p.rollover(), p.hourly(),
+            p.finalization(), p.watermark(), p.cache(), p.errors(), p.quotaSnapshot(), p.export(), p.httpCache(),
+            p.overlay(), p.rawRetention(), sharding, p.storage());
+    }
+
+    private LocalDate date(UsageEventData event) {
+        return event.eventTime().atZone(ZoneOffset.UTC).toLocalDate();
+    }
+
+    private static long number(Document doc, String field) {
+        return doc.get(field) instanceof Number n ? n.longValue() : 0L;
+    }
+
+    private static double decimal(Document doc, String field) {
+        Object value = doc.get(field);
+        if (value instanceof Decimal128 d) {
+            return d.doubleValue();
+        }
+        return value instanceof Number n ? n.doubleValue() : 0.0;
+    }
+
+    private static Map<String, Long> hourly(Document doc) {
+        Document hourly = doc.get("hourlyRequestCount", Document.class);
+        Map<String, Long> result = new TreeMap<>();
+        if (hourly != null) {
+            hourly.forEach((hour, count) -> result.put(hour, ((Number) count).longValue()));
+        }
+        return result;
+    }
+}
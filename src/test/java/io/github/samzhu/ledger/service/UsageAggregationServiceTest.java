@@ -0,0 +1,100 @@
+package io.github.samzhu.ledger.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.query.Update;
+
+import io.github.samzhu.ledger.dto.UsageEventData;
+import io.github.samzhu.ledger.util.HyperLogLog;
+
+/**
+ * {@link UsageAggregationService} 修正路徑（遲到事件）的獨立用戶累計。
+ */
+class UsageAggregationServiceTest {
+
+    private static final Instant NOW = Instant.parse("2026-03-16T02:00:00Z");
+
+    @Test
+    void shouldAddDistinctUsersToSetWhenDayNotFinalized() {
+        // Given: 未日結的日期，事件含重複用戶
+        Update update = new Update();
+        List<UsageEventData> events = List.of(event("alice"), event("bob"), event("alice"));
+
+        // When
+        UsageAggregationService.applyLateUsers(update, null, events, false, NOW);
+
+        // Then: 所有用戶以 $addToSet + $each 一次寫入，不碰草圖
+        Document addToSet = update.getUpdateObject().get("$addToSet", Document.class);
+        Update.Modifier each = (Update.Modifier) addToSet.get("userIdSet");
+        assertThat(each.getKey()).isEqualTo("$each");
+        assertThat((Object[]) each.getValue()).containsExactlyInAnyOrder("alice", "bob");
+        assertThat(update.getUpdateObject().get("$set")).isNull();
+        assertThat(update.getUpdateObject().get("$setOnInsert")).isNull();
+    }
+
+    @Test
+    void shouldMergeIntoSketchWhenDayFinalized() {
+        // Given: 已日結的日期，草圖已有 alice 與 bob
+        HyperLogLog existing = HyperLogLog.create();
+        existing.add("alice");
+        existing.add("bob");
+        Document current = new Document("userSketch", new Binary(existing.toBytes()));
+        Update update = new Update();
+
+        // When: 遲到事件帶來 bob（重複）與 carol（新用戶）
+        UsageAggregationService.applyLateUsers(update, current, List.of(event("bob"), event("carol")), true, NOW);
+
+        // Then: 草圖合併後重算 uniqueUsers，不寫 userIdSet
+        Document set = update.getUpdateObject().get("$set", Document.class);
+        assertThat(set.get("uniqueUsers")).isEqualTo(3);
+        HyperLogLog merged = HyperLogLog.fromBytes((byte[]) set.get("userSketch"));
+        assertThat(merged.estimate()).isEqualTo(3);
+        assertThat(update.getUpdateObject().get("$addToSet")).isNull();
+    }
+
+    @Test
+    void shouldMarkUpsertedDocumentFinalizedWhenDayFinalized() {
+        // Given: 已日結日期但尚無該文件（例如該模型當日首筆事件遲到）
+        Update update = new Update();
+
+        // When
+        UsageAggregationService.applyLateUsers(update, null, List.of(event("alice")), true, NOW);
+
+        // Then: 新建文件直接標記已日結，草圖只含遲到事件的用戶
+        Document set = update.getUpdateObject().get("$set", Document.class);
+        Document setOnInsert = update.getUpdateObject().get("$setOnInsert", Document.class);
+        assertThat(set.get("uniqueUsers")).isEqualTo(1);
+        assertThat(setOnInsert.get("finalized")).isEqualTo(true);
+        assertThat(setOnInsert.get("finalizedAt")).isEqualTo(NOW);
+    }
+
+    @Test
+    void shouldAcceptRawByteArraySketch() {
+        // Given: 草圖以 byte[]（非 Binary）讀回
+        HyperLogLog existing = HyperLogLog.create();
+        existing.add("alice");
+        Document current = new Document("userSketch", existing.toBytes());
+        Update update = new Update();
+
+        // When
+        UsageAggregationService.applyLateUsers(update, current, List.of(event("bob")), true, NOW);
+
+        // Then
+        assertThat(update.getUpdateObject().get("$set", Document.class).get("uniqueUsers")).isEqualTo(2);
+    }
+
+    private static UsageEventData event(String userId) {
+        return new UsageEventData(
+            userId, NOW.minusSeconds(7200), "claude-sonnet-4-20250514",
+            100, 50, 0, 0,
+            "msg-" + userId, 200L, false, "end_turn",
+            "success", null,
+            "key", "trace", "req");
+    }
+}
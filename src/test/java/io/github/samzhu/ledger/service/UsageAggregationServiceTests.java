@@ -0,0 +1,84 @@
+package io.github.samzhu.ledger.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import io.github.samzhu.ledger.TestcontainersConfiguration;
+import io.github.samzhu.ledger.document.DailyModelUsage;
+import io.github.samzhu.ledger.document.SystemStats;
+import io.github.samzhu.ledger.dto.UsageEventData;
+import io.github.samzhu.ledger.util.HyperLogLog;
+
+/**
+ * 日結進行中的結算：批次開始時日期未日結，寫入時文件已日結，不可在已日結文件重建 {@code userIdSet}。
+ */
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest
+class UsageAggregationServiceTests {
+
+    private static final String MODEL = "claude-sonnet-4-20250514";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private UsageAggregationService aggregationService;
+
+    @BeforeEach
+    void clean() {
+        mongoTemplate.getCollectionNames().forEach(name -> mongoTemplate.remove(new Query(), name));
+    }
+
+    @Test
+    void shouldFoldUsersIntoSketchWhenModelDocumentFinalizedDuringSettlement() {
+        // Given: 模型日用量已日結（草圖含 alice），system_stats 尚未日結
+        Instant eventTime = Instant.now().minusSeconds(60);
+        LocalDate date = eventTime.atZone(ZoneOffset.UTC).toLocalDate();
+        HyperLogLog sketch = HyperLogLog.create();
+        sketch.add("alice");
+        String docId = DailyModelUsage.createId(date, MODEL);
+        mongoTemplate.insert(new Document("_id", docId)
+            .append("date", date.toString())
+            .append("model", MODEL)
+            .append("requestCount", 1)
+            .append("uniqueUsers", 1)
+            .append("userSketch", sketch.toBytes())
+            .append("finalized", true),
+            mongoTemplate.getCollectionName(DailyModelUsage.class));
+        mongoTemplate.insert(new Document("_id", SystemStats.createId(date)).append("totalRequestCount", 1),
+            mongoTemplate.getCollectionName(SystemStats.class));
+
+        // When
+        aggregationService.processBatch(List.of(event("bob", eventTime)));
+
+        // Then: 事件改以已日結修正累加，用戶併入草圖
+        Document doc = mongoTemplate.findById(docId, Document.class,
+            mongoTemplate.getCollectionName(DailyModelUsage.class));
+        assertThat(doc).isNotNull();
+        assertThat(doc).doesNotContainKey("userIdSet");
+        assertThat(doc.getInteger("requestCount")).isEqualTo(2);
+        assertThat(doc.getInteger("uniqueUsers")).isEqualTo(2);
+        assertThat(doc.getBoolean("finalized")).isTrue();
+        HyperLogLog stored = HyperLogLog.fromBytes(doc.get("userSketch", Binary.class).getData());
+        assertThat(stored.estimate()).isEqualTo(2);
+    }
+
+    private static UsageEventData event(String userId, Instant eventTime) {
+        return new UsageEventData(userId, eventTime, MODEL, 100, 50, 0, 0, "msg-" + userId, 300L, false,
+            "end_turn", "success", null, "key-1", "trace-" + userId, "req-" + userId);
+    }
+}
@@ -0,0 +1,235 @@
+package io.github.samzhu.ledger.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.github.samzhu.ledger.service.UsageExportService.Column;
+import io.github.samzhu.ledger.service.UsageExportService.Dataset;
+import io.github.samzhu.ledger.service.UsageExportService.Format;
+
+class UsageExportServiceTest {
+
+    private static final LocalDate DATE = LocalDate.of(2026, 3, 15);
+
+    private MongoTemplate mongoTemplate;
+    private UsageExportService service;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        service = new UsageExportService(mongoTemplate, mock(RawEventArchiveService.class));
+    }
+
+    @Test
+    void shouldFormatDecimal128AsPlainNumber() {
+        // Given: 科學記號與尾端零
+        Column column = Column.number("estimatedCostUsd");
+
+        // When / Then
+        assertThat(UsageExportService.format(column, new Decimal128(new BigDecimal("1.5E+3")))).isEqualTo("1500");
+        assertThat(UsageExportService.format(column, new Decimal128(new BigDecimal("1E-7")))).isEqualTo("0.0000001");
+        assertThat(UsageExportService.format(column, new Decimal128(new BigDecimal("12.50")))).isEqualTo("12.50");
+    }
+
+    @Test
+    void shouldFormatOtherNumbersAsIs() {
+        // Given
+        Column column = Column.number("totalTokens");
+
+        // When / Then: long、double 與以字串儲存的 BigDecimal
+        assertThat(UsageExportService.format(column, 1234L)).isEqualTo("1234");
+        assertThat(UsageExportService.format(column, 0.5)).isEqualTo("0.5");
+        assertThat(UsageExportService.format(column, "3.75")).isEqualTo("3.75");
+    }
+
+    @Test
+    void shouldFormatStoredLocalDateInSystemZone() {
+        // Given: Spring Data 將 LocalDate 存為系統時區午夜的 Date
+        Date stored = Date.from(DATE.atStartOfDay(ZoneId.systemDefault()).toInstant());
+
+        // When / Then
+        assertThat(UsageExportService.format(Column.date("date"), stored)).isEqualTo("2026-03-15");
+        assertThat(UsageExportService.format(Column.date("date"), "2026-03-15")).isEqualTo("2026-03-15");
+    }
+
+    @Test
+    void shouldFormatTimestampAsIsoInstant() {
+        // Given
+        Date stored = Date.from(Instant.parse("2026-03-15T08:30:05.123Z"));
+
+        // When / Then
+        assertThat(UsageExportService.format(Column.timestamp("archivedAt"), stored))
+            .isEqualTo("2026-03-15T08:30:05.123Z");
+    }
+
+    @Test
+    void shouldFormatObjectIdAsHexAndNullAsMissing() {
+        // Given
+        ObjectId id = new ObjectId("65f3a1b2c3d4e5f607182930");
+
+        // When / Then
+        assertThat(UsageExportService.format(Column.text("batchId"), id)).isEqualTo("65f3a1b2c3d4e5f607182930");
+        assertThat(UsageExportService.format(Column.text("userId"), null)).isNull();
+        assertThat(UsageExportService.format(Column.bool("finalized"), true)).isEqualTo("true");
+    }
+
+    @Test
+    void shouldWriteCsvHeaderAndRowsWithCrlf() throws IOException {
+        // Given
+        givenRows(Dataset.DAILY_USER_USAGE, userRow("alice", new Decimal128(new BigDecimal("1.25")), true));
+
+        // When
+        String csv = export(Dataset.DAILY_USER_USAGE, Format.CSV);
+
+        // Then
+        assertThat(csv).isEqualTo(
+            "date,userId,totalInputTokens,totalOutputTokens,totalCacheCreationTokens,totalCacheReadTokens,"
+                + "totalTokens,requestCount,successCount,errorCount,estimatedCostUsd,finalized\r\n"
+                + "2026-03-15,alice,100,50,0,0,150,3,2,1,1.25,true\r\n");
+    }
+
+    @Test
+    void shouldQuoteCsvTextPerRfc4180() throws IOException {
+        // Given: 需要引號的各種字元
+        givenRows(Dataset.DAILY_USER_USAGE,
+            userRow("a,b", null, false),
+            userRow("say \"hi\"", null, false),
+            userRow("line\nbreak", null, false),
+            userRow("carriage\rreturn", null, false),
+            userRow("plain", null, false));
+
+        // When
+        String csv = export(Dataset.DAILY_USER_USAGE, Format.CSV);
+
+        // Then: 含逗號、引號、換行者以雙引號包住，內部引號加倍
+        assertThat(csv).contains("\r\n2026-03-15,\"a,b\",");
+        assertThat(csv).contains("\r\n2026-03-15,\"say \"\"hi\"\"\",");
+        assertThat(csv).contains("\r\n2026-03-15,\"line\nbreak\",");
+        assertThat(csv).contains("\r\n2026-03-15,\"carriage\rreturn\",");
+        assertThat(csv).contains("\r\n2026-03-15,plain,");
+    }
+
+    @Test
+    void shouldLeaveMissingCsvValuesEmpty() throws IOException {
+        // Given: 缺少成本與 finalized 欄位
+        givenRows(Dataset.DAILY_USER_USAGE, userRow("alice", null, null));
+
+        // When
+        String csv = export(Dataset.DAILY_USER_USAGE, Format.CSV);
+
+        // Then
+        assertThat(csv).endsWith("\r\n2026-03-15,alice,100,50,0,0,150,3,2,1,,\r\n");
+    }
+
+    @Test
+    void shouldWriteNdjsonNumbersAsJsonNumbers() throws IOException {
+        // Given: 高精度 Decimal128 金額
+        givenRows(Dataset.DAILY_USER_USAGE,
+            userRow("alice", new Decimal128(new BigDecimal("0.123456789012345678")), true),
+            userRow("bob", null, null));
+
+        // When
+        String ndjson = export(Dataset.DAILY_USER_USAGE, Format.NDJSON);
+
+        // Then: 每行一個物件，數值不加引號且保留精度，缺值為 null
+        List<String> lines = ndjson.lines().toList();
+        assertThat(lines).hasSize(2);
+        assertThat(ndjson).endsWith("\n");
+        assertThat(lines.get(0)).contains("\"estimatedCostUsd\":0.123456789012345678");
+        assertThat(lines.get(0)).contains("\"totalTokens\":150");
+
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode first = mapper.readTree(lines.get(0));
+        assertThat(first.get("date").asText()).isEqualTo("2026-03-15");
+        assertThat(first.get("userId").asText()).isEqualTo("alice");
+        assertThat(first.get("totalTokens").isNumber()).isTrue();
+        assertThat(first.get("finalized").isBoolean()).isTrue();
+        assertThat(first.get("finalized").booleanValue()).isTrue();
+
+        JsonNode second = mapper.readTree(lines.get(1));
+        assertThat(second.get("estimatedCostUsd").isNull()).isTrue();
+        assertThat(second.get("finalized").isNull()).isTrue();
+    }
+
+    @Test
+    void shouldEscapeTextInNdjson() throws IOException {
+        // Given
+        givenRows(Dataset.DAILY_USER_USAGE, userRow("say \"hi\"\n", null, false));
+
+        // When
+        String ndjson = export(Dataset.DAILY_USER_USAGE, Format.NDJSON);
+
+        // Then: 換行被 JSON 跳脫，仍只有一行
+        assertThat(ndjson.lines()).hasSize(1);
+        assertThat(new ObjectMapper().readTree(ndjson).get("userId").asText()).isEqualTo("say \"hi\"\n");
+    }
+
+    @Test
+    void shouldReturnRowCount() throws IOException {
+        // Given
+        givenRows(Dataset.DAILY_USER_USAGE, userRow("alice", null, true), userRow("bob", null, true));
+
+        // When
+        long count = service.export(Dataset.DAILY_USER_USAGE, Format.CSV, DATE, DATE, new ByteArrayOutputStream());
+
+        // Then
+        assertThat(count).isEqualTo(2);
+    }
+
+    private void givenRows(Dataset dataset, Document... rows) {
+        when(mongoTemplate.stream(any(Query.class), eq(Document.class), eq(dataset.collection())))
+            .thenAnswer(invocation -> Stream.of(rows));
+    }
+
+    private String export(Dataset dataset, Format format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.export(dataset, format, DATE, DATE, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static Document userRow(String userId, Object costUsd, Boolean finalized) {
+        Document row = new Document("_id", DATE + "_" + userId)
+            .append("date", Date.from(DATE.atStartOfDay(ZoneId.systemDefault()).toInstant()))
+            .append("userId", userId)
+            .append("totalInputTokens", 100L)
+            .append("totalOutputTokens", 50L)
+            .append("totalCacheCreationTokens", 0L)
+            .append("totalCacheReadTokens", 0L)
+            .append("totalTokens", 150L)
+            .append("requestCount", 3)
+            .append("successCount", 2)
+            .append("errorCount", 1);
+        if (costUsd != null) {
+            row.append("estimatedCostUsd", costUsd);
+        }
+        if (finalized != null) {
+            row.append("finalized", finalized);
+        }
+        return row;
+    }
+}
@@ -0,0 +1,164 @@
+package io.github.samzhu.ledger.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import io.github.samzhu.ledger.config.LedgerProperties;
+import io.github.samzhu.ledger.document.HourlyUsage;
+import io.github.samzhu.ledger.dto.UsageEventData;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class WatermarkServiceTest {
+
+    private static final Duration LATENESS = Duration.ofMinutes(60);
+
+    private MongoTemplate mongoTemplate;
+    private WatermarkService service;
+    private Instant base;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        service = new WatermarkService(mongoTemplate, LedgerProperties.defaults(Map.of()), new SimpleMeterRegistry());
+        base = Instant.now().minus(Duration.ofHours(3)).truncatedTo(ChronoUnit.SECONDS);
+    }
+
+    @Test
+    void shouldTreatEventBeforeWatermarkAsLate() {
+        // Given
+        Instant watermark = Instant.parse("2026-03-15T10:00:00Z");
+
+        // When / Then: 嚴格早於水位線才算遲到
+        assertThat(WatermarkService.isLate(watermark.minusMillis(1), watermark)).isTrue();
+        assertThat(WatermarkService.isLate(watermark, watermark)).isFalse();
+        assertThat(WatermarkService.isLate(watermark.plusMillis(1), watermark)).isFalse();
+    }
+
+    @Test
+    void shouldNeverTreatEventAsLateBeforeAnyWatermark() {
+        // Given: 尚無任何事件時水位線為 Instant.MIN
+        Instant watermark = service.current();
+
+        // When / Then
+        assertThat(watermark).isEqualTo(Instant.MIN);
+        assertThat(WatermarkService.isLate(Instant.EPOCH, watermark)).isFalse();
+    }
+
+    @Test
+    void shouldStayAtMinWhenBatchIsEmptyAndNothingToSeed() {
+        // When
+        Instant watermark = service.advance(List.of());
+
+        // Then
+        assertThat(watermark).isEqualTo(Instant.MIN);
+    }
+
+    @Test
+    void shouldTrailMaxEventTimeByAllowedLateness() {
+        // Given: 批次內事件時間亂序
+        List<UsageEventData> events = List.of(event(base.plusSeconds(30)), event(base.plusSeconds(90)), event(base));
+
+        // When
+        Instant watermark = service.advance(events);
+
+        // Then
+        assertThat(watermark).isEqualTo(base.plusSeconds(90).minus(LATENESS));
+        assertThat(service.current()).isEqualTo(watermark);
+    }
+
+    @Test
+    void shouldNotMoveBackwards() {
+        // Given
+        service.advance(List.of(event(base.plusSeconds(600))));
+
+        // When: 後續批次只有較舊的事件
+        Instant watermark = service.advance(List.of(event(base)));
+
+        // Then
+        assertThat(watermark).isEqualTo(base.plusSeconds(600).minus(LATENESS));
+    }
+
+    @Test
+    void shouldClampFutureEventTimeToNow() {
+        // Given: 時鐘偏移的事件來自未來
+        Instant before = Instant.now();
+
+        // When
+        Instant watermark = service.advance(List.of(event(before.plus(Duration.ofDays(1)))));
+
+        // Then: 水位線不會超過 now − 允許遲到時間
+        assertThat(watermark).isBetween(before.minus(LATENESS), Instant.now().minus(LATENESS));
+    }
+
+    @Test
+    void shouldSeedFromLatestSystemHourOnce() {
+        // Given: hourly_usage 最新的系統小時晚於本批次事件
+        Instant seededHour = base.plus(Duration.ofHours(1));
+        givenLatestHour(seededHour);
+
+        // When
+        Instant first = service.advance(List.of(event(base)));
+        Instant second = service.advance(List.of(event(base)));
+
+        // Then
+        assertThat(first).isEqualTo(seededHour.minus(LATENESS));
+        assertThat(second).isEqualTo(first);
+        verify(mongoTemplate, times(1)).findOne(any(Query.class), eq(HourlyUsage.class));
+    }
+
+    @Test
+    void shouldAdvancePastSeedWhenEventsAreNewer() {
+        // Given
+        givenLatestHour(base);
+
+        // When
+        Instant watermark = service.advance(List.of(event(base.plusSeconds(120))));
+
+        // Then
+        assertThat(watermark).isEqualTo(base.plusSeconds(120).minus(LATENESS));
+    }
+
+    @Test
+    void shouldStartFromFirstBatchWhenSeedingFails() {
+        // Given
+        when(mongoTemplate.findOne(any(Query.class), eq(HourlyUsage.class)))
+            .thenThrow(new IllegalStateException("mongo down"));
+
+        // When
+        Instant watermark = service.advance(List.of(event(base)));
+
+        // Then
+        assertThat(watermark).isEqualTo(base.minus(LATENESS));
+    }
+
+    private void givenLatestHour(Instant hour) {
+        HourlyUsage latest = new HourlyUsage(null, hour, HourlyUsage.DIMENSION_SYSTEM, null,
+            0, 0, 0, 0, 0, 0, 0, 0, null, null, null, null, null, null);
+        when(mongoTemplate.findOne(any(Query.class), eq(HourlyUsage.class))).thenReturn(latest);
+    }
+
+    private static UsageEventData event(Instant eventTime) {
+        return new UsageEventData(
+            "user-1", eventTime, "claude-sonnet-4-20250514",
+            100, 50, 0, 0,
+            "msg-" + eventTime.toEpochMilli(), 200L, false, "end_turn",
+            "success", null,
+            "key", "trace", "req");
+    }
+}
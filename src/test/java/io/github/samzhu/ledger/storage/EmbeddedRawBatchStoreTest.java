@@ -0,0 +1,144 @@
+package io.github.samzhu.ledger.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+import io.github.samzhu.ledger.document.RawEventBatch;
+import io.github.samzhu.ledger.dto.UsageEventData;
+
+class EmbeddedRawBatchStoreTest {
+
+    private static final ObjectMapper MAPPER = JsonMapper.builder()
+        .findAndAddModules()
+        .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+        .build();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void pendingBatchesShouldSurviveReopen() throws IOException {
+        // Given
+        String id;
+        try (EmbeddedRawBatchStore store = open(1024 * 1024)) {
+            id = store.save(batch("user-1")).id();
+            store.save(batch("user-2"));
+        }
+
+        // When
+        try (EmbeddedRawBatchStore store = open(1024 * 1024)) {
+            List<RawEventBatch> pending = store.findUnprocessed();
+
+            // Then - 依寫入順序回傳，事件完整還原
+            assertThat(pending).extracting(RawEventBatch::id).first().isEqualTo(id);
+            assertThat(pending).hasSize(2);
+            assertThat(pending.get(0).events()).extracting(UsageEventData::userId).containsExactly("user-1");
+            assertThat(pending.get(0).deltas()).hasSize(1);
+        }
+    }
+
+    @Test
+    void processedBatchesShouldNotReappearAndSegmentsShouldBeReclaimed() throws IOException {
+        // Given - 區段上限很小，每筆批次各自一個區段
+        try (EmbeddedRawBatchStore store = open(256)) {
+            RawEventBatch first = store.save(batch("user-1"));
+            RawEventBatch second = store.save(batch("user-2"));
+
+            // When
+            store.markProcessed(first.id());
+            store.markProcessed(second.id());
+        }
+
+        // Then
+        try (EmbeddedRawBatchStore store = open(256)) {
+            assertThat(store.findUnprocessed()).isEmpty();
+        }
+        assertThat(segmentCount()).isEqualTo(1);
+    }
+
+    @Test
+    void incompleteTailShouldBeTruncatedOnReopen() throws IOException {
+        // Given
+        try (EmbeddedRawBatchStore store = open(1024 * 1024)) {
+            store.save(batch("user-1"));
+        }
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        long intact = Files.size(segment);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0, 0, 1, 0, 1}));  // 寫入中途中斷的記錄標頭
+        }
+
+        // When
+        try (EmbeddedRawBatchStore store = open(1024 * 1024)) {
+
+            // Then
+            assertThat(store.findUnprocessed()).hasSize(1);
+            assertThat(Files.size(segment)).isEqualTo(intact);
+            store.save(batch("user-2"));
+            assertThat(store.findUnprocessed()).hasSize(2);
+        }
+    }
+
+    @Test
+    void corruptSealedSegmentShouldFailOpen() throws IOException {
+        // Given - 每筆批次各自一個區段，第一個區段已封存且仍有未結算批次
+        try (EmbeddedRawBatchStore store = open(256)) {
+            store.save(batch("user-1"));
+            store.save(batch("user-2"));
+        }
+        Path sealed;
+        try (Stream<Path> files = Files.list(directory)) {
+            sealed = files.sorted().findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(sealed, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0x7f}), Files.size(sealed) - 1);  // 破壞內容，CRC 不符
+        }
+        long size = Files.size(sealed);
+
+        // When / Then - 不略過已提交的批次，區段檔保持原狀
+        assertThatThrownBy(() -> open(256))
+            .isInstanceOf(IOException.class)
+            .hasMessageContaining(sealed.getFileName().toString());
+        assertThat(Files.size(sealed)).isEqualTo(size);
+    }
+
+    private EmbeddedRawBatchStore open(long segmentMaxBytes) throws IOException {
+        return new EmbeddedRawBatchStore(directory, segmentMaxBytes, false, MAPPER);
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    private static RawEventBatch batch(String userId) {
+        UsageEventData event = new UsageEventData(
+            userId, Instant.parse("2025-12-09T10:00:00Z"), "claude-sonnet-4-20250514",
+            100, 50, 0, 0, "msg-" + userId, 800L, false, "end_turn", "success", null,
+            "primary", "trace-1", "req-1");
+        List<UsageEventData> events = List.of(event);
+        return RawEventBatch.create(events, RawEventBatch.UsageDelta.summarize(events, e -> BigDecimal.ONE));
+    }
+}
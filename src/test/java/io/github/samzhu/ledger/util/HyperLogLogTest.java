@@ -0,0 +1,70 @@
+package io.github.samzhu.ledger.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import org.junit.jupiter.api.Test;
+
+class HyperLogLogTest {
+
+    @Test
+    void shouldCountSmallCardinalityExactly() {
+        // Given
+        HyperLogLog sketch = HyperLogLog.create();
+
+        // When
+        for (int i = 0; i < 50; i++) {
+            sketch.add("user-" + i);
+            sketch.add("user-" + i);  // 重複值不影響計數
+        }
+
+        // Then
+        assertThat(sketch.estimate()).isEqualTo(50);
+    }
+
+    @Test
+    void shouldEstimateLargeCardinalityWithinErrorBound() {
+        // Given
+        HyperLogLog sketch = HyperLogLog.create();
+
+        // When
+        for (int i = 0; i < 100_000; i++) {
+            sketch.add("user-" + i);
+        }
+
+        // Then - 標準誤差約 1.6%，允許 5%
+        assertThat((double) sketch.estimate()).isCloseTo(100_000, within(5_000.0));
+    }
+
+    @Test
+    void mergeShouldProduceUnion() {
+        // Given
+        HyperLogLog a = HyperLogLog.create();
+        HyperLogLog b = HyperLogLog.create();
+        for (int i = 0; i < 1_000; i++) {
+            a.add("user-" + i);
+            b.add("user-" + (i + 500));
+        }
+
+        // When
+        a.merge(b);
+
+        // Then
+        assertThat((double) a.estimate()).isCloseTo(1_500, within(75.0));
+    }
+
+    @Test
+    void shouldRoundTripThroughBytes() {
+        // Given
+        HyperLogLog sketch = HyperLogLog.create();
+        sketch.add("user-a");
+        sketch.add("user-b");
+
+        // When
+        HyperLogLog restored = HyperLogLog.fromBytes(sketch.toBytes());
+
+        // Then
+        assertThat(restored).isEqualTo(sketch);
+        assertThat(HyperLogLog.fromBytes(null).isEmpty()).isTrue();
+    }
+}
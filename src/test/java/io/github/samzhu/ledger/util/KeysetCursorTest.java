@@ -0,0 +1,125 @@
+package io.github.samzhu.ledger.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.KeysetScrollPosition;
+
+class KeysetCursorTest {
+
+    private static final ObjectId FIRST_ID = new ObjectId("64b7f0c2a1b2c3d4e5f60718");
+    private static final ObjectId SECOND_ID = new ObjectId("64b7f0c2a1b2c3d4e5f60719");
+
+    @Test
+    void shouldRoundTripEveryValueType() {
+        // Given
+        Instant lastActiveAt = Instant.parse("2025-12-09T10:15:30.123Z");
+        Map<String, Object> keys = new LinkedHashMap<>();
+        keys.put("userId", "user-1");
+        keys.put("periodYear", 2025);
+        keys.put("totalTokens", 12_345_678_901L);
+        keys.put("costUsagePercent", 85.5);
+        keys.put("quotaEnabled", true);
+        keys.put("archivedAt", Date.from(lastActiveAt));
+        keys.put("lastActiveAt", lastActiveAt);
+        keys.put("bonusReason", null);
+        keys.put("_id", FIRST_ID);
+
+        // When
+        KeysetScrollPosition position = KeysetCursor.decode(KeysetCursor.encode(keys));
+
+        // Then - 保留原始型別與鍵順序；Instant 以 Date 還原（MongoDB 日期型別）
+        assertThat(position.getKeys()).containsExactly(
+            entry("userId", "user-1"),
+            entry("periodYear", 2025),
+            entry("totalTokens", 12_345_678_901L),
+            entry("costUsagePercent", 85.5),
+            entry("quotaEnabled", true),
+            entry("archivedAt", Date.from(lastActiveAt)),
+            entry("lastActiveAt", Date.from(lastActiveAt)),
+            entry("bonusReason", null),
+            entry("_id", FIRST_ID));
+    }
+
+    @Test
+    void shouldKeepNumericTypesDistinct() {
+        // Given
+        Map<String, Object> keys = new LinkedHashMap<>();
+        keys.put("int", 7);
+        keys.put("long", 7L);
+        keys.put("double", 7.0);
+
+        // When
+        Map<String, Object> decoded = KeysetCursor.decode(KeysetCursor.encode(keys)).getKeys();
+
+        // Then - 型別不同時 MongoDB 比較結果不同，不可互相轉換
+        assertThat(decoded.get("int")).isInstanceOf(Integer.class);
+        assertThat(decoded.get("long")).isInstanceOf(Long.class);
+        assertThat(decoded.get("double")).isInstanceOf(Double.class);
+    }
+
+    @Test
+    void blankCursorShouldStartFromFirstPage() {
+        assertThat(KeysetCursor.decode(null).isInitial()).isTrue();
+        assertThat(KeysetCursor.decode("  ").isInitial()).isTrue();
+    }
+
+    @Test
+    void equalSortKeysShouldBeTieBrokenById() {
+        // Given - 兩筆使用率相同的用戶
+        Map<String, Object> first = new LinkedHashMap<>();
+        first.put("costUsagePercent", 100.0);
+        first.put("_id", FIRST_ID);
+        Map<String, Object> second = new LinkedHashMap<>();
+        second.put("costUsagePercent", 100.0);
+        second.put("_id", SECOND_ID);
+
+        // When
+        String firstCursor = KeysetCursor.encode(first);
+        String secondCursor = KeysetCursor.encode(second);
+
+        // Then - 游標以 _id 區分，且 _id 維持 ObjectId 型別並排在排序鍵之後
+        assertThat(firstCursor).isNotEqualTo(secondCursor);
+        assertThat(KeysetCursor.decode(firstCursor).getKeys())
+            .containsExactly(entry("costUsagePercent", 100.0), entry("_id", FIRST_ID));
+        assertThat(KeysetCursor.decode(secondCursor).getKeys())
+            .containsExactly(entry("costUsagePercent", 100.0), entry("_id", SECOND_ID));
+    }
+
+    @Test
+    void nonBase64CursorShouldBeRejected() {
+        assertThatThrownBy(() -> KeysetCursor.decode("not a cursor!"))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void tamperedCursorsShouldBeRejected() {
+        // 控制器捕捉 IllegalArgumentException 回應 400
+        assertRejected("_id\u001Fo");                                  // 缺少值欄位
+        assertRejected("_id\u001Fx\u001F1");                           // 未知型別
+        assertRejected("periodYear\u001Fi\u001Fabc");                  // 非數值
+        assertRejected("totalTokens\u001Fl\u001F1.5");                 // long 欄位含小數
+        assertRejected("archivedAt\u001Ft\u001Fyesterday");           // 非時間戳
+        assertRejected("_id\u001Fo\u001Fnot-an-object-id");            // 非 ObjectId
+        assertRejected("quotaEnabled\u001Fb\u001Fmaybe");              // 非布林值
+        assertRejected("userId\u001Fs\u001Fuser-1\u001E_id");          // 第二個鍵不完整
+    }
+
+    private static void assertRejected(String payload) {
+        String cursor = Base64.getUrlEncoder().withoutPadding()
+            .encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+        assertThatThrownBy(() -> KeysetCursor.decode(cursor))
+            .as(payload)
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}